@@ -0,0 +1,123 @@
+package com.opentext.otag.sdk.bus.benchmarks;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.opentext.otag.sdk.bus.SdkEventCodec;
+import com.opentext.otag.sdk.bus.SdkQueueEvent;
+import com.opentext.otag.sdk.types.v3.OtagServiceEvent;
+import com.opentext.otag.sdk.types.v3.api.SDKResponse;
+import com.opentext.otag.sdk.types.v3.message.SettingsChangeMessage;
+import com.opentext.otag.sdk.types.v3.notification.NotificationRequest;
+import com.opentext.otag.sdk.types.v3.settings.Setting;
+import com.opentext.otag.sdk.types.v3.settings.SettingType;
+import com.opentext.otag.sdk.types.v3.settings.Settings;
+import com.opentext.otag.sdk.types.v4.SdkRequest;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+
+import static com.opentext.otag.sdk.bus.SdkEventKeys.NOTIFICATIONS_PUSH;
+import static com.opentext.otag.sdk.bus.SdkEventKeys.SETTINGS_GET_SETTINGS;
+import static java.util.Arrays.asList;
+
+/**
+ * Compares {@link SdkEventCodec} round trips (encode then decode) with Java serialization, see
+ * {@link TypesSerializationBenchmark}, and with Jackson reading and writing fields directly. Request and
+ * response events are only covered by the codec, {@link SdkRequest} and {@link SDKResponse} are neither
+ * serializable nor creatable by Jackson without annotations.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class CodecBenchmark {
+
+    private final ObjectMapper jackson = new ObjectMapper()
+            .setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.NONE)
+            .setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY)
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private Setting setting;
+    private NotificationRequest notification;
+    private SdkQueueEvent settingsCommand;
+    private SdkQueueEvent notificationRequest;
+    private SdkQueueEvent settingsResponse;
+
+    @Setup
+    public void setUp() {
+        setting = new Setting("benchmark.setting", SettingType.string, "some setting value");
+        notification = new NotificationRequest("{\"message\":\"hello\"}",
+                new HashSet<>(asList("client1", "client2")), new HashSet<>(asList("user1", "user2", "user3")));
+        settingsCommand = SdkQueueEvent.command(null, "codecBenchmark", "benchmark");
+        settingsCommand.setSettingsChangeMessage(
+                new SettingsChangeMessage(OtagServiceEvent.SETTING_UPDATED, "benchmark.setting", "new value"));
+
+        notificationRequest = SdkQueueEvent.request(new SdkRequest<>(NOTIFICATIONS_PUSH, notification),
+                "codecBenchmark", "benchmark");
+        SdkQueueEvent settingsRequest = SdkQueueEvent.request(new SdkRequest<>(SETTINGS_GET_SETTINGS),
+                "codecBenchmark", "benchmark");
+        settingsResponse = SdkQueueEvent.response(new SDKResponse<>(true, new Settings(asList(setting,
+                new Setting("benchmark.other", SettingType.bool, "true")))), settingsRequest);
+    }
+
+    @Benchmark
+    public Object settingCodec() {
+        return SdkEventCodec.copy(setting);
+    }
+
+    @Benchmark
+    public Object settingJava() throws Exception {
+        return TypesSerializationBenchmark.roundTrip(setting);
+    }
+
+    @Benchmark
+    public Object settingJackson() throws Exception {
+        return jackson.readValue(jackson.writeValueAsBytes(setting), Setting.class);
+    }
+
+    @Benchmark
+    public Object notificationRequestCodec() {
+        return SdkEventCodec.copy(notification);
+    }
+
+    @Benchmark
+    public Object notificationRequestJava() throws Exception {
+        return TypesSerializationBenchmark.roundTrip(notification);
+    }
+
+    @Benchmark
+    public Object notificationRequestJackson() throws Exception {
+        return jackson.readValue(jackson.writeValueAsBytes(notification), NotificationRequest.class);
+    }
+
+    @Benchmark
+    public Object settingsCommandEventCodec() {
+        return SdkEventCodec.copy(settingsCommand);
+    }
+
+    @Benchmark
+    public Object settingsCommandEventJava() throws Exception {
+        return TypesSerializationBenchmark.roundTrip(settingsCommand);
+    }
+
+    @Benchmark
+    public Object settingsCommandEventJackson() throws Exception {
+        return jackson.readValue(jackson.writeValueAsBytes(settingsCommand), SdkQueueEvent.class);
+    }
+
+    @Benchmark
+    public Object notificationRequestEventCodec() {
+        return SdkEventCodec.copy(notificationRequest);
+    }
+
+    @Benchmark
+    public Object settingsResponseEventCodec() {
+        return SdkEventCodec.copy(settingsResponse);
+    }
+
+}
@@ -0,0 +1,68 @@
+package com.opentext.otag.sdk.bus.benchmarks;
+
+import com.opentext.otag.sdk.bus.EventIdGenerator;
+import com.opentext.otag.sdk.bus.EventIdGenerators;
+import com.opentext.otag.sdk.bus.SdkQueueEvent;
+import com.opentext.otag.sdk.types.v3.settings.Setting;
+import com.opentext.otag.sdk.types.v3.settings.SettingType;
+import com.opentext.otag.sdk.types.v4.SdkRequest;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.opentext.otag.sdk.bus.SdkEventKeys.SETTINGS_GET_SETTINGS;
+
+/**
+ * Measures creating the events every SDK call allocates, the request a service sends and the response
+ * the Gateway sends back.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class EventConstructionBenchmark {
+
+    private static final String SERVICE = "constructionBenchmark";
+    private static final String PERSISTENCE_CONTEXT = "benchmark";
+
+    private SdkRequest<Setting> sdkRequest;
+    private SdkQueueEvent request;
+    private EventIdGenerator uuidIds;
+    private EventIdGenerator monotonicIds;
+
+    @Setup
+    public void setUp() {
+        sdkRequest = new SdkRequest<>(SETTINGS_GET_SETTINGS, new Setting("key", SettingType.string, "value"));
+        request = SdkQueueEvent.request(sdkRequest, SERVICE, PERSISTENCE_CONTEXT);
+        uuidIds = EventIdGenerators.uuid();
+        monotonicIds = EventIdGenerators.monotonic();
+    }
+
+    @Benchmark
+    public SdkQueueEvent newEvent() {
+        return new SdkQueueEvent(SERVICE, PERSISTENCE_CONTEXT);
+    }
+
+    @Benchmark
+    public SdkQueueEvent request() {
+        return SdkQueueEvent.request(sdkRequest, SERVICE, PERSISTENCE_CONTEXT);
+    }
+
+    @Benchmark
+    public SdkQueueEvent okResponse() {
+        return SdkQueueEvent.okResponse(request);
+    }
+
+    @Benchmark
+    public String uuidEventId() {
+        return uuidIds.nextId();
+    }
+
+    @Benchmark
+    public String monotonicEventId() {
+        return monotonicIds.nextId();
+    }
+
+}
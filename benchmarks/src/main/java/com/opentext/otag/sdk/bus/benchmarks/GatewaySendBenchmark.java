@@ -0,0 +1,65 @@
+package com.opentext.otag.sdk.bus.benchmarks;
+
+import com.opentext.otag.sdk.bus.SdkQueueEvent;
+import com.opentext.otag.sdk.bus.SdkQueueManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures sending events to the single container-wide Gateway queue, one at a time and in batches.
+ * Every operation also consumes what it sent so the bounded queue never fills, batch scores are per
+ * batch of {@link #BATCH_SIZE} events.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class GatewaySendBenchmark {
+
+    static final int BATCH_SIZE = 16;
+
+    private SdkQueueEvent event;
+    private List<SdkQueueEvent> batch;
+    private List<SdkQueueEvent> drained;
+
+    @Setup
+    public void setUp() {
+        event = new SdkQueueEvent("gatewayBenchmark", "benchmark");
+        batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.add(new SdkQueueEvent("gatewayBenchmark", "benchmark"));
+        }
+        drained = new ArrayList<>(BATCH_SIZE);
+    }
+
+    @Benchmark
+    public SdkQueueEvent sendEventToGateway() {
+        SdkQueueManager.sendEventToGateway(event);
+        return SdkQueueManager.gatewayQueue().poll();
+    }
+
+    @Benchmark
+    public int sendEventsToGateway() throws InterruptedException {
+        SdkQueueManager.sendEventsToGateway(batch);
+        drained.clear();
+        return SdkQueueManager.drainGatewayQueue(drained, BATCH_SIZE, 0, TimeUnit.MILLISECONDS);
+    }
+
+    @Benchmark
+    public int sendEventToGatewayOneByOne() {
+        for (SdkQueueEvent toSend : batch) {
+            SdkQueueManager.sendEventToGateway(toSend);
+        }
+        int taken = 0;
+        while (SdkQueueManager.gatewayQueue().poll() != null) {
+            taken++;
+        }
+        return taken;
+    }
+
+}
@@ -0,0 +1,73 @@
+package com.opentext.otag.sdk.bus.benchmarks;
+
+import com.opentext.otag.sdk.bus.SdkQueueCallbackManager;
+import com.opentext.otag.sdk.bus.SdkQueueEvent;
+import com.opentext.otag.sdk.bus.SdkQueueManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a full SDK call, a service sends a request to the Gateway and waits for the response to come
+ * back through its {@link SdkQueueCallbackManager}. A stub Gateway thread answers every request straight
+ * away, so the score is the cost of the bus itself: two queue hops, two thread hand-offs and the callback
+ * bookkeeping.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RoundTripBenchmark {
+
+    private static final String SERVICE = "roundTripBenchmark";
+    private static final String PERSISTENCE_CONTEXT = "benchmark";
+
+    private SdkQueueCallbackManager callbackManager;
+    private Thread gateway;
+
+    @Setup
+    public void setUp() {
+        SdkQueueManager.registerService(SERVICE, PERSISTENCE_CONTEXT);
+        callbackManager = SdkQueueCallbackManager.serviceCbackManager(SERVICE, PERSISTENCE_CONTEXT);
+
+        gateway = new Thread(() -> {
+            BlockingQueue<SdkQueueEvent> gatewayQueue = SdkQueueManager.gatewayQueue();
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    SdkQueueEvent request = gatewayQueue.take();
+                    SdkQueueManager.sendEventToService(request.getServiceName(), request.getPersistenceContext(),
+                            SdkQueueEvent.okResponse(request));
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "BenchmarkGateway");
+        gateway.setDaemon(true);
+        gateway.start();
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        gateway.interrupt();
+        gateway.join(1000);
+        callbackManager.stop();
+        SdkQueueManager.retireService(SERVICE, PERSISTENCE_CONTEXT);
+    }
+
+    @Benchmark
+    public SdkQueueEvent sendAsync() {
+        return callbackManager.sendAsync(new SdkQueueEvent(SERVICE, PERSISTENCE_CONTEXT)).join();
+    }
+
+    @Benchmark
+    public SdkQueueEvent prepareSendAndWait() throws InterruptedException {
+        SdkQueueEvent request = new SdkQueueEvent(SERVICE, PERSISTENCE_CONTEXT);
+        callbackManager.prepareForResponse(request.getSdkEventIdentifier());
+        SdkQueueManager.sendEventToGateway(request);
+        return callbackManager.getResponseForEvent(request.getSdkEventIdentifier());
+    }
+
+}
@@ -0,0 +1,93 @@
+package com.opentext.otag.sdk.bus.benchmarks;
+
+import com.opentext.otag.sdk.bus.QueueHandle;
+import com.opentext.otag.sdk.bus.SdkQueueEvent;
+import com.opentext.otag.sdk.bus.SdkQueueManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the send path of the {@link SdkQueueManager} service queues as the number of producer threads
+ * grows. Each producer thread sends to its own service queue, so any contention is within the manager
+ * itself (queue lookup/registration) rather than on a shared queue. Scores are the aggregate throughput of
+ * all threads, they should grow linearly with the thread count up to the number of available cores.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SendPathBenchmark {
+
+    private static final String PERSISTENCE_CONTEXT = "benchmark";
+
+    @State(Scope.Thread)
+    public static class Producer {
+
+        String serviceName;
+        QueueHandle handle;
+        BlockingQueue<SdkQueueEvent> serviceQueue;
+        SdkQueueEvent event;
+
+        @Setup
+        public void setUp() {
+            serviceName = "service-" + UUID.randomUUID();
+            serviceQueue = SdkQueueManager.registerService(serviceName, PERSISTENCE_CONTEXT);
+            handle = SdkQueueManager.queueHandle(serviceName, PERSISTENCE_CONTEXT);
+            event = new SdkQueueEvent(serviceName, PERSISTENCE_CONTEXT);
+        }
+
+        @TearDown
+        public void tearDown() {
+            SdkQueueManager.retireService(serviceName, PERSISTENCE_CONTEXT);
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public SdkQueueEvent sendEventToService_1(Producer producer) {
+        return sendAndConsume(producer);
+    }
+
+    @Benchmark
+    @Threads(2)
+    public SdkQueueEvent sendEventToService_2(Producer producer) {
+        return sendAndConsume(producer);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public SdkQueueEvent sendEventToService_4(Producer producer) {
+        return sendAndConsume(producer);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public SdkQueueEvent sendEventToService_8(Producer producer) {
+        return sendAndConsume(producer);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public SdkQueueEvent sendThroughQueueHandle_1(Producer producer) {
+        producer.handle.sendEventToService(producer.event);
+        return producer.serviceQueue.poll();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public SdkQueueEvent sendThroughQueueHandle_4(Producer producer) {
+        producer.handle.sendEventToService(producer.event);
+        return producer.serviceQueue.poll();
+    }
+
+    private static SdkQueueEvent sendAndConsume(Producer producer) {
+        SdkQueueManager.sendEventToService(producer.serviceName, PERSISTENCE_CONTEXT, producer.event);
+        // keep the bounded queue from filling, this poll never contends with the other producers
+        return producer.serviceQueue.poll();
+    }
+
+}
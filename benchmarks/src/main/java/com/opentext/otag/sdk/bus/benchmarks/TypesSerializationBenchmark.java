@@ -0,0 +1,68 @@
+package com.opentext.otag.sdk.bus.benchmarks;
+
+import com.opentext.otag.sdk.bus.SdkQueueEvent;
+import com.opentext.otag.sdk.types.v3.message.SettingsChangeMessage;
+import com.opentext.otag.sdk.types.v3.notification.NotificationRequest;
+import com.opentext.otag.sdk.types.v3.settings.Setting;
+import com.opentext.otag.sdk.types.v3.settings.SettingType;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.*;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Arrays.asList;
+
+/**
+ * Measures Java serialization round trips (write then read) of the serializable SDK types and of a
+ * command event carrying one. {@link com.opentext.otag.sdk.types.v4.SdkRequest} and
+ * {@link com.opentext.otag.sdk.types.v3.api.SDKResponse} are not serializable, so request and response
+ * events are not covered here.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class TypesSerializationBenchmark {
+
+    private Setting setting;
+    private NotificationRequest notification;
+    private SdkQueueEvent settingsCommand;
+
+    @Setup
+    public void setUp() {
+        setting = new Setting("benchmark.setting", SettingType.string, "some setting value");
+        notification = new NotificationRequest("{\"message\":\"hello\"}",
+                new HashSet<>(asList("client1", "client2")), new HashSet<>(asList("user1", "user2", "user3")));
+        settingsCommand = SdkQueueEvent.command(null, "serializationBenchmark", "benchmark");
+        settingsCommand.setSettingsChangeMessage(new SettingsChangeMessage("benchmark.setting", "new value"));
+    }
+
+    @Benchmark
+    public Object setting() throws Exception {
+        return roundTrip(setting);
+    }
+
+    @Benchmark
+    public Object notificationRequest() throws Exception {
+        return roundTrip(notification);
+    }
+
+    @Benchmark
+    public Object settingsCommandEvent() throws Exception {
+        return roundTrip(settingsCommand);
+    }
+
+    static Object roundTrip(Serializable toWrite) throws IOException, ClassNotFoundException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(toWrite);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            return in.readObject();
+        }
+    }
+
+}
@@ -0,0 +1,306 @@
+package com.opentext.otag.sdk.bus;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded array backed queue whose capacity follows its load. The queue tracks a moving average of how
+ * full it is, when it fills up and that average shows sustained pressure the capacity is doubled (up to
+ * a ceiling) instead of blocking the producer. Once the average drops off its capacity, and backing array,
+ * are halved again towards the initial capacity to give the memory back. Consumers finding the queue empty
+ * on a timed poll count towards the average too, so a queue that goes idle after a burst shrinks back.
+ *
+ * @param <E> element type
+ */
+public class AdaptiveCapacityBlockingQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+
+    // weight of each new fill ratio sample in the moving average
+    private static final double SAMPLE_WEIGHT = 0.125;
+    // grow when full and the average fill ratio is at least this
+    private static final double GROW_THRESHOLD = 0.75;
+    // shrink when the average fill ratio has dropped below this
+    private static final double SHRINK_THRESHOLD = 0.25;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+
+    private final int minCapacity;
+    private final int maxCapacity;
+
+    private Object[] items;
+    private int capacity;
+    private int head;
+    private int count;
+    private double averageFill;
+
+    public AdaptiveCapacityBlockingQueue(int capacity, int maxCapacity) {
+        if (capacity < 1 || maxCapacity < capacity) {
+            throw new IllegalArgumentException("Invalid capacity " + capacity + ", max " + maxCapacity);
+        }
+        this.minCapacity = capacity;
+        this.maxCapacity = maxCapacity;
+        this.capacity = capacity;
+        this.items = new Object[capacity];
+    }
+
+    @Override
+    public boolean offer(E e) {
+        checkNotNull(e);
+        lock.lock();
+        try {
+            if (isFullAfterSampling()) {
+                return false;
+            }
+            enqueue(e);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void put(E e) throws InterruptedException {
+        checkNotNull(e);
+        lock.lockInterruptibly();
+        try {
+            while (isFullAfterSampling()) {
+                notFull.await();
+            }
+            enqueue(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+        checkNotNull(e);
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (isFullAfterSampling()) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = notFull.awaitNanos(nanos);
+            }
+            enqueue(e);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public E poll() {
+        lock.lock();
+        try {
+            return count == 0 ? null : dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (count == 0) {
+                notEmpty.await();
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (count == 0) {
+                if (nanos <= 0) {
+                    // an idle consumer, nothing else would let the average drop
+                    sample();
+                    tryShrink();
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E peek() {
+        lock.lock();
+        try {
+            return count == 0 ? null : (E) items[head];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+        lock.lock();
+        try {
+            return capacity - count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        checkNotNull(c);
+        if (c == this) {
+            throw new IllegalArgumentException();
+        }
+        lock.lock();
+        try {
+            int drained = 0;
+            while (drained < maxElements && count > 0) {
+                c.add(dequeue());
+                drained++;
+            }
+            return drained;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Iterator<E> iterator() {
+        lock.lock();
+        try {
+            List<E> snapshot = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                snapshot.add((E) items[(head + i) % items.length]);
+            }
+            return Collections.unmodifiableList(snapshot).iterator();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the current capacity of the queue, somewhere between its initial and maximum capacity
+     */
+    public int capacity() {
+        lock.lock();
+        try {
+            return capacity;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void enqueue(E e) {
+        items[(head + count) % items.length] = e;
+        count++;
+        notEmpty.signal();
+    }
+
+    @SuppressWarnings("unchecked")
+    private E dequeue() {
+        E e = (E) items[head];
+        items[head] = null;
+        head = (head + 1) % items.length;
+        count--;
+        sample();
+        tryShrink();
+        notFull.signal();
+        return e;
+    }
+
+    /**
+     * Every attempt to insert counts towards the moving average, so producers that keep finding
+     * the queue full are what eventually makes it grow.
+     */
+    private boolean isFullAfterSampling() {
+        sample();
+        if (count < capacity) {
+            tryShrink();
+            return false;
+        }
+        return !tryGrow();
+    }
+
+    private void sample() {
+        averageFill += SAMPLE_WEIGHT * (((double) count / capacity) - averageFill);
+    }
+
+    private boolean tryGrow() {
+        if (capacity >= maxCapacity || averageFill < GROW_THRESHOLD) {
+            return false;
+        }
+        resize((int) Math.min((long) capacity * 2, maxCapacity));
+        // there is room for any other producers waiting on us now too
+        notFull.signalAll();
+        return true;
+    }
+
+    /**
+     * Halves the capacity for as long as the contents would still leave the queue no more than a quarter
+     * full, so a queue that has gone quiet drops straight back rather than one step per sample.
+     */
+    private void tryShrink() {
+        if (capacity <= minCapacity || averageFill >= SHRINK_THRESHOLD) {
+            return;
+        }
+        int newCapacity = capacity;
+        while (newCapacity > minCapacity && count <= newCapacity / 4) {
+            newCapacity = Math.max(newCapacity / 2, minCapacity);
+        }
+        if (newCapacity < capacity) {
+            resize(newCapacity);
+        }
+    }
+
+    private void resize(int newCapacity) {
+        Object[] resized = new Object[newCapacity];
+        for (int i = 0; i < count; i++) {
+            resized[i] = items[(head + i) % items.length];
+        }
+        items = resized;
+        head = 0;
+        capacity = newCapacity;
+    }
+
+    private static void checkNotNull(Object o) {
+        if (o == null) {
+            throw new NullPointerException();
+        }
+    }
+
+}
@@ -0,0 +1,127 @@
+package com.opentext.otag.sdk.bus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands log lines to a single background writer thread through a bounded lock-free ring buffer, so bus
+ * threads never wait on the console stream locks. When the buffer is full lines are dropped rather than
+ * blocking the caller, the writer reports how many were lost once it catches up.
+ */
+class AsyncLogSink implements SdkEventBusLogSink {
+
+    static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private static final int MAX_BATCH = 256;
+
+    private final MpscArrayBlockingQueue<LogRecord> buffer;
+    private final ConsoleLogSink writer;
+    private final AtomicLong dropped = new AtomicLong();
+
+    AsyncLogSink(int bufferSize) {
+        this(bufferSize, new ConsoleLogSink());
+    }
+
+    AsyncLogSink(int bufferSize, ConsoleLogSink writer) {
+        this.buffer = new MpscArrayBlockingQueue<>(bufferSize);
+        this.writer = writer;
+
+        Thread writerThread = new Thread(this::writeLoop, "SdkEventBusLogWriter");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    @Override
+    public boolean isInfoEnabled() {
+        return true;
+    }
+
+    @Override
+    public void info(String message) {
+        append(message, null, false);
+    }
+
+    @Override
+    public void error(String message, Throwable error) {
+        append(message, error, true);
+    }
+
+    /**
+     * @return the number of log lines dropped because the buffer was full
+     */
+    long getDropped() {
+        return dropped.get();
+    }
+
+    private void append(String message, Throwable error, boolean isError) {
+        Thread current = Thread.currentThread();
+        LogRecord record = new LogRecord(System.currentTimeMillis(), current.getName(),
+                current.getState().name(), message, error, isError);
+        if (!buffer.offer(record)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    private void writeLoop() {
+        List<LogRecord> batch = new ArrayList<>(MAX_BATCH);
+        long reportedDrops = 0;
+        while (true) {
+            try {
+                LogRecord first = buffer.poll(1, TimeUnit.SECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    buffer.drainTo(batch, MAX_BATCH - 1);
+                    for (LogRecord record : batch) {
+                        write(record);
+                    }
+                    batch.clear();
+                }
+
+                long drops = dropped.get();
+                if (drops != reportedDrops) {
+                    writer.writeError(System.currentTimeMillis(), Thread.currentThread().getName(),
+                            Thread.State.RUNNABLE.name(), (drops - reportedDrops) +
+                                    " log lines were dropped, the log buffer was full", null);
+                    reportedDrops = drops;
+                }
+            } catch (InterruptedException e) {
+                // we are a daemon, keep writing until the JVM goes away
+                Thread.interrupted();
+            } catch (Exception e) {
+                batch.clear();
+                System.err.println("SDK Event Bus log writer failed - " + e.getMessage());
+            }
+        }
+    }
+
+    private void write(LogRecord record) {
+        if (record.isError) {
+            writer.writeError(record.timestamp, record.threadName, record.threadState, record.message, record.error);
+        } else {
+            writer.writeInfo(record.timestamp, record.threadName, record.threadState, record.message);
+        }
+    }
+
+    private static final class LogRecord {
+
+        private final long timestamp;
+        private final String threadName;
+        private final String threadState;
+        private final String message;
+        private final Throwable error;
+        private final boolean isError;
+
+        private LogRecord(long timestamp, String threadName, String threadState,
+                          String message, Throwable error, boolean isError) {
+            this.timestamp = timestamp;
+            this.threadName = threadName;
+            this.threadState = threadState;
+            this.message = message;
+            this.error = error;
+            this.isError = isError;
+        }
+    }
+
+}
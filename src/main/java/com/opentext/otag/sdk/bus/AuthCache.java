@@ -0,0 +1,300 @@
+package com.opentext.otag.sdk.bus;
+
+import com.opentext.otag.sdk.types.v3.auth.OtdsUserProfile;
+import com.opentext.otag.sdk.types.v3.auth.UserGroupIdList;
+import com.opentext.otag.sdk.types.v3.auth.UserProfile;
+import com.opentext.otag.sdk.types.v3.message.AccessChangeMessage;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Cache of the group lists and user profiles services look up on every authorization check, see
+ * {@link SdkEventKeys#AUTH_LIST_GROUP_USER_IDS} and {@link SdkEventKeys#AUTH_GET_USER_PROFILE}. Reads take
+ * a loader as {@link SettingsCache} reads do.
+ * <p>
+ * Entries expire {@link #TTL_ENV_VAR} after they were loaded. Once an entry is older than
+ * {@link #REFRESH_AFTER_ENV_VAR} the next read still returns it but also reloads it in the background, so
+ * entries that are in use are replaced before they expire and readers only wait on the Gateway for entries
+ * nobody has asked for in a while. A failed refresh leaves the entry in place until it expires.
+ * <p>
+ * An {@link AccessChangeMessage} command sent to a service drops everything cached for it, loads in
+ * flight at the time are returned to their caller but not cached. The number of entries is bounded by
+ * {@link #SIZE_ENV_VAR}, see {@link BoundedCache}.
+ */
+public final class AuthCache implements CommandListener {
+
+    // the most group lists and profiles cached
+    public static final String SIZE_ENV_VAR = "AWG_SDK_EVENT_BUS_AUTH_CACHE_SIZE_ENV";
+
+    // milliseconds an entry is kept for at most
+    public static final String TTL_ENV_VAR = "AWG_SDK_EVENT_BUS_AUTH_CACHE_TTL_MS_ENV";
+
+    // milliseconds after loading an entry that a read triggers a background refresh, defaults to 80% of the TTL
+    public static final String REFRESH_AFTER_ENV_VAR = "AWG_SDK_EVENT_BUS_AUTH_CACHE_REFRESH_AFTER_MS_ENV";
+
+    static final int DEFAULT_SIZE = 10_000;
+    static final long DEFAULT_TTL_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    private final BoundedCache<AuthKey, Entry<?>> cache;
+    private final long ttlNanos;
+    private final long refreshAfterNanos;
+    private final Executor refresher;
+
+    /**
+     * Bumped for a service and persistence context whenever its entries are dropped, loads for it that
+     * started before a bump are not cached. Other tenants' loads are unaffected.
+     */
+    private final ConcurrentHashMap<SdkQueueEventId, AtomicLong> generations = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+
+    /**
+     * @return the cache shared by every service in the container, following the commands sent through
+     * {@link SdkQueueManager}
+     */
+    public static AuthCache instance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * @param size               the most entries cached
+     * @param ttlMillis          how long entries are kept for
+     * @param refreshAfterMillis how old an entry is before reads refresh it, capped at the TTL
+     * @param refresher          runs the background refreshes
+     */
+    AuthCache(int size, long ttlMillis, long refreshAfterMillis, Executor refresher) {
+        this.cache = new BoundedCache<>(size);
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.refreshAfterNanos = TimeUnit.MILLISECONDS.toNanos(Math.min(refreshAfterMillis, ttlMillis));
+        this.refresher = refresher;
+    }
+
+    /**
+     * @param serviceName        service name
+     * @param persistenceContext tenant context name
+     * @param id                 the user or group the list was asked for
+     * @param loader             fetches the list from the Gateway, may return null
+     * @return the list, null if the loader returned null
+     */
+    public UserGroupIdList getGroupIds(String serviceName, String persistenceContext, String id,
+                                       Supplier<UserGroupIdList> loader) {
+        return read(new AuthKey(Kind.GROUP_IDS, serviceName, persistenceContext, id), loader);
+    }
+
+    /**
+     * @param serviceName        service name
+     * @param persistenceContext tenant context name
+     * @param userName           user name
+     * @param loader             fetches the profile from the Gateway, may return null, the Gateway answers
+     *                           with an {@link OtdsUserProfile} when OTDS holds the user
+     * @return the profile, null if the loader returned null
+     */
+    public UserProfile getUserProfile(String serviceName, String persistenceContext, String userName,
+                                      Supplier<? extends UserProfile> loader) {
+        return read(new AuthKey(Kind.PROFILE, serviceName, persistenceContext, userName), loader);
+    }
+
+    /**
+     * Forget everything cached for a user, e.g. once their groups are known to have changed.
+     *
+     * @param serviceName        service name
+     * @param persistenceContext tenant context name
+     * @param userName           user name
+     */
+    public void invalidateUser(String serviceName, String persistenceContext, String userName) {
+        generation(serviceName, persistenceContext).incrementAndGet();
+        cache.invalidate(new AuthKey(Kind.GROUP_IDS, serviceName, persistenceContext, userName));
+        cache.invalidate(new AuthKey(Kind.PROFILE, serviceName, persistenceContext, userName));
+    }
+
+    public void invalidate(String serviceName, String persistenceContext) {
+        generation(serviceName, persistenceContext).incrementAndGet();
+        cache.invalidateIf((key, entry) -> Objects.equals(key.serviceName, serviceName) &&
+                Objects.equals(key.persistenceContext, persistenceContext));
+    }
+
+    public void invalidateAll() {
+        generations.values().forEach(AtomicLong::incrementAndGet);
+        cache.invalidateAll();
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return how many background refreshes have been started
+     */
+    public long getRefreshes() {
+        return refreshes.sum();
+    }
+
+    @Override
+    public void onCommand(String serviceName, String persistenceContext, SdkQueueEvent command) {
+        AccessChangeMessage change = command.getAccessChangeMessage();
+        if (change == null) {
+            return;
+        }
+        invalidate(serviceName, persistenceContext);
+        SdkEventBusLog.info("Dropped cached auth lookups for {} after {}", serviceName, change.getEvent());
+    }
+
+    @SuppressWarnings("unchecked")
+    private <V> V read(AuthKey key, Supplier<? extends V> loader) {
+        Entry<V> cached = (Entry<V>) cache.get(key);
+        if (cached != null) {
+            hits.increment();
+            if (System.nanoTime() - cached.refreshAtNanos >= 0 && cached.refreshing.compareAndSet(false, true)) {
+                refresh(key, cached, loader);
+            }
+            return cached.value;
+        }
+
+        misses.increment();
+        AtomicLong generation = generation(key.serviceName, key.persistenceContext);
+        return load(key, loader, generation, generation.get());
+    }
+
+    private <V> V load(AuthKey key, Supplier<? extends V> loader, AtomicLong generation, long loadGeneration) {
+        V loaded = loader.get();
+        if (loaded == null) {
+            return null;
+        }
+        if (generation.get() == loadGeneration) {
+            long now = System.nanoTime();
+            cache.put(key, new Entry<>(loaded, now + refreshAfterNanos), now + ttlNanos);
+            if (generation.get() != loadGeneration) {
+                // dropped whilst we were storing it, what we loaded may be stale
+                cache.invalidate(key);
+            }
+        }
+        return loaded;
+    }
+
+    private <V> void refresh(AuthKey key, Entry<V> stale, Supplier<? extends V> loader) {
+        refreshes.increment();
+        AtomicLong generation = generation(key.serviceName, key.persistenceContext);
+        long refreshGeneration = generation.get();
+        try {
+            refresher.execute(() -> {
+                try {
+                    if (load(key, loader, generation, refreshGeneration) == null) {
+                        cache.invalidate(key);
+                    }
+                } catch (RuntimeException e) {
+                    SdkEventBusLog.error("Failed to refresh cached " + key + ", keeping it until it expires", e);
+                } finally {
+                    stale.refreshing.set(false);
+                }
+            });
+        } catch (RuntimeException e) {
+            // the refresher is shut down or saturated, a later read will try again
+            stale.refreshing.set(false);
+        }
+    }
+
+    private AtomicLong generation(String serviceName, String persistenceContext) {
+        return generations.computeIfAbsent(new SdkQueueEventId(serviceName, persistenceContext),
+                tenant -> new AtomicLong());
+    }
+
+    private static final class Holder {
+
+        private static final AuthCache INSTANCE = create();
+
+        private static AuthCache create() {
+            SystemEnvironment env = new SystemEnvironment();
+            int size = env.getenvInt(SIZE_ENV_VAR, DEFAULT_SIZE);
+            long ttlMillis = env.getenvInt(TTL_ENV_VAR, (int) DEFAULT_TTL_MILLIS);
+            if (ttlMillis <= 0) {
+                ttlMillis = DEFAULT_TTL_MILLIS;
+            }
+            long refreshAfterMillis = env.getenvInt(REFRESH_AFTER_ENV_VAR, (int) (ttlMillis * 4 / 5));
+
+            ExecutorService refresher = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, "SdkAuthCacheRefresh");
+                thread.setDaemon(true);
+                return thread;
+            });
+            AuthCache cache = new AuthCache(size > 0 ? size : DEFAULT_SIZE, ttlMillis,
+                    refreshAfterMillis > 0 ? refreshAfterMillis : ttlMillis * 4 / 5, refresher);
+            SdkQueueManager.addCommandListener(cache);
+            return cache;
+        }
+    }
+
+    private enum Kind {
+        GROUP_IDS, PROFILE
+    }
+
+    private static final class Entry<V> {
+
+        private final V value;
+        private final long refreshAtNanos;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        private Entry(V value, long refreshAtNanos) {
+            this.value = value;
+            this.refreshAtNanos = refreshAtNanos;
+        }
+    }
+
+    private static final class AuthKey {
+
+        private final Kind kind;
+        private final String serviceName;
+        private final String persistenceContext;
+        private final String id;
+        private final int hash;
+
+        private AuthKey(Kind kind, String serviceName, String persistenceContext, String id) {
+            this.kind = kind;
+            this.serviceName = serviceName;
+            this.persistenceContext = persistenceContext;
+            this.id = id;
+            this.hash = Objects.hash(kind, serviceName, persistenceContext, id);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            AuthKey that = (AuthKey) o;
+            return hash == that.hash &&
+                    kind == that.kind &&
+                    Objects.equals(id, that.id) &&
+                    Objects.equals(serviceName, that.serviceName) &&
+                    Objects.equals(persistenceContext, that.persistenceContext);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public String toString() {
+            return kind + " " + id + " for " + serviceName + ":" + persistenceContext;
+        }
+    }
+
+}
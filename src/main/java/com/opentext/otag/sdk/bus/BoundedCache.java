@@ -0,0 +1,354 @@
+package com.opentext.otag.sdk.bus;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiPredicate;
+
+/**
+ * Size bounded concurrent cache with W-TinyLFU style eviction. Lookups are a lock free hash map read,
+ * writes take a lock. New entries go into a small admission window first; an entry leaving the window
+ * only displaces an entry from the main area if its key has been asked for more often, as estimated by
+ * a {@link FrequencySketch}, so a burst of one-off keys cannot flush out the popular ones. The main area
+ * picks its victims by CLOCK, giving recently read entries a second chance.
+ * <p>
+ * Entries may carry an expiry, expired entries are never returned and are the first to be evicted.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+final class BoundedCache<K, V> {
+
+    /**
+     * Share of the capacity given to the admission window, as in W-TinyLFU.
+     */
+    private static final int WINDOW_PERCENT = 1;
+
+    private final int windowSize;
+    private final int mainSize;
+
+    private final ConcurrentHashMap<K, Node<K, V>> data = new ConcurrentHashMap<>();
+    private final FrequencySketch sketch;
+
+    /**
+     * Guards the window and main queues and their counts, and every change to the map.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ArrayDeque<Node<K, V>> window = new ArrayDeque<>();
+    private final ArrayDeque<Node<K, V>> main = new ArrayDeque<>();
+    private int windowCount;
+    private int mainCount;
+
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+
+    BoundedCache(int maximumSize) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("Cache size must be positive, got " + maximumSize);
+        }
+        this.windowSize = Math.max(1, maximumSize * WINDOW_PERCENT / 100);
+        this.mainSize = maximumSize - windowSize;
+        this.sketch = new FrequencySketch(maximumSize);
+    }
+
+    /**
+     * @param key key
+     * @return the cached value, null if there is none or it has expired
+     */
+    V get(K key) {
+        sketch.increment(key);
+        Node<K, V> node = data.get(key);
+        if (node == null || node.isExpired(System.nanoTime())) {
+            return null;
+        }
+        node.referenced = true;
+        return node.value;
+    }
+
+    /**
+     * @param key            key
+     * @param value          value
+     * @param expiresAtNanos {@link System#nanoTime()} the entry expires at, zero if it never does
+     */
+    void put(K key, V value, long expiresAtNanos) {
+        put(key, value, expiresAtNanos, null);
+    }
+
+    /**
+     * @param key            key
+     * @param value          value
+     * @param expiresAtNanos {@link System#nanoTime()} the entry expires at, zero if it never does
+     * @param isOlder        tests the new value against a live cached one, which is kept if the test
+     *                       passes, may be null
+     */
+    void put(K key, V value, long expiresAtNanos, BiPredicate<? super V, ? super V> isOlder) {
+        lock.lock();
+        try {
+            Node<K, V> existing = data.get(key);
+            if (existing != null) {
+                if (isOlder != null && !existing.isExpired(System.nanoTime()) &&
+                        isOlder.test(value, existing.value)) {
+                    return;
+                }
+                existing.update(value, expiresAtNanos);
+                return;
+            }
+
+            Node<K, V> node = new Node<>(key, value, expiresAtNanos);
+            data.put(key, node);
+            node.inWindow = true;
+            window.addLast(node);
+            windowCount++;
+            if (windowCount > windowSize) {
+                promote(pollLive(window));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void invalidate(K key) {
+        lock.lock();
+        try {
+            Node<K, V> node = data.remove(key);
+            if (node != null) {
+                discard(node);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param matches selects the entries to drop
+     */
+    void invalidateIf(BiPredicate<? super K, ? super V> matches) {
+        lock.lock();
+        try {
+            Iterator<Node<K, V>> nodes = data.values().iterator();
+            while (nodes.hasNext()) {
+                Node<K, V> node = nodes.next();
+                if (matches.test(node.key, node.value)) {
+                    nodes.remove();
+                    discard(node);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void invalidateAll() {
+        lock.lock();
+        try {
+            data.clear();
+            window.clear();
+            main.clear();
+            windowCount = 0;
+            mainCount = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int size() {
+        return data.size();
+    }
+
+    long evictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return how many new entries were turned away as less popular than the entries they would displace
+     */
+    long rejections() {
+        return rejections.sum();
+    }
+
+    /**
+     * Move an entry leaving the window into the main area, if it is worth more than what it would
+     * displace.
+     */
+    private void promote(Node<K, V> candidate) {
+        candidate.inWindow = false;
+        if (mainCount < mainSize) {
+            main.addLast(candidate);
+            mainCount++;
+            return;
+        }
+        if (mainSize == 0) {
+            evict(candidate);
+            return;
+        }
+
+        Node<K, V> victim = clockVictim();
+        long now = System.nanoTime();
+        if (victim.isExpired(now) ||
+                (!candidate.isExpired(now) && sketch.frequency(candidate.key) > sketch.frequency(victim.key))) {
+            evict(victim);
+            main.addLast(candidate);
+            mainCount++;
+        } else {
+            // the victim stays, at the back of the clock so it is not the next one considered
+            main.addLast(victim);
+            mainCount++;
+            evict(candidate);
+            rejections.increment();
+        }
+    }
+
+    /**
+     * @return the next main entry that has not been read since the clock hand last passed it, taken off
+     * the queue, expired entries are chosen straight away
+     */
+    private Node<K, V> clockVictim() {
+        long now = System.nanoTime();
+        while (true) {
+            Node<K, V> node = pollLive(main);
+            if (!node.referenced || node.isExpired(now)) {
+                mainCount--;
+                return node;
+            }
+            node.referenced = false;
+            main.addLast(node);
+        }
+    }
+
+    /**
+     * Queues are cleaned lazily, entries invalidated whilst queued are skipped here.
+     */
+    private Node<K, V> pollLive(ArrayDeque<Node<K, V>> queue) {
+        Node<K, V> node = queue.pollFirst();
+        while (node.removed) {
+            node = queue.pollFirst();
+        }
+        if (queue == window) {
+            windowCount--;
+        }
+        return node;
+    }
+
+    private void evict(Node<K, V> node) {
+        data.remove(node.key, node);
+        node.removed = true;
+        evictions.increment();
+    }
+
+    private void discard(Node<K, V> node) {
+        node.removed = true;
+        if (node.inWindow) {
+            windowCount--;
+        } else {
+            mainCount--;
+        }
+        // compact once dead nodes could make up most of a queue
+        if (window.size() > 2 * windowSize + 16) {
+            window.removeIf(n -> n.removed);
+        }
+        if (main.size() > 2 * mainSize + 16) {
+            main.removeIf(n -> n.removed);
+        }
+    }
+
+    private static final class Node<K, V> {
+
+        private final K key;
+        private volatile V value;
+        private volatile long expiresAtNanos;
+        private volatile boolean referenced;
+
+        // guarded by the cache lock
+        private boolean inWindow;
+        private boolean removed;
+
+        private Node(K key, V value, long expiresAtNanos) {
+            this.key = key;
+            this.value = value;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+
+        private void update(V value, long expiresAtNanos) {
+            this.value = value;
+            this.expiresAtNanos = expiresAtNanos;
+            this.referenced = true;
+        }
+
+        private boolean isExpired(long now) {
+            long expiresAt = expiresAtNanos;
+            return expiresAt != 0 && now - expiresAt >= 0;
+        }
+    }
+
+    /**
+     * Count-min sketch of how often keys are asked for, four rows of counters that stop at 15. All the counters
+     * are halved once the number of increments reaches ten times the cache size, so the sketch tracks
+     * recent popularity. Increments race, an occasional lost update only makes an estimate a little low.
+     */
+    static final class FrequencySketch {
+
+        // odd multipliers, each row takes the top bits of the key's hash times its own
+        private static final int[] SEEDS = {0x9e3779b1, 0x85ebca77, 0xc2b2ae3d, 0x27d4eb2f};
+        private static final int MAX_COUNT = 15;
+
+        private final byte[][] rows = new byte[SEEDS.length][];
+        private final int shift;
+        private final int resetAt;
+        private int additions;
+
+        FrequencySketch(int maximumSize) {
+            // the next power of two at or above twice the cache size, so two to four counters per entry
+            int width = Integer.highestOneBit(Math.max(16, Math.min(maximumSize, 1 << 24)) - 1) << 2;
+            for (int i = 0; i < rows.length; i++) {
+                rows[i] = new byte[width];
+            }
+            this.shift = Integer.numberOfLeadingZeros(width) + 1;
+            this.resetAt = (int) Math.min(10L * maximumSize, Integer.MAX_VALUE);
+        }
+
+        void increment(Object key) {
+            int hash = spread(key.hashCode());
+            boolean added = false;
+            for (int i = 0; i < rows.length; i++) {
+                int index = indexOf(hash, i);
+                if (rows[i][index] < MAX_COUNT) {
+                    rows[i][index]++;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= resetAt) {
+                reset();
+            }
+        }
+
+        int frequency(Object key) {
+            int hash = spread(key.hashCode());
+            int frequency = MAX_COUNT;
+            for (int i = 0; i < rows.length; i++) {
+                frequency = Math.min(frequency, rows[i][indexOf(hash, i)]);
+            }
+            return frequency;
+        }
+
+        private void reset() {
+            additions = 0;
+            for (byte[] row : rows) {
+                for (int j = 0; j < row.length; j++) {
+                    row[j] = (byte) (row[j] >>> 1);
+                }
+            }
+        }
+
+        private int indexOf(int hash, int row) {
+            return (hash * SEEDS[row]) >>> shift;
+        }
+
+        private static int spread(int hash) {
+            int h = hash * 0x85ebca6b;
+            return h ^ (h >>> 13);
+        }
+    }
+
+}
@@ -0,0 +1,232 @@
+package com.opentext.otag.sdk.bus;
+
+import com.opentext.otag.sdk.types.v3.api.error.APIException;
+import com.opentext.otag.sdk.types.v4.SdkRequest;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static com.opentext.otag.sdk.bus.SdkEventKeys.*;
+
+/**
+ * Single-flight for SDK requests. Whilst a request is waiting on the Gateway, identical requests from the
+ * same service and persistence context (same endpoint and body, see {@link SdkRequest#equals(Object)})
+ * are not sent again, they wait on the first call instead and are handed a copy of its response event,
+ * carrying their own request's identifier.
+ * <p>
+ * Only endpoints that read Gateway state are coalesced, calls that change something or send something
+ * are always sent. Callers attached to a call share its outcome but keep their own timeout, and each gets
+ * its own future, so one caller cancelling or giving up does not affect the others. The timeout of the
+ * call itself is its sender's alone, when it fires the attached callers send again rather than failing.
+ */
+final class CoalescedCalls {
+
+    // set to true to send every request, however many identical ones are in flight
+    static final String DISABLED_ENV_VAR = "AWG_SDK_EVENT_BUS_COALESCING_DISABLED_ENV";
+
+    private static final String[] BUILT_IN_ENDPOINTS = {GET_RUNTIMES, GET_EIM_CONNECTORS,
+            PROVIDER_LIST_PROVIDERS, SETTINGS_GET_SETTING, SETTINGS_GET_SETTINGS, SERVICE_MGMT_IS_APP_ENABLED,
+            AUTH_GET_TOKEN_FOR_USER, AUTH_LIST_GROUP_USER_IDS, AUTH_GET_USER_PROFILE,
+            NOTIFICATIONS_GET_NOTIF_SEQ_BOUNDS};
+
+    private final boolean disabled;
+    private final Set<String> endpoints = ConcurrentHashMap.newKeySet();
+    private final Map<CallKey, CompletableFuture<SdkQueueEvent>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder coalesced = new LongAdder();
+
+    CoalescedCalls(SystemEnvironment systemEnvironment) {
+        this.disabled = systemEnvironment.getenvBool(DISABLED_ENV_VAR);
+        for (String endpoint : BUILT_IN_ENDPOINTS) {
+            endpoints.add(endpoint);
+        }
+    }
+
+    /**
+     * @param request outgoing request
+     * @return true if the request may share a call with identical ones
+     */
+    boolean isCoalesced(SdkQueueEvent request) {
+        return !disabled && request.getSdkRequest() != null && endpoints.contains(request.getDestination());
+    }
+
+    void setCoalesced(String endpointId, boolean coalesced) {
+        if (coalesced) {
+            endpoints.add(endpointId);
+        } else {
+            endpoints.remove(endpointId);
+        }
+    }
+
+    /**
+     * Attach to an identical call that is already in flight, or make the call.
+     *
+     * @param request outgoing request, see {@link #isCoalesced(SdkQueueEvent)}
+     * @param send    sends the request to the Gateway
+     * @param expire  applies the request's own timeout to the future handed back when the request is
+     *                attached to a call already in flight, the call's timeout only covers its sender
+     * @return future completed with the response to the request, or a copy of the response that answered it
+     */
+    CompletableFuture<SdkQueueEvent> call(SdkQueueEvent request,
+                                          Function<SdkQueueEvent, CompletableFuture<SdkQueueEvent>> send,
+                                          Consumer<CompletableFuture<SdkQueueEvent>> expire) {
+        CompletableFuture<SdkQueueEvent> mine = new CompletableFuture<>();
+        if (!join(request, send, mine)) {
+            expire.accept(mine);
+        }
+        return mine;
+    }
+
+    /**
+     * @return how many requests were answered by another call rather than being sent
+     */
+    long coalescedCount() {
+        return coalesced.sum();
+    }
+
+    int inFlightCount() {
+        return inFlight.size();
+    }
+
+    /**
+     * Complete a caller's future from an identical call in flight, or from its own request if there is none.
+     * The timeout of the call the caller is attached to only covers that call's sender, if it fires the
+     * caller joins again, sending its own request unless someone else already has.
+     *
+     * @return true if the request was sent, false if it was attached to another caller's call
+     */
+    private boolean join(SdkQueueEvent request, Function<SdkQueueEvent, CompletableFuture<SdkQueueEvent>> send,
+                         CompletableFuture<SdkQueueEvent> mine) {
+        CallKey key = new CallKey(request);
+        CompletableFuture<SdkQueueEvent> shared = new CompletableFuture<>();
+        CompletableFuture<SdkQueueEvent> leader = inFlight.putIfAbsent(key, shared);
+        if (leader != null) {
+            coalesced.increment();
+            leader.whenComplete((response, t) -> {
+                if (t != null && isTimeout(t)) {
+                    if (!mine.isDone()) {
+                        rejoin(request, send, mine);
+                    }
+                } else {
+                    complete(mine, request, response, t);
+                }
+            });
+            return false;
+        }
+
+        CompletableFuture<SdkQueueEvent> sent;
+        try {
+            sent = send.apply(request);
+        } catch (RuntimeException e) {
+            inFlight.remove(key, shared);
+            shared.completeExceptionally(e);
+            throw e;
+        }
+        sent.whenComplete((response, t) -> {
+            // callers arriving from now on make a new call rather than being handed this answer
+            inFlight.remove(key, shared);
+            complete(mine, request, response, t);
+            if (t != null) {
+                shared.completeExceptionally(t);
+            } else {
+                shared.complete(response);
+            }
+        });
+        return true;
+    }
+
+    private void rejoin(SdkQueueEvent request, Function<SdkQueueEvent, CompletableFuture<SdkQueueEvent>> send,
+                        CompletableFuture<SdkQueueEvent> mine) {
+        try {
+            join(request, send, mine);
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+        }
+    }
+
+    private static void complete(CompletableFuture<SdkQueueEvent> mine, SdkQueueEvent request,
+                                 SdkQueueEvent response, Throwable t) {
+        if (t != null) {
+            mine.completeExceptionally(unwrap(t));
+        } else if (!mine.isDone()) {
+            // callers that timed out or cancelled are not worth a copy
+            mine.complete(answering(request, response));
+        }
+    }
+
+    private static boolean isTimeout(Throwable t) {
+        Throwable cause = unwrap(t);
+        return cause instanceof APIException && ((APIException) cause).getCallInfo() != null &&
+                SdkQueueCallbackManager.TIMEOUT_ERROR_CODE.equals(
+                        ((APIException) cause).getCallInfo().getErrorCode());
+    }
+
+    private static Throwable unwrap(Throwable t) {
+        return t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+    }
+
+    /**
+     * @return the response, or for callers that were attached to another caller's request a copy of it,
+     * as if it answered their own request
+     */
+    private static SdkQueueEvent answering(SdkQueueEvent request, SdkQueueEvent response) {
+        if (response == null || Objects.equals(request.getSdkEventIdentifier(), response.getSdkEventIdentifier())) {
+            // the caller that sent the request
+            return response;
+        }
+        SdkQueueEvent copy;
+        try {
+            copy = SdkEventCodec.copy(response);
+        } catch (IllegalArgumentException e) {
+            // a body the codec does not carry, the callers share it
+            copy = SdkQueueEvent.response(response.getSdkResponse(), request);
+            copy.setSdkEventType(response.getSdkEventType());
+            copy.setSdkType(response.getSdkType());
+        }
+        copy.setSdkEventIdentifier(request.getSdkEventIdentifier());
+        return copy;
+    }
+
+    /**
+     * Identifies identical requests, the requesting service and persistence context plus the request.
+     */
+    private static final class CallKey {
+
+        private final String serviceName;
+        private final String persistenceContext;
+        private final SdkRequest<?> request;
+        private final int hash;
+
+        private CallKey(SdkQueueEvent event) {
+            this.serviceName = event.getServiceName();
+            this.persistenceContext = event.getPersistenceContext();
+            this.request = event.getSdkRequest();
+            this.hash = 31 * (31 * Objects.hashCode(serviceName) + Objects.hashCode(persistenceContext)) +
+                    request.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof CallKey)) return false;
+            CallKey that = (CallKey) o;
+            return hash == that.hash &&
+                    Objects.equals(serviceName, that.serviceName) &&
+                    Objects.equals(persistenceContext, that.persistenceContext) &&
+                    request.equals(that.request);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+}
@@ -0,0 +1,18 @@
+package com.opentext.otag.sdk.bus;
+
+/**
+ * Told about every command sent to a service, before it is put on the service's command queue, see
+ * {@link SdkQueueManager#addCommandListener(CommandListener)}. Listeners run on the sending thread so must
+ * be quick, they are how state kept in the bus, such as the {@link SettingsCache}, follows the Gateway.
+ */
+@FunctionalInterface
+public interface CommandListener {
+
+    /**
+     * @param serviceName        service the command is for
+     * @param persistenceContext tenant context name
+     * @param command            command event
+     */
+    void onCommand(String serviceName, String persistenceContext, SdkQueueEvent command);
+
+}
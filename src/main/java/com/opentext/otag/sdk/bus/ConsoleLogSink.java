@@ -0,0 +1,51 @@
+package com.opentext.otag.sdk.bus;
+
+import java.time.Instant;
+import java.time.ZoneId;
+
+import static java.time.format.DateTimeFormatter.RFC_1123_DATE_TIME;
+
+/**
+ * Writes log lines synchronously to stdout (info) and stderr (errors).
+ */
+class ConsoleLogSink implements SdkEventBusLogSink {
+
+    private static final String LOG_LINE = "%s [%s-state=%s] - INFO - %s";
+    private static final String ERR_LOG_LINE = "%s [%s-state=%s]- ERROR - %s %s";
+
+    @Override
+    public boolean isInfoEnabled() {
+        return true;
+    }
+
+    @Override
+    public void info(String message) {
+        Thread current = Thread.currentThread();
+        writeInfo(System.currentTimeMillis(), current.getName(), current.getState().name(), message);
+    }
+
+    @Override
+    public void error(String message, Throwable error) {
+        Thread current = Thread.currentThread();
+        writeError(System.currentTimeMillis(), current.getName(), current.getState().name(), message, error);
+    }
+
+    void writeInfo(long timestamp, String threadName, String threadState, String message) {
+        System.out.println(String.format(LOG_LINE, stamp(timestamp), threadName, threadState, message));
+    }
+
+    void writeError(long timestamp, String threadName, String threadState, String message, Throwable error) {
+        if (error == null) {
+            System.err.println(String.format(ERR_LOG_LINE, stamp(timestamp), threadName, threadState, message, ""));
+        } else {
+            System.err.println(String.format(ERR_LOG_LINE, stamp(timestamp), threadName, threadState,
+                    error.getClass().getSimpleName(), message));
+            error.printStackTrace();
+        }
+    }
+
+    private static String stamp(long timestamp) {
+        return RFC_1123_DATE_TIME.format(Instant.ofEpochMilli(timestamp).atZone(ZoneId.systemDefault()));
+    }
+
+}
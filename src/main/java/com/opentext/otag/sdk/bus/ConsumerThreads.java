@@ -0,0 +1,118 @@
+package com.opentext.otag.sdk.bus;
+
+import com.opentext.otag.sdk.util.StringUtil;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates the threads the {@link SdkQueueCallbackManager}s consume their response queues on. The kind
+ * of thread is selected via {@link #CONSUMER_MODE_ENV_VAR}:
+ * <ul>
+ * <li>"platform" (the default) - an OS thread per consumer</li>
+ * <li>"virtual" - a virtual thread per consumer, a parked consumer then holds no OS thread. Requires
+ * JDK 21 or later at runtime, older JVMs fall back to platform threads</li>
+ * <li>"shared" - no thread per consumer, the response queues of all services are consumed by the
+ * {@link SharedResponseDispatcher}'s fixed set of threads</li>
+ * </ul>
+ * The bus is built for Java 8, so virtual threads are created reflectively.
+ */
+public final class ConsumerThreads {
+
+    // selects the kind of thread response consumers run on
+    public static final String CONSUMER_MODE_ENV_VAR = "AWG_SDK_EVENT_BUS_CONSUMER_MODE_ENV";
+
+    public static final String PLATFORM = "platform";
+    public static final String VIRTUAL = "virtual";
+    public static final String SHARED = "shared";
+
+    private static volatile String mode;
+
+    private ConsumerThreads() {
+    }
+
+    /**
+     * @param name name for the threads
+     * @return a factory for consumer threads of the configured kind, platform threads in shared mode
+     */
+    public static ThreadFactory factory(String name) {
+        if (VIRTUAL.equals(mode())) {
+            ThreadFactory virtual = virtualThreadFactory(name);
+            if (virtual != null) {
+                return virtual;
+            }
+        }
+        return r -> new Thread(r, name);
+    }
+
+    /**
+     * @return true if this JVM can create virtual threads
+     */
+    public static boolean virtualThreadsAvailable() {
+        return virtualThreadFactory("SdkVirtualThreadCheck") != null;
+    }
+
+    /**
+     * @return the configured consumer mode, {@link #PLATFORM}, {@link #VIRTUAL} or {@link #SHARED}
+     */
+    public static String mode() {
+        String current = mode;
+        if (current == null) {
+            current = fromEnv(new SystemEnvironment());
+            mode = current;
+        }
+        return current;
+    }
+
+    /**
+     * @return true if response queues are consumed by the {@link SharedResponseDispatcher}
+     */
+    public static boolean isShared() {
+        return SHARED.equals(mode());
+    }
+
+    static void setMode(String consumerMode) {
+        mode = consumerMode;
+    }
+
+    static String fromEnv(SystemEnvironment systemEnvironment) {
+        String configured = systemEnvironment.getenv(CONSUMER_MODE_ENV_VAR);
+        if (StringUtil.isNullOrEmpty(configured)) {
+            return PLATFORM;
+        }
+
+        configured = configured.trim();
+        if (VIRTUAL.equalsIgnoreCase(configured)) {
+            if (virtualThreadsAvailable()) {
+                return VIRTUAL;
+            }
+            SdkEventBusLog.error("Virtual consumer threads need JDK 21 or later, using " + PLATFORM + " threads");
+            return PLATFORM;
+        }
+        if (SHARED.equalsIgnoreCase(configured)) {
+            return SHARED;
+        }
+        if (!PLATFORM.equalsIgnoreCase(configured)) {
+            SdkEventBusLog.error("Unknown consumer mode " + configured + ", using " + PLATFORM + " threads");
+        }
+        return PLATFORM;
+    }
+
+    /**
+     * Thread.ofVirtual().name(name).factory(), via the public Thread.Builder interface.
+     *
+     * @return virtual thread factory, or null if this JVM does not support virtual threads
+     */
+    static ThreadFactory virtualThreadFactory(String name) {
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Method nameMethod = builderClass.getMethod("name", String.class);
+            builder = nameMethod.invoke(builder, name);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+            return null;
+        }
+    }
+
+}
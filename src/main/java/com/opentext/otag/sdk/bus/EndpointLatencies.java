@@ -0,0 +1,99 @@
+package com.opentext.otag.sdk.bus;
+
+import com.opentext.otag.sdk.util.StringUtil;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histograms for the SDK calls made through the {@link SdkQueueCallbackManager}s, per endpoint.
+ * Each answered call is broken down into:
+ * <ul>
+ * <li>queue wait - from preparing for the response until the Gateway took the request off its queue</li>
+ * <li>gateway processing - from then until the Gateway queued the response</li>
+ * <li>return queue wait - from then until the response was handed to the caller</li>
+ * </ul>
+ * The stages rely on the stamps the bus puts on the events as they pass through its queues, see
+ * {@link SdkQueueEvent#getEnqueuedNanos()}, a stage is only recorded when both of its stamps are present.
+ * Calls prepared by event id alone have no endpoint and are recorded against {@link #UNKNOWN_ENDPOINT}.
+ */
+public final class EndpointLatencies {
+
+    public static final String UNKNOWN_ENDPOINT = "unknown";
+
+    private final Map<String, Latencies> endpoints = new ConcurrentHashMap<>();
+
+    void recordResponse(String endpoint, long preparedNanos, SdkQueueEvent request, SdkQueueEvent response) {
+        long deliveredNanos = response.getDispatchedNanos();
+        Latencies latencies = latencies(endpoint);
+        latencies.total.record(deliveredNanos - preparedNanos);
+
+        long dequeued = request != null ? request.getDequeuedNanos() : 0;
+        long responded = response.getEnqueuedNanos();
+        if (dequeued != 0) {
+            latencies.queueWait.record(dequeued - preparedNanos);
+            if (responded != 0) {
+                latencies.gatewayProcessing.record(responded - dequeued);
+            }
+        }
+        if (responded != 0) {
+            latencies.returnQueueWait.record(deliveredNanos - responded);
+        }
+    }
+
+    void recordTimeout(String endpoint) {
+        latencies(endpoint).timeouts.increment();
+    }
+
+    /**
+     * @param endpoint endpoint id, see {@link SdkEventKeys}
+     * @return the endpoint's latencies, null if no call to it has finished yet
+     */
+    public EndpointLatencySnapshot snapshot(String endpoint) {
+        Latencies latencies = endpoints.get(keyOf(endpoint));
+        return latencies != null ? latencies.snapshot(keyOf(endpoint)) : null;
+    }
+
+    /**
+     * @return the latencies of every endpoint called so far, by endpoint id
+     */
+    public Map<String, EndpointLatencySnapshot> snapshot() {
+        Map<String, EndpointLatencySnapshot> snapshots = new TreeMap<>();
+        endpoints.forEach((endpoint, latencies) -> snapshots.put(endpoint, latencies.snapshot(endpoint)));
+        return snapshots;
+    }
+
+    public void reset() {
+        endpoints.clear();
+    }
+
+    private Latencies latencies(String endpoint) {
+        String key = keyOf(endpoint);
+        Latencies latencies = endpoints.get(key);
+        return latencies != null ? latencies : endpoints.computeIfAbsent(key, k -> new Latencies());
+    }
+
+    private static String keyOf(String endpoint) {
+        return StringUtil.isNullOrEmpty(endpoint) ? UNKNOWN_ENDPOINT : endpoint;
+    }
+
+    private static final class Latencies {
+
+        private final LongAdder timeouts = new LongAdder();
+        private final LatencyHistogram total = new LatencyHistogram();
+        private final LatencyHistogram queueWait = new LatencyHistogram();
+        private final LatencyHistogram gatewayProcessing = new LatencyHistogram();
+        private final LatencyHistogram returnQueueWait = new LatencyHistogram();
+
+        private EndpointLatencySnapshot snapshot(String endpoint) {
+            return new EndpointLatencySnapshot(endpoint, timeouts.sum(),
+                    new LatencySnapshot(total.snapshot()),
+                    new LatencySnapshot(queueWait.snapshot()),
+                    new LatencySnapshot(gatewayProcessing.snapshot()),
+                    new LatencySnapshot(returnQueueWait.snapshot()));
+        }
+    }
+
+}
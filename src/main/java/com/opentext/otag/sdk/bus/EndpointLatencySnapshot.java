@@ -0,0 +1,79 @@
+package com.opentext.otag.sdk.bus;
+
+/**
+ * Point in time copy of the latencies of the SDK calls to one endpoint, see {@link EndpointLatencies}.
+ */
+public final class EndpointLatencySnapshot {
+
+    private final String endpoint;
+    private final long timeouts;
+    private final LatencySnapshot total;
+    private final LatencySnapshot queueWait;
+    private final LatencySnapshot gatewayProcessing;
+    private final LatencySnapshot returnQueueWait;
+
+    EndpointLatencySnapshot(String endpoint, long timeouts, LatencySnapshot total, LatencySnapshot queueWait,
+                            LatencySnapshot gatewayProcessing, LatencySnapshot returnQueueWait) {
+        this.endpoint = endpoint;
+        this.timeouts = timeouts;
+        this.total = total;
+        this.queueWait = queueWait;
+        this.gatewayProcessing = gatewayProcessing;
+        this.returnQueueWait = returnQueueWait;
+    }
+
+    /**
+     * @return the endpoint id, see {@link SdkEventKeys}
+     */
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * @return the number of calls the Gateway did not answer in time, these are not in the latencies
+     */
+    public long getTimeouts() {
+        return timeouts;
+    }
+
+    /**
+     * @return time from preparing for the response until it was handed to the caller
+     */
+    public LatencySnapshot getTotal() {
+        return total;
+    }
+
+    /**
+     * @return time from preparing for the response until the Gateway took the request off its queue
+     */
+    public LatencySnapshot getQueueWait() {
+        return queueWait;
+    }
+
+    /**
+     * @return time from the Gateway taking the request until it queued the response
+     */
+    public LatencySnapshot getGatewayProcessing() {
+        return gatewayProcessing;
+    }
+
+    /**
+     * @return time the response spent on the service's response queue
+     */
+    public LatencySnapshot getReturnQueueWait() {
+        return returnQueueWait;
+    }
+
+    @Override
+    public String toString() {
+        return "EndpointLatencySnapshot{" +
+                "endpoint='" + endpoint + '\'' +
+                ", timeouts=" + timeouts +
+                ", total=" + total +
+                ", queueWait=" + queueWait +
+                ", gatewayProcessing=" + gatewayProcessing +
+                ", returnQueueWait=" + returnQueueWait +
+                '}';
+    }
+
+}
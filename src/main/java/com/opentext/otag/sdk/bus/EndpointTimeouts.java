@@ -0,0 +1,94 @@
+package com.opentext.otag.sdk.bus;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static com.opentext.otag.sdk.bus.SdkEventKeys.*;
+
+/**
+ * How long to wait for the Gateway to answer each kind of SDK request, keyed on the {@link SdkEventKeys}
+ * endpoint ids. Quick lookups fail fast, calls that do real work in the Gateway (sending mail and
+ * notifications, deployment) are given longer. Every timeout can be overridden through the environment,
+ * see {@link #timeoutEnvVar(String)}, as can the default for endpoints without one of their own via
+ * {@link #DEFAULT_TIMEOUT_ENV_VAR}.
+ */
+public class EndpointTimeouts {
+
+    // milliseconds to wait for a response to an endpoint without a timeout of its own
+    public static final String DEFAULT_TIMEOUT_ENV_VAR = "AWG_SDK_EVENT_BUS_RESPONSE_TIMEOUT_MS_ENV";
+
+    private static final String ENV_VAR_PREFIX = "AWG_SDK_EVENT_BUS_RESPONSE_TIMEOUT_";
+
+    private static final long SHORT_MILLIS = TimeUnit.SECONDS.toMillis(10);
+    private static final long LONG_MILLIS = TimeUnit.SECONDS.toMillis(120);
+
+    private static final Map<String, Long> BUILT_IN_MILLIS = new HashMap<>();
+
+    static {
+        for (String endpoint : new String[]{SETTINGS_GET_SETTING, SETTINGS_GET_SETTINGS,
+                SERVICE_MGMT_IS_APP_ENABLED, SERVICE_MGMT_ZIP_DL_PERMITTED, AUTH_GET_TOKEN_FOR_USER,
+                AUTH_LIST_GROUP_USER_IDS, AUTH_GET_USER_PROFILE, NOTIFICATIONS_GET_NOTIF_SEQ_BOUNDS}) {
+            BUILT_IN_MILLIS.put(endpoint, SHORT_MILLIS);
+        }
+        for (String endpoint : new String[]{SEND_MAIL, SEND_IMPORTANT_MAIL, NOTIFICATIONS_PUSH,
+                NOTIFICATIONS_SEND_WEB, SERVICE_MGMT_COMPLETE_DEPLOYMENT, SERVICE_MGMT_REGISTER_LOCAL_APP}) {
+            BUILT_IN_MILLIS.put(endpoint, LONG_MILLIS);
+        }
+    }
+
+    private final SystemEnvironment systemEnvironment;
+    private final long defaultMillis;
+
+    /**
+     * Resolved timeouts, the environment is only read once per endpoint.
+     */
+    private final Map<String, Long> resolvedMillis = new ConcurrentHashMap<>();
+
+    EndpointTimeouts(SystemEnvironment systemEnvironment, long defaultMillis) {
+        this.systemEnvironment = systemEnvironment;
+        this.defaultMillis = envMillis(DEFAULT_TIMEOUT_ENV_VAR, defaultMillis);
+    }
+
+    /**
+     * @param endpointId endpoint id, e.g. {@link SdkEventKeys#SETTINGS_GET_SETTING}, may be null or empty
+     * @return how long to wait for the Gateway to answer a request to the endpoint, in milliseconds
+     */
+    long timeoutMillis(String endpointId) {
+        if (endpointId == null || endpointId.isEmpty()) {
+            return defaultMillis;
+        }
+        return resolvedMillis.computeIfAbsent(endpointId, id ->
+                envMillis(timeoutEnvVar(id), BUILT_IN_MILLIS.getOrDefault(id, defaultMillis)));
+    }
+
+    /**
+     * Override the timeout for an endpoint.
+     *
+     * @param endpointId endpoint id
+     * @param timeout    timeout
+     * @param unit       timeout unit
+     */
+    void setTimeout(String endpointId, long timeout, TimeUnit unit) {
+        resolvedMillis.put(endpointId, unit.toMillis(timeout));
+    }
+
+    /**
+     * Name of the environment variable holding the timeout, in milliseconds, for an endpoint. The endpoint
+     * id is upper cased and characters that cannot appear in an env var name are replaced with underscores,
+     * e.g. "settings:getSetting" becomes AWG_SDK_EVENT_BUS_RESPONSE_TIMEOUT_SETTINGS_GETSETTING_MS_ENV.
+     *
+     * @param endpointId endpoint id
+     * @return env var name
+     */
+    public static String timeoutEnvVar(String endpointId) {
+        return ENV_VAR_PREFIX + endpointId.replaceAll("[^A-Za-z0-9]", "_").toUpperCase() + "_MS_ENV";
+    }
+
+    private long envMillis(String envVar, long defaultValue) {
+        int millis = systemEnvironment.getenvInt(envVar, (int) defaultValue);
+        return millis > 0 ? millis : defaultValue;
+    }
+
+}
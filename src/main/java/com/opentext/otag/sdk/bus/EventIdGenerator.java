@@ -0,0 +1,16 @@
+package com.opentext.otag.sdk.bus;
+
+/**
+ * Source of the unique identifiers given to new {@link SdkQueueEvent}s. Implementations must be thread
+ * safe, ids are generated on every thread that creates events. See {@link EventIdGenerators} for the
+ * built in generators.
+ */
+@FunctionalInterface
+public interface EventIdGenerator {
+
+    /**
+     * @return a new identifier, never handed out before in this JVM
+     */
+    String nextId();
+
+}
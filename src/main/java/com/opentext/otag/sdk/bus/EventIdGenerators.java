@@ -0,0 +1,93 @@
+package com.opentext.otag.sdk.bus;
+
+import com.opentext.otag.sdk.util.StringUtil;
+
+import java.util.UUID;
+
+/**
+ * The built in {@link EventIdGenerator}s, and the generator used for new {@link SdkQueueEvent}s. That is
+ * selected via {@link #EVENT_ID_TYPE_ENV_VAR}, which may hold "monotonic" (the default), "uuid" or the
+ * fully qualified class name of a custom generator.
+ */
+public final class EventIdGenerators {
+
+    // selects the event id generator
+    public static final String EVENT_ID_TYPE_ENV_VAR = "AWG_SDK_EVENT_BUS_EVENT_ID_TYPE_ENV";
+
+    /**
+     * Time ordered ids from a per thread counter, see {@link MonotonicEventIdGenerator}.
+     */
+    public static final String MONOTONIC = "monotonic";
+
+    /**
+     * Random UUIDs, the original event ids. Each id costs a call to the shared SecureRandom.
+     */
+    public static final String UUID_IDS = "uuid";
+
+    private static volatile EventIdGenerator generator;
+
+    private EventIdGenerators() {
+    }
+
+    public static EventIdGenerator uuid() {
+        return () -> UUID.randomUUID().toString();
+    }
+
+    public static EventIdGenerator monotonic() {
+        return new MonotonicEventIdGenerator();
+    }
+
+    /**
+     * @return a new id from the configured generator
+     */
+    public static String nextId() {
+        return generator().nextId();
+    }
+
+    /**
+     * @return the generator used for new events
+     */
+    public static EventIdGenerator generator() {
+        EventIdGenerator current = generator;
+        if (current == null) {
+            synchronized (EventIdGenerators.class) {
+                if (generator == null) {
+                    generator = fromEnv(new SystemEnvironment());
+                }
+                current = generator;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Replace the generator used for new events.
+     *
+     * @param eventIdGenerator generator to use
+     */
+    public static void setGenerator(EventIdGenerator eventIdGenerator) {
+        generator = eventIdGenerator;
+    }
+
+    static EventIdGenerator fromEnv(SystemEnvironment systemEnvironment) {
+        String type = systemEnvironment.getenv(EVENT_ID_TYPE_ENV_VAR);
+        if (StringUtil.isNullOrEmpty(type) || MONOTONIC.equalsIgnoreCase(type.trim())) {
+            return MonotonicEventIdGenerator.fromEnv(systemEnvironment);
+        }
+
+        type = type.trim();
+        if (UUID_IDS.equalsIgnoreCase(type)) {
+            return uuid();
+        }
+
+        try {
+            Class<?> generatorClass = Class.forName(type, true, EventIdGenerators.class.getClassLoader());
+            return (EventIdGenerator) generatorClass.getDeclaredConstructor().newInstance();
+        } catch (Exception | LinkageError e) {
+            SdkEventBusLog.error("Failed to create event id generator " + type +
+                    ", falling back to the default", e);
+            return MonotonicEventIdGenerator.fromEnv(systemEnvironment);
+        }
+    }
+
+}
@@ -0,0 +1,391 @@
+package com.opentext.otag.sdk.bus;
+
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Gateway queue that gives each tenant, a service and persistence context pair identified by its
+ * {@link SdkQueueEventId}, a sub-queue of its own. Consumers see a single queue, the sub-queues with events
+ * waiting are served by deficit round robin, so a tenant sending a burst only delays the others by its
+ * weight's worth of events per round rather than by the length of its burst.
+ * <p>
+ * Each tenant may hold no more than its quota of the queue's capacity, a tenant that has used up its
+ * quota is refused, or blocked, whilst the others can still send. Quotas and weights can be set per
+ * tenant, tenants without their own share use the queue defaults.
+ */
+public class FairShareBlockingQueue extends AbstractQueue<SdkQueueEvent>
+        implements BlockingQueue<SdkQueueEvent>, PartitionedQueue {
+
+    /**
+     * Share of the capacity a single tenant may use, unless configured otherwise.
+     */
+    static final int DEFAULT_QUOTA_DIVISOR = 4;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+
+    private final int capacity;
+    private final int defaultQuota;
+    private final int defaultWeight;
+
+    /**
+     * Tenants with events waiting, they are dropped as soon as their sub-queue empties so the map does not
+     * keep a record of every tenant that ever sent.
+     */
+    private final Map<SdkQueueEventId, Tenant> tenants = new HashMap<>();
+
+    /**
+     * Round robin order, the tenant at the head is served next.
+     */
+    private final ArrayDeque<Tenant> active = new ArrayDeque<>();
+
+    private final Map<SdkQueueEventId, Share> shares = new ConcurrentHashMap<>();
+
+    private int count;
+
+    public FairShareBlockingQueue(int capacity) {
+        this(capacity, 0, 1);
+    }
+
+    /**
+     * @param capacity      capacity shared by all the tenants
+     * @param defaultQuota  the most events a tenant may have waiting, zero or less for a
+     *                      1/{@value #DEFAULT_QUOTA_DIVISOR} share of the capacity
+     * @param defaultWeight events a tenant is served per round, at least one
+     */
+    public FairShareBlockingQueue(int capacity, int defaultQuota, int defaultWeight) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Queue capacity must be positive, got " + capacity);
+        }
+        this.capacity = capacity;
+        this.defaultQuota = defaultQuota > 0 ?
+                Math.min(defaultQuota, capacity) : Math.max(1, capacity / DEFAULT_QUOTA_DIVISOR);
+        this.defaultWeight = Math.max(1, defaultWeight);
+    }
+
+    /**
+     * Give a tenant a share of its own. A tenant that already has events waiting takes the new share at
+     * once, if its quota shrinks below what it has waiting nothing is dropped, it is refused until it
+     * drains below the new quota.
+     *
+     * @param serviceName        service name
+     * @param persistenceContext tenant context name
+     * @param quota              the most events the tenant may have waiting, capped at the queue capacity
+     * @param weight             events the tenant is served per round
+     */
+    public void setShare(String serviceName, String persistenceContext, int quota, int weight) {
+        if (quota < 1 || weight < 1) {
+            throw new IllegalArgumentException("Quota and weight must be positive, got " + quota + " and " +
+                    weight);
+        }
+        SdkQueueEventId tenantId = new SdkQueueEventId(serviceName, persistenceContext);
+        Share share = new Share(Math.min(quota, capacity), weight);
+        lock.lock();
+        try {
+            shares.put(tenantId, share);
+            Tenant tenant = tenants.get(tenantId);
+            if (tenant != null) {
+                tenant.quota = share.quota;
+                tenant.weight = share.weight;
+                tenant.deficit = Math.min(tenant.deficit, share.weight);
+                // a bigger quota may let waiting senders in
+                notFull.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param serviceName        service name
+     * @param persistenceContext tenant context name
+     * @return the number of events the tenant has waiting
+     */
+    public int size(String serviceName, String persistenceContext) {
+        lock.lock();
+        try {
+            Tenant tenant = tenants.get(new SdkQueueEventId(serviceName, persistenceContext));
+            return tenant == null ? 0 : tenant.events.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(SdkQueueEvent e) {
+        SdkQueueEventId tenantId = tenantOf(e);
+        lock.lock();
+        try {
+            if (!hasRoomFor(tenantId)) {
+                return false;
+            }
+            enqueue(tenantId, e);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void put(SdkQueueEvent e) throws InterruptedException {
+        SdkQueueEventId tenantId = tenantOf(e);
+        lock.lockInterruptibly();
+        try {
+            while (!hasRoomFor(tenantId)) {
+                notFull.await();
+            }
+            enqueue(tenantId, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(SdkQueueEvent e, long timeout, TimeUnit unit) throws InterruptedException {
+        SdkQueueEventId tenantId = tenantOf(e);
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (!hasRoomFor(tenantId)) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = notFull.awaitNanos(nanos);
+            }
+            enqueue(tenantId, e);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public SdkQueueEvent poll() {
+        lock.lock();
+        try {
+            return count == 0 ? null : dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public SdkQueueEvent take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (count == 0) {
+                notEmpty.await();
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public SdkQueueEvent poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (count == 0) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public SdkQueueEvent peek() {
+        lock.lock();
+        try {
+            return count == 0 ? null : active.peekFirst().events.peekFirst();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+        lock.lock();
+        try {
+            return capacity - count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int drainTo(Collection<? super SdkQueueEvent> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super SdkQueueEvent> c, int maxElements) {
+        if (c == null) {
+            throw new NullPointerException();
+        }
+        if (c == this) {
+            throw new IllegalArgumentException();
+        }
+        lock.lock();
+        try {
+            int drained = 0;
+            while (drained < maxElements && count > 0) {
+                c.add(dequeue());
+                drained++;
+            }
+            return drained;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return a snapshot of the queued events, tenant by tenant in round robin order
+     */
+    @Override
+    public Iterator<SdkQueueEvent> iterator() {
+        lock.lock();
+        try {
+            List<SdkQueueEvent> snapshot = new ArrayList<>(count);
+            active.forEach(tenant -> snapshot.addAll(tenant.events));
+            return Collections.unmodifiableList(snapshot).iterator();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param e event
+     * @return the oldest event the given event's tenant has waiting, null if it has none
+     */
+    @Override
+    public SdkQueueEvent pollPartitionOf(SdkQueueEvent e) {
+        SdkQueueEventId tenantId = tenantOf(e);
+        lock.lock();
+        try {
+            Tenant tenant = tenants.get(tenantId);
+            return tenant == null ? null : removeHead(tenant);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static SdkQueueEventId tenantOf(SdkQueueEvent e) {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+        return new SdkQueueEventId(e.getServiceName(), e.getPersistenceContext());
+    }
+
+    private boolean hasRoomFor(SdkQueueEventId tenantId) {
+        if (count >= capacity) {
+            return false;
+        }
+        Tenant tenant = tenants.get(tenantId);
+        return tenant == null || tenant.events.size() < tenant.quota;
+    }
+
+    private void enqueue(SdkQueueEventId tenantId, SdkQueueEvent e) {
+        Tenant tenant = tenants.get(tenantId);
+        if (tenant == null) {
+            Share share = shares.get(tenantId);
+            tenant = share != null ?
+                    new Tenant(tenantId, share.quota, share.weight) :
+                    new Tenant(tenantId, defaultQuota, defaultWeight);
+            tenants.put(tenantId, tenant);
+            active.addLast(tenant);
+        }
+        tenant.events.addLast(e);
+        count++;
+        notEmpty.signal();
+    }
+
+    private SdkQueueEvent dequeue() {
+        Tenant tenant = active.peekFirst();
+        if (tenant.deficit == 0) {
+            // its turn has come round again
+            tenant.deficit = tenant.weight;
+        }
+        tenant.deficit--;
+        SdkQueueEvent e = removeHead(tenant);
+        if (tenant.deficit == 0 && !tenant.events.isEmpty()) {
+            active.addLast(active.pollFirst());
+        }
+        return e;
+    }
+
+    private SdkQueueEvent removeHead(Tenant tenant) {
+        SdkQueueEvent e = tenant.events.pollFirst();
+        if (e == null) {
+            return null;
+        }
+        count--;
+        if (tenant.events.isEmpty()) {
+            tenants.remove(tenant.id);
+            active.remove(tenant);
+        }
+        // senders of any tenant may be waiting on either the tenant quota or the overall capacity
+        notFull.signalAll();
+        return e;
+    }
+
+    private static final class Share {
+
+        private final int quota;
+        private final int weight;
+
+        private Share(int quota, int weight) {
+            this.quota = quota;
+            this.weight = weight;
+        }
+    }
+
+    private static final class Tenant {
+
+        private final SdkQueueEventId id;
+        private final ArrayDeque<SdkQueueEvent> events = new ArrayDeque<>();
+        private int quota;
+        private int weight;
+
+        /**
+         * Events left to serve in the tenant's current turn.
+         */
+        private int deficit;
+
+        private Tenant(SdkQueueEventId id, int quota, int weight) {
+            this.id = id;
+            this.quota = quota;
+            this.weight = weight;
+        }
+    }
+
+}
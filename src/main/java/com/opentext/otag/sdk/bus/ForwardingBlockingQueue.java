@@ -0,0 +1,113 @@
+package com.opentext.otag.sdk.bus;
+
+import java.util.AbstractQueue;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Base for queues that decorate another queue, every operation is passed straight through to the
+ * delegate unless a subclass overrides it.
+ *
+ * @param <E> element type
+ */
+abstract class ForwardingBlockingQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+
+    final BlockingQueue<E> delegate;
+
+    ForwardingBlockingQueue(BlockingQueue<E> delegate) {
+        this.delegate = delegate;
+    }
+
+    BlockingQueue<E> getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * @return the queue at the bottom of any stack of decorators
+     */
+    static BlockingQueue<?> unwrap(BlockingQueue<?> queue) {
+        BlockingQueue<?> unwrapped = queue;
+        while (unwrapped instanceof ForwardingBlockingQueue) {
+            unwrapped = ((ForwardingBlockingQueue<?>) unwrapped).getDelegate();
+        }
+        return unwrapped;
+    }
+
+    @Override
+    public boolean offer(E e) {
+        return delegate.offer(e);
+    }
+
+    @Override
+    public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+        return delegate.offer(e, timeout, unit);
+    }
+
+    @Override
+    public void put(E e) throws InterruptedException {
+        delegate.put(e);
+    }
+
+    @Override
+    public E poll() {
+        return delegate.poll();
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return delegate.poll(timeout, unit);
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        return delegate.take();
+    }
+
+    @Override
+    public E peek() {
+        return delegate.peek();
+    }
+
+    @Override
+    public int size() {
+        return delegate.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return delegate.isEmpty();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return delegate.contains(o);
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return delegate.remove(o);
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return delegate.remainingCapacity();
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c) {
+        return delegate.drainTo(c);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        return delegate.drainTo(c, maxElements);
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return delegate.iterator();
+    }
+
+}
@@ -0,0 +1,289 @@
+package com.opentext.otag.sdk.bus;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Hashed timer wheel for the large numbers of timeouts that are scheduled and, almost always, cancelled
+ * again on the SDK request path. Scheduling and cancelling are O(1) and never take a lock, a single
+ * worker thread advances the wheel one bucket per tick and runs the timeouts that have expired. Timeouts
+ * fire up to one tick late, never early.
+ * <p>
+ * New and cancelled timeouts are handed to the worker through lock-free stacks, only the worker touches
+ * the buckets, so cancelled timeouts are unlinked (and can be collected) on the next tick rather than
+ * when they would have expired. The stacks are linked through the timeouts themselves, so scheduling and
+ * cancelling allocate nothing beyond the {@link Timeout}.
+ */
+class HashedTimerWheel {
+
+    private static final int MAX_TRANSFERS_PER_TICK = 100_000;
+
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+
+    private final AtomicReference<Timeout> scheduled = new AtomicReference<>();
+    private final AtomicReference<Timeout> cancelled = new AtomicReference<>();
+    private final AtomicInteger pending = new AtomicInteger();
+
+    // worker thread only, scheduled timeouts taken from the stack but not yet moved to their bucket
+    private Timeout transferring;
+
+    private final Thread worker;
+    private final long startNanos;
+    private volatile boolean stopped;
+
+    HashedTimerWheel(String threadName, long tickDuration, TimeUnit unit, int ticksPerWheel) {
+        if (tickDuration <= 0 || ticksPerWheel <= 0) {
+            throw new IllegalArgumentException("Tick duration and ticks per wheel must be positive");
+        }
+        this.tickNanos = unit.toNanos(tickDuration);
+        int size = 1;
+        while (size < ticksPerWheel) {
+            size <<= 1;
+        }
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = size - 1;
+
+        this.startNanos = System.nanoTime();
+        this.worker = new Thread(this::run, threadName);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Run a task once the delay has passed, on the wheel's worker thread. Tasks should be short, they hold
+     * up every other timeout due in the same tick.
+     *
+     * @param task  task to run
+     * @param delay delay
+     * @param unit  delay unit
+     * @return handle that can cancel the timeout
+     */
+    Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        if (stopped) {
+            throw new IllegalStateException("Timer wheel has been stopped");
+        }
+        long deadline = System.nanoTime() - startNanos + Math.max(0, unit.toNanos(delay));
+        Timeout timeout = new Timeout(this, task, deadline);
+        pending.incrementAndGet();
+        Timeout head;
+        do {
+            head = scheduled.get();
+            timeout.nextScheduled = head;
+        } while (!scheduled.compareAndSet(head, timeout));
+        return timeout;
+    }
+
+    /**
+     * @return the number of timeouts that have neither fired nor been cancelled yet
+     */
+    int pending() {
+        return pending.get();
+    }
+
+    void stop() {
+        stopped = true;
+        worker.interrupt();
+    }
+
+    private void run() {
+        long tick = 0;
+        while (!stopped) {
+            long tickDeadline = waitForTick(tick);
+            if (tickDeadline < 0) {
+                return;
+            }
+            removeCancelled();
+            transferScheduled(tick);
+            wheel[(int) (tick & mask)].expire();
+            tick++;
+        }
+    }
+
+    /**
+     * @return the time, relative to our start, the tick ends at, or -1 if we were stopped
+     */
+    private long waitForTick(long tick) {
+        long tickDeadline = tickNanos * (tick + 1);
+        for (;;) {
+            long sleepNanos = tickDeadline - (System.nanoTime() - startNanos);
+            if (sleepNanos <= 0) {
+                return tickDeadline;
+            }
+            try {
+                TimeUnit.NANOSECONDS.sleep(sleepNanos);
+            } catch (InterruptedException e) {
+                if (stopped) {
+                    return -1;
+                }
+            }
+        }
+    }
+
+    private void removeCancelled() {
+        Timeout timeout = cancelled.getAndSet(null);
+        while (timeout != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+            Timeout next = timeout.nextCancelled;
+            timeout.nextCancelled = null;
+            timeout = next;
+        }
+    }
+
+    private void transferScheduled(long tick) {
+        if (transferring == null) {
+            transferring = scheduled.getAndSet(null);
+        }
+        for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+            Timeout timeout = transferring;
+            if (timeout == null) {
+                return;
+            }
+            transferring = timeout.nextScheduled;
+            timeout.nextScheduled = null;
+            if (timeout.state != Timeout.ST_PENDING) {
+                continue;
+            }
+            long expiryTick = timeout.deadline / tickNanos;
+            timeout.remainingRounds = (expiryTick - tick) / wheel.length;
+            // anything already overdue goes in the current bucket
+            long bucketTick = Math.max(expiryTick, tick);
+            wheel[(int) (bucketTick & mask)].add(timeout);
+        }
+    }
+
+    /**
+     * A scheduled task, see {@link HashedTimerWheel#schedule(Runnable, long, TimeUnit)}.
+     */
+    static final class Timeout {
+
+        private static final int ST_PENDING = 0;
+        private static final int ST_CANCELLED = 1;
+        private static final int ST_EXPIRED = 2;
+
+        private static final AtomicIntegerFieldUpdater<Timeout> STATE =
+                AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+        private final HashedTimerWheel wheel;
+        private final Runnable task;
+        private final long deadline;
+
+        private volatile int state = ST_PENDING;
+
+        // links in the wheel's scheduled and cancelled stacks, set before the timeout is pushed
+        private Timeout nextScheduled;
+        private Timeout nextCancelled;
+
+        // worker thread only
+        private long remainingRounds;
+        private Timeout next;
+        private Timeout prev;
+        private Bucket bucket;
+
+        private Timeout(HashedTimerWheel wheel, Runnable task, long deadline) {
+            this.wheel = wheel;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * @return true if this call cancelled the timeout, false if it had already fired or been cancelled
+         */
+        boolean cancel() {
+            if (!STATE.compareAndSet(this, ST_PENDING, ST_CANCELLED)) {
+                return false;
+            }
+            wheel.pending.decrementAndGet();
+            Timeout head;
+            do {
+                head = wheel.cancelled.get();
+                nextCancelled = head;
+            } while (!wheel.cancelled.compareAndSet(head, this));
+            return true;
+        }
+
+        boolean isCancelled() {
+            return state == ST_CANCELLED;
+        }
+
+        boolean isExpired() {
+            return state == ST_EXPIRED;
+        }
+
+        private void expire() {
+            if (!STATE.compareAndSet(this, ST_PENDING, ST_EXPIRED)) {
+                return;
+            }
+            wheel.pending.decrementAndGet();
+            try {
+                task.run();
+            } catch (Throwable t) {
+                SdkEventBusLog.error("Timeout task failed", t);
+            }
+        }
+    }
+
+    /**
+     * Doubly linked list of the timeouts hashed to one slot of the wheel, only used by the worker.
+     */
+    private static final class Bucket {
+
+        private Timeout head;
+        private Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        void expire() {
+            Timeout timeout = head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.remainingRounds <= 0) {
+                    remove(timeout);
+                    timeout.expire();
+                } else if (timeout.isCancelled()) {
+                    remove(timeout);
+                } else {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.bucket != this) {
+                return;
+            }
+            if (timeout.prev != null) {
+                timeout.prev.next = timeout.next;
+            } else {
+                head = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            } else {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+    }
+
+}
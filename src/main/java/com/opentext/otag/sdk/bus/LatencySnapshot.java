@@ -0,0 +1,64 @@
+package com.opentext.otag.sdk.bus;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Point in time summary of a latency distribution, all values are in nanoseconds.
+ */
+public final class LatencySnapshot {
+
+    private final long count;
+    private final long meanNanos;
+    private final long p50Nanos;
+    private final long p99Nanos;
+    private final long p999Nanos;
+    private final long maxNanos;
+
+    LatencySnapshot(LatencyHistogram.Snapshot snapshot) {
+        this.count = snapshot.count();
+        this.meanNanos = snapshot.mean();
+        this.p50Nanos = snapshot.percentile(50);
+        this.p99Nanos = snapshot.percentile(99);
+        this.p999Nanos = snapshot.percentile(99.9);
+        this.maxNanos = snapshot.max();
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getMeanNanos() {
+        return meanNanos;
+    }
+
+    public long getP50Nanos() {
+        return p50Nanos;
+    }
+
+    public long getP99Nanos() {
+        return p99Nanos;
+    }
+
+    public long getP999Nanos() {
+        return p999Nanos;
+    }
+
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "{count=" + count +
+                ", p50=" + micros(p50Nanos) +
+                ", p99=" + micros(p99Nanos) +
+                ", p999=" + micros(p999Nanos) +
+                ", max=" + micros(maxNanos) +
+                '}';
+    }
+
+    private static String micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos) + "us";
+    }
+
+}
@@ -0,0 +1,103 @@
+package com.opentext.otag.sdk.bus;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates ids from a time seeded, increasing long sequence. Rather than contending on the shared
+ * sequence for every id each thread reserves a block of {@link #BLOCK_SIZE} values at a time and hands
+ * them out from a thread local, so generating an id is usually an increment and a short base 36 string.
+ * <p>
+ * Ids look like "k3x9q2-1b2kfr4z8ag0", a node prefix followed by the sequence value. Blocks are reserved
+ * from at least the current time (in milliseconds, shifted left by {@link #TIME_SHIFT}), so ids from
+ * later blocks sort after ids handed out earlier, and are not repeated by a restarted JVM. The node prefix
+ * keeps ids from different JVMs apart, it is random unless set via {@link #NODE_ID_ENV_VAR}.
+ */
+public class MonotonicEventIdGenerator implements EventIdGenerator {
+
+    // optional fixed node prefix for the ids generated by this JVM
+    public static final String NODE_ID_ENV_VAR = "AWG_SDK_EVENT_BUS_NODE_ID_ENV";
+
+    static final int BLOCK_SIZE = 1024;
+
+    /**
+     * Room for 2^20 (about a million) ids per millisecond before the sequence runs ahead of the clock.
+     */
+    static final int TIME_SHIFT = 20;
+
+    private static final int RANDOM_NODE_ID_LENGTH = 6;
+
+    private final String prefix;
+    private final AtomicLong sequence = new AtomicLong();
+    private final ThreadLocal<long[]> blocks = ThreadLocal.withInitial(() -> new long[2]);
+
+    public MonotonicEventIdGenerator() {
+        this(randomNodeId());
+    }
+
+    public MonotonicEventIdGenerator(String nodeId) {
+        this.prefix = nodeId + "-";
+    }
+
+    static MonotonicEventIdGenerator fromEnv(SystemEnvironment systemEnvironment) {
+        String nodeId = systemEnvironment.getenv(NODE_ID_ENV_VAR);
+        return (nodeId == null || nodeId.trim().isEmpty()) ?
+                new MonotonicEventIdGenerator() : new MonotonicEventIdGenerator(nodeId.trim());
+    }
+
+    @Override
+    public String nextId() {
+        return prefix + Long.toString(nextSequence(), Character.MAX_RADIX);
+    }
+
+    /**
+     * @return the next value of this thread's part of the sequence
+     */
+    long nextSequence() {
+        // [0] is the next value to hand out, [1] the end of the reserved block
+        long[] block = blocks.get();
+        if (block[0] == block[1]) {
+            long floor = System.currentTimeMillis() << TIME_SHIFT;
+            long end = sequence.accumulateAndGet(floor, (current, time) -> Math.max(current, time) + BLOCK_SIZE);
+            block[0] = end - BLOCK_SIZE;
+            block[1] = end;
+        }
+        return block[0]++;
+    }
+
+    /**
+     * Recover the sequence value from an id generated by this generator, callers can key their own
+     * lookups on it rather than on the id string.
+     *
+     * @param eventId event id
+     * @return the sequence value, or -1 if the id was not generated by this generator
+     */
+    public long sequenceOf(String eventId) {
+        if (eventId == null || !eventId.startsWith(prefix)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(eventId.substring(prefix.length()), Character.MAX_RADIX);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * @return the prefix every id from this generator starts with
+     */
+    public String getPrefix() {
+        return prefix;
+    }
+
+    private static String randomNodeId() {
+        // fixed length so the prefix can never be mistaken for the first block of a UUID
+        StringBuilder nodeId = new StringBuilder(RANDOM_NODE_ID_LENGTH);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < RANDOM_NODE_ID_LENGTH; i++) {
+            nodeId.append(Character.forDigit(random.nextInt(Character.MAX_RADIX), Character.MAX_RADIX));
+        }
+        return nodeId.toString();
+    }
+
+}
@@ -0,0 +1,313 @@
+package com.opentext.otag.sdk.bus;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Predicate;
+
+/**
+ * Bounded, array backed, multi-producer single-consumer queue. Producers claim slots with a single CAS
+ * and never take a lock, the consumer never contends with producers at all. Each slot carries a sequence
+ * number which tells producers and the consumer whose turn it is to use it.
+ * <p>
+ * IMPORTANT - only one thread may consume (poll, take, drain) from this queue at a time. Producers that
+ * find the queue full back off (yield then park) until space appears, the consumer does not signal them.
+ * The iterator is a weakly consistent snapshot that does not support removal, and elements can only be
+ * removed from the head, so {@link #remove(Object)}, {@link #removeAll(Collection)},
+ * {@link #retainAll(Collection)} and {@link #removeIf(java.util.function.Predicate)} throw
+ * {@link UnsupportedOperationException}.
+ *
+ * @param <E> element type
+ */
+public class MpscArrayBlockingQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+
+    // producers yield this many times before they start parking whilst the queue is full
+    private static final int MAX_YIELDS = 16;
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final int capacity;
+
+    /**
+     * The sequence scheme needs at least two slots to tell a full slot from an empty one, so a queue
+     * with a capacity of one uses a ring of two and checks its bound against the consumer.
+     */
+    private final int ringSize;
+    private final AtomicReferenceArray<E> buffer;
+    private final AtomicLongArray sequences;
+
+    private final AtomicLong producerIndex = new AtomicLong();
+
+    /**
+     * Only ever written by the consumer.
+     */
+    private final AtomicLong consumerIndex = new AtomicLong();
+
+    /**
+     * The consumer, when it is parked waiting for an element.
+     */
+    private volatile Thread waitingConsumer;
+
+    public MpscArrayBlockingQueue(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Queue capacity must be positive, got " + capacity);
+        }
+        this.capacity = capacity;
+        this.ringSize = Math.max(2, capacity);
+        this.buffer = new AtomicReferenceArray<>(ringSize);
+        this.sequences = new AtomicLongArray(ringSize);
+        for (int i = 0; i < ringSize; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    @Override
+    public boolean offer(E e) {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+
+        long pos = producerIndex.get();
+        int slot;
+        for (;;) {
+            slot = slot(pos);
+            long available = sequences.get(slot) - pos;
+            if (available == 0 && ringSize != capacity && pos - consumerIndex.get() >= capacity) {
+                return false;
+            }
+            if (available == 0) {
+                if (producerIndex.compareAndSet(pos, pos + 1)) {
+                    break;
+                }
+                pos = producerIndex.get();
+            } else if (available < 0) {
+                // the consumer has not freed this slot since its last lap, we are full
+                return false;
+            } else {
+                // another producer beat us to it
+                pos = producerIndex.get();
+            }
+        }
+
+        buffer.lazySet(slot, e);
+        // the volatile write publishes the element, and orders it before our read of the waiting consumer
+        sequences.set(slot, pos + 1);
+
+        Thread consumer = waitingConsumer;
+        if (consumer != null) {
+            LockSupport.unpark(consumer);
+        }
+        return true;
+    }
+
+    @Override
+    public E poll() {
+        long pos = consumerIndex.get();
+        int slot = slot(pos);
+        if (sequences.get(slot) != pos + 1) {
+            return null;
+        }
+
+        E e = buffer.get(slot);
+        buffer.lazySet(slot, null);
+        // hand the slot back to the producers for their next lap
+        sequences.set(slot, pos + ringSize);
+        consumerIndex.lazySet(pos + 1);
+        return e;
+    }
+
+    @Override
+    public E peek() {
+        long pos = consumerIndex.get();
+        int slot = slot(pos);
+        return sequences.get(slot) == pos + 1 ? buffer.get(slot) : null;
+    }
+
+    @Override
+    public void put(E e) throws InterruptedException {
+        int attempts = 0;
+        while (!offer(e)) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            backOff(attempts++, Long.MAX_VALUE);
+        }
+    }
+
+    @Override
+    public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        int attempts = 0;
+        while (!offer(e)) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            backOff(attempts++, remaining);
+        }
+        return true;
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        E e = poll();
+        return e != null ? e : awaitElement(false, 0L);
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        E e = poll();
+        return e != null ? e : awaitElement(true, System.nanoTime() + unit.toNanos(timeout));
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return capacity - size();
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        if (c == null) {
+            throw new NullPointerException();
+        }
+        if (c == this) {
+            throw new IllegalArgumentException();
+        }
+
+        int drained = 0;
+        E e;
+        while (drained < maxElements && (e = poll()) != null) {
+            c.add(e);
+            drained++;
+        }
+        return drained;
+    }
+
+    @Override
+    public int size() {
+        // read the consumer first so a racing producer can only make the size look bigger
+        long consumed = consumerIndex.get();
+        long size = producerIndex.get() - consumed;
+        return (int) Math.max(0, Math.min(size, capacity));
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return peek() == null;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        List<E> snapshot = new ArrayList<>();
+        long pos = consumerIndex.get();
+        long end = producerIndex.get();
+        for (; pos < end; pos++) {
+            int slot = slot(pos);
+            E e = buffer.get(slot);
+            // stop at the first slot that has not been published yet, or has been consumed under us
+            if (sequences.get(slot) != pos + 1 || e == null) {
+                break;
+            }
+            snapshot.add(e);
+        }
+        return Collections.unmodifiableList(snapshot).iterator();
+    }
+
+    /**
+     * Not supported, producers own the slots behind the head until the consumer reaches them.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public boolean remove(Object o) {
+        throw removalNotSupported();
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        throw removalNotSupported();
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        throw removalNotSupported();
+    }
+
+    @Override
+    public boolean removeIf(Predicate<? super E> filter) {
+        throw removalNotSupported();
+    }
+
+    /**
+     * @return the number of elements this queue can hold
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    private static UnsupportedOperationException removalNotSupported() {
+        return new UnsupportedOperationException("An MPSC queue only removes elements from its head, " +
+                "use a different queue type where elements are removed from the middle");
+    }
+
+    private E awaitElement(boolean timed, long deadline) throws InterruptedException {
+        Thread current = Thread.currentThread();
+        try {
+            for (;;) {
+                // advertise that we are about to park, then check again so a producer cannot slip
+                // an element in between our last check and parking without waking us
+                waitingConsumer = current;
+                E e = poll();
+                if (e != null) {
+                    return e;
+                }
+
+                if (timed) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        return null;
+                    }
+                    LockSupport.parkNanos(this, remaining);
+                } else {
+                    LockSupport.park(this);
+                }
+
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+        } finally {
+            waitingConsumer = null;
+        }
+    }
+
+    private static void backOff(int attempts, long maxNanos) {
+        if (attempts < MAX_YIELDS) {
+            Thread.yield();
+        } else {
+            int shift = Math.min(attempts - MAX_YIELDS, 10);
+            LockSupport.parkNanos(Math.min(Math.min(1000L << shift, MAX_PARK_NANOS), maxNanos));
+        }
+    }
+
+    private int slot(long pos) {
+        return (int) (pos % ringSize);
+    }
+
+}
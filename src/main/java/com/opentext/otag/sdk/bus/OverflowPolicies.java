@@ -0,0 +1,144 @@
+package com.opentext.otag.sdk.bus;
+
+import com.opentext.otag.sdk.util.StringUtil;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * The built in {@link OverflowPolicy} implementations, and resolution of the policy to use for a
+ * {@link SdkQueueFamily} from the environment. The family env var may hold "block", "drop-oldest" or
+ * "drop-newest", caller-runs needs a handler so can only be set via
+ * {@link SdkQueueManager#setOverflowPolicy(SdkQueueFamily, OverflowPolicy)}.
+ */
+public final class OverflowPolicies {
+
+    /**
+     * Wait for space, up to the enqueue timeout.
+     */
+    public static final String BLOCK = "block";
+
+    /**
+     * Evict the event at the head of the queue to make space for the new one.
+     */
+    public static final String DROP_OLDEST = "drop-oldest";
+
+    /**
+     * Reject the new event straight away.
+     */
+    public static final String DROP_NEWEST = "drop-newest";
+
+    // how many times drop-oldest will evict and retry before giving up to racing producers
+    private static final int MAX_EVICTIONS = 16;
+
+    private OverflowPolicies() {
+    }
+
+    public static OverflowPolicy block() {
+        return (queue, event, timeoutNanos) -> queue.offer(event, timeoutNanos, TimeUnit.NANOSECONDS) ?
+                SendResult.ENQUEUED : SendResult.REJECTED_FULL;
+    }
+
+    public static OverflowPolicy dropNewest() {
+        return (queue, event, timeoutNanos) -> SendResult.REJECTED_FULL;
+    }
+
+    /**
+     * Evicts from the head of the queue on the sending thread, so must not be used with
+     * {@link MpscArrayBlockingQueue}s which only allow their single consumer to remove events, the
+     * policy rejects the new event for those queues instead.
+     *
+     * @return drop-oldest policy
+     */
+    public static OverflowPolicy dropOldest() {
+        return DropOldest.INSTANCE;
+    }
+
+    /**
+     * Partitions are bounded on their own, so make room in the one the event is headed for rather than
+     * dropping whatever would be served next.
+     */
+    private static SdkQueueEvent evictFor(BlockingQueue<SdkQueueEvent> queue, SdkQueueEvent event) {
+        BlockingQueue<?> raw = ForwardingBlockingQueue.unwrap(queue);
+        if (raw instanceof PartitionedQueue) {
+            return ((PartitionedQueue) raw).pollPartitionOf(event);
+        }
+        return queue.poll();
+    }
+
+    private static boolean isSingleConsumer(BlockingQueue<SdkQueueEvent> queue) {
+        return ForwardingBlockingQueue.unwrap(queue) instanceof MpscArrayBlockingQueue;
+    }
+
+    /**
+     * Hand events that do not fit on the queue to a handler on the sending thread, which slows the
+     * sender down to the rate the handler can keep up with.
+     *
+     * @param handler deals with the event instead of the queue's consumer
+     * @return caller-runs policy
+     */
+    public static OverflowPolicy callerRuns(Consumer<SdkQueueEvent> handler) {
+        return (queue, event, timeoutNanos) -> {
+            handler.accept(event);
+            return SendResult.HANDLED_BY_CALLER;
+        };
+    }
+
+    /**
+     * Resolve the policy configured for a queue family, falling back to {@link #block()}.
+     *
+     * @param family            queue family
+     * @param systemEnvironment access to the environment
+     * @return overflow policy to use
+     */
+    public static OverflowPolicy forFamily(SdkQueueFamily family, SystemEnvironment systemEnvironment) {
+        String policy = systemEnvironment.getenv(family.overflowPolicyEnvVar());
+        if (StringUtil.isNullOrEmpty(policy)) {
+            return block();
+        }
+
+        policy = policy.trim();
+        if (DROP_OLDEST.equalsIgnoreCase(policy)) {
+            return dropOldest();
+        }
+        if (DROP_NEWEST.equalsIgnoreCase(policy)) {
+            return dropNewest();
+        }
+        if (!BLOCK.equalsIgnoreCase(policy)) {
+            SdkEventBusLog.error("Unknown overflow policy " + policy + " for the " + family +
+                    " queues, falling back to " + BLOCK);
+        }
+        return block();
+    }
+
+    private static final class DropOldest implements OverflowPolicy {
+
+        private static final DropOldest INSTANCE = new DropOldest();
+
+        @Override
+        public SendResult onFull(BlockingQueue<SdkQueueEvent> queue, SdkQueueEvent event, long timeoutNanos) {
+            return onFull(queue, event, timeoutNanos, evicted -> { });
+        }
+
+        @Override
+        public SendResult onFull(BlockingQueue<SdkQueueEvent> queue, SdkQueueEvent event, long timeoutNanos,
+                                 Consumer<SdkQueueEvent> evicted) {
+            if (isSingleConsumer(queue)) {
+                return SendResult.REJECTED_FULL;
+            }
+            for (int i = 0; i < MAX_EVICTIONS; i++) {
+                SdkQueueEvent oldest = evictFor(queue, event);
+                if (oldest != null) {
+                    SdkEventBusLog.info("Queue full, dropped oldest event {}", oldest.getSdkEventIdentifier());
+                    evicted.accept(oldest);
+                }
+                if (queue.offer(event)) {
+                    return SendResult.ENQUEUED;
+                }
+            }
+            return SendResult.REJECTED_FULL;
+        }
+    }
+
+}
@@ -0,0 +1,42 @@
+package com.opentext.otag.sdk.bus;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+
+/**
+ * What to do with an event when the queue it is being sent to is full. The built in policies are
+ * available from {@link OverflowPolicies}.
+ */
+@FunctionalInterface
+public interface OverflowPolicy {
+
+    /**
+     * Called once an initial non-blocking offer of the event has failed.
+     *
+     * @param queue        the full queue
+     * @param event        event being sent
+     * @param timeoutNanos how long the sender is willing to wait for space
+     * @return the outcome of the send
+     * @throws InterruptedException if interrupted whilst waiting
+     */
+    SendResult onFull(BlockingQueue<SdkQueueEvent> queue, SdkQueueEvent event, long timeoutNanos)
+            throws InterruptedException;
+
+    /**
+     * As {@link #onFull(BlockingQueue, SdkQueueEvent, long)}, telling the sender about every event the
+     * policy removes from the queue to make space, so they can be counted. Policies that evict must
+     * override this, the default evicts nothing.
+     *
+     * @param queue        the full queue
+     * @param event        event being sent
+     * @param timeoutNanos how long the sender is willing to wait for space
+     * @param evicted      given each event dropped from the queue
+     * @return the outcome of the send
+     * @throws InterruptedException if interrupted whilst waiting
+     */
+    default SendResult onFull(BlockingQueue<SdkQueueEvent> queue, SdkQueueEvent event, long timeoutNanos,
+                              Consumer<SdkQueueEvent> evicted) throws InterruptedException {
+        return onFull(queue, event, timeoutNanos);
+    }
+
+}
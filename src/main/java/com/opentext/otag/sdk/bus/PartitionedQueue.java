@@ -0,0 +1,16 @@
+package com.opentext.otag.sdk.bus;
+
+/**
+ * Queues that hold their events in separately bounded partitions, e.g. a lane or a tenant's share. An
+ * event that finds its partition full cannot be made room for by taking from the head of the queue,
+ * overflow policies use this to evict from the right partition instead.
+ */
+interface PartitionedQueue {
+
+    /**
+     * @param e event
+     * @return the oldest event in the partition the given event belongs in, null if that partition is empty
+     */
+    SdkQueueEvent pollPartitionOf(SdkQueueEvent e);
+
+}
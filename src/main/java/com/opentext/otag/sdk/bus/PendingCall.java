@@ -0,0 +1,154 @@
+package com.opentext.otag.sdk.bus;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * A one-shot slot for the response to a single SDK request. The call is its own entry in the
+ * {@link PendingCallTable} (it carries its key and chain link) and the task its timeout runs, so a pending
+ * request costs the call and its {@link HashedTimerWheel.Timeout}.
+ * <p>
+ * A call the caller holds the future of removes itself from the table the moment it is completed, however
+ * that happens. A call that is held in the table is only found by its id, e.g. by
+ * {@link SdkQueueCallbackManager#getResponseForEvent(String)} after the response has already arrived, so it
+ * stays there until it is {@link #release() released}.
+ */
+class PendingCall extends CompletableFuture<SdkQueueEvent> implements Runnable {
+
+    private static final AtomicIntegerFieldUpdater<PendingCall> CLAIMED =
+            AtomicIntegerFieldUpdater.newUpdater(PendingCall.class, "claimed");
+
+    final String eventId;
+
+    /**
+     * Kept in the table once completed, until released.
+     */
+    private final boolean held;
+
+    /**
+     * The sequence value of the id, or -1 if the id is not one of ours and the call is held by id instead.
+     */
+    final long key;
+
+    /**
+     * Next call in the same table bucket, guarded by the bucket's stripe lock.
+     */
+    PendingCall next;
+
+    private final PendingCallTable table;
+
+    /**
+     * Expiry for calls with a timeout, cancelled once the call completes.
+     */
+    private volatile HashedTimerWheel.Timeout timeout;
+
+    private volatile long timeoutMillis;
+
+    private volatile int claimed;
+
+    /**
+     * When the caller prepared for the response, the start of the call's latency.
+     */
+    final long preparedNanos = System.nanoTime();
+
+    /**
+     * The outgoing request, when the caller gave it to us, so the response can be timed against its stamps.
+     */
+    private volatile SdkQueueEvent request;
+
+    PendingCall(PendingCallTable table, String eventId, long key, boolean held) {
+        this.table = table;
+        this.eventId = eventId;
+        this.key = key;
+        this.held = held;
+    }
+
+    void setRequest(SdkQueueEvent request) {
+        this.request = request;
+    }
+
+    SdkQueueEvent getRequest() {
+        return request;
+    }
+
+    /**
+     * @return the endpoint the request was sent to, null if we were not given the request
+     */
+    String getEndpoint() {
+        SdkQueueEvent outgoing = request;
+        return outgoing != null ? outgoing.getDestination() : null;
+    }
+
+    void setTimeout(HashedTimerWheel.Timeout timeout, long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+        this.timeout = timeout;
+        if (claimed != 0 && !held) {
+            // we lost the race with the response, which may have claimed the call but not completed it yet
+            timeout.cancel();
+        }
+    }
+
+    /**
+     * @return how long this call waits for a response, in milliseconds, zero if it has no timeout
+     */
+    long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    @Override
+    public boolean complete(SdkQueueEvent value) {
+        return claim() && super.complete(value);
+    }
+
+    @Override
+    public boolean completeExceptionally(Throwable ex) {
+        return claim() && super.completeExceptionally(ex);
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return claim() && super.cancel(mayInterruptIfRunning);
+    }
+
+    /**
+     * The call's timeout has passed, see {@link SdkQueueCallbackManager#timedOut(PendingCall)}.
+     */
+    @Override
+    public void run() {
+        SdkQueueCallbackManager.timedOut(this);
+    }
+
+    /**
+     * Remove the call from the table and cancel its timeout, whether or not it has completed.
+     */
+    void release() {
+        table.remove(this);
+        HashedTimerWheel.Timeout expiry = timeout;
+        if (expiry != null) {
+            expiry.cancel();
+        }
+    }
+
+    /**
+     * Only the first completion wins. Unless the call is held it is released before it is completed, so
+     * anyone woken by the completion already sees the call gone from the table. A held call keeps its
+     * timeout, which releases it if nobody else does.
+     */
+    private boolean claim() {
+        if (!CLAIMED.compareAndSet(this, 0, 1)) {
+            return false;
+        }
+        if (!held) {
+            release();
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "PendingCall{" +
+                "eventId='" + eventId + '\'' +
+                ", done=" + isDone() +
+                '}';
+    }
+}
@@ -0,0 +1,195 @@
+package com.opentext.otag.sdk.bus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The SDK requests awaiting a response from the Gateway. Calls whose event id came from the
+ * {@link MonotonicEventIdGenerator} are keyed on the id's long sequence value in a striped, chained hash
+ * table, the {@link PendingCall}s are the chain entries so registering a call allocates nothing beyond
+ * the call itself. Calls with any other kind of id (e.g. UUIDs) are held in a map by id.
+ */
+class PendingCallTable {
+
+    private static final int STRIPE_BITS = 6;
+    private static final int STRIPES = 1 << STRIPE_BITS;
+    private static final int INITIAL_BUCKETS_PER_STRIPE = 16;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final Map<String, PendingCall> byId = new ConcurrentHashMap<>();
+
+    PendingCallTable() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * Create the pending call for an event id, replacing any call already registered under that id. The
+     * call leaves the table as soon as it completes.
+     *
+     * @param eventId event id
+     * @return the new pending call
+     */
+    PendingCall register(String eventId) {
+        return register(eventId, false);
+    }
+
+    /**
+     * @param eventId event id
+     * @param held    keep the call in the table once it completes, until it is released
+     * @return the new pending call
+     * @see PendingCall#release()
+     */
+    PendingCall register(String eventId, boolean held) {
+        PendingCall call = new PendingCall(this, eventId, keyOf(eventId), held);
+        PendingCall replaced;
+        if (call.key < 0) {
+            replaced = byId.put(eventId, call);
+        } else {
+            replaced = stripeFor(call.key).put(call);
+        }
+        if (replaced != null) {
+            SdkEventBusLog.info("Replaced pending call for event {}", eventId);
+        }
+        return call;
+    }
+
+    PendingCall get(String eventId) {
+        long key = keyOf(eventId);
+        return key < 0 ? byId.get(eventId) : stripeFor(key).get(key);
+    }
+
+    /**
+     * Remove a call, only if it is still the call registered for its id.
+     *
+     * @param call pending call
+     * @return true if it was removed
+     */
+    boolean remove(PendingCall call) {
+        return call.key < 0 ? byId.remove(call.eventId, call) : stripeFor(call.key).remove(call);
+    }
+
+    int size() {
+        int size = byId.size();
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.count;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return a snapshot of the ids of the pending calls, for diagnostics
+     */
+    List<String> eventIds() {
+        List<String> ids = new ArrayList<>(byId.keySet());
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                for (PendingCall head : stripe.buckets) {
+                    for (PendingCall call = head; call != null; call = call.next) {
+                        ids.add(call.eventId);
+                    }
+                }
+            }
+        }
+        return ids;
+    }
+
+    private static long keyOf(String eventId) {
+        EventIdGenerator generator = EventIdGenerators.generator();
+        return generator instanceof MonotonicEventIdGenerator ?
+                ((MonotonicEventIdGenerator) generator).sequenceOf(eventId) : -1;
+    }
+
+    private Stripe stripeFor(long key) {
+        return stripes[hash(key) & (STRIPES - 1)];
+    }
+
+    private static int hash(long key) {
+        // sequence values are consecutive, mix them so neighbours land in different stripes and buckets
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static final class Stripe {
+
+        private PendingCall[] buckets = new PendingCall[INITIAL_BUCKETS_PER_STRIPE];
+        private int count;
+
+        synchronized PendingCall put(PendingCall call) {
+            PendingCall replaced = unlink(call.key, null);
+            int index = indexFor(call.key, buckets.length);
+            call.next = buckets[index];
+            buckets[index] = call;
+            if (replaced == null && ++count > buckets.length * 2) {
+                resize();
+            }
+            return replaced;
+        }
+
+        synchronized PendingCall get(long key) {
+            for (PendingCall call = buckets[indexFor(key, buckets.length)]; call != null; call = call.next) {
+                if (call.key == key) {
+                    return call;
+                }
+            }
+            return null;
+        }
+
+        synchronized boolean remove(PendingCall call) {
+            if (unlink(call.key, call) != null) {
+                count--;
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Unlink the call with the given key, only if it is the expected call when one is given.
+         */
+        private PendingCall unlink(long key, PendingCall expected) {
+            int index = indexFor(key, buckets.length);
+            PendingCall previous = null;
+            for (PendingCall call = buckets[index]; call != null; previous = call, call = call.next) {
+                if (call.key == key) {
+                    if (expected != null && call != expected) {
+                        return null;
+                    }
+                    if (previous == null) {
+                        buckets[index] = call.next;
+                    } else {
+                        previous.next = call.next;
+                    }
+                    call.next = null;
+                    return call;
+                }
+            }
+            return null;
+        }
+
+        private void resize() {
+            PendingCall[] resized = new PendingCall[buckets.length * 2];
+            for (PendingCall head : buckets) {
+                PendingCall call = head;
+                while (call != null) {
+                    PendingCall next = call.next;
+                    int index = indexFor(call.key, resized.length);
+                    call.next = resized[index];
+                    resized[index] = call;
+                    call = next;
+                }
+            }
+            buckets = resized;
+        }
+
+        private static int indexFor(long key, int length) {
+            // the low bits picked the stripe, use the ones above them for the bucket
+            return (hash(key) >>> STRIPE_BITS) & (length - 1);
+        }
+    }
+
+}
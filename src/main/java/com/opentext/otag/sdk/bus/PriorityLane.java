@@ -0,0 +1,46 @@
+package com.opentext.otag.sdk.bus;
+
+/**
+ * The lanes of a {@link PriorityLaneBlockingQueue}, in priority order. Each lane is given a share of the
+ * consumer in proportion to its weight whilst it has events waiting, see {@link PriorityLanes} for how
+ * events are assigned to a lane.
+ */
+public enum PriorityLane {
+
+    /**
+     * Events that keep the Gateway and services working together, e.g. the answers to auth decoration
+     * requests and lifecycle events.
+     */
+    CONTROL(8),
+
+    /**
+     * Requests somebody is waiting on, logins and user lookups, settings reads and the like.
+     */
+    INTERACTIVE(4),
+
+    /**
+     * Fan out work that can wait, mail and notifications.
+     */
+    BULK(1);
+
+    private final int defaultWeight;
+
+    PriorityLane(int defaultWeight) {
+        this.defaultWeight = defaultWeight;
+    }
+
+    public int getDefaultWeight() {
+        return defaultWeight;
+    }
+
+    /**
+     * Name of the environment variable holding the weight of this lane, e.g.
+     * AWG_SDK_EVENT_BUS_PRIORITY_BULK_WEIGHT_ENV.
+     *
+     * @return env var name
+     */
+    public String weightEnvVar() {
+        return "AWG_SDK_EVENT_BUS_PRIORITY_" + name() + "_WEIGHT_ENV";
+    }
+
+}
@@ -0,0 +1,381 @@
+package com.opentext.otag.sdk.bus;
+
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Gateway queue that keeps a FIFO lane per {@link PriorityLane}, so a burst of bulk work cannot hold up
+ * the interactive requests and control events queued behind it. Each lane is bounded by the queue's
+ * capacity on its own, a full bulk lane does not block senders in the other lanes.
+ * <p>
+ * The consumer is shared out between the lanes with events waiting by smooth weighted round robin, so
+ * with the default weights of 8, 4 and 1 a busy bulk lane still gets one event in thirteen. On top of
+ * that an event that has waited longer than the max wait, measured from when the {@link SdkQueueManager}
+ * enqueued it, jumps the lanes. Overdue events take at most every other turn, so low priority work cannot
+ * starve and an overloaded bulk lane still cannot turn the queue back into a single FIFO.
+ */
+public class PriorityLaneBlockingQueue extends AbstractQueue<SdkQueueEvent>
+        implements BlockingQueue<SdkQueueEvent>, PartitionedQueue {
+
+    // how long an event may wait before it jumps the lanes, unless configured otherwise
+    static final long DEFAULT_MAX_WAIT_MILLIS = 1000;
+
+    private static final PriorityLane[] LANES = PriorityLane.values();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition[] notFull = new Condition[LANES.length];
+
+    private final List<ArrayDeque<SdkQueueEvent>> lanes = new ArrayList<>(LANES.length);
+    private final int laneCapacity;
+    private final int[] weights = new int[LANES.length];
+    private final long maxWaitNanos;
+    private final PriorityLanes classifier;
+
+    /**
+     * Smooth weighted round robin state, a lane's credit is reset when it empties.
+     */
+    private final long[] credits = new long[LANES.length];
+    private boolean lastWasOverdue;
+    private int count;
+
+    public PriorityLaneBlockingQueue(int capacity) {
+        this(capacity, defaultWeights(), TimeUnit.MILLISECONDS.toNanos(DEFAULT_MAX_WAIT_MILLIS),
+                new PriorityLanes(new SystemEnvironment()));
+    }
+
+    /**
+     * @param capacity     capacity of each lane
+     * @param weights      weight of each lane, in {@link PriorityLane} order, each at least one
+     * @param maxWaitNanos how long an event may wait before it is served ahead of the higher lanes, zero
+     *                     to serve strictly by weight
+     * @param classifier   assigns events to lanes
+     */
+    PriorityLaneBlockingQueue(int capacity, int[] weights, long maxWaitNanos, PriorityLanes classifier) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Queue capacity must be positive, got " + capacity);
+        }
+        if (weights.length != LANES.length) {
+            throw new IllegalArgumentException("Expected a weight for each of " + LANES.length + " lanes");
+        }
+        this.laneCapacity = capacity;
+        this.maxWaitNanos = Math.max(0, maxWaitNanos);
+        this.classifier = classifier;
+        for (int i = 0; i < LANES.length; i++) {
+            this.weights[i] = Math.max(1, weights[i]);
+            notFull[i] = lock.newCondition();
+            lanes.add(new ArrayDeque<>());
+        }
+    }
+
+    static int[] defaultWeights() {
+        int[] weights = new int[LANES.length];
+        for (PriorityLane lane : LANES) {
+            weights[lane.ordinal()] = lane.getDefaultWeight();
+        }
+        return weights;
+    }
+
+    @Override
+    public boolean offer(SdkQueueEvent e) {
+        int lane = laneOf(e);
+        lock.lock();
+        try {
+            if (lanes.get(lane).size() >= laneCapacity) {
+                return false;
+            }
+            enqueue(lane, e);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void put(SdkQueueEvent e) throws InterruptedException {
+        int lane = laneOf(e);
+        lock.lockInterruptibly();
+        try {
+            while (lanes.get(lane).size() >= laneCapacity) {
+                notFull[lane].await();
+            }
+            enqueue(lane, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(SdkQueueEvent e, long timeout, TimeUnit unit) throws InterruptedException {
+        int lane = laneOf(e);
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (lanes.get(lane).size() >= laneCapacity) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = notFull[lane].awaitNanos(nanos);
+            }
+            enqueue(lane, e);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public SdkQueueEvent poll() {
+        lock.lock();
+        try {
+            return count == 0 ? null : dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public SdkQueueEvent take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (count == 0) {
+                notEmpty.await();
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public SdkQueueEvent poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (count == 0) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public SdkQueueEvent peek() {
+        lock.lock();
+        try {
+            return count == 0 ? null : lanes.get(nextLane(false)).peekFirst();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param lane lane
+     * @return the number of events waiting in the lane
+     */
+    public int size(PriorityLane lane) {
+        lock.lock();
+        try {
+            return lanes.get(lane.ordinal()).size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Each lane has room of its own, this is the room left across all of them.
+     */
+    @Override
+    public int remainingCapacity() {
+        lock.lock();
+        try {
+            return laneCapacity * LANES.length - count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int drainTo(Collection<? super SdkQueueEvent> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super SdkQueueEvent> c, int maxElements) {
+        if (c == null) {
+            throw new NullPointerException();
+        }
+        if (c == this) {
+            throw new IllegalArgumentException();
+        }
+        lock.lock();
+        try {
+            int drained = 0;
+            while (drained < maxElements && count > 0) {
+                c.add(dequeue());
+                drained++;
+            }
+            return drained;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return a snapshot of the queued events, lane by lane in priority order
+     */
+    @Override
+    public Iterator<SdkQueueEvent> iterator() {
+        lock.lock();
+        try {
+            List<SdkQueueEvent> snapshot = new ArrayList<>(count);
+            lanes.forEach(snapshot::addAll);
+            return Collections.unmodifiableList(snapshot).iterator();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param e event
+     * @return the oldest event in the lane the given event belongs in, null if that lane is empty
+     */
+    @Override
+    public SdkQueueEvent pollPartitionOf(SdkQueueEvent e) {
+        int lane = laneOf(e);
+        lock.lock();
+        try {
+            ArrayDeque<SdkQueueEvent> queue = lanes.get(lane);
+            SdkQueueEvent head = queue.pollFirst();
+            if (head != null) {
+                count--;
+                if (queue.isEmpty()) {
+                    credits[lane] = 0;
+                }
+                notFull[lane].signal();
+            }
+            return head;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public PriorityLanes getClassifier() {
+        return classifier;
+    }
+
+    private int laneOf(SdkQueueEvent e) {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+        return classifier.laneOf(e).ordinal();
+    }
+
+    private void enqueue(int lane, SdkQueueEvent e) {
+        lanes.get(lane).addLast(e);
+        count++;
+        notEmpty.signal();
+    }
+
+    private SdkQueueEvent dequeue() {
+        int lane = nextLane(true);
+        ArrayDeque<SdkQueueEvent> queue = lanes.get(lane);
+        SdkQueueEvent e = queue.pollFirst();
+        count--;
+        if (queue.isEmpty()) {
+            // an idle lane does not bank credit for later
+            credits[lane] = 0;
+        }
+        notFull[lane].signal();
+        return e;
+    }
+
+    /**
+     * Pick the lane to serve next, there must be at least one event queued.
+     *
+     * @param commit true to charge the lane for the event, false to just look
+     */
+    private int nextLane(boolean commit) {
+        int overdue = lastWasOverdue ? -1 : overdueLane();
+        if (commit) {
+            lastWasOverdue = overdue >= 0;
+        }
+        if (overdue >= 0) {
+            return overdue;
+        }
+
+        int best = -1;
+        long bestCredit = 0;
+        long totalWeight = 0;
+        for (int i = 0; i < LANES.length; i++) {
+            if (lanes.get(i).isEmpty()) {
+                continue;
+            }
+            totalWeight += weights[i];
+            long credit = credits[i] + weights[i];
+            if (best < 0 || credit > bestCredit) {
+                best = i;
+                bestCredit = credit;
+            }
+        }
+
+        if (commit) {
+            for (int i = 0; i < LANES.length; i++) {
+                if (!lanes.get(i).isEmpty()) {
+                    credits[i] += weights[i];
+                }
+            }
+            credits[best] -= totalWeight;
+        }
+        return best;
+    }
+
+    /**
+     * @return the lane whose head has waited longest, if that is longer than the max wait, otherwise -1
+     */
+    private int overdueLane() {
+        if (maxWaitNanos == 0) {
+            return -1;
+        }
+        long now = System.nanoTime();
+        int overdue = -1;
+        long longestWait = maxWaitNanos - 1;
+        for (int i = 0; i < LANES.length; i++) {
+            SdkQueueEvent head = lanes.get(i).peekFirst();
+            // events put on the queue without going through the manager are not stamped
+            if (head != null && head.getEnqueuedNanos() != 0) {
+                long waited = now - head.getEnqueuedNanos();
+                if (waited > longestWait) {
+                    overdue = i;
+                    longestWait = waited;
+                }
+            }
+        }
+        return overdue;
+    }
+
+}
@@ -0,0 +1,93 @@
+package com.opentext.otag.sdk.bus;
+
+import com.opentext.otag.sdk.util.StringUtil;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.opentext.otag.sdk.bus.SdkEventKeys.*;
+
+/**
+ * Assigns the events sent to the Gateway to a {@link PriorityLane}. Anything that is not a request, such
+ * as the answer to an auth decoration request, goes in the {@link PriorityLane#CONTROL} lane. Requests are
+ * assigned by endpoint, mail and notification sends are {@link PriorityLane#BULK}, important mail and
+ * everything else is {@link PriorityLane#INTERACTIVE}. The lane of any endpoint can be overridden through
+ * the environment, see {@link #laneEnvVar(String)}.
+ */
+public class PriorityLanes {
+
+    private static final String ENV_VAR_PREFIX = "AWG_SDK_EVENT_BUS_PRIORITY_LANE_";
+
+    private static final Map<String, PriorityLane> BUILT_IN_LANES = new HashMap<>();
+
+    static {
+        for (String endpoint : new String[]{SEND_MAIL, NOTIFICATIONS_SEND_WEB, NOTIFICATIONS_PUSH}) {
+            BUILT_IN_LANES.put(endpoint, PriorityLane.BULK);
+        }
+    }
+
+    private final SystemEnvironment systemEnvironment;
+
+    /**
+     * Resolved lanes, the environment is only read once per endpoint.
+     */
+    private final Map<String, PriorityLane> resolvedLanes = new ConcurrentHashMap<>();
+
+    PriorityLanes(SystemEnvironment systemEnvironment) {
+        this.systemEnvironment = systemEnvironment;
+    }
+
+    /**
+     * @param event event sent to the Gateway
+     * @return the lane the event should wait in
+     */
+    public PriorityLane laneOf(SdkQueueEvent event) {
+        if (!event.isRequest()) {
+            return PriorityLane.CONTROL;
+        }
+        String endpointId = event.getDestination();
+        if (endpointId.isEmpty()) {
+            return PriorityLane.INTERACTIVE;
+        }
+        PriorityLane lane = resolvedLanes.get(endpointId);
+        return lane != null ? lane : resolvedLanes.computeIfAbsent(endpointId, this::resolve);
+    }
+
+    /**
+     * Override the lane for an endpoint.
+     *
+     * @param endpointId endpoint id
+     * @param lane       lane requests to the endpoint should wait in
+     */
+    public void setLane(String endpointId, PriorityLane lane) {
+        resolvedLanes.put(endpointId, lane);
+    }
+
+    /**
+     * Name of the environment variable holding the lane, control, interactive or bulk, for an endpoint,
+     * e.g. "settings:getSettings" becomes AWG_SDK_EVENT_BUS_PRIORITY_LANE_SETTINGS_GETSETTINGS_ENV.
+     *
+     * @param endpointId endpoint id
+     * @return env var name
+     */
+    public static String laneEnvVar(String endpointId) {
+        return ENV_VAR_PREFIX + endpointId.replaceAll("[^A-Za-z0-9]", "_").toUpperCase() + "_ENV";
+    }
+
+    private PriorityLane resolve(String endpointId) {
+        PriorityLane builtIn = BUILT_IN_LANES.getOrDefault(endpointId, PriorityLane.INTERACTIVE);
+        String configured = systemEnvironment.getenv(laneEnvVar(endpointId));
+        if (StringUtil.isNullOrEmpty(configured)) {
+            return builtIn;
+        }
+        try {
+            return PriorityLane.valueOf(configured.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            SdkEventBusLog.error("Unknown priority lane " + configured + " for " + endpointId +
+                    ", using " + builtIn);
+            return builtIn;
+        }
+    }
+
+}
@@ -0,0 +1,191 @@
+package com.opentext.otag.sdk.bus;
+
+import com.opentext.otag.sdk.util.StringUtil;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The built in {@link QueueFactory} implementations, and resolution of the factory to use for a
+ * {@link SdkQueueFamily} from the environment. The family env var may hold one of the built in
+ * type names ("linked", "mpsc", "adaptive", "priority", "fair") or the fully qualified class name of a custom
+ * factory.
+ */
+public final class QueueFactories {
+
+    /**
+     * Lock based linked queues, allocates a node per event.
+     */
+    public static final String LINKED = "linked";
+
+    /**
+     * Lock free multi-producer single-consumer array ring buffer. Only select this for queues
+     * that have exactly one consuming thread.
+     */
+    public static final String MPSC = "mpsc";
+
+    /**
+     * Array queues that grow under sustained load and shrink again when idle, see
+     * {@link AdaptiveCapacityBlockingQueue}. The ceiling is read from the family's max capacity env var.
+     */
+    public static final String ADAPTIVE = "adaptive";
+
+    /**
+     * Gateway queues with a lane per {@link PriorityLane}, see {@link PriorityLaneBlockingQueue}. The lane
+     * weights are read from {@link PriorityLane#weightEnvVar()} and the max wait from
+     * {@link #PRIORITY_MAX_WAIT_ENV_VAR}.
+     */
+    public static final String PRIORITY = "priority";
+
+    // milliseconds a prioritised event may wait before it jumps the lanes, zero to never jump
+    public static final String PRIORITY_MAX_WAIT_ENV_VAR = "AWG_SDK_EVENT_BUS_PRIORITY_MAX_WAIT_MS_ENV";
+
+    /**
+     * Gateway queues with a sub-queue per tenant, see {@link FairShareBlockingQueue}. The default tenant
+     * quota and weight are read from {@link #FAIR_TENANT_QUOTA_ENV_VAR} and {@link #FAIR_TENANT_WEIGHT_ENV_VAR},
+     * shares for particular tenants from {@link #FAIR_SHARES_ENV_VAR}.
+     */
+    public static final String FAIR = "fair";
+
+    // the most events a tenant may have on a fair queue
+    public static final String FAIR_TENANT_QUOTA_ENV_VAR = "AWG_SDK_EVENT_BUS_FAIR_TENANT_QUOTA_ENV";
+
+    // events a tenant is served per round on a fair queue
+    public static final String FAIR_TENANT_WEIGHT_ENV_VAR = "AWG_SDK_EVENT_BUS_FAIR_TENANT_WEIGHT_ENV";
+
+    // comma separated tenant shares, service/context=quota (with the default weight) or service/context=quota:weight
+    public static final String FAIR_SHARES_ENV_VAR = "AWG_SDK_EVENT_BUS_FAIR_SHARES_ENV";
+
+    /**
+     * Adaptive queues may grow to this multiple of their configured capacity if no ceiling is set.
+     */
+    static final int DEFAULT_ADAPTIVE_GROWTH_FACTOR = 10;
+
+    private QueueFactories() {
+    }
+
+    public static QueueFactory linked() {
+        return LinkedBlockingQueue::new;
+    }
+
+    public static QueueFactory mpsc() {
+        return MpscArrayBlockingQueue::new;
+    }
+
+    /**
+     * Adaptive capacity queues.
+     *
+     * @param maxCapacity the most any queue may grow to, queues configured with a larger capacity use
+     *                    that instead, zero or less to allow {@link #DEFAULT_ADAPTIVE_GROWTH_FACTOR} times
+     *                    growth
+     * @return adaptive queue factory
+     */
+    public static QueueFactory adaptive(int maxCapacity) {
+        return capacity -> new AdaptiveCapacityBlockingQueue<>(capacity, (maxCapacity > 0) ?
+                Math.max(capacity, maxCapacity) :
+                (int) Math.min((long) capacity * DEFAULT_ADAPTIVE_GROWTH_FACTOR, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Priority lane queues.
+     *
+     * @param weights      weight of each lane, in {@link PriorityLane} order
+     * @param maxWaitNanos how long an event may wait before it jumps the lanes, zero to never jump
+     * @param lanes        assigns events to lanes
+     * @return priority lane queue factory
+     */
+    public static QueueFactory priority(int[] weights, long maxWaitNanos, PriorityLanes lanes) {
+        int[] laneWeights = weights.clone();
+        return capacity -> new PriorityLaneBlockingQueue(capacity, laneWeights, maxWaitNanos, lanes);
+    }
+
+    /**
+     * Fair share queues.
+     *
+     * @param tenantQuota  the most events a tenant may have waiting, zero or less for the queue default
+     * @param tenantWeight events a tenant is served per round
+     * @param shares       shares for particular tenants, in {@link #FAIR_SHARES_ENV_VAR} format, may be null
+     * @return fair share queue factory
+     */
+    public static QueueFactory fair(int tenantQuota, int tenantWeight, String shares) {
+        return capacity -> {
+            FairShareBlockingQueue queue = new FairShareBlockingQueue(capacity, tenantQuota, tenantWeight);
+            applyShares(queue, shares, Math.max(1, tenantWeight));
+            return queue;
+        };
+    }
+
+    /**
+     * Resolve the factory configured for a queue family, falling back to the family default when the
+     * configured value is missing or cannot be used.
+     *
+     * @param family            queue family
+     * @param systemEnvironment access to the environment
+     * @return queue factory to use
+     */
+    public static QueueFactory forFamily(SdkQueueFamily family, SystemEnvironment systemEnvironment) {
+        String type = systemEnvironment.getenv(family.queueTypeEnvVar());
+        if (StringUtil.isNullOrEmpty(type)) {
+            return family.getDefaultFactory();
+        }
+
+        type = type.trim();
+        if (LINKED.equalsIgnoreCase(type)) {
+            return linked();
+        }
+        if (MPSC.equalsIgnoreCase(type)) {
+            return mpsc();
+        }
+        if (ADAPTIVE.equalsIgnoreCase(type)) {
+            return adaptive(systemEnvironment.getenvInt(family.maxCapacityEnvVar(), 0));
+        }
+        if (PRIORITY.equalsIgnoreCase(type)) {
+            return priorityFromEnv(systemEnvironment);
+        }
+        if (FAIR.equalsIgnoreCase(type)) {
+            return fair(systemEnvironment.getenvInt(FAIR_TENANT_QUOTA_ENV_VAR, 0),
+                    systemEnvironment.getenvInt(FAIR_TENANT_WEIGHT_ENV_VAR, 1),
+                    systemEnvironment.getenv(FAIR_SHARES_ENV_VAR));
+        }
+
+        try {
+            Class<?> factoryClass = Class.forName(type, true, QueueFactories.class.getClassLoader());
+            return (QueueFactory) factoryClass.getDeclaredConstructor().newInstance();
+        } catch (Exception | LinkageError e) {
+            SdkEventBusLog.error("Failed to create queue factory " + type + " for the " + family +
+                    " queues, falling back to the default", e);
+            return family.getDefaultFactory();
+        }
+    }
+
+    private static QueueFactory priorityFromEnv(SystemEnvironment systemEnvironment) {
+        int[] weights = PriorityLaneBlockingQueue.defaultWeights();
+        for (PriorityLane lane : PriorityLane.values()) {
+            int weight = systemEnvironment.getenvInt(lane.weightEnvVar(), lane.getDefaultWeight());
+            weights[lane.ordinal()] = weight > 0 ? weight : lane.getDefaultWeight();
+        }
+        int maxWaitMillis = systemEnvironment.getenvInt(PRIORITY_MAX_WAIT_ENV_VAR,
+                (int) PriorityLaneBlockingQueue.DEFAULT_MAX_WAIT_MILLIS);
+        return priority(weights, TimeUnit.MILLISECONDS.toNanos(Math.max(0, maxWaitMillis)),
+                new PriorityLanes(systemEnvironment));
+    }
+
+    private static void applyShares(FairShareBlockingQueue queue, String shares, int defaultWeight) {
+        if (StringUtil.isNullOrEmpty(shares)) {
+            return;
+        }
+        for (String share : shares.split(",")) {
+            try {
+                String[] tenantAndShare = share.trim().split("=");
+                String[] tenant = tenantAndShare[0].trim().split("/");
+                String[] quotaAndWeight = tenantAndShare[1].trim().split(":");
+                int weight = quotaAndWeight.length > 1 ?
+                        Integer.parseInt(quotaAndWeight[1].trim()) : defaultWeight;
+                queue.setShare(tenant[0], tenant[1], Integer.parseInt(quotaAndWeight[0].trim()), weight);
+            } catch (RuntimeException e) {
+                SdkEventBusLog.error("Ignoring invalid tenant share " + share + " in " + FAIR_SHARES_ENV_VAR);
+            }
+        }
+    }
+
+}
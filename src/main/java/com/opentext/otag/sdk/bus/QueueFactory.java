@@ -0,0 +1,21 @@
+package com.opentext.otag.sdk.bus;
+
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Creates the queues the {@link SdkQueueManager} hands out. Implementations must be thread safe and
+ * custom implementations need a public no-arg constructor so they can be named in the environment,
+ * see {@link QueueFactories}.
+ */
+@FunctionalInterface
+public interface QueueFactory {
+
+    /**
+     * Create a new bounded queue.
+     *
+     * @param capacity maximum number of events the queue should hold
+     * @return new empty queue
+     */
+    BlockingQueue<SdkQueueEvent> newQueue(int capacity);
+
+}
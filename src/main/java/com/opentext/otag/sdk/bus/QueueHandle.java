@@ -0,0 +1,108 @@
+package com.opentext.otag.sdk.bus;
+
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Pre-resolved access to a single service's queues, obtained via
+ * {@link SdkQueueManager#queueHandle(String, String)}. The handle holds the one shared
+ * {@link SdkQueueEventId} for the service (and its precomputed hash), so sending through it costs a
+ * single map read and allocates nothing beyond the event itself.
+ * <p>
+ * Handles stay valid if their service is retired, the next send simply re-creates its queue as the
+ * static {@link SdkQueueManager} send methods do.
+ */
+public final class QueueHandle {
+
+    private final SdkQueueEventId queueId;
+
+    QueueHandle(SdkQueueEventId queueId) {
+        this.queueId = queueId;
+    }
+
+    /**
+     * Send an SdkQueueEvent to this service's response queue.
+     *
+     * @param toSend event to send on queue
+     */
+    public void sendEventToService(SdkQueueEvent toSend) {
+        offerEventToService(toSend);
+    }
+
+    /**
+     * As {@link #sendEventToService(SdkQueueEvent)}, reporting whether the event could be enqueued.
+     *
+     * @param toSend event to send on queue
+     * @return the outcome of the send
+     */
+    public SendResult offerEventToService(SdkQueueEvent toSend) {
+        SdkQueueManager manager = SdkQueueManager.instance;
+        return manager.offer(SdkQueueFamily.SERVICE, manager.ensureServiceQueue(queueId, true), toSend);
+    }
+
+    /**
+     * Send an SdkQueueEvent to this service's agent queue.
+     *
+     * @param toSend event to send on queue
+     */
+    public void sendEventToAgent(SdkQueueEvent toSend) {
+        offerEventToAgent(toSend);
+    }
+
+    /**
+     * As {@link #sendEventToAgent(SdkQueueEvent)}, reporting whether the event could be enqueued.
+     *
+     * @param toSend event to send on queue
+     * @return the outcome of the send
+     */
+    public SendResult offerEventToAgent(SdkQueueEvent toSend) {
+        SdkQueueManager manager = SdkQueueManager.instance;
+        return manager.offer(SdkQueueFamily.AGENT, manager.ensureServiceAgentQueue(queueId, true), toSend);
+    }
+
+    /**
+     * Send a command to this service.
+     *
+     * @param toSend event to send on queue
+     */
+    public void sendCommandToService(SdkQueueEvent toSend) {
+        offerCommandToService(toSend);
+    }
+
+    /**
+     * As {@link #sendCommandToService(SdkQueueEvent)}, reporting whether the event could be enqueued.
+     *
+     * @param toSend event to send on queue
+     * @return the outcome of the send
+     */
+    public SendResult offerCommandToService(SdkQueueEvent toSend) {
+        return SdkQueueManager.offerCommand(queueId.getServiceName(), queueId.getPersistenceContext(),
+                SdkQueueManager.instance.ensureServiceCommandQueue(queueId, true), toSend);
+    }
+
+    public BlockingQueue<SdkQueueEvent> serviceQueue() {
+        return SdkQueueManager.instance.ensureServiceQueue(queueId, false);
+    }
+
+    public BlockingQueue<SdkQueueEvent> agentQueue() {
+        return SdkQueueManager.instance.ensureServiceAgentQueue(queueId, false);
+    }
+
+    public BlockingQueue<SdkQueueEvent> commandQueue() {
+        return SdkQueueManager.instance.ensureServiceCommandQueue(queueId, false);
+    }
+
+    public String getServiceName() {
+        return queueId.getServiceName();
+    }
+
+    public String getPersistenceContext() {
+        return queueId.getPersistenceContext();
+    }
+
+    @Override
+    public String toString() {
+        return "QueueHandle{" +
+                "queueId=" + queueId +
+                '}';
+    }
+}
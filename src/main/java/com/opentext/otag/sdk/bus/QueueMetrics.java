@@ -0,0 +1,160 @@
+package com.opentext.otag.sdk.bus;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Live metrics for a queue family, or a single service queue within one. Recording is lock free, counters
+ * are {@link LongAdder}s so concurrent senders do not contend on them. Use {@link #getSnapshot()} to read
+ * a consistent set of values.
+ */
+public final class QueueMetrics implements QueueMetricsMXBean {
+
+    private static final SendResult[] RESULTS = SendResult.values();
+
+    private final SdkQueueFamily family;
+    private final SdkQueueEventId queueId;
+    private final LongSupplier depth;
+    private final LongSupplier remainingCapacity;
+
+    private final LongAdder[] results = new LongAdder[RESULTS.length];
+    private final LongAdder overflowed = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder blockedNanos = new LongAdder();
+    private final LatencyHistogram enqueueLatency = new LatencyHistogram();
+    private final LatencyHistogram blockedTime = new LatencyHistogram();
+
+    QueueMetrics(SdkQueueFamily family, SdkQueueEventId queueId, LongSupplier depth, LongSupplier remainingCapacity) {
+        this.family = family;
+        this.queueId = queueId;
+        this.depth = depth;
+        this.remainingCapacity = remainingCapacity;
+        for (int i = 0; i < results.length; i++) {
+            results[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * @param result       outcome of the send
+     * @param elapsedNanos how long the send took
+     * @param overflowed   true if the queue was full and the overflow policy was involved
+     */
+    void record(SendResult result, long elapsedNanos, boolean overflowed) {
+        results[result.ordinal()].increment();
+        enqueueLatency.record(elapsedNanos);
+        if (overflowed) {
+            this.overflowed.increment();
+            blockedNanos.add(elapsedNanos);
+            blockedTime.record(elapsedNanos);
+        }
+    }
+
+    /**
+     * An event already on the queue was evicted by the overflow policy to make space for another.
+     */
+    void recordDropped() {
+        dropped.increment();
+    }
+
+    long count(SendResult result) {
+        return results[result.ordinal()].sum();
+    }
+
+    LatencyHistogram.Snapshot enqueueLatency() {
+        return enqueueLatency.snapshot();
+    }
+
+    LatencyHistogram.Snapshot blockedTime() {
+        return blockedTime.snapshot();
+    }
+
+    SdkQueueFamily family() {
+        return family;
+    }
+
+    SdkQueueEventId queueId() {
+        return queueId;
+    }
+
+    @Override
+    public String getFamily() {
+        return family.name();
+    }
+
+    @Override
+    public String getServiceName() {
+        return queueId != null ? queueId.getServiceName() : null;
+    }
+
+    @Override
+    public String getPersistenceContext() {
+        return queueId != null ? queueId.getPersistenceContext() : null;
+    }
+
+    @Override
+    public long getDepth() {
+        return depth.getAsLong();
+    }
+
+    @Override
+    public long getRemainingCapacity() {
+        return remainingCapacity.getAsLong();
+    }
+
+    @Override
+    public long getEnqueued() {
+        return count(SendResult.ENQUEUED);
+    }
+
+    @Override
+    public long getRejected() {
+        long rejected = 0;
+        for (SendResult result : RESULTS) {
+            if (!result.isAccepted()) {
+                rejected += count(result);
+            }
+        }
+        return rejected;
+    }
+
+    @Override
+    public long getOverflowed() {
+        return overflowed.sum();
+    }
+
+    @Override
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    @Override
+    public long getBlockedNanos() {
+        return blockedNanos.sum();
+    }
+
+    @Override
+    public long getEnqueueLatencyP50Nanos() {
+        return enqueueLatency.snapshot().percentile(50);
+    }
+
+    @Override
+    public long getEnqueueLatencyP99Nanos() {
+        return enqueueLatency.snapshot().percentile(99);
+    }
+
+    @Override
+    public long getEnqueueLatencyP999Nanos() {
+        return enqueueLatency.snapshot().percentile(99.9);
+    }
+
+    @Override
+    public long getEnqueueLatencyMaxNanos() {
+        return enqueueLatency.max();
+    }
+
+    @Override
+    public QueueMetricsSnapshot getSnapshot() {
+        return new QueueMetricsSnapshot(this);
+    }
+
+}
@@ -0,0 +1,48 @@
+package com.opentext.otag.sdk.bus;
+
+/**
+ * JMX view of a queue family or a single service queue, registered under the
+ * {@value SdkQueueMetrics#JMX_DOMAIN} domain. All durations are in nanoseconds.
+ */
+public interface QueueMetricsMXBean {
+
+    String getFamily();
+
+    /**
+     * @return the service the queue belongs to, null for a family's totals
+     */
+    String getServiceName();
+
+    String getPersistenceContext();
+
+    long getDepth();
+
+    long getRemainingCapacity();
+
+    long getEnqueued();
+
+    long getRejected();
+
+    /**
+     * @return the number of sends that found the queue full and were handed to the overflow policy
+     */
+    long getOverflowed();
+
+    /**
+     * @return the number of queued events the overflow policy evicted to make space for newer ones
+     */
+    long getDropped();
+
+    long getBlockedNanos();
+
+    long getEnqueueLatencyP50Nanos();
+
+    long getEnqueueLatencyP99Nanos();
+
+    long getEnqueueLatencyP999Nanos();
+
+    long getEnqueueLatencyMaxNanos();
+
+    QueueMetricsSnapshot getSnapshot();
+
+}
@@ -0,0 +1,171 @@
+package com.opentext.otag.sdk.bus;
+
+/**
+ * Point in time copy of a {@link QueueMetrics}. Durations are in nanoseconds, counts are totals since the
+ * queue was created.
+ */
+public final class QueueMetricsSnapshot {
+
+    private final String family;
+    private final String serviceName;
+    private final String persistenceContext;
+    private final long depth;
+    private final long remainingCapacity;
+    private final long enqueued;
+    private final long rejectedFull;
+    private final long shutdown;
+    private final long interrupted;
+    private final long handledByCaller;
+    private final long overflowed;
+    private final long dropped;
+    private final long blockedNanos;
+    private final long enqueueLatencyMeanNanos;
+    private final long enqueueLatencyP50Nanos;
+    private final long enqueueLatencyP99Nanos;
+    private final long enqueueLatencyP999Nanos;
+    private final long enqueueLatencyMaxNanos;
+    private final long blockedP99Nanos;
+    private final long blockedMaxNanos;
+
+    QueueMetricsSnapshot(QueueMetrics metrics) {
+        this.family = metrics.getFamily();
+        this.serviceName = metrics.getServiceName();
+        this.persistenceContext = metrics.getPersistenceContext();
+        this.depth = metrics.getDepth();
+        this.remainingCapacity = metrics.getRemainingCapacity();
+        this.enqueued = metrics.count(SendResult.ENQUEUED);
+        this.rejectedFull = metrics.count(SendResult.REJECTED_FULL);
+        this.shutdown = metrics.count(SendResult.SHUTDOWN);
+        this.interrupted = metrics.count(SendResult.INTERRUPTED);
+        this.handledByCaller = metrics.count(SendResult.HANDLED_BY_CALLER);
+        this.overflowed = metrics.getOverflowed();
+        this.dropped = metrics.getDropped();
+        this.blockedNanos = metrics.getBlockedNanos();
+
+        LatencyHistogram.Snapshot latency = metrics.enqueueLatency();
+        this.enqueueLatencyMeanNanos = latency.mean();
+        this.enqueueLatencyP50Nanos = latency.percentile(50);
+        this.enqueueLatencyP99Nanos = latency.percentile(99);
+        this.enqueueLatencyP999Nanos = latency.percentile(99.9);
+        this.enqueueLatencyMaxNanos = latency.max();
+
+        LatencyHistogram.Snapshot blocked = metrics.blockedTime();
+        this.blockedP99Nanos = blocked.percentile(99);
+        this.blockedMaxNanos = blocked.max();
+    }
+
+    public String getFamily() {
+        return family;
+    }
+
+    /**
+     * @return the service the queue belongs to, null for a family's totals
+     */
+    public String getServiceName() {
+        return serviceName;
+    }
+
+    public String getPersistenceContext() {
+        return persistenceContext;
+    }
+
+    public long getDepth() {
+        return depth;
+    }
+
+    public long getRemainingCapacity() {
+        return remainingCapacity;
+    }
+
+    public long getEnqueued() {
+        return enqueued;
+    }
+
+    public long getRejectedFull() {
+        return rejectedFull;
+    }
+
+    public long getShutdown() {
+        return shutdown;
+    }
+
+    public long getInterrupted() {
+        return interrupted;
+    }
+
+    public long getHandledByCaller() {
+        return handledByCaller;
+    }
+
+    /**
+     * @return the number of sends that found the queue full and were handed to the overflow policy
+     */
+    public long getOverflowed() {
+        return overflowed;
+    }
+
+    /**
+     * @return the number of queued events the overflow policy evicted to make space for newer ones
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * @return total time senders spent in the overflow policy, waiting for space
+     */
+    public long getBlockedNanos() {
+        return blockedNanos;
+    }
+
+    public long getEnqueueLatencyMeanNanos() {
+        return enqueueLatencyMeanNanos;
+    }
+
+    public long getEnqueueLatencyP50Nanos() {
+        return enqueueLatencyP50Nanos;
+    }
+
+    public long getEnqueueLatencyP99Nanos() {
+        return enqueueLatencyP99Nanos;
+    }
+
+    public long getEnqueueLatencyP999Nanos() {
+        return enqueueLatencyP999Nanos;
+    }
+
+    public long getEnqueueLatencyMaxNanos() {
+        return enqueueLatencyMaxNanos;
+    }
+
+    public long getBlockedP99Nanos() {
+        return blockedP99Nanos;
+    }
+
+    public long getBlockedMaxNanos() {
+        return blockedMaxNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "QueueMetricsSnapshot{" +
+                "family='" + family + '\'' +
+                ", serviceName='" + serviceName + '\'' +
+                ", persistenceContext='" + persistenceContext + '\'' +
+                ", depth=" + depth +
+                ", remainingCapacity=" + remainingCapacity +
+                ", enqueued=" + enqueued +
+                ", rejectedFull=" + rejectedFull +
+                ", shutdown=" + shutdown +
+                ", interrupted=" + interrupted +
+                ", handledByCaller=" + handledByCaller +
+                ", overflowed=" + overflowed +
+                ", dropped=" + dropped +
+                ", blockedNanos=" + blockedNanos +
+                ", enqueueLatencyP50Nanos=" + enqueueLatencyP50Nanos +
+                ", enqueueLatencyP99Nanos=" + enqueueLatencyP99Nanos +
+                ", enqueueLatencyMaxNanos=" + enqueueLatencyMaxNanos +
+                '}';
+    }
+
+}
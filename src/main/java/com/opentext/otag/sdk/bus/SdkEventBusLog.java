@@ -1,18 +1,32 @@
 package com.opentext.otag.sdk.bus;
 
-import static java.time.ZonedDateTime.now;
-import static java.time.format.DateTimeFormatter.RFC_1123_DATE_TIME;
+import java.util.function.Supplier;
 
 /**
- * stdout out based logger for the SDK event bus.
+ * Logger for the SDK event bus.
+ * <p>
+ * Log lines go to SLF4J when it is bound to a logging backend, otherwise to stdout/stderr. The sink can
+ * be chosen explicitly via {@link #SDK_EVENT_LOGGING_SINK_ENV_VAR}, "async" hands lines to a background
+ * writer thread so logging does not serialise the bus threads on the console streams.
+ * <p>
+ * The bus logs on its hot paths, so nothing is formatted unless logging is enabled. Callers should
+ * prefer the parameterised ("{}" placeholder) or {@link Supplier} variants over concatenating their
+ * own messages, or guard expensive messages with {@link #isInfoEnabled()}.
  */
 public class SdkEventBusLog {
 
     // a String set top "true" enables file logging
     public static final String SDK_EVENT_LOGGING_ENV_VAR = "AWG_SDK_EVENT_BUS_LOGGING_ENABLED_ENV";
 
-    private static final String LOG_LINE = "%s [%s-state=%s] - INFO - %s";
-    private static final String ERR_LOG_LINE = "%s [%s-state=%s]- ERROR - %s %s";
+    // where log lines are written, one of slf4j, async or console, defaults to slf4j when it is available
+    public static final String SDK_EVENT_LOGGING_SINK_ENV_VAR = "AWG_SDK_EVENT_BUS_LOGGING_SINK_ENV";
+
+    // number of log lines the async sink will buffer before dropping them
+    public static final String SDK_EVENT_LOGGING_BUFFER_SIZE_ENV_VAR = "AWG_SDK_EVENT_BUS_LOGGING_BUFFER_SIZE_ENV";
+
+    static final String SLF4J_SINK = "slf4j";
+    static final String ASYNC_SINK = "async";
+    static final String CONSOLE_SINK = "console";
 
     // access to the underlying environment
     private SystemEnvironment systemEnvironment;
@@ -22,6 +36,11 @@ public class SdkEventBusLog {
      */
     private boolean writeToLog;
 
+    /**
+     * Where our log lines go.
+     */
+    private SdkEventBusLogSink sink = new ConsoleLogSink();
+
     private static SdkEventBusLog instance;
 
     SdkEventBusLog(SystemEnvironment systemEnvironment) {
@@ -40,30 +59,121 @@ public class SdkEventBusLog {
                     e.getMessage() + " " + e.toString());
         }
 
-        System.out.println("AppWorks SDK Event Bus Logging active=" + writeToLog);
+        if (writeToLog) {
+            sink = resolveSink();
+        }
+
+        System.out.println("AppWorks SDK Event Bus Logging active=" + writeToLog +
+                ", sink=" + sink.getClass().getSimpleName());
+    }
+
+    private SdkEventBusLogSink resolveSink() {
+        String sinkName = null;
+        try {
+            sinkName = systemEnvironment.getenv(SDK_EVENT_LOGGING_SINK_ENV_VAR);
+        } catch (Exception e) {
+            System.err.println("Failed to process SDK Event Bus Logging sink env var - " + e.getMessage());
+        }
+        sinkName = sinkName == null ? "" : sinkName.replace("\"", "").trim().toLowerCase();
+
+        switch (sinkName) {
+            case CONSOLE_SINK:
+                return new ConsoleLogSink();
+            case ASYNC_SINK:
+                int bufferSize = systemEnvironment.getenvInt(
+                        SDK_EVENT_LOGGING_BUFFER_SIZE_ENV_VAR, AsyncLogSink.DEFAULT_BUFFER_SIZE);
+                return new AsyncLogSink(bufferSize > 0 ? bufferSize : AsyncLogSink.DEFAULT_BUFFER_SIZE);
+            case SLF4J_SINK:
+                if (Slf4jLogSink.isAvailable()) {
+                    return new Slf4jLogSink();
+                }
+                System.err.println("SLF4J logging was requested for the SDK Event Bus but no SLF4J " +
+                        "binding is available, logging to the console");
+                return new ConsoleLogSink();
+            default:
+                return Slf4jLogSink.isAvailable() ? new Slf4jLogSink() : new ConsoleLogSink();
+        }
+    }
+
+    /**
+     * @return true if log lines will actually be written
+     */
+    public static boolean isInfoEnabled() {
+        return canWriteToLog() && instance.sink.isInfoEnabled();
     }
 
     public static void info(String message) {
-        String msg = String.format(LOG_LINE, nowStamp(), threadName(), threadState(), message);
-        if (canWriteToLog()) {
-            System.out.println(msg);
+        if (isInfoEnabled()) {
+            instance.sink.info(message);
+        }
+    }
+
+    /**
+     * Log a message that is only built if logging is enabled.
+     *
+     * @param message message supplier
+     */
+    public static void info(Supplier<String> message) {
+        if (isInfoEnabled()) {
+            instance.sink.info(message.get());
+        }
+    }
+
+    /**
+     * Log a message, substituting each "{}" in the pattern with the next argument, only if logging is enabled.
+     *
+     * @param pattern message pattern
+     * @param arg     argument
+     */
+    public static void info(String pattern, Object arg) {
+        if (isInfoEnabled()) {
+            instance.sink.info(substitute(pattern, arg));
+        }
+    }
+
+    public static void info(String pattern, Object arg1, Object arg2) {
+        if (isInfoEnabled()) {
+            instance.sink.info(substitute(pattern, arg1, arg2));
+        }
+    }
+
+    public static void info(String pattern, Object arg1, Object arg2, Object arg3) {
+        if (isInfoEnabled()) {
+            instance.sink.info(substitute(pattern, arg1, arg2, arg3));
         }
     }
 
     public static void error(String message) {
-        String msg = String.format(ERR_LOG_LINE, nowStamp(), threadName(), threadState(), message, "");
         if (canWriteToLog()) {
-            System.err.println(msg);
+            instance.sink.error(message, null);
         }
     }
 
     public static void error(String errString, Throwable error) {
-        String err = String.format(ERR_LOG_LINE, nowStamp(), threadName(), threadState(),
-                error.getClass().getSimpleName(), errString);
         if (canWriteToLog()) {
-            System.err.println(err);
-            error.printStackTrace();
+            instance.sink.error(errString, error);
+        }
+    }
+
+    /**
+     * Replace the "{}" placeholders in a pattern with the given arguments in order.
+     *
+     * @param pattern message pattern
+     * @param args    arguments
+     * @return the formatted message
+     */
+    static String substitute(String pattern, Object... args) {
+        StringBuilder builder = new StringBuilder(pattern.length() + 16 * args.length);
+        int from = 0;
+        for (Object arg : args) {
+            int placeholder = pattern.indexOf("{}", from);
+            if (placeholder < 0) {
+                break;
+            }
+            builder.append(pattern, from, placeholder).append(arg);
+            from = placeholder + 2;
         }
+        return builder.append(pattern, from, pattern.length()).toString();
     }
 
     private static boolean canWriteToLog() {
@@ -83,18 +193,6 @@ public class SdkEventBusLog {
         return instance;
     }
 
-    private static String nowStamp() {
-        return RFC_1123_DATE_TIME.format(now());
-    }
-
-    private static String threadName() {
-        return Thread.currentThread().getName();
-    }
-
-    private static String threadState() {
-        return Thread.currentThread().getState().name();
-    }
-
     public SystemEnvironment getSystemEnvironment() {
         return systemEnvironment;
     }
@@ -110,4 +208,12 @@ public class SdkEventBusLog {
     public void setWriteToLog(boolean writeToLog) {
         this.writeToLog = writeToLog;
     }
+
+    SdkEventBusLogSink getSink() {
+        return sink;
+    }
+
+    void setSink(SdkEventBusLogSink sink) {
+        this.sink = sink;
+    }
 }
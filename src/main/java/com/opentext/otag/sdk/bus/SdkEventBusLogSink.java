@@ -0,0 +1,22 @@
+package com.opentext.otag.sdk.bus;
+
+/**
+ * Destination for the {@link SdkEventBusLog} lines. Messages arrive fully built, sinks decide how
+ * (and on which thread) they are written.
+ */
+interface SdkEventBusLogSink {
+
+    /**
+     * @return false if this sink would discard info lines anyway, so callers can skip building them
+     */
+    boolean isInfoEnabled();
+
+    void info(String message);
+
+    /**
+     * @param message error message
+     * @param error   the cause, may be null
+     */
+    void error(String message, Throwable error);
+
+}
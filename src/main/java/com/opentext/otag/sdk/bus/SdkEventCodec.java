@@ -0,0 +1,859 @@
+package com.opentext.otag.sdk.bus;
+
+import com.opentext.otag.sdk.types.v3.OtagServiceEvent;
+import com.opentext.otag.sdk.types.v3.SDKType;
+import com.opentext.otag.sdk.types.v3.api.SDKCallInfo;
+import com.opentext.otag.sdk.types.v3.api.SDKResponse;
+import com.opentext.otag.sdk.types.v3.auth.AuthorizedUser;
+import com.opentext.otag.sdk.types.v3.auth.OtdsUserProfile;
+import com.opentext.otag.sdk.types.v3.auth.UserGroupIdList;
+import com.opentext.otag.sdk.types.v3.auth.UserProfile;
+import com.opentext.otag.sdk.types.v3.client.ClientRepresentation;
+import com.opentext.otag.sdk.types.v3.message.*;
+import com.opentext.otag.sdk.types.v3.notification.ClientPushNotificationRequest;
+import com.opentext.otag.sdk.types.v3.notification.NotificationRequest;
+import com.opentext.otag.sdk.types.v3.notification.NotificationSeqBounds;
+import com.opentext.otag.sdk.types.v3.sdk.EIMConnector;
+import com.opentext.otag.sdk.types.v3.settings.Setting;
+import com.opentext.otag.sdk.types.v3.settings.SettingType;
+import com.opentext.otag.sdk.types.v3.settings.Settings;
+import com.opentext.otag.sdk.types.v4.SdkRequest;
+import com.opentext.otag.sdk.util.ForwardHeaders;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Compact binary encoding of {@link SdkQueueEvent}s and the SDK types they carry, for copying events and passing
+ * them between class loaders or processes without the cost of Java serialization. Unlike Java serialization it
+ * also covers {@link SdkRequest} and {@link SDKResponse}.
+ * <p>
+ * The layout of each SDK type is worked out once, from its fields, and objects are written as their class name
+ * then their field values in that order, with no per-field metadata. Integers are varints, and every string
+ * (including class and enum names) is written once per message and referred to by index after that. Class
+ * names, enum constants and the {@link SdkEventKeys} endpoint ids are known to both ends up front, so they only
+ * cost a byte or two from the start.
+ * <p>
+ * Only types from the SDK packages are decoded field by field, nothing is ever Java deserialized. Exceptions (e.g.
+ * {@link SDKCallInfo#getException()}) are carried as their class name and message only, and are recreated as that
+ * class if it is a JDK or SDK type with a message constructor, as a {@link RuntimeException} naming it otherwise.
+ * Anything else cannot be encoded. The format has no schema evolution, both ends must run the same version of the
+ * bus.
+ */
+public final class SdkEventCodec {
+
+    static final int FORMAT_VERSION = 1;
+
+    /**
+     * Guards against cyclic object graphs, which SDK types never form.
+     */
+    private static final int MAX_DEPTH = 64;
+
+    // value tags
+    private static final int NULL = 0;
+    private static final int STRING = 1;
+    private static final int TRUE = 2;
+    private static final int FALSE = 3;
+    private static final int INT = 4;
+    private static final int LONG = 5;
+    private static final int DOUBLE = 6;
+    private static final int FLOAT = 7;
+    private static final int SHORT = 8;
+    private static final int BYTE = 9;
+    private static final int CHAR = 10;
+    private static final int DATE = 11;
+    private static final int ENUM = 12;
+    private static final int LIST = 13;
+    private static final int SET = 14;
+    private static final int MAP = 15;
+    private static final int OBJECT = 16;
+    private static final int BYTES = 17;
+    // 18 was Java serialized values, no longer accepted
+    private static final int THROWABLE = 19;
+
+    private static final String[] SDK_PACKAGES = {"com.opentext.otag.sdk.types.", "com.opentext.otag.sdk.util."};
+
+    private static final Set<String> BUS_TYPES = new HashSet<>(Arrays.asList(SdkQueueEvent.class.getName(),
+            SdkQueueEvent.Type.class.getName(), SdkQueueEvent.ClientType.class.getName()));
+
+    /**
+     * SDK types without a no-argument constructor.
+     */
+    private static final Map<Class<?>, Supplier<Object>> INSTANTIATORS = new HashMap<>();
+
+    static {
+        INSTANTIATORS.put(SdkQueueEvent.class, () -> new SdkQueueEvent(null, null, null));
+        INSTANTIATORS.put(SdkRequest.class, () -> new SdkRequest<>(null));
+        INSTANTIATORS.put(SDKResponse.class, () -> new SDKResponse<>(false));
+        INSTANTIATORS.put(Settings.class, () -> new Settings(null));
+    }
+
+    /**
+     * Strings every message may refer to without writing them first.
+     */
+    private static final String[] KNOWN_STRINGS = knownStrings();
+    private static final Map<String, Integer> KNOWN_STRING_INDEXES = new HashMap<>();
+
+    static {
+        for (int i = 0; i < KNOWN_STRINGS.length; i++) {
+            KNOWN_STRING_INDEXES.put(KNOWN_STRINGS[i], i);
+        }
+    }
+
+    private static final ClassValue<Schema> SCHEMAS = new ClassValue<Schema>() {
+        @Override
+        protected Schema computeValue(Class<?> type) {
+            return Schema.of(type);
+        }
+    };
+
+    private static final Map<String, Schema> SCHEMAS_BY_NAME = new ConcurrentHashMap<>();
+    private static final Map<String, Class<?>> ENUMS_BY_NAME = new ConcurrentHashMap<>();
+
+    private SdkEventCodec() {
+    }
+
+    /**
+     * @param value an event, or any SDK type
+     * @return the encoded value
+     * @throws IllegalArgumentException if the value, or something it holds, cannot be encoded
+     */
+    public static byte[] encode(Object value) {
+        Output out = new Output();
+        out.writeByte(FORMAT_VERSION);
+        writeValue(out, value, 0);
+        return out.toByteArray();
+    }
+
+    /**
+     * @param bytes an encoded value, see {@link #encode(Object)}
+     * @return the decoded value
+     * @throws IllegalArgumentException if the bytes are not a value encoded by this version of the codec
+     */
+    public static Object decode(byte[] bytes) {
+        Input in = new Input(bytes);
+        int version = in.readByte();
+        if (version != FORMAT_VERSION) {
+            throw new IllegalArgumentException("Unsupported SDK event encoding version " + version);
+        }
+        Object value = readValue(in, 0);
+        if (in.pos != bytes.length) {
+            throw new IllegalArgumentException("Unexpected bytes after the encoded value at " + in.pos);
+        }
+        return value;
+    }
+
+    /**
+     * @param bytes an encoded value, see {@link #encode(Object)}
+     * @param type  expected type
+     * @param <T>   expected type
+     * @return the decoded value
+     * @throws IllegalArgumentException if the bytes are not an encoded value of the expected type
+     */
+    public static <T> T decode(byte[] bytes, Class<T> type) {
+        Object value = decode(bytes);
+        if (value != null && !type.isInstance(value)) {
+            throw new IllegalArgumentException("Expected an encoded " + type.getName() + " but got " +
+                    value.getClass().getName());
+        }
+        return type.cast(value);
+    }
+
+    /**
+     * @param value an event, or any SDK type
+     * @param <T>   value type
+     * @return a deep copy of the value
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T copy(T value) {
+        return (T) decode(encode(value));
+    }
+
+    private static void writeValue(Output out, Object value, int depth) {
+        if (depth > MAX_DEPTH) {
+            throw new IllegalArgumentException("Cannot encode values nested more than " + MAX_DEPTH + " deep");
+        }
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof String) {
+            out.writeByte(STRING);
+            out.writeString((String) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte((Boolean) value ? TRUE : FALSE);
+        } else if (value instanceof Integer) {
+            out.writeByte(INT);
+            out.writeSignedInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeSignedLong((Long) value);
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeFixedLong(Double.doubleToRawLongBits((Double) value));
+        } else if (value instanceof Float) {
+            out.writeByte(FLOAT);
+            out.writeFixedInt(Float.floatToRawIntBits((Float) value));
+        } else if (value instanceof Short) {
+            out.writeByte(SHORT);
+            out.writeSignedInt((Short) value);
+        } else if (value instanceof Byte) {
+            out.writeByte(BYTE);
+            out.writeByte((Byte) value);
+        } else if (value instanceof Character) {
+            out.writeByte(CHAR);
+            out.writeVarInt((Character) value);
+        } else if (value.getClass() == Date.class) {
+            out.writeByte(DATE);
+            out.writeSignedLong(((Date) value).getTime());
+        } else if (value instanceof Enum && isSdkType(((Enum<?>) value).getDeclaringClass().getName())) {
+            out.writeByte(ENUM);
+            out.writeString(((Enum<?>) value).getDeclaringClass().getName());
+            out.writeString(((Enum<?>) value).name());
+        } else if (value instanceof byte[]) {
+            byte[] bytes = (byte[]) value;
+            out.writeByte(BYTES);
+            out.writeVarInt(bytes.length);
+            out.writeBytes(bytes, bytes.length);
+        } else if (value instanceof List || value instanceof Set) {
+            Collection<?> collection = (Collection<?>) value;
+            out.writeByte(value instanceof List ? LIST : SET);
+            out.writeVarInt(collection.size());
+            for (Object element : collection) {
+                writeValue(out, element, depth + 1);
+            }
+        } else if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            out.writeByte(MAP);
+            out.writeVarInt(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                writeValue(out, entry.getKey(), depth + 1);
+                writeValue(out, entry.getValue(), depth + 1);
+            }
+        } else {
+            Schema schema = SCHEMAS.get(value.getClass());
+            if (schema != null) {
+                out.writeByte(OBJECT);
+                out.writeString(schema.type.getName());
+                schema.write(out, value, depth);
+            } else if (value instanceof Throwable) {
+                out.writeByte(THROWABLE);
+                out.writeString(value.getClass().getName());
+                writeValue(out, ((Throwable) value).getMessage(), depth + 1);
+            } else {
+                throw new IllegalArgumentException("Cannot encode a " + value.getClass().getName() +
+                        ", it is neither an SDK type nor an exception");
+            }
+        }
+    }
+
+    private static Object readValue(Input in, int depth) {
+        if (depth > MAX_DEPTH) {
+            throw new IllegalArgumentException("Encoded values are nested more than " + MAX_DEPTH + " deep");
+        }
+        int tag = in.readByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case STRING:
+                return in.readString();
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case INT:
+                return in.readSignedInt();
+            case LONG:
+                return in.readSignedLong();
+            case DOUBLE:
+                return Double.longBitsToDouble(in.readFixedLong());
+            case FLOAT:
+                return Float.intBitsToFloat(in.readFixedInt());
+            case SHORT:
+                return (short) in.readSignedInt();
+            case BYTE:
+                return (byte) in.readByte();
+            case CHAR:
+                return (char) in.readVarInt();
+            case DATE:
+                return new Date(in.readSignedLong());
+            case ENUM:
+                return readEnum(in);
+            case BYTES:
+                return in.readBytes(in.readLength());
+            case LIST: {
+                int size = in.readLength();
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(in, depth + 1));
+                }
+                return list;
+            }
+            case SET: {
+                int size = in.readLength();
+                Set<Object> set = new LinkedHashSet<>();
+                for (int i = 0; i < size; i++) {
+                    set.add(readValue(in, depth + 1));
+                }
+                return set;
+            }
+            case MAP: {
+                int size = in.readLength();
+                Map<Object, Object> map = new LinkedHashMap<>();
+                for (int i = 0; i < size; i++) {
+                    map.put(readValue(in, depth + 1), readValue(in, depth + 1));
+                }
+                return map;
+            }
+            case OBJECT:
+                return schemaFor(in.readString()).read(in, depth);
+            case THROWABLE:
+                return readThrowable(in.readString(), readValue(in, depth + 1));
+            default:
+                throw new IllegalArgumentException("Unknown value tag " + tag + " at " + (in.pos - 1));
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object readEnum(Input in) {
+        String typeName = in.readString();
+        String name = in.readString();
+        Class<?> type = ENUMS_BY_NAME.get(typeName);
+        try {
+            if (type == null) {
+                if (!isSdkType(typeName)) {
+                    throw new IllegalArgumentException("Refusing to decode enum " + typeName +
+                            ", it is not an SDK type");
+                }
+                type = Class.forName(typeName, false, SdkEventCodec.class.getClassLoader()).asSubclass(Enum.class);
+                ENUMS_BY_NAME.put(typeName, type);
+            }
+            return Enum.valueOf((Class<? extends Enum>) type, name);
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IllegalArgumentException("Cannot decode enum " + typeName + "." + name, e);
+        }
+    }
+
+    private static Schema schemaFor(String typeName) {
+        Schema schema = SCHEMAS_BY_NAME.get(typeName);
+        if (schema != null) {
+            return schema;
+        }
+        if (!isSdkType(typeName)) {
+            throw new IllegalArgumentException("Refusing to decode " + typeName + ", it is not an SDK type");
+        }
+        try {
+            schema = SCHEMAS.get(Class.forName(typeName, false, SdkEventCodec.class.getClassLoader()));
+        } catch (ClassNotFoundException e) {
+            throw new IllegalArgumentException("Cannot decode " + typeName, e);
+        }
+        if (schema == null) {
+            throw new IllegalArgumentException("Cannot decode " + typeName + ", it has no field layout");
+        }
+        SCHEMAS_BY_NAME.put(typeName, schema);
+        return schema;
+    }
+
+    private static boolean isSdkType(String typeName) {
+        if (BUS_TYPES.contains(typeName)) {
+            return true;
+        }
+        for (String sdkPackage : SDK_PACKAGES) {
+            if (typeName.startsWith(sdkPackage)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Throwable readThrowable(String typeName, Object message) {
+        if (message != null && !(message instanceof String)) {
+            throw new IllegalArgumentException("Cannot decode exception " + typeName + ", its message is a " +
+                    message.getClass().getName());
+        }
+        if (isSdkType(typeName) || typeName.startsWith("java.")) {
+            try {
+                Class<?> type = Class.forName(typeName, false, SdkEventCodec.class.getClassLoader());
+                if (Throwable.class.isAssignableFrom(type) && !Modifier.isAbstract(type.getModifiers())) {
+                    return (Throwable) type.getConstructor(String.class).newInstance(message);
+                }
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // no message constructor, or not one we can see, fall back to naming it
+            }
+        }
+        return new RuntimeException(message != null ? typeName + ": " + message : typeName);
+    }
+
+    private static String[] knownStrings() {
+        Set<String> known = new LinkedHashSet<>();
+        Class<?>[] types = {SdkQueueEvent.class, SdkQueueEvent.Type.class, SdkQueueEvent.ClientType.class,
+                SdkRequest.class, SDKResponse.class, SDKCallInfo.class, SDKType.class, AccessChangeMessage.class,
+                AuthRequestMessage.class, EimConnectorUpdateMessage.class, LifecycleChangeMessage.class,
+                SettingsChangeMessage.class, OtagServiceEvent.class, Setting.class, Settings.class,
+                SettingType.class, NotificationRequest.class, ClientPushNotificationRequest.class,
+                NotificationSeqBounds.class, AuthorizedUser.class, UserProfile.class, OtdsUserProfile.class,
+                UserGroupIdList.class, ForwardHeaders.class, ClientRepresentation.class, EIMConnector.class};
+        for (Class<?> type : types) {
+            known.add(type.getName());
+            if (type.isEnum()) {
+                for (Object constant : type.getEnumConstants()) {
+                    known.add(((Enum<?>) constant).name());
+                }
+            }
+        }
+
+        // the endpoint ids, sorted as reflection does not promise any order
+        Set<String> endpoints = new TreeSet<>();
+        for (Field field : SdkEventKeys.class.getDeclaredFields()) {
+            if (Modifier.isStatic(field.getModifiers()) && field.getType() == String.class) {
+                try {
+                    endpoints.add((String) field.get(null));
+                } catch (IllegalAccessException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }
+        known.addAll(endpoints);
+        return known.toArray(new String[0]);
+    }
+
+    /**
+     * The fields of an SDK type in the order they are written, those of the base class first, each class's
+     * sorted by name.
+     */
+    private static final class Schema {
+
+        private static final int REFERENCE = 0;
+        private static final int BOOLEAN_FIELD = 1;
+        private static final int BYTE_FIELD = 2;
+        private static final int SHORT_FIELD = 3;
+        private static final int CHAR_FIELD = 4;
+        private static final int INT_FIELD = 5;
+        private static final int LONG_FIELD = 6;
+        private static final int FLOAT_FIELD = 7;
+        private static final int DOUBLE_FIELD = 8;
+
+        private final Class<?> type;
+        private final Supplier<Object> instantiator;
+        private final Field[] fields;
+        private final int[] kinds;
+
+        private Schema(Class<?> type, Supplier<Object> instantiator, List<Field> fields) {
+            this.type = type;
+            this.instantiator = instantiator;
+            this.fields = fields.toArray(new Field[0]);
+            this.kinds = new int[this.fields.length];
+            for (int i = 0; i < kinds.length; i++) {
+                kinds[i] = kindOf(this.fields[i].getType());
+            }
+        }
+
+        /**
+         * @return the layout of an SDK type, null if it is not one or cannot be created field by field
+         */
+        private static Schema of(Class<?> type) {
+            if (!isSdkType(type.getName()) || type.isEnum() || type.isArray() ||
+                    Modifier.isAbstract(type.getModifiers())) {
+                return null;
+            }
+            Supplier<Object> instantiator = INSTANTIATORS.get(type);
+            if (instantiator == null) {
+                instantiator = noArgConstructor(type);
+                if (instantiator == null) {
+                    return null;
+                }
+            }
+
+            Deque<Class<?>> hierarchy = new ArrayDeque<>();
+            for (Class<?> c = type; c != Object.class; c = c.getSuperclass()) {
+                if (!isSdkType(c.getName())) {
+                    // e.g. exceptions, we cannot reach the fields of JDK classes
+                    return null;
+                }
+                hierarchy.push(c);
+            }
+
+            List<Field> fields = new ArrayList<>();
+            for (Class<?> c : hierarchy) {
+                Field[] declared = c.getDeclaredFields();
+                Arrays.sort(declared, Comparator.comparing(Field::getName));
+                for (Field field : declared) {
+                    int modifiers = field.getModifiers();
+                    if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers) && !field.isSynthetic()) {
+                        field.setAccessible(true);
+                        fields.add(field);
+                    }
+                }
+            }
+            return new Schema(type, instantiator, fields);
+        }
+
+        private static Supplier<Object> noArgConstructor(Class<?> type) {
+            try {
+                Constructor<?> constructor = type.getDeclaredConstructor();
+                constructor.setAccessible(true);
+                return () -> {
+                    try {
+                        return constructor.newInstance();
+                    } catch (ReflectiveOperationException e) {
+                        throw new IllegalArgumentException("Cannot create a " + type.getName(), e);
+                    }
+                };
+            } catch (NoSuchMethodException e) {
+                return null;
+            }
+        }
+
+        private static int kindOf(Class<?> fieldType) {
+            if (!fieldType.isPrimitive()) {
+                return REFERENCE;
+            } else if (fieldType == boolean.class) {
+                return BOOLEAN_FIELD;
+            } else if (fieldType == byte.class) {
+                return BYTE_FIELD;
+            } else if (fieldType == short.class) {
+                return SHORT_FIELD;
+            } else if (fieldType == char.class) {
+                return CHAR_FIELD;
+            } else if (fieldType == int.class) {
+                return INT_FIELD;
+            } else if (fieldType == long.class) {
+                return LONG_FIELD;
+            } else if (fieldType == float.class) {
+                return FLOAT_FIELD;
+            }
+            return DOUBLE_FIELD;
+        }
+
+        private void write(Output out, Object value, int depth) {
+            if (value instanceof SdkQueueEvent) {
+                // the Date is part of our encoded form
+                ((SdkQueueEvent) value).getTimestamp();
+            }
+            try {
+                for (int i = 0; i < fields.length; i++) {
+                    Field field = fields[i];
+                    switch (kinds[i]) {
+                        case BOOLEAN_FIELD:
+                            out.writeByte(field.getBoolean(value) ? 1 : 0);
+                            break;
+                        case BYTE_FIELD:
+                            out.writeByte(field.getByte(value));
+                            break;
+                        case SHORT_FIELD:
+                            out.writeSignedInt(field.getShort(value));
+                            break;
+                        case CHAR_FIELD:
+                            out.writeVarInt(field.getChar(value));
+                            break;
+                        case INT_FIELD:
+                            out.writeSignedInt(field.getInt(value));
+                            break;
+                        case LONG_FIELD:
+                            out.writeSignedLong(field.getLong(value));
+                            break;
+                        case FLOAT_FIELD:
+                            out.writeFixedInt(Float.floatToRawIntBits(field.getFloat(value)));
+                            break;
+                        case DOUBLE_FIELD:
+                            out.writeFixedLong(Double.doubleToRawLongBits(field.getDouble(value)));
+                            break;
+                        default:
+                            writeValue(out, field.get(value), depth + 1);
+                    }
+                }
+            } catch (IllegalAccessException e) {
+                throw new IllegalArgumentException("Cannot encode a " + type.getName(), e);
+            }
+        }
+
+        private Object read(Input in, int depth) {
+            Object value = instantiator.get();
+            Field field = null;
+            try {
+                for (int i = 0; i < fields.length; i++) {
+                    field = fields[i];
+                    switch (kinds[i]) {
+                        case BOOLEAN_FIELD:
+                            field.setBoolean(value, in.readByte() != 0);
+                            break;
+                        case BYTE_FIELD:
+                            field.setByte(value, (byte) in.readByte());
+                            break;
+                        case SHORT_FIELD:
+                            field.setShort(value, (short) in.readSignedInt());
+                            break;
+                        case CHAR_FIELD:
+                            field.setChar(value, (char) in.readVarInt());
+                            break;
+                        case INT_FIELD:
+                            field.setInt(value, in.readSignedInt());
+                            break;
+                        case LONG_FIELD:
+                            field.setLong(value, in.readSignedLong());
+                            break;
+                        case FLOAT_FIELD:
+                            field.setFloat(value, Float.intBitsToFloat(in.readFixedInt()));
+                            break;
+                        case DOUBLE_FIELD:
+                            field.setDouble(value, Double.longBitsToDouble(in.readFixedLong()));
+                            break;
+                        default:
+                            field.set(value, readValue(in, depth + 1));
+                    }
+                }
+            } catch (IllegalAccessException | IllegalArgumentException e) {
+                throw new IllegalArgumentException("Cannot decode " + type.getName() + "." + field.getName(), e);
+            }
+            if (value instanceof SdkQueueEvent) {
+                ((SdkQueueEvent) value).restoreTimestamp();
+            }
+            return value;
+        }
+    }
+
+    private static final class Output {
+
+        private byte[] buffer = new byte[256];
+        private int pos;
+
+        /**
+         * The strings written so far in this message and their indexes, created on the first string that
+         * is not one of the {@link #KNOWN_STRINGS}.
+         */
+        private Map<String, Integer> strings;
+
+        private void ensure(int bytes) {
+            if (pos + bytes > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, pos + bytes));
+            }
+        }
+
+        private void writeByte(int b) {
+            ensure(1);
+            buffer[pos++] = (byte) b;
+        }
+
+        private void writeBytes(byte[] bytes, int length) {
+            ensure(length);
+            System.arraycopy(bytes, 0, buffer, pos, length);
+            pos += length;
+        }
+
+        private void writeVarInt(int value) {
+            ensure(5);
+            while ((value & ~0x7F) != 0) {
+                buffer[pos++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[pos++] = (byte) value;
+        }
+
+        private void writeVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[pos++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[pos++] = (byte) value;
+        }
+
+        // zig-zag, so small negative numbers are short too
+        private void writeSignedInt(int value) {
+            writeVarInt((value << 1) ^ (value >> 31));
+        }
+
+        private void writeSignedLong(long value) {
+            writeVarLong((value << 1) ^ (value >> 63));
+        }
+
+        private void writeFixedInt(int value) {
+            ensure(4);
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                buffer[pos++] = (byte) (value >>> shift);
+            }
+        }
+
+        private void writeFixedLong(long value) {
+            ensure(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buffer[pos++] = (byte) (value >>> shift);
+            }
+        }
+
+        /**
+         * A string is written as its length shifted left one, then its UTF-8 bytes, the first time it appears.
+         * After that it is written as its index shifted left two, plus three, and a string both ends already
+         * know as its index in the {@link #KNOWN_STRINGS} shifted left two, plus one.
+         */
+        private void writeString(String value) {
+            Integer known = KNOWN_STRING_INDEXES.get(value);
+            if (known != null) {
+                writeVarInt(known << 2 | 1);
+                return;
+            }
+            Integer index = strings != null ? strings.get(value) : null;
+            if (index != null) {
+                writeVarInt(index << 2 | 3);
+                return;
+            }
+
+            if (strings == null) {
+                strings = new HashMap<>();
+            }
+            strings.put(value, strings.size());
+            if (isAscii(value)) {
+                // most are, and are then their own UTF-8 encoding
+                int length = value.length();
+                writeVarInt(length << 1);
+                ensure(length);
+                for (int i = 0; i < length; i++) {
+                    buffer[pos++] = (byte) value.charAt(i);
+                }
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(bytes.length << 1);
+            writeBytes(bytes, bytes.length);
+        }
+
+        private static boolean isAscii(String value) {
+            for (int i = 0; i < value.length(); i++) {
+                if (value.charAt(i) >= 0x80) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private byte[] toByteArray() {
+            return Arrays.copyOf(buffer, pos);
+        }
+    }
+
+    private static final class Input {
+
+        private final byte[] buffer;
+        private int pos;
+
+        /**
+         * The strings read so far in this message.
+         */
+        private String[] strings;
+        private int stringCount;
+
+        private Input(byte[] buffer) {
+            this.buffer = buffer;
+        }
+
+        private void need(int bytes) {
+            if (bytes > buffer.length - pos) {
+                throw new IllegalArgumentException("Truncated SDK event encoding, needed " + bytes +
+                        " more bytes at " + pos);
+            }
+        }
+
+        private int readByte() {
+            need(1);
+            return buffer[pos++] & 0xFF;
+        }
+
+        private byte[] readBytes(int length) {
+            need(length);
+            byte[] bytes = Arrays.copyOfRange(buffer, pos, pos + length);
+            pos += length;
+            return bytes;
+        }
+
+        private int readVarInt() {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                int b = readByte();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint at " + pos);
+        }
+
+        private long readVarLong() {
+            long value = 0;
+            for (int shift = 0; shift < 70; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint at " + pos);
+        }
+
+        /**
+         * @return a collection size or byte count, which cannot be more than the bytes left
+         */
+        private int readLength() {
+            int length = readVarInt();
+            if (length < 0 || length > buffer.length - pos) {
+                throw new IllegalArgumentException("Invalid length " + length + " at " + pos);
+            }
+            return length;
+        }
+
+        private int readSignedInt() {
+            int value = readVarInt();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        private long readSignedLong() {
+            long value = readVarLong();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        private int readFixedInt() {
+            need(4);
+            int value = 0;
+            for (int i = 0; i < 4; i++) {
+                value = value << 8 | (buffer[pos++] & 0xFF);
+            }
+            return value;
+        }
+
+        private long readFixedLong() {
+            need(8);
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = value << 8 | (buffer[pos++] & 0xFF);
+            }
+            return value;
+        }
+
+        private String readString() {
+            int header = readVarInt();
+            if ((header & 1) != 0) {
+                int index = header >>> 2;
+                boolean known = (header & 2) == 0;
+                if (index >= (known ? KNOWN_STRINGS.length : stringCount)) {
+                    throw new IllegalArgumentException("Unknown string reference " + index + " at " + pos);
+                }
+                return known ? KNOWN_STRINGS[index] : strings[index];
+            }
+
+            int length = header >>> 1;
+            need(length);
+            String value = new String(buffer, pos, length, StandardCharsets.UTF_8);
+            pos += length;
+            if (strings == null) {
+                strings = new String[16];
+            } else if (stringCount == strings.length) {
+                strings = Arrays.copyOf(strings, stringCount * 2);
+            }
+            strings[stringCount++] = value;
+            return value;
+        }
+    }
+
+}
@@ -4,27 +4,70 @@ import com.opentext.otag.sdk.types.v3.api.SDKCallInfo;
 import com.opentext.otag.sdk.types.v3.api.error.APIException;
 import com.opentext.otag.sdk.util.StringUtil;
 
-import java.util.Date;
-import java.util.Map;
 import java.util.concurrent.*;
 
 /**
  * SDK requests are passed along a central queue, but its methods are synchronous
  * in nature. We hide this fact by managing the request/response cycle using the
- * available queues
+ * available queues. Callers that do not want to park a thread whilst the Gateway
+ * responds can use {@link #sendAsync(SdkQueueEvent)} instead.
  */
 public class SdkQueueCallbackManager {
-    
+
+    /**
+     * How long we wait for the Gateway to respond to an SDK request by default.
+     */
+    static final long DEFAULT_RESPONSE_TIMEOUT_SECONDS = 30;
+
+    /**
+     * The {@link SDKCallInfo#getErrorCode()} of the {@link APIException} pending calls fail with when the
+     * Gateway does not answer in time.
+     */
+    public static final String TIMEOUT_ERROR_CODE = "SDK_RESPONSE_TIMEOUT";
+
+    /**
+     * Extra time synchronous callers wait beyond their call's timeout, the timer wheel should always
+     * expire the call first.
+     */
+    private static final long SYNC_WAIT_GRACE_MILLIS = 1000;
+
     private final ExecutorService sdkConsumerExecutor;
     private final Future<?> responseConsumerFuture;
 
     /**
-     * SDK callback queues are mapped against their {@link SdkQueueEvent#sdkEventIdentifier}. Once a response
-     * is received it is thrown onto the queue. The blocking queue is used by clients of this
+     * Our response queue's route through the shared dispatcher, in {@link ConsumerThreads#SHARED} mode.
+     */
+    private final SharedResponseDispatcher.Route sharedRoute;
+
+    /**
+     * Pending SDK responses are mapped against their {@link SdkQueueEvent#sdkEventIdentifier}. Once a response
+     * is received by the consumer the matching call is completed, waking (or calling back) the requester.
      *
      * IMPORTANT - leave this static as there is potential for more than one SdkQueueCallbackManager at a time
      */
-    private static final Map<String, BlockingQueue<SdkQueueEvent>> CALLBACKS_QUEUES = new ConcurrentHashMap<>();
+    static final PendingCallTable CALLBACKS = new PendingCallTable();
+
+    /**
+     * Expires pending requests the Gateway never answered, shared by all callback managers.
+     */
+    private static final HashedTimerWheel TIMEOUTS =
+            new HashedTimerWheel("SdkResponseTimeout", 100, TimeUnit.MILLISECONDS, 512);
+
+    /**
+     * How long we wait for the Gateway to answer each endpoint.
+     */
+    static final EndpointTimeouts ENDPOINT_TIMEOUTS = new EndpointTimeouts(new SystemEnvironment(),
+            TimeUnit.SECONDS.toMillis(DEFAULT_RESPONSE_TIMEOUT_SECONDS));
+
+    /**
+     * How long the Gateway takes to answer each endpoint, shared by all callback managers.
+     */
+    static final EndpointLatencies LATENCIES = new EndpointLatencies();
+
+    /**
+     * Identical read requests in flight, shared by all callback managers.
+     */
+    static final CoalescedCalls COALESCED_CALLS = new CoalescedCalls(new SystemEnvironment());
 
     /**
      * Is this callback manager being used by a service agent? As opposed to a general SDK client.
@@ -35,11 +78,29 @@ public class SdkQueueCallbackManager {
                                    String persistenceContext,
                                    boolean isAgentManager) {
         this.isAgentManager = isAgentManager;
-        sdkConsumerExecutor = Executors.newSingleThreadExecutor(r ->
-                new Thread(r, "SdkResponseConsumer-" +
-                        ((isAgentManager) ? "AGENT" : "SERVICE") + "-" +
-                        serviceName + ":" + persistenceContext));
-        responseConsumerFuture = sdkConsumerExecutor.submit(getConsumerRunnable(serviceName, persistenceContext));
+        BlockingQueue<SdkQueueEvent> serviceQueue = (isAgentManager) ?
+                SdkQueueManager.getServiceAgentQueue(serviceName, persistenceContext) :
+                SdkQueueManager.getServiceQueue(serviceName, persistenceContext);
+
+        if (ConsumerThreads.isShared() && serviceQueue instanceof SignallingBlockingQueue) {
+            SdkEventBusLog.info("Dispatching SDK responses for {} {} on the shared dispatcher", serviceName,
+                    isAgentManager ? "Service Agent" : "Service");
+            sharedRoute = SharedResponseDispatcher.instance().attach(
+                    (SignallingBlockingQueue<SdkQueueEvent>) serviceQueue, consumerName());
+            sdkConsumerExecutor = null;
+            responseConsumerFuture = null;
+            return;
+        }
+        if (ConsumerThreads.isShared()) {
+            SdkEventBusLog.info("The response queue for {} was created before shared dispatch was enabled," +
+                    " consuming it on a dedicated thread", serviceName);
+        }
+
+        sharedRoute = null;
+        // platform or virtual, see ConsumerThreads
+        sdkConsumerExecutor = Executors.newSingleThreadExecutor(ConsumerThreads.factory("SdkResponseConsumer-" +
+                ((isAgentManager) ? "AGENT" : "SERVICE") + "-" + serviceName + ":" + persistenceContext));
+        responseConsumerFuture = sdkConsumerExecutor.submit(getConsumerRunnable(serviceName, serviceQueue));
     }
 
     public static SdkQueueCallbackManager serviceCbackManager(String serviceName, String persistenceContext) {
@@ -54,6 +115,10 @@ public class SdkQueueCallbackManager {
      * Shut down the callback manager.
      */
     public void stop() {
+        if (sharedRoute != null) {
+            SharedResponseDispatcher.instance().detach(sharedRoute);
+        }
+
         try {
             if (responseConsumerFuture != null) {
                 responseConsumerFuture.cancel(true);
@@ -78,31 +143,35 @@ public class SdkQueueCallbackManager {
      *
      * @param eventId unique event id
      * @return the matching response event
-     * @throws InterruptedException if the response for the provided id is not passed back to the SDK
-     *                              bus in a reasonable amount of time
+     * @throws InterruptedException if interrupted whilst waiting
+     * @throws APIException         if the response for the provided id is not passed back to the SDK
+     *                              bus before the call's timeout, see {@link #TIMEOUT_ERROR_CODE}
      */
     public SdkQueueEvent getResponseForEvent(String eventId) throws InterruptedException {
-        // we use the BlockingQueue again here to force the async nature of waiting for
+        // we use the pending future here to force the async nature of waiting for
         // the Gateway to respond into a sync one
-        final BlockingQueue<SdkQueueEvent> blockingQueue = CALLBACKS_QUEUES.get(eventId);
-        if (blockingQueue == null) {
+        final PendingCall callback = CALLBACKS.get(eventId);
+        if (callback == null) {
             SdkEventBusLog.error("No queue found for event " + eventId + " please ensure to call prepareForResponse()" +
                     " prior to sending the outgoing message", new Throwable());
             return null;
         }
         try {
-            // wait for an event to be added to the queue by the consumer for a few seconds
-            SdkQueueEvent returnEvent = blockingQueue.poll(30, TimeUnit.SECONDS);
-
-            // we do not want to return null to our consumers ever
-            if (returnEvent == null) {
-                String errString = "SDK request for event " + eventId + " timed out awaiting a response";
-                SdkEventBusLog.error(errString);
-                throw new APIException(errString, new SDKCallInfo());
+            // the consumer completes the call, or the timer wheel fails it, we do not
+            // want to return null to our consumers ever
+            return callback.get(callback.getTimeoutMillis() + SYNC_WAIT_GRACE_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw timeoutException(eventId);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof APIException) {
+                throw (APIException) cause;
             }
-            return returnEvent;
+            throw new APIException("SDK request for event " + eventId + " failed", cause, new SDKCallInfo());
         } finally {
-            CALLBACKS_QUEUES.remove(eventId);
+            // a no-op if we got an answer, then we are done with the call
+            callback.cancel(false);
+            callback.release();
         }
     }
 
@@ -111,48 +180,122 @@ public class SdkQueueCallbackManager {
      * @param eventId the event ID
      */
     public void prepareForResponse(String eventId) {
-        final BlockingQueue<SdkQueueEvent> blockingQueue = new ArrayBlockingQueue<>(1);
+        SdkEventBusLog.info("Placing event with id {} in the callback queue", eventId);
 
-        SdkEventBusLog.info("Placing event with id " + eventId + " in the callback queue at:" + new Date());
+        register(eventId, null, ENDPOINT_TIMEOUTS.timeoutMillis(null), true);
+    }
 
-        CALLBACKS_QUEUES.put(eventId, blockingQueue);
+    /**
+     * Prepares the callback manager for the response to a request, the call is given the timeout configured
+     * for the request's endpoint. This *must* be called *prior* to sending the request.
+     *
+     * @param request the outgoing request
+     */
+    public void prepareForResponse(SdkQueueEvent request) {
+        String eventId = request.getSdkEventIdentifier();
+        SdkEventBusLog.info("Placing event with id {} in the callback queue", eventId);
+
+        register(eventId, request, ENDPOINT_TIMEOUTS.timeoutMillis(request.getDestination()), true);
     }
 
-    private Runnable getConsumerRunnable(String serviceName, String persistenceContext) {
-        return () -> {
-            SdkEventBusLog.info("Starting SDK queue callback for " + serviceName + " " +
-                    (isAgentManager ? "Service Agent" : "Service"));
+    /**
+     * Change how long we wait for the Gateway to answer requests to an endpoint.
+     *
+     * @param endpointId endpoint id, see {@link SdkEventKeys}
+     * @param timeout    timeout
+     * @param unit       timeout unit
+     */
+    public static void setEndpointTimeout(String endpointId, long timeout, TimeUnit unit) {
+        ENDPOINT_TIMEOUTS.setTimeout(endpointId, timeout, unit);
+    }
+
+    /**
+     * Choose whether identical requests to an endpoint made whilst one is in flight share its response,
+     * see {@link CoalescedCalls}. Only do this for endpoints that do not change anything in the Gateway.
+     *
+     * @param endpointId endpoint id, see {@link SdkEventKeys}
+     * @param coalesced  true to share responses, false to send every request
+     */
+    public static void setCoalesced(String endpointId, boolean coalesced) {
+        COALESCED_CALLS.setCoalesced(endpointId, coalesced);
+    }
+
+    /**
+     * @return how many requests were answered by an identical call already in flight rather than being sent
+     */
+    public static long getCoalescedCallCount() {
+        return COALESCED_CALLS.coalescedCount();
+    }
+
+    /**
+     * @return latency histograms for the calls made to each endpoint, see {@link EndpointLatencies}
+     */
+    public static EndpointLatencies endpointLatencies() {
+        return LATENCIES;
+    }
+
+    /**
+     * Send a request to the Gateway without blocking the calling thread, waiting the amount of time configured
+     * for the request's endpoint for the Gateway to respond, see {@link EndpointTimeouts}.
+     *
+     * @param request request event
+     * @return future completed with the response event, or an {@link APIException} on timeout
+     * @see #sendAsync(SdkQueueEvent, long, TimeUnit)
+     */
+    public CompletableFuture<SdkQueueEvent> sendAsync(SdkQueueEvent request) {
+        return sendAsync(request, ENDPOINT_TIMEOUTS.timeoutMillis(request.getDestination()), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Send a request to the Gateway without blocking the calling thread. The returned future is completed
+     * by this managers response consumer thread (or a shared dispatcher thread, see {@link ConsumerThreads}), so
+     * dependent stages that do any real work should use the *Async variants of the {@link CompletableFuture}
+     * methods.
+     * <p>
+     * If an identical request to a read only endpoint is already waiting on the Gateway this request is not
+     * sent, it is answered with a copy of that call's response, see {@link CoalescedCalls}.
+     *
+     * @param request request event
+     * @param timeout how long to wait for the Gateway to respond
+     * @param unit    timeout unit
+     * @return future completed with the response event, or an {@link APIException} on timeout
+     */
+    public CompletableFuture<SdkQueueEvent> sendAsync(SdkQueueEvent request, long timeout, TimeUnit unit) {
+        if (COALESCED_CALLS.isCoalesced(request)) {
+            return COALESCED_CALLS.call(request, r -> send(r, timeout, unit),
+                    follower -> expire(follower, request.getSdkEventIdentifier(), timeout, unit));
+        }
+        return send(request, timeout, unit);
+    }
+
+    private static CompletableFuture<SdkQueueEvent> send(SdkQueueEvent request, long timeout, TimeUnit unit) {
+        String eventId = request.getSdkEventIdentifier();
+        PendingCall callback = register(eventId, request, unit.toMillis(timeout), false);
 
-            BlockingQueue<SdkQueueEvent> serviceQueue = (isAgentManager) ?
-                    SdkQueueManager.getServiceAgentQueue(serviceName, persistenceContext) :
-                    SdkQueueManager.getServiceQueue(serviceName, persistenceContext);
+        try {
+            SendResult sent = SdkQueueManager.offerEventToGateway(request);
+            if (!sent.isAccepted()) {
+                // nobody will ever answer, fail now rather than when the timeout fires
+                callback.completeExceptionally(new APIException("SDK request for event " + eventId +
+                        " could not be sent to the Gateway - " + sent, new SDKCallInfo()));
+            }
+        } catch (RuntimeException e) {
+            callback.completeExceptionally(e);
+        }
+
+        return callback;
+    }
+
+    private Runnable getConsumerRunnable(String serviceName, BlockingQueue<SdkQueueEvent> serviceQueue) {
+        return () -> {
+            SdkEventBusLog.info("Starting SDK queue callback for {} {}", serviceName,
+                    isAgentManager ? "Service Agent" : "Service");
+            String consumerName = consumerName();
 
             while (!SdkQueueManager.isShutdown() && !(Thread.currentThread().isInterrupted())) {
                 try {
-                    String consumerName = ((isAgentManager) ? "AGENT" : "SERVICE") + " CONSUMER";
-                    SdkEventBusLog.info("On take loop: " + consumerName);
-                    SdkQueueEvent responseEvent = serviceQueue.take();
-                    String eventId = responseEvent.getSdkEventIdentifier();
-
-                    SdkEventBusLog.info(consumerName + ": Got event with id " + eventId + " in the callback queue at:" + new Date());
-                    SdkEventBusLog.info(consumerName + ": Got event " + responseEvent + " in the callback queue at:" + new Date());
-                    SdkEventBusLog.info(consumerName + ": Callback Queue - " + StringUtil.toListString(CALLBACKS_QUEUES.keySet()) +
-                            " at:" + new Date());
-
-                    if (CALLBACKS_QUEUES.containsKey(eventId)) {
-                        try {
-                            BlockingQueue<SdkQueueEvent> blockingQueue = CALLBACKS_QUEUES.get(eventId);
-                            SdkEventBusLog.info(consumerName + ": Passing event to callback queue for " + eventId +
-                                    " event - " + responseEvent + " - queue size=" + blockingQueue.size());
-                            blockingQueue.add(responseEvent);
-                        } catch (Exception e) {
-                            SdkEventBusLog.info(consumerName + ": Call back for " + eventId + " FAILED!!!, " +
-                                    "removing from callbacks: " + e.getMessage() + ":" + e.toString());
-                            CALLBACKS_QUEUES.remove(eventId);
-                        }
-                    } else {
-                        SdkEventBusLog.info("Response without a registered callback was received - " + responseEvent);
-                    }
+                    SdkEventBusLog.info("On take loop: {}", consumerName);
+                    deliverResponse(consumerName, serviceQueue.take());
                 }
                 catch (Throwable t) {
                     if (t instanceof InterruptedException) {
@@ -167,4 +310,86 @@ public class SdkQueueCallbackManager {
         };
     }
 
+    private String consumerName() {
+        return ((isAgentManager) ? "AGENT" : "SERVICE") + " CONSUMER";
+    }
+
+    /**
+     * Complete the pending call a response event answers, whichever thread consumed it.
+     *
+     * @param consumerName  name of the consumer, for logging
+     * @param responseEvent response from the Gateway
+     */
+    static void deliverResponse(String consumerName, SdkQueueEvent responseEvent) {
+        // we are called as soon as the response is taken off its queue
+        responseEvent.stampDequeued(System.nanoTime());
+        String eventId = responseEvent.getSdkEventIdentifier();
+
+        SdkEventBusLog.info("{}: Got event with id {} in the callback queue", consumerName, eventId);
+        SdkEventBusLog.info("{}: Got event {} in the callback queue", consumerName, responseEvent);
+        if (SdkEventBusLog.isInfoEnabled()) {
+            SdkEventBusLog.info("{}: Callback Queue - {}", consumerName,
+                    StringUtil.toListString(CALLBACKS.eventIds()));
+        }
+
+        PendingCall callback = CALLBACKS.get(eventId);
+        if (callback != null) {
+            SdkEventBusLog.info("{}: Completing callback for {} event - {}",
+                    consumerName, eventId, responseEvent);
+            responseEvent.stampDispatched(System.nanoTime());
+            if (callback.complete(responseEvent)) {
+                LATENCIES.recordResponse(callback.getEndpoint(), callback.preparedNanos, callback.getRequest(),
+                        responseEvent);
+            } else {
+                // whoever completed it releases it, a prepared call may still be waiting for its caller
+                SdkEventBusLog.info("{}: Call back for {} was already complete, ignoring the response",
+                        consumerName, eventId);
+            }
+        } else {
+            SdkEventBusLog.info("Response without a registered callback was received - {}", responseEvent);
+        }
+    }
+
+    /**
+     * Register a pending call that the timer wheel fails if it is still waiting once the timeout passes.
+     * Completing a call that is not held removes it and cancels its timeout. A held call, one prepared for
+     * {@link #getResponseForEvent(String)}, stays until that collects it or the timeout releases it, so a
+     * response that arrives before its caller starts waiting is not lost.
+     */
+    private static PendingCall register(String eventId, SdkQueueEvent request, long timeoutMillis, boolean held) {
+        PendingCall callback = CALLBACKS.register(eventId, held);
+        callback.setRequest(request);
+        callback.setTimeout(TIMEOUTS.schedule(callback, timeoutMillis, TimeUnit.MILLISECONDS), timeoutMillis);
+        return callback;
+    }
+
+    /**
+     * Fail a pending call that is still waiting once its timeout passes, run by the timer wheel.
+     */
+    static void timedOut(PendingCall callback) {
+        if (!callback.isDone() && callback.completeExceptionally(timeoutException(callback.eventId))) {
+            LATENCIES.recordTimeout(callback.getEndpoint());
+        }
+        callback.release();
+    }
+
+    /**
+     * Fail a future the timer wheel finds still waiting once the timeout passes, for callers with no
+     * pending call of their own.
+     */
+    private static void expire(CompletableFuture<SdkQueueEvent> call, String eventId, long timeout, TimeUnit unit) {
+        HashedTimerWheel.Timeout expiry = TIMEOUTS.schedule(() -> call.completeExceptionally(timeoutException(eventId)),
+                timeout, unit);
+        call.whenComplete((response, t) -> expiry.cancel());
+    }
+
+    private static APIException timeoutException(String eventId) {
+        String errString = "SDK request for event " + eventId + " timed out awaiting a response";
+        SdkEventBusLog.error(errString);
+        SDKCallInfo callInfo = new SDKCallInfo();
+        callInfo.setErrorCode(TIMEOUT_ERROR_CODE);
+        callInfo.setErrorMessage(errString);
+        return new APIException(errString, callInfo);
+    }
+
 }
@@ -6,16 +6,24 @@ import com.opentext.otag.sdk.types.v3.api.SDKResponse;
 import com.opentext.otag.sdk.types.v3.message.*;
 import com.opentext.otag.sdk.types.v4.SdkRequest;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.Date;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.UUID;
 
 import static java.util.Optional.of;
 
 public class SdkQueueEvent implements Serializable {
 
+    /**
+     * The value computed for the class before it was changed, so events keep crossing between the Gateway
+     * and services running older versions of the SDK.
+     */
+    private static final long serialVersionUID = -5218414906838343559L;
+
     public enum Type {
         wakeup,
         // a request for some data, or for a recipient to perform some action that the sender expects a response for
@@ -56,7 +64,11 @@ public class SdkQueueEvent implements Serializable {
      */
     private Type sdkEventType;
 
-    private final Date timestamp;
+    /**
+     * Wall clock creation time, only turned into a Date when somebody asks for one (or we are serialized).
+     */
+    private transient long timestampMillis;
+    private volatile Date timestamp;
 
     private AccessChangeMessage accessChangeMessage;
     private AuthRequestMessage authRequestMessage;
@@ -76,9 +88,20 @@ public class SdkQueueEvent implements Serializable {
      */
     private SDKResponse sdkResponse;
 
+    /**
+     * Monotonic System.nanoTime() stamps, for when the event was created, last put on and taken off a bus
+     * queue, and handed to whoever was waiting for it. Zero until stamped. They only mean anything within
+     * this JVM, so they are never serialized.
+     */
+    private final transient long createdNanos;
+    private transient long enqueuedNanos;
+    private transient long dequeuedNanos;
+    private transient long dispatchedNanos;
+
     public SdkQueueEvent() {
-        sdkEventIdentifier = UUID.randomUUID().toString();
-        timestamp = new Date();
+        sdkEventIdentifier = EventIdGenerators.nextId();
+        timestampMillis = System.currentTimeMillis();
+        createdNanos = System.nanoTime();
         clientType = ClientType.service;
     }
 
@@ -92,7 +115,8 @@ public class SdkQueueEvent implements Serializable {
         this.sdkEventIdentifier = sdkEventIdentifier;
         this.serviceName = serviceName;
         this.persistenceContext = persistenceContext;
-        timestamp = new Date();
+        timestampMillis = System.currentTimeMillis();
+        createdNanos = System.nanoTime();
     }
 
     /**
@@ -236,7 +260,84 @@ public class SdkQueueEvent implements Serializable {
     }
 
     public Date getTimestamp() {
-        return timestamp;
+        Date created = timestamp;
+        if (created == null) {
+            created = new Date(timestampMillis);
+            timestamp = created;
+        }
+        return created;
+    }
+
+    /**
+     * @return wall clock creation time, in milliseconds since the epoch
+     */
+    public long getTimestampMillis() {
+        return timestampMillis;
+    }
+
+    /**
+     * @return System.nanoTime() when the event was created
+     */
+    public long getCreatedNanos() {
+        return createdNanos;
+    }
+
+    /**
+     * @return System.nanoTime() when the event was last put on a bus queue, zero if it never was
+     */
+    public long getEnqueuedNanos() {
+        return enqueuedNanos;
+    }
+
+    void stampEnqueued(long nanos) {
+        enqueuedNanos = nanos;
+    }
+
+    /**
+     * @return System.nanoTime() when the event was last taken off a bus queue, zero if that was not recorded
+     */
+    public long getDequeuedNanos() {
+        return dequeuedNanos;
+    }
+
+    void stampDequeued(long nanos) {
+        dequeuedNanos = nanos;
+    }
+
+    /**
+     * @return System.nanoTime() when the response was handed to its waiting caller, zero if it has not been
+     */
+    public long getDispatchedNanos() {
+        return dispatchedNanos;
+    }
+
+    void stampDispatched(long nanos) {
+        dispatchedNanos = nanos;
+    }
+
+    /**
+     * @return nanoseconds the event spent on its last queue, -1 if we do not know when it left the queue
+     */
+    public long getQueueResidencyNanos() {
+        return enqueuedNanos != 0 && dequeuedNanos != 0 ? dequeuedNanos - enqueuedNanos : -1;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        // the Date is part of our serialized form
+        getTimestamp();
+        out.defaultWriteObject();
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        restoreTimestamp();
+    }
+
+    /**
+     * Only the Date is serialized, pick the creation time back up from it.
+     */
+    void restoreTimestamp() {
+        timestampMillis = timestamp != null ? timestamp.getTime() : 0L;
     }
 
     public SdkRequest getSdkRequest() {
@@ -386,7 +487,7 @@ public class SdkQueueEvent implements Serializable {
                 ", clientType=" + clientType +
                 ", persistenceContext='" + persistenceContext + '\'' +
                 ", sdkEventType=" + sdkEventType +
-                ", timestamp=" + timestamp +
+                ", timestamp=" + getTimestamp() +
                 ", accessChangeMessage=" + accessChangeMessage +
                 ", authRequestMessage=" + authRequestMessage +
                 ", eimConnectorUpdateMessage=" + eimConnectorUpdateMessage +
@@ -7,12 +7,20 @@ public class SdkQueueEventId {
     private String serviceName;
     private String persistenceContext;
 
+    /**
+     * These ids are used as map keys on every send, so the hash is computed up front (and whenever the
+     * id is modified) rather than on each lookup.
+     */
+    private int hash;
+
     public SdkQueueEventId() {
+        hash = computeHash();
     }
 
     public SdkQueueEventId(String serviceName, String persistenceContext) {
         this.serviceName = serviceName;
         this.persistenceContext = persistenceContext;
+        hash = computeHash();
     }
 
     public String getServiceName() {
@@ -21,6 +29,7 @@ public class SdkQueueEventId {
 
     public void setServiceName(String serviceName) {
         this.serviceName = serviceName;
+        hash = computeHash();
     }
 
     public String getPersistenceContext() {
@@ -29,6 +38,7 @@ public class SdkQueueEventId {
 
     public void setPersistenceContext(String persistenceContext) {
         this.persistenceContext = persistenceContext;
+        hash = computeHash();
     }
 
     @Override
@@ -36,13 +46,19 @@ public class SdkQueueEventId {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         SdkQueueEventId that = (SdkQueueEventId) o;
-        return Objects.equals(serviceName, that.serviceName) &&
+        return hash == that.hash &&
+                Objects.equals(serviceName, that.serviceName) &&
                 Objects.equals(persistenceContext, that.persistenceContext);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(serviceName, persistenceContext);
+        return hash;
+    }
+
+    // same value as Objects.hash(serviceName, persistenceContext), without the varargs array
+    private int computeHash() {
+        return 31 * (31 + Objects.hashCode(serviceName)) + Objects.hashCode(persistenceContext);
     }
 
     @Override
@@ -0,0 +1,137 @@
+package com.opentext.otag.sdk.bus;
+
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * The families of queues managed by the {@link SdkQueueManager}. Each family can be backed by its
+ * own {@link QueueFactory}, see {@link QueueFactories#forFamily(SdkQueueFamily, SystemEnvironment)}.
+ */
+public enum SdkQueueFamily {
+
+    /**
+     * The single container-wide queue services send their events to the Gateway on.
+     */
+    GATEWAY("OTAG Q", LinkedBlockingDeque::new, 100),
+
+    /**
+     * Per service queues the Gateway sends its responses on.
+     */
+    SERVICE("SERVICE RESPONSE Q", LinkedBlockingQueue::new, 20),
+
+    /**
+     * Per service queues the Gateway sends responses to service agents on.
+     */
+    AGENT("SERVICE AGENT Q", LinkedBlockingQueue::new, 20),
+
+    /**
+     * Per service queues the Gateway sends its commands on.
+     */
+    COMMAND("COMMAND Q", LinkedBlockingQueue::new, 20);
+
+    private static final String ENV_VAR_PREFIX = "AWG_SDK_EVENT_BUS_";
+
+    private final String queueName;
+    private final QueueFactory defaultFactory;
+    private final int defaultCapacity;
+
+    SdkQueueFamily(String queueName, QueueFactory defaultFactory, int defaultCapacity) {
+        this.queueName = queueName;
+        this.defaultFactory = defaultFactory;
+        this.defaultCapacity = defaultCapacity;
+    }
+
+    /**
+     * @return the name we use for this family's queues in log lines
+     */
+    public String getQueueName() {
+        return queueName;
+    }
+
+    /**
+     * The factory used when none has been configured for this family.
+     *
+     * @return default queue factory
+     */
+    public QueueFactory getDefaultFactory() {
+        return defaultFactory;
+    }
+
+    /**
+     * The capacity used when none has been configured for this family.
+     *
+     * @return default queue capacity
+     */
+    public int getDefaultCapacity() {
+        return defaultCapacity;
+    }
+
+    /**
+     * Name of the environment variable used to select the queue implementation for this family,
+     * e.g. AWG_SDK_EVENT_BUS_GATEWAY_QUEUE_TYPE_ENV.
+     *
+     * @return env var name
+     */
+    public String queueTypeEnvVar() {
+        return ENV_VAR_PREFIX + name() + "_QUEUE_TYPE_ENV";
+    }
+
+    /**
+     * Name of the environment variable holding the capacity of this family's queues,
+     * e.g. AWG_SDK_EVENT_BUS_SERVICE_QUEUE_CAPACITY_ENV.
+     *
+     * @return env var name
+     */
+    public String capacityEnvVar() {
+        return ENV_VAR_PREFIX + name() + "_QUEUE_CAPACITY_ENV";
+    }
+
+    /**
+     * Name of the environment variable holding the capacity of a single service's queue in this family.
+     * Characters that cannot appear in an env var name are replaced with underscores, e.g. the service
+     * "my-service" in persistence context "tenant1" becomes
+     * AWG_SDK_EVENT_BUS_SERVICE_QUEUE_CAPACITY_MY_SERVICE_TENANT1_ENV.
+     *
+     * @param queueId service queue identifier
+     * @return env var name
+     */
+    public String capacityEnvVar(SdkQueueEventId queueId) {
+        return ENV_VAR_PREFIX + name() + "_QUEUE_CAPACITY_" + envVarSafe(queueId.getServiceName()) + "_" +
+                envVarSafe(queueId.getPersistenceContext()) + "_ENV";
+    }
+
+    /**
+     * Name of the environment variable holding the ceiling adaptive queues in this family may grow to,
+     * e.g. AWG_SDK_EVENT_BUS_GATEWAY_QUEUE_MAX_CAPACITY_ENV.
+     *
+     * @return env var name
+     */
+    public String maxCapacityEnvVar() {
+        return ENV_VAR_PREFIX + name() + "_QUEUE_MAX_CAPACITY_ENV";
+    }
+
+    /**
+     * Name of the environment variable selecting the {@link OverflowPolicy} for this family's queues,
+     * e.g. AWG_SDK_EVENT_BUS_GATEWAY_QUEUE_OVERFLOW_ENV.
+     *
+     * @return env var name
+     */
+    public String overflowPolicyEnvVar() {
+        return ENV_VAR_PREFIX + name() + "_QUEUE_OVERFLOW_ENV";
+    }
+
+    /**
+     * Name of the environment variable holding how long, in milliseconds, senders wait for space on a
+     * full queue in this family, e.g. AWG_SDK_EVENT_BUS_GATEWAY_QUEUE_ENQUEUE_TIMEOUT_MS_ENV.
+     *
+     * @return env var name
+     */
+    public String enqueueTimeoutEnvVar() {
+        return ENV_VAR_PREFIX + name() + "_QUEUE_ENQUEUE_TIMEOUT_MS_ENV";
+    }
+
+    private static String envVarSafe(String value) {
+        return value == null ? "" : value.replaceAll("[^A-Za-z0-9]", "_").toUpperCase();
+    }
+
+}
@@ -1,29 +1,29 @@
 package com.opentext.otag.sdk.bus;
 
-import java.util.Date;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.LinkedBlockingDeque;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Central SDK event queue manager, static <strong>container-wide</strong> queues are made available
- * through this class's methods.
+ * through this class's methods. The queue implementation backing each {@link SdkQueueFamily} can be
+ * selected via the environment, see {@link QueueFactories}.
  */
 public class SdkQueueManager {
 
     // singleton aids unit testing
     static SdkQueueManager instance = new SdkQueueManager();
 
-    // configurable?
-    private static final int GATEWAY_QUEUE_CAPACITY = 100;
-    private static final int SERVICE_QUEUE_CAPACITY = 20;
-
     /**
      * All events issued from the SDK clients (AppWorks services) are to be placed on this queue.
      */
-    BlockingQueue<SdkQueueEvent> GATEWAY_QUEUE = new LinkedBlockingDeque<>(GATEWAY_QUEUE_CAPACITY);
+    BlockingQueue<SdkQueueEvent> GATEWAY_QUEUE;
 
     /**
      * The AppWorks Gateway sends responses and command events to SDK clients using this queue.
@@ -42,24 +42,97 @@ public class SdkQueueManager {
     Map<SdkQueueEventId, BlockingQueue<SdkQueueEvent>> SERVICE_COMMAND_QUEUES = new ConcurrentHashMap<>();
 
     /**
-     * Number of attempts to put a single message on a single queue before giving up
+     * Pre-resolved handles for each service, see {@link #queueHandle(String, String)}.
      */
-    static final int MAX_ENQUEUE_ATTEMPTS = 200;
+    Map<SdkQueueEventId, QueueHandle> QUEUE_HANDLES = new ConcurrentHashMap<>();
+
+    /**
+     * Told about commands as they are sent, whichever manager instance is current.
+     */
+    private static final List<CommandListener> COMMAND_LISTENERS = new CopyOnWriteArrayList<>();
+
+    /**
+     * How long senders wait for space on a full queue, unless configured otherwise.
+     */
+    static final long DEFAULT_ENQUEUE_TIMEOUT_MILLIS = 5000;
 
     boolean stop = false;
 
+    /**
+     * Depth, outcome and latency metrics for every queue we create.
+     */
+    final SdkQueueMetrics metrics = new SdkQueueMetrics();
+
+    private final SystemEnvironment systemEnvironment;
+    private final Map<SdkQueueFamily, QueueFactory> queueFactories = new EnumMap<>(SdkQueueFamily.class);
+    private final Map<SdkQueueFamily, Integer> queueCapacities = new EnumMap<>(SdkQueueFamily.class);
+    private final Map<SdkQueueFamily, OverflowPolicy> overflowPolicies = new EnumMap<>(SdkQueueFamily.class);
+    private final Map<SdkQueueFamily, Long> enqueueTimeoutNanos = new EnumMap<>(SdkQueueFamily.class);
+
     private SdkQueueManager() {
+        this(new SystemEnvironment());
     }
 
+    SdkQueueManager(SystemEnvironment systemEnvironment) {
+        this.systemEnvironment = systemEnvironment;
+        for (SdkQueueFamily family : SdkQueueFamily.values()) {
+            queueFactories.put(family, QueueFactories.forFamily(family, systemEnvironment));
+            queueCapacities.put(family, positiveOrDefault(
+                    systemEnvironment.getenvInt(family.capacityEnvVar(), family.getDefaultCapacity()),
+                    family.getDefaultCapacity()));
+            overflowPolicies.put(family, OverflowPolicies.forFamily(family, systemEnvironment));
+            long timeoutMillis = systemEnvironment.getenvInt(family.enqueueTimeoutEnvVar(),
+                    (int) DEFAULT_ENQUEUE_TIMEOUT_MILLIS);
+            enqueueTimeoutNanos.put(family, TimeUnit.MILLISECONDS.toNanos(
+                    timeoutMillis >= 0 ? timeoutMillis : DEFAULT_ENQUEUE_TIMEOUT_MILLIS));
+        }
+        // stamps requests as the Gateway takes them, for the per endpoint latency breakdown
+        GATEWAY_QUEUE = new StampingBlockingQueue(queueFactories.get(SdkQueueFamily.GATEWAY)
+                .newQueue(queueCapacities.get(SdkQueueFamily.GATEWAY)));
+        metrics.register(SdkQueueFamily.GATEWAY, null, GATEWAY_QUEUE);
+        if (systemEnvironment.getenvBool(SdkQueueMetrics.JMX_ENV_VAR)) {
+            metrics.registerMBeans();
+        }
+    }
+
+    /**
+     * Register a service with the bus, creating its command and response queues.
+     *
+     * @param serviceName        service name
+     * @param persistenceContext tenant context name
+     * @return the service's response queue, hold on to it rather than looking it up again
+     */
     public static BlockingQueue<SdkQueueEvent> registerService(String serviceName, String persistenceContext) {
         instance.ensureServiceCommandQueue(serviceName, persistenceContext, false);
         return instance.ensureServiceQueue(serviceName, persistenceContext, false);
     }
 
     public static void retireService(String serviceName, String persistenceContext) {
-        instance.SERVICES_QUEUES.remove(new SdkQueueEventId(serviceName, persistenceContext));
-        instance.SERVICES_AGENT_QUEUES.remove(new SdkQueueEventId(serviceName, persistenceContext));
-        instance.SERVICE_COMMAND_QUEUES.remove(new SdkQueueEventId(serviceName, persistenceContext));
+        SdkQueueEventId queueId = new SdkQueueEventId(serviceName, persistenceContext);
+        instance.retired(instance.SERVICES_QUEUES.remove(queueId));
+        instance.retired(instance.SERVICES_AGENT_QUEUES.remove(queueId));
+        instance.retired(instance.SERVICE_COMMAND_QUEUES.remove(queueId));
+        instance.QUEUE_HANDLES.remove(queueId);
+    }
+
+    /**
+     * Get the handle for a service's queues. Senders should obtain this once and reuse it, sending through
+     * a handle resolves the target queue without allocating or re-hashing a {@link SdkQueueEventId}.
+     *
+     * @param serviceName        service name
+     * @param persistenceContext tenant context name
+     * @return the shared handle for the service
+     */
+    public static QueueHandle queueHandle(String serviceName, String persistenceContext) {
+        return instance.QUEUE_HANDLES.computeIfAbsent(
+                new SdkQueueEventId(serviceName, persistenceContext), QueueHandle::new);
+    }
+
+    /**
+     * @return metrics for the bus's queues, see {@link SdkQueueMetrics}
+     */
+    public static SdkQueueMetrics metrics() {
+        return instance.metrics;
     }
 
     public static void shutdown() {
@@ -70,14 +143,112 @@ public class SdkQueueManager {
         return instance.stop;
     }
 
+    /**
+     * Change what happens to events sent to a full queue in the given family.
+     *
+     * @param family queue family
+     * @param policy overflow policy, see {@link OverflowPolicies}
+     */
+    public static void setOverflowPolicy(SdkQueueFamily family, OverflowPolicy policy) {
+        instance.overflowPolicies.put(family, policy);
+    }
+
+    /**
+     * Change how long senders wait for space on a full queue in the given family, zero to never wait.
+     *
+     * @param family  queue family
+     * @param timeout timeout
+     * @param unit    timeout unit
+     */
+    public static void setEnqueueTimeout(SdkQueueFamily family, long timeout, TimeUnit unit) {
+        instance.enqueueTimeoutNanos.put(family, unit.toNanos(Math.max(0, timeout)));
+    }
+
     /**
      * Send a request to the Gateway.
      *
      * @param toSend event to send
      */
     public static void sendEventToGateway(SdkQueueEvent toSend) {
-        SdkEventBusLog.info("Sending event to Gateway - " + toSend);
-        instance.put(instance.GATEWAY_QUEUE, "OTAG Q", toSend);
+        offerEventToGateway(toSend);
+    }
+
+    /**
+     * Send a request to the Gateway, reporting whether it could be enqueued.
+     *
+     * @param toSend event to send
+     * @return the outcome of the send
+     */
+    public static SendResult offerEventToGateway(SdkQueueEvent toSend) {
+        SdkEventBusLog.info("Sending event to Gateway - {}", toSend);
+        return instance.offer(SdkQueueFamily.GATEWAY, instance.GATEWAY_QUEUE, toSend);
+    }
+
+    /**
+     * Send a batch of requests to the Gateway, in order. The events are offered to the queue back to back
+     * without the per event logging of {@link #sendEventToGateway(SdkQueueEvent)}. If the queue
+     * fills up each event is subject to the gateway's {@link OverflowPolicy}, the batch stops at the first
+     * event that is not accepted.
+     *
+     * @param toSend events to send
+     * @return the number of events that were accepted
+     */
+    public static int sendEventsToGateway(Collection<SdkQueueEvent> toSend) {
+        SdkEventBusLog.info("Sending {} events to Gateway", toSend.size());
+        return instance.offerAll(SdkQueueFamily.GATEWAY, instance.GATEWAY_QUEUE, toSend);
+    }
+
+    /**
+     * Take up to max events from the Gateway queue, waiting up to the timeout for the first one to arrive.
+     * Anything else already queued is drained in the same call, so consumers pay for one wakeup per batch
+     * rather than one per event.
+     *
+     * @param max     maximum number of events to return
+     * @param timeout how long to wait for an event if the queue is empty
+     * @param unit    timeout unit
+     * @return the drained events, empty if none arrived before the timeout
+     * @throws InterruptedException if interrupted whilst waiting
+     */
+    public static List<SdkQueueEvent> drainGatewayQueue(int max, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        List<SdkQueueEvent> drained = new ArrayList<>(Math.min(Math.max(max, 0), 64));
+        drainGatewayQueue(drained, max, timeout, unit);
+        return drained;
+    }
+
+    /**
+     * As {@link #drainGatewayQueue(int, long, TimeUnit)} but adds the events to the supplied collection,
+     * so a consumer can reuse the same batch buffer.
+     *
+     * @param into    collection to add the events to
+     * @param max     maximum number of events to drain
+     * @param timeout how long to wait for an event if the queue is empty
+     * @param unit    timeout unit
+     * @return the number of events drained
+     * @throws InterruptedException if interrupted whilst waiting
+     */
+    public static int drainGatewayQueue(Collection<? super SdkQueueEvent> into, int max, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        return drain(instance.GATEWAY_QUEUE, into, max, timeout, unit);
+    }
+
+    static int drain(BlockingQueue<SdkQueueEvent> queue, Collection<? super SdkQueueEvent> into,
+                     int max, long timeout, TimeUnit unit) throws InterruptedException {
+        if (max < 1) {
+            return 0;
+        }
+
+        int drained = queue.drainTo(into, max);
+        if (drained > 0) {
+            return drained;
+        }
+
+        SdkQueueEvent first = queue.poll(timeout, unit);
+        if (first == null) {
+            return 0;
+        }
+        into.add(first);
+        return 1 + queue.drainTo(into, max - 1);
     }
 
     /**
@@ -90,9 +261,55 @@ public class SdkQueueManager {
     public static void sendCommandToService(String serviceName,
                                             String persistenceContext,
                                             SdkQueueEvent toSend) {
-        instance.ensureServiceCommandQueue(serviceName, persistenceContext, true);
-        instance.put(instance.SERVICE_COMMAND_QUEUES.get(new SdkQueueEventId(serviceName, persistenceContext)),
-                "COMMAND Q", toSend);
+        offerCommandToService(serviceName, persistenceContext, toSend);
+    }
+
+    /**
+     * As {@link #sendCommandToService(String, String, SdkQueueEvent)}, reporting whether the event could be enqueued.
+     *
+     * @param serviceName        service name
+     * @param persistenceContext tenant context name
+     * @param toSend             event to send on queue
+     * @return the outcome of the send
+     */
+    public static SendResult offerCommandToService(String serviceName,
+                                                   String persistenceContext,
+                                                   SdkQueueEvent toSend) {
+        return offerCommand(serviceName, persistenceContext,
+                instance.ensureServiceCommandQueue(serviceName, persistenceContext, true), toSend);
+    }
+
+    /**
+     * Every command goes through here, whether it is sent by name or through a {@link QueueHandle}, so
+     * command listeners see them all.
+     */
+    static SendResult offerCommand(String serviceName, String persistenceContext,
+                                   BlockingQueue<SdkQueueEvent> commandQueue, SdkQueueEvent toSend) {
+        notifyCommandListeners(serviceName, persistenceContext, toSend);
+        return instance.offer(SdkQueueFamily.COMMAND, commandQueue, toSend);
+    }
+
+    /**
+     * Be told about every command sent to a service from now on.
+     *
+     * @param listener command listener
+     */
+    public static void addCommandListener(CommandListener listener) {
+        COMMAND_LISTENERS.add(listener);
+    }
+
+    public static void removeCommandListener(CommandListener listener) {
+        COMMAND_LISTENERS.remove(listener);
+    }
+
+    private static void notifyCommandListeners(String serviceName, String persistenceContext, SdkQueueEvent command) {
+        for (CommandListener listener : COMMAND_LISTENERS) {
+            try {
+                listener.onCommand(serviceName, persistenceContext, command);
+            } catch (RuntimeException e) {
+                SdkEventBusLog.error("Command listener failed for " + serviceName, e);
+            }
+        }
     }
 
     /**
@@ -105,9 +322,22 @@ public class SdkQueueManager {
     public static void sendEventToService(String serviceName,
                                           String persistenceContext,
                                           SdkQueueEvent toSend) {
-        instance.ensureServiceQueue(serviceName, persistenceContext, true);
-        instance.put(instance.SERVICES_QUEUES.get(new SdkQueueEventId(serviceName, persistenceContext)),
-                "SERVICE RESPONSE Q", toSend);
+        offerEventToService(serviceName, persistenceContext, toSend);
+    }
+
+    /**
+     * As {@link #sendEventToService(String, String, SdkQueueEvent)}, reporting whether the event could be enqueued.
+     *
+     * @param serviceName        service name
+     * @param persistenceContext tenant context name
+     * @param toSend             event to send on queue
+     * @return the outcome of the send
+     */
+    public static SendResult offerEventToService(String serviceName,
+                                                 String persistenceContext,
+                                                 SdkQueueEvent toSend) {
+        return instance.offer(SdkQueueFamily.SERVICE,
+                instance.ensureServiceQueue(serviceName, persistenceContext, true), toSend);
     }
 
     /**
@@ -120,9 +350,22 @@ public class SdkQueueManager {
     public static void sendEventToAgent(String serviceName,
                                         String persistenceContext,
                                         SdkQueueEvent toSend) {
-        instance.ensureServiceAgentQueue(serviceName, persistenceContext, true);
-        instance.put(instance.SERVICES_AGENT_QUEUES.get(new SdkQueueEventId(serviceName, persistenceContext)),
-                "SERVICE AGENT Q", toSend);
+        offerEventToAgent(serviceName, persistenceContext, toSend);
+    }
+
+    /**
+     * As {@link #sendEventToAgent(String, String, SdkQueueEvent)}, reporting whether the event could be enqueued.
+     *
+     * @param serviceName        service name
+     * @param persistenceContext tenant context name
+     * @param toSend             event to send on queue
+     * @return the outcome of the send
+     */
+    public static SendResult offerEventToAgent(String serviceName,
+                                               String persistenceContext,
+                                               SdkQueueEvent toSend) {
+        return instance.offer(SdkQueueFamily.AGENT,
+                instance.ensureServiceAgentQueue(serviceName, persistenceContext, true), toSend);
     }
 
     public static BlockingQueue<SdkQueueEvent> gatewayQueue() {
@@ -141,80 +384,152 @@ public class SdkQueueManager {
         return instance.ensureServiceCommandQueue(serviceName, persistenceUnit, true);
     }
 
-    void put(BlockingQueue<SdkQueueEvent> queue, String qName, SdkQueueEvent toSend) {
+    /**
+     * Offer an event to a queue. If the queue is full the family's {@link OverflowPolicy} decides what
+     * happens, the default waits for space up to the family's enqueue timeout.
+     *
+     * @param family queue family, selects the overflow policy and timeout
+     * @param queue  queue to send to
+     * @param toSend event to send
+     * @return the outcome of the send
+     */
+    SendResult offer(SdkQueueFamily family, BlockingQueue<SdkQueueEvent> queue, SdkQueueEvent toSend) {
+        SdkEventBusLog.info("Received event to enqueue with id {} on {}",
+                toSend.getSdkEventIdentifier(), family.getQueueName());
+
+        long start = System.nanoTime();
+        toSend.stampEnqueued(start);
+        boolean overflowed = false;
+        SendResult result;
+        if (stop) {
+            result = SendResult.SHUTDOWN;
+        } else if (queue.offer(toSend)) {
+            result = SendResult.ENQUEUED;
+        } else {
+            overflowed = true;
+            try {
+                result = overflowPolicies.get(family).onFull(queue, toSend, enqueueTimeoutNanos.get(family),
+                        evicted -> metrics.recordDropped(family, queue));
+            } catch (InterruptedException e) {
+                // leave the interrupt for our caller to deal with
+                Thread.currentThread().interrupt();
+                result = SendResult.INTERRUPTED;
+            }
+        }
+        metrics.record(family, queue, result, System.nanoTime() - start, overflowed);
+
+        if (!result.isAccepted()) {
+            SdkEventBusLog.error("Failed to enqueue event " + toSend.getSdkEventIdentifier() +
+                    " on " + family.getQueueName() + " - " + result);
+        }
+        return result;
+    }
 
-        SdkEventBusLog.info("Received event to enqueue with id " + toSend.getSdkEventIdentifier() + " on " + qName +
-                " at: " + new Date());
 
-        boolean haveEnqueued = false;
-        int attempts = 0;
-        while (!haveEnqueued && !instance.stop && (attempts++ < MAX_ENQUEUE_ATTEMPTS)) try {
-            queue.put(toSend);
-            haveEnqueued = true;
-        } catch (InterruptedException e) {
-            if (attempts > 1) {
-                try {
-                    Thread.sleep(attempts + 10);
-                } catch (InterruptedException ignore) {
-                }
+    int offerAll(SdkQueueFamily family, BlockingQueue<SdkQueueEvent> queue, Collection<SdkQueueEvent> toSend) {
+        int accepted = 0;
+        for (SdkQueueEvent event : toSend) {
+            if (stop) {
+                break;
+            }
+            long start = System.nanoTime();
+            event.stampEnqueued(start);
+            if (queue.offer(event)) {
+                metrics.record(family, queue, SendResult.ENQUEUED, System.nanoTime() - start, false);
+                accepted++;
+            } else if (offer(family, queue, event).isAccepted()) {
+                // the queue was full, the overflow policy dealt with it
+                accepted++;
+            } else {
+                break;
             }
-            // Acknowledge that we caught the interrupt, but we know we're still in interrupted
-            // state.  However, we'll ignore for now since we don't want to miss enqueuing the event.
-            Thread.currentThread().interrupt();
         }
-        if (haveEnqueued && attempts > 1)
-            SdkEventBusLog.info("There were " + attempts + " attempts to enqueue");
 
-        SdkEventBusLog.info((haveEnqueued ? "Completed" : "Did not complete") + " enqueue");
+        SdkEventBusLog.info("Enqueued {} of {} events on {}", accepted, toSend.size(), family.getQueueName());
+        return accepted;
     }
 
     BlockingQueue<SdkQueueEvent> ensureServiceQueue(String serviceName, String persistenceUnit, boolean warnIfMissing) {
-        SdkQueueEventId key = new SdkQueueEventId(serviceName, persistenceUnit);
-
-        synchronized (instance.SERVICES_QUEUES) {
-            if (!instance.SERVICES_QUEUES.containsKey(key)) {
-                if (warnIfMissing) {
-                    SdkEventBusLog.info("We attempted to send an SDK event to an app without a queue, " +
-                            "adding a new queue for service " + serviceName);
-                }
-                instance.SERVICES_QUEUES.put(key, new LinkedBlockingQueue<>(SERVICE_QUEUE_CAPACITY));
-            }
-        }
-        return instance.SERVICES_QUEUES.get(key);
+        return ensureServiceQueue(new SdkQueueEventId(serviceName, persistenceUnit), warnIfMissing);
     }
 
     BlockingQueue<SdkQueueEvent> ensureServiceAgentQueue(String serviceName,
                                                          String persistenceUnit,
                                                          boolean warnIfMissing) {
-        SdkQueueEventId key = new SdkQueueEventId(serviceName, persistenceUnit);
-
-        synchronized (instance.SERVICES_AGENT_QUEUES) {
-            if (!instance.SERVICES_AGENT_QUEUES.containsKey(key)) {
-                if (warnIfMissing) {
-                    SdkEventBusLog.info("We attempted to send an SDK event to an service agent without a queue, " +
-                            "adding a new queue for service agent " + serviceName);
-                }
-                instance.SERVICES_AGENT_QUEUES.put(key, new LinkedBlockingQueue<>(SERVICE_QUEUE_CAPACITY));
-            }
-        }
-        return instance.SERVICES_AGENT_QUEUES.get(key);
+        return ensureServiceAgentQueue(new SdkQueueEventId(serviceName, persistenceUnit), warnIfMissing);
     }
 
     BlockingQueue<SdkQueueEvent> ensureServiceCommandQueue(String serviceName,
                                                            String persistenceUnit,
                                                            boolean warnIfMissing) {
-        SdkQueueEventId key = new SdkQueueEventId(serviceName, persistenceUnit);
-
-        synchronized (instance.SERVICE_COMMAND_QUEUES) {
-            if (!instance.SERVICE_COMMAND_QUEUES.containsKey(key)) {
-                if (warnIfMissing) {
-                    SdkEventBusLog.info("We attempted to send an SDK event to an app without a queue, " +
-                            "adding a new queue for service " + serviceName);
-                }
-                instance.SERVICE_COMMAND_QUEUES.put(key, new LinkedBlockingQueue<>(SERVICE_QUEUE_CAPACITY));
+        return ensureServiceCommandQueue(new SdkQueueEventId(serviceName, persistenceUnit), warnIfMissing);
+    }
+
+    BlockingQueue<SdkQueueEvent> ensureServiceQueue(SdkQueueEventId queueId, boolean warnIfMissing) {
+        return ensureQueue(instance.SERVICES_QUEUES, SdkQueueFamily.SERVICE, queueId, warnIfMissing,
+                "We attempted to send an SDK event to an app without a queue, adding a new queue for service ");
+    }
+
+    BlockingQueue<SdkQueueEvent> ensureServiceAgentQueue(SdkQueueEventId queueId, boolean warnIfMissing) {
+        return ensureQueue(instance.SERVICES_AGENT_QUEUES, SdkQueueFamily.AGENT, queueId, warnIfMissing,
+                "We attempted to send an SDK event to an service agent without a queue, " +
+                        "adding a new queue for service agent ");
+    }
+
+    BlockingQueue<SdkQueueEvent> ensureServiceCommandQueue(SdkQueueEventId queueId, boolean warnIfMissing) {
+        return ensureQueue(instance.SERVICE_COMMAND_QUEUES, SdkQueueFamily.COMMAND, queueId, warnIfMissing,
+                "We attempted to send an SDK event to an app without a queue, adding a new queue for service ");
+    }
+
+    /**
+     * Resolve a service queue, creating it if it does not exist yet. Lookups of existing queues, the
+     * common case on the send path, are a single lock free read, creation is atomic per key.
+     */
+    private BlockingQueue<SdkQueueEvent> ensureQueue(Map<SdkQueueEventId, BlockingQueue<SdkQueueEvent>> queues,
+                                                     SdkQueueFamily family,
+                                                     SdkQueueEventId key,
+                                                     boolean warnIfMissing,
+                                                     String missingMessage) {
+        BlockingQueue<SdkQueueEvent> queue = queues.get(key);
+        if (queue != null) {
+            return queue;
+        }
+
+        return queues.computeIfAbsent(key, id -> {
+            if (warnIfMissing) {
+                SdkEventBusLog.info("{}{}", missingMessage, id.getServiceName());
             }
+            return newQueue(family, id);
+        });
+    }
+
+    /**
+     * Create a queue for a service, using the capacity configured for that specific service if there is one,
+     * otherwise the capacity configured for the family.
+     *
+     * @param family  queue family
+     * @param queueId service queue identifier
+     * @return new queue
+     */
+    BlockingQueue<SdkQueueEvent> newQueue(SdkQueueFamily family, SdkQueueEventId queueId) {
+        int familyCapacity = queueCapacities.get(family);
+        int capacity = positiveOrDefault(
+                systemEnvironment.getenvInt(family.capacityEnvVar(queueId), familyCapacity), familyCapacity);
+        BlockingQueue<SdkQueueEvent> queue = queueFactories.get(family).newQueue(capacity);
+        if (ConsumerThreads.isShared() && (family == SdkQueueFamily.SERVICE || family == SdkQueueFamily.AGENT)) {
+            // response queues tell the shared dispatcher when there is something to consume
+            queue = new SignallingBlockingQueue<>(queue);
         }
-        return instance.SERVICE_COMMAND_QUEUES.get(key);
+        metrics.register(family, queueId, queue);
+        return queue;
+    }
+
+    void retired(BlockingQueue<SdkQueueEvent> queue) {
+        metrics.unregister(queue);
+    }
+
+    private static int positiveOrDefault(int value, int defaultValue) {
+        return value > 0 ? value : defaultValue;
     }
 
     public static BlockingQueue<SdkQueueEvent> getGatewayQueue() {
@@ -0,0 +1,198 @@
+package com.opentext.otag.sdk.bus;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Metrics for every queue the {@link SdkQueueManager} creates, per {@link SdkQueueFamily} and per
+ * service queue. Depth and remaining capacity are read from the queues when asked for, send outcomes
+ * and latencies are recorded by the manager as it sends.
+ * <p>
+ * Each family and queue can also be published as a {@link QueueMetricsMXBean} under the
+ * {@value #JMX_DOMAIN} domain, either by setting {@link #JMX_ENV_VAR} to true or calling
+ * {@link #registerMBeans()}.
+ */
+public final class SdkQueueMetrics {
+
+    // publish the queue metrics over JMX
+    public static final String JMX_ENV_VAR = "AWG_SDK_EVENT_BUS_JMX_ENV";
+
+    public static final String JMX_DOMAIN = "com.opentext.otag.sdk.bus";
+
+    private final Map<SdkQueueFamily, QueueMetrics> families = new EnumMap<>(SdkQueueFamily.class);
+
+    /**
+     * Keyed by the queue itself, none of our queue implementations override equals so this is an
+     * identity lookup.
+     */
+    private final Map<BlockingQueue<SdkQueueEvent>, QueueMetrics> queues = new ConcurrentHashMap<>();
+
+    private volatile boolean mbeansRegistered;
+
+    SdkQueueMetrics() {
+        for (SdkQueueFamily family : SdkQueueFamily.values()) {
+            families.put(family, new QueueMetrics(family, null,
+                    () -> familyTotal(family, false), () -> familyTotal(family, true)));
+        }
+    }
+
+    void register(SdkQueueFamily family, SdkQueueEventId queueId, BlockingQueue<SdkQueueEvent> queue) {
+        QueueMetrics metrics = new QueueMetrics(family, queueId, queue::size, queue::remainingCapacity);
+        QueueMetrics previous = queues.put(queue, metrics);
+        if (mbeansRegistered) {
+            if (previous != null) {
+                unregisterMBean(previous);
+            }
+            registerMBean(metrics);
+        }
+    }
+
+    void unregister(BlockingQueue<SdkQueueEvent> queue) {
+        if (queue == null) {
+            return;
+        }
+        QueueMetrics metrics = queues.remove(queue);
+        if (metrics != null && mbeansRegistered) {
+            unregisterMBean(metrics);
+        }
+    }
+
+    void record(SdkQueueFamily family, BlockingQueue<SdkQueueEvent> queue,
+                SendResult result, long elapsedNanos, boolean overflowed) {
+        families.get(family).record(result, elapsedNanos, overflowed);
+        QueueMetrics metrics = queues.get(queue);
+        if (metrics != null) {
+            metrics.record(result, elapsedNanos, overflowed);
+        }
+    }
+
+    void recordDropped(SdkQueueFamily family, BlockingQueue<SdkQueueEvent> queue) {
+        families.get(family).recordDropped();
+        QueueMetrics metrics = queues.get(queue);
+        if (metrics != null) {
+            metrics.recordDropped();
+        }
+    }
+
+    /**
+     * @param family queue family
+     * @return live metrics for all the family's queues together
+     */
+    public QueueMetrics family(SdkQueueFamily family) {
+        return families.get(family);
+    }
+
+    /**
+     * @param family             queue family
+     * @param serviceName        service name
+     * @param persistenceContext tenant context name
+     * @return live metrics for the service's queue in the family, null if it has no such queue
+     */
+    public QueueMetrics queue(SdkQueueFamily family, String serviceName, String persistenceContext) {
+        SdkQueueEventId queueId = new SdkQueueEventId(serviceName, persistenceContext);
+        for (QueueMetrics metrics : queues.values()) {
+            if (metrics.family() == family && queueId.equals(metrics.queueId())) {
+                return metrics;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return a snapshot of each family's totals, followed by one per queue
+     */
+    public List<QueueMetricsSnapshot> snapshot() {
+        List<QueueMetricsSnapshot> snapshots = new ArrayList<>(families.size() + queues.size());
+        for (QueueMetrics metrics : families.values()) {
+            snapshots.add(metrics.getSnapshot());
+        }
+        for (QueueMetrics metrics : queues.values()) {
+            if (metrics.queueId() != null) {
+                snapshots.add(metrics.getSnapshot());
+            }
+        }
+        return snapshots;
+    }
+
+    /**
+     * Publish the family and queue metrics on the platform MBean server, queues created later are
+     * published as they are created.
+     */
+    public synchronized void registerMBeans() {
+        if (mbeansRegistered) {
+            return;
+        }
+        mbeansRegistered = true;
+        families.values().forEach(this::registerMBean);
+        queues.values().forEach(this::registerMBean);
+    }
+
+    public synchronized void unregisterMBeans() {
+        if (!mbeansRegistered) {
+            return;
+        }
+        mbeansRegistered = false;
+        families.values().forEach(this::unregisterMBean);
+        queues.values().forEach(this::unregisterMBean);
+    }
+
+    static ObjectName objectName(QueueMetrics metrics) throws JMException {
+        StringBuilder name = new StringBuilder(JMX_DOMAIN)
+                .append(":type=SdkQueue,family=").append(metrics.getFamily());
+        if (metrics.queueId() != null) {
+            name.append(",service=").append(ObjectName.quote(String.valueOf(metrics.getServiceName())))
+                    .append(",context=")
+                    .append(ObjectName.quote(String.valueOf(metrics.getPersistenceContext())));
+        }
+        return new ObjectName(name.toString());
+    }
+
+    private long familyTotal(SdkQueueFamily family, boolean remainingCapacity) {
+        long total = 0;
+        for (QueueMetrics metrics : queues.values()) {
+            if (metrics.family() == family) {
+                // unbounded queues report Integer.MAX_VALUE, saturate rather than overflow
+                long value = remainingCapacity ? metrics.getRemainingCapacity() : metrics.getDepth();
+                total = (total + value < 0) ? Long.MAX_VALUE : total + value;
+            }
+        }
+        return total;
+    }
+
+    private void registerMBean(QueueMetrics metrics) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = objectName(metrics);
+            if (server.isRegistered(name)) {
+                // a previous manager's queue, the newest one wins
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(metrics, name);
+        } catch (JMException | RuntimeException e) {
+            SdkEventBusLog.error("Failed to register queue metrics MBean for " + metrics.getFamily() + " " +
+                    metrics.getServiceName(), e);
+        }
+    }
+
+    private void unregisterMBean(QueueMetrics metrics) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = objectName(metrics);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (JMException | RuntimeException e) {
+            SdkEventBusLog.error("Failed to unregister queue metrics MBean for " + metrics.getFamily() + " " +
+                    metrics.getServiceName(), e);
+        }
+    }
+
+}
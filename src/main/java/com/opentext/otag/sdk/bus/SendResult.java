@@ -0,0 +1,42 @@
+package com.opentext.otag.sdk.bus;
+
+/**
+ * The outcome of offering an event to one of the bus queues.
+ */
+public enum SendResult {
+
+    /**
+     * The event is on the queue.
+     */
+    ENQUEUED,
+
+    /**
+     * The queue was full and the {@link OverflowPolicy} gave up on the event, it was not sent.
+     */
+    REJECTED_FULL,
+
+    /**
+     * The bus is shutting down, the event was not sent.
+     */
+    SHUTDOWN,
+
+    /**
+     * The sending thread was interrupted whilst waiting for space, the event was not sent. The thread's
+     * interrupt status is preserved.
+     */
+    INTERRUPTED,
+
+    /**
+     * The queue was full so the caller-runs {@link OverflowPolicy} handled the event on the sending
+     * thread instead.
+     */
+    HANDLED_BY_CALLER;
+
+    /**
+     * @return true if the event was either enqueued or dealt with by the caller
+     */
+    public boolean isAccepted() {
+        return this == ENQUEUED || this == HANDLED_BY_CALLER;
+    }
+
+}
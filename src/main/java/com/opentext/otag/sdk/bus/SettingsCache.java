@@ -0,0 +1,231 @@
+package com.opentext.otag.sdk.bus;
+
+import com.opentext.otag.sdk.types.v3.OtagServiceEvent;
+import com.opentext.otag.sdk.types.v3.message.SettingsChangeMessage;
+import com.opentext.otag.sdk.types.v3.settings.Setting;
+import com.opentext.otag.sdk.types.v3.settings.Settings;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiPredicate;
+import java.util.function.Supplier;
+
+/**
+ * Read through cache of the settings services fetch from the Gateway, keyed by service, persistence context
+ * and setting key. SDK clients pass the call they would have made as the loader, only misses cross the bus.
+ * <p>
+ * The cache follows the {@link OtagServiceEvent#SETTING_UPDATED} commands the Gateway sends, a cached
+ * setting is updated in place and any cached {@link Settings} for the service are dropped. Loads that were
+ * in flight when a change arrived are returned to their caller but not cached, and a loaded setting with a
+ * lower {@link Setting#getSeqNo()} than the cached one is never cached over it. Only services registered
+ * for setting updates are sent the commands, so entries also expire after {@link #TTL_ENV_VAR}.
+ */
+public final class SettingsCache implements CommandListener {
+
+    // milliseconds a cached setting is trusted for without an update from the Gateway, zero for ever
+    public static final String TTL_ENV_VAR = "AWG_SDK_EVENT_BUS_SETTINGS_CACHE_TTL_MS_ENV";
+
+    static final long DEFAULT_TTL_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private final ConcurrentHashMap<SettingKey, Cached<Setting>> settings = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<SdkQueueEventId, Cached<Settings>> allSettings = new ConcurrentHashMap<>();
+
+    /**
+     * Bumped on every change the Gateway tells us about, loads that started before a bump are not cached.
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    private final long ttlNanos;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @return the cache shared by every service in the container, following the commands sent through
+     * {@link SdkQueueManager}
+     */
+    public static SettingsCache instance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * @param ttlMillis how long entries are trusted for, zero or less for ever
+     */
+    SettingsCache(long ttlMillis) {
+        this.ttlNanos = ttlMillis > 0 ? TimeUnit.MILLISECONDS.toNanos(ttlMillis) : 0;
+    }
+
+    /**
+     * @param serviceName        service name
+     * @param persistenceContext tenant context name
+     * @param key                setting key
+     * @param loader             fetches the setting from the Gateway on a miss, may return null
+     * @return the setting, null if the loader returned null
+     */
+    public Setting getSetting(String serviceName, String persistenceContext, String key, Supplier<Setting> loader) {
+        return read(settings, new SettingKey(serviceName, persistenceContext, key), loader,
+                SettingsCache::isOlder);
+    }
+
+    /**
+     * @param serviceName        service name
+     * @param persistenceContext tenant context name
+     * @param loader             fetches the service's settings from the Gateway on a miss, may return null
+     * @return the settings, null if the loader returned null
+     */
+    public Settings getSettings(String serviceName, String persistenceContext, Supplier<Settings> loader) {
+        return read(allSettings, new SdkQueueEventId(serviceName, persistenceContext), loader,
+                (loaded, cached) -> false);
+    }
+
+    public void invalidate(String serviceName, String persistenceContext, String key) {
+        generation.incrementAndGet();
+        settings.remove(new SettingKey(serviceName, persistenceContext, key));
+        allSettings.remove(new SdkQueueEventId(serviceName, persistenceContext));
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        settings.clear();
+        allSettings.clear();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @Override
+    public void onCommand(String serviceName, String persistenceContext, SdkQueueEvent command) {
+        SettingsChangeMessage change = command.getSettingsChangeMessage();
+        if (change == null || change.getEvent() != OtagServiceEvent.SETTING_UPDATED || change.getKey() == null) {
+            return;
+        }
+
+        generation.incrementAndGet();
+        SettingKey settingKey = new SettingKey(serviceName, persistenceContext, change.getKey());
+        if (change.getNewValue() == null) {
+            settings.remove(settingKey);
+        } else {
+            settings.computeIfPresent(settingKey, (k, cached) ->
+                    new Cached<>(withValue(cached.value, change.getNewValue()), cached.expiresAtNanos));
+        }
+        allSettings.remove(new SdkQueueEventId(serviceName, persistenceContext));
+        SdkEventBusLog.info("Updated cached setting {} for {}", change.getKey(), serviceName);
+    }
+
+    private <K, V> V read(ConcurrentHashMap<K, Cached<V>> cache, K key, Supplier<V> loader,
+                          BiPredicate<V, V> isOlder) {
+        long now = System.nanoTime();
+        Cached<V> cached = cache.get(key);
+        if (cached != null && !cached.isExpired(now)) {
+            hits.increment();
+            return cached.value;
+        }
+
+        misses.increment();
+        long loadGeneration = generation.get();
+        V loaded = loader.get();
+        if (loaded != null) {
+            Cached<V> fresh = new Cached<>(loaded, ttlNanos > 0 ? now + ttlNanos : 0);
+            cache.compute(key, (k, current) -> {
+                if (generation.get() != loadGeneration) {
+                    // the Gateway changed something whilst we were loading, what we have may be stale
+                    return current;
+                }
+                if (current != null && !current.isExpired(now) && isOlder.test(loaded, current.value)) {
+                    return current;
+                }
+                return fresh;
+            });
+        }
+        return loaded;
+    }
+
+    /**
+     * @return true if both settings have numeric sequence numbers and the loaded one is lower
+     */
+    private static boolean isOlder(Setting loaded, Setting cached) {
+        try {
+            return Long.parseLong(loaded.getSeqNo()) < Long.parseLong(cached.getSeqNo());
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Callers may hold on to the cached instance, so changes are made to a copy.
+     */
+    private static Setting withValue(Setting setting, String value) {
+        Setting updated = new Setting(setting.getKey(), setting.getAppName(), setting.getType(),
+                setting.getDisplayName(), value, setting.getDefaultValue(), setting.getDescription(),
+                setting.getGroup(), !Objects.equals(value, setting.getDefaultValue()), setting.isReadOnly(),
+                setting.getSeqNo());
+        updated.setConfidential(setting.isConfidential());
+        return updated;
+    }
+
+    private static final class Holder {
+
+        private static final SettingsCache INSTANCE = create();
+
+        private static SettingsCache create() {
+            SettingsCache cache = new SettingsCache(new SystemEnvironment().getenvInt(TTL_ENV_VAR,
+                    (int) DEFAULT_TTL_MILLIS));
+            SdkQueueManager.addCommandListener(cache);
+            return cache;
+        }
+    }
+
+    private static final class Cached<V> {
+
+        private final V value;
+        private final long expiresAtNanos;
+
+        private Cached(V value, long expiresAtNanos) {
+            this.value = value;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+
+        private boolean isExpired(long now) {
+            return expiresAtNanos != 0 && now - expiresAtNanos >= 0;
+        }
+    }
+
+    private static final class SettingKey {
+
+        private final String serviceName;
+        private final String persistenceContext;
+        private final String key;
+        private final int hash;
+
+        private SettingKey(String serviceName, String persistenceContext, String key) {
+            this.serviceName = serviceName;
+            this.persistenceContext = persistenceContext;
+            this.key = key;
+            this.hash = Objects.hash(serviceName, persistenceContext, key);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            SettingKey that = (SettingKey) o;
+            return hash == that.hash &&
+                    Objects.equals(key, that.key) &&
+                    Objects.equals(serviceName, that.serviceName) &&
+                    Objects.equals(persistenceContext, that.persistenceContext);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+}
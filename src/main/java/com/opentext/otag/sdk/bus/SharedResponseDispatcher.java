@@ -0,0 +1,154 @@
+package com.opentext.otag.sdk.bus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Consumes the response queues of every {@link SdkQueueCallbackManager} in
+ * {@link ConsumerThreads#SHARED} mode on a fixed number of threads, however many services are registered.
+ * <p>
+ * Each attached queue signals the dispatcher when an event is added to it, which puts the queue on a
+ * ready list (at most once). Dispatcher threads take queues off that list, drain a batch from each and
+ * route the responses to their pending calls, an idle dispatcher is parked on the ready list rather than
+ * polling the queues. Only the thread that took a queue off the list drains it, so single consumer queues
+ * such as {@link MpscArrayBlockingQueue} are safe to dispatch from.
+ */
+class SharedResponseDispatcher {
+
+    // number of dispatcher threads, defaults to one
+    static final String DISPATCHER_THREADS_ENV_VAR = "AWG_SDK_EVENT_BUS_DISPATCHER_THREADS_ENV";
+
+    private static final int DEFAULT_THREADS = 1;
+
+    /**
+     * Most events taken from a queue in one go, so a busy service cannot starve the others.
+     */
+    private static final int MAX_BATCH = 64;
+
+    private final BlockingQueue<Route> ready = new LinkedBlockingQueue<>();
+    private final List<Thread> threads = new ArrayList<>();
+
+    SharedResponseDispatcher(int threadCount) {
+        for (int i = 0; i < threadCount; i++) {
+            Thread thread = new Thread(this::dispatch, "SdkResponseDispatcher-" + i);
+            thread.setDaemon(true);
+            threads.add(thread);
+            thread.start();
+        }
+    }
+
+    /**
+     * @return the dispatcher shared by all callback managers, started on first use
+     */
+    static SharedResponseDispatcher instance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Start dispatching the responses added to a queue.
+     *
+     * @param queue        response queue
+     * @param consumerName name used when logging the queue's responses
+     * @return the route, pass it to {@link #detach(Route)} to stop dispatching
+     */
+    Route attach(SignallingBlockingQueue<SdkQueueEvent> queue, String consumerName) {
+        Route route = new Route(this, queue, consumerName);
+        queue.setSignal(route.signal);
+        // pick up anything that arrived before we were listening
+        if (!queue.isEmpty()) {
+            schedule(route);
+        }
+        return route;
+    }
+
+    /**
+     * Stop dispatching a queue's responses. If another route has since been attached to the queue, e.g. by
+     * a manager that replaced this one, that route keeps its signal.
+     *
+     * @param route route returned by {@link #attach(SignallingBlockingQueue, String)}
+     */
+    void detach(Route route) {
+        route.detached = true;
+        route.queue.clearSignal(route.signal);
+    }
+
+    int threadCount() {
+        return threads.size();
+    }
+
+    private void schedule(Route route) {
+        if (!route.detached && route.scheduled.compareAndSet(false, true)) {
+            ready.offer(route);
+        }
+    }
+
+    private void dispatch() {
+        List<SdkQueueEvent> batch = new ArrayList<>(MAX_BATCH);
+        while (!Thread.currentThread().isInterrupted()) {
+            Route route;
+            try {
+                route = ready.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            if (route.detached) {
+                continue;
+            }
+
+            try {
+                route.queue.drainTo(batch, MAX_BATCH);
+                for (SdkQueueEvent responseEvent : batch) {
+                    // one bad response must not lose the rest of the batch
+                    try {
+                        SdkQueueCallbackManager.deliverResponse(route.consumerName, responseEvent);
+                    } catch (Throwable t) {
+                        SdkEventBusLog.error("Ignoring error", t);
+                    }
+                }
+            } catch (Throwable t) {
+                // log and ignore
+                SdkEventBusLog.error("Ignoring error", t);
+            } finally {
+                batch.clear();
+                route.scheduled.set(false);
+            }
+
+            // anything added whilst we were draining found the route scheduled and did not signal,
+            // and anything beyond the batch goes to the back of the line
+            if (!route.queue.isEmpty()) {
+                schedule(route);
+            }
+        }
+    }
+
+    static final class Route {
+
+        private final SignallingBlockingQueue<SdkQueueEvent> queue;
+        private final String consumerName;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final Runnable signal;
+        private volatile boolean detached;
+
+        private Route(SharedResponseDispatcher dispatcher, SignallingBlockingQueue<SdkQueueEvent> queue,
+                      String consumerName) {
+            this.queue = queue;
+            this.consumerName = consumerName;
+            this.signal = () -> dispatcher.schedule(this);
+        }
+    }
+
+    private static final class Holder {
+
+        private static final SharedResponseDispatcher INSTANCE;
+
+        static {
+            int threads = new SystemEnvironment().getenvInt(DISPATCHER_THREADS_ENV_VAR, DEFAULT_THREADS);
+            INSTANCE = new SharedResponseDispatcher(threads > 0 ? threads : DEFAULT_THREADS);
+        }
+    }
+
+}
@@ -0,0 +1,70 @@
+package com.opentext.otag.sdk.bus;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * Wraps a queue so whoever consumes it can be told when an element arrives instead of parking a thread
+ * on it, see {@link SharedResponseDispatcher}. The signal runs on the producing thread after every
+ * successful insert, so it must be cheap and must not block.
+ *
+ * @param <E> element type
+ */
+class SignallingBlockingQueue<E> extends ForwardingBlockingQueue<E> {
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<SignallingBlockingQueue, Runnable> SIGNAL =
+            AtomicReferenceFieldUpdater.newUpdater(SignallingBlockingQueue.class, Runnable.class, "signal");
+
+    private volatile Runnable signal;
+
+    SignallingBlockingQueue(BlockingQueue<E> delegate) {
+        super(delegate);
+    }
+
+    /**
+     * @param signal run whenever an element is added, null to stop signalling
+     */
+    void setSignal(Runnable signal) {
+        this.signal = signal;
+    }
+
+    /**
+     * Stop signalling, but only if the signal is still the one given, a consumer that has since replaced it
+     * keeps being signalled.
+     *
+     * @param expected the signal to remove
+     * @return true if it was removed
+     */
+    boolean clearSignal(Runnable expected) {
+        return SIGNAL.compareAndSet(this, expected, null);
+    }
+
+    @Override
+    public boolean offer(E e) {
+        return signalled(delegate.offer(e));
+    }
+
+    @Override
+    public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+        return signalled(delegate.offer(e, timeout, unit));
+    }
+
+    @Override
+    public void put(E e) throws InterruptedException {
+        delegate.put(e);
+        signalled(true);
+    }
+
+    private boolean signalled(boolean added) {
+        if (added) {
+            Runnable current = signal;
+            if (current != null) {
+                current.run();
+            }
+        }
+        return added;
+    }
+
+}
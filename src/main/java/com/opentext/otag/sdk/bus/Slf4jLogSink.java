@@ -0,0 +1,46 @@
+package com.opentext.otag.sdk.bus;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Routes log lines through SLF4J, so they are written by whichever (possibly asynchronous) backend the
+ * container has configured. Only load this class once {@link #isAvailable()} has confirmed SLF4J is on
+ * the classpath.
+ */
+class Slf4jLogSink implements SdkEventBusLogSink {
+
+    private static final String LOGGER_NAME = "com.opentext.otag.sdk.bus";
+    private static final String NOP_LOGGER_FACTORY = "org.slf4j.helpers.NOPLoggerFactory";
+
+    private final Logger logger = LoggerFactory.getLogger(LOGGER_NAME);
+
+    /**
+     * @return true if SLF4J is on the classpath and bound to a real logging backend, the no-op binding
+     * SLF4J falls back to would silently swallow our log lines
+     */
+    static boolean isAvailable() {
+        try {
+            Class.forName("org.slf4j.LoggerFactory", false, Slf4jLogSink.class.getClassLoader());
+            return !NOP_LOGGER_FACTORY.equals(LoggerFactory.getILoggerFactory().getClass().getName());
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    @Override
+    public boolean isInfoEnabled() {
+        return logger.isInfoEnabled();
+    }
+
+    @Override
+    public void info(String message) {
+        logger.info(message);
+    }
+
+    @Override
+    public void error(String message, Throwable error) {
+        logger.error(message, error);
+    }
+
+}
@@ -0,0 +1,63 @@
+package com.opentext.otag.sdk.bus;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wraps the Gateway queue to record when the Gateway takes each request off it, however it consumes the
+ * queue. {@link SdkQueueCallbackManager} uses the stamp to tell time spent waiting on the queue apart from
+ * time the Gateway spent working on the request, see {@link EndpointLatencies}.
+ */
+class StampingBlockingQueue extends ForwardingBlockingQueue<SdkQueueEvent> {
+
+    StampingBlockingQueue(BlockingQueue<SdkQueueEvent> delegate) {
+        super(delegate);
+    }
+
+    @Override
+    public SdkQueueEvent poll() {
+        return stamped(delegate.poll());
+    }
+
+    @Override
+    public SdkQueueEvent poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return stamped(delegate.poll(timeout, unit));
+    }
+
+    @Override
+    public SdkQueueEvent take() throws InterruptedException {
+        return stamped(delegate.take());
+    }
+
+    @Override
+    public int drainTo(Collection<? super SdkQueueEvent> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super SdkQueueEvent> c, int maxElements) {
+        if (c == this) {
+            throw new IllegalArgumentException();
+        }
+        // let the delegate hand over the batch its own way, then stamp it on the way through
+        List<SdkQueueEvent> batch = new ArrayList<>();
+        int drained = delegate.drainTo(batch, maxElements);
+        long now = System.nanoTime();
+        for (SdkQueueEvent event : batch) {
+            event.stampDequeued(now);
+        }
+        c.addAll(batch);
+        return drained;
+    }
+
+    private static SdkQueueEvent stamped(SdkQueueEvent event) {
+        if (event != null) {
+            event.stampDequeued(System.nanoTime());
+        }
+        return event;
+    }
+
+}
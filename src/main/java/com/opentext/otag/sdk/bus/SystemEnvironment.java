@@ -14,12 +14,20 @@ public class SystemEnvironment {
     }
 
     public boolean getenvBool(String name) {
+        return Boolean.TRUE.toString().equalsIgnoreCase(removeQuotes(getenv(name)));
+    }
+
+    public int getenvInt(String name, int defaultValue) {
         String value = getenv(name);
-        if (value.length() == 6) { // e.g. "true", or 'true'
-            // some use cases, e.g. some docker setups, require the value to be quoted
-            value = value.substring(1, value.length() - 1);
+        if (value == null || removeQuotes(value).isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(removeQuotes(value));
+        } catch (NumberFormatException e) {
+            System.err.println("Ignoring non-numeric value for environment variable " + name + ": " + value);
+            return defaultValue;
         }
-        return Boolean.TRUE.toString().equalsIgnoreCase(value);
     }
 
 
@@ -27,4 +35,19 @@ public class SystemEnvironment {
        return input != null ? input.replaceAll("(\\r|\\n)", "") : "";
     }
 
+    /**
+     * Some use cases, e.g. some docker setups, require values to be quoted, "500" or '500'.
+     *
+     * @param input environment variable value
+     * @return the trimmed value without its surrounding quotes
+     */
+    public static String removeQuotes(String input) {
+        String value = input != null ? input.trim() : "";
+        if (value.length() >= 2 && (value.charAt(0) == '"' || value.charAt(0) == '\'') &&
+                value.charAt(value.length() - 1) == value.charAt(0)) {
+            value = value.substring(1, value.length() - 1).trim();
+        }
+        return value;
+    }
+
 }
@@ -0,0 +1,204 @@
+package com.opentext.otag.sdk.bus;
+
+import com.opentext.otag.sdk.types.v3.api.SDKCallInfo;
+import com.opentext.otag.sdk.types.v3.api.error.APIException;
+import com.opentext.otag.sdk.types.v3.auth.AuthorizedUser;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Cache of the users the Gateway resolves tokens to, see {@link SdkEventKeys#AUTH_GET_TOKEN_FOR_USER}. Reads
+ * take a loader as {@link SettingsCache} reads do.
+ * <p>
+ * A user is cached until its session expires, see {@link AuthorizedUser#getExpires()}, or for
+ * {@link #TTL_ENV_VAR} if that is sooner, and a loaded user never replaces a cached one with a higher
+ * {@link AuthorizedUser#getVersion()}. Tokens the Gateway does not know, and calls it turns down with a
+ * 4xx status, are cached for {@link #NEGATIVE_TTL_ENV_VAR} so a client retrying a bad token does not cost
+ * a round trip each time. The number of tokens cached is bounded by {@link #SIZE_ENV_VAR}, see
+ * {@link BoundedCache} for how entries are chosen for eviction.
+ */
+public final class TokenCache {
+
+    // the most tokens cached
+    public static final String SIZE_ENV_VAR = "AWG_SDK_EVENT_BUS_TOKEN_CACHE_SIZE_ENV";
+
+    // milliseconds a resolved user is trusted for at most, however long its session has left
+    public static final String TTL_ENV_VAR = "AWG_SDK_EVENT_BUS_TOKEN_CACHE_TTL_MS_ENV";
+
+    // milliseconds an unknown token or failed lookup is remembered for, zero to not remember them
+    public static final String NEGATIVE_TTL_ENV_VAR = "AWG_SDK_EVENT_BUS_TOKEN_CACHE_NEGATIVE_TTL_MS_ENV";
+
+    static final int DEFAULT_SIZE = 10_000;
+    static final long DEFAULT_TTL_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    static final long DEFAULT_NEGATIVE_TTL_MILLIS = TimeUnit.SECONDS.toMillis(5);
+
+    private final BoundedCache<String, Resolution> cache;
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @return the cache shared by every service in the container
+     */
+    public static TokenCache instance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * @param size              the most tokens cached
+     * @param ttlMillis         how long a user is trusted for at most
+     * @param negativeTtlMillis how long failed lookups are remembered for, zero or less to not remember them
+     */
+    TokenCache(int size, long ttlMillis, long negativeTtlMillis) {
+        this.cache = new BoundedCache<>(size);
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.negativeTtlNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, negativeTtlMillis));
+    }
+
+    /**
+     * @param token  user token
+     * @param loader asks the Gateway who the token belongs to on a miss, returns null or throws if it cannot
+     * @return the token's user, null if the token is not known
+     * @throws RuntimeException the loader's failure, or an {@link APIException} like the one a recent load
+     *                          was turned down with
+     */
+    public AuthorizedUser getUserForToken(String token, Function<String, AuthorizedUser> loader) {
+        Resolution cached = cache.get(token);
+        if (cached != null && (cached.user == null || !isExpired(cached.user))) {
+            hits.increment();
+            return cached.resolve();
+        }
+
+        misses.increment();
+        AuthorizedUser user;
+        try {
+            user = loader.apply(token);
+        } catch (APIException e) {
+            if (e.getStatus() >= 400 && e.getStatus() < 500) {
+                rememberFailure(token, Resolution.rejected(e));
+            }
+            throw e;
+        }
+
+        if (user == null) {
+            rememberFailure(token, Resolution.UNKNOWN);
+        } else if (!isExpired(user)) {
+            cache.put(token, Resolution.resolved(user), expiresAtNanos(user),
+                    (loaded, current) -> current.user != null && loaded.user.getVersion() < current.user.getVersion());
+        }
+        return user;
+    }
+
+    /**
+     * Forget a token, e.g. once its user has logged out.
+     *
+     * @param token user token
+     */
+    public void invalidate(String token) {
+        cache.invalidate(token);
+    }
+
+    /**
+     * Forget every token belonging to a user.
+     *
+     * @param userId user id
+     */
+    public void invalidateUser(String userId) {
+        cache.invalidateIf((token, resolution) -> resolution.user != null &&
+                userId.equals(resolution.user.getUserID()));
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return cache.evictions();
+    }
+
+    private void rememberFailure(String token, Resolution failure) {
+        if (negativeTtlNanos > 0) {
+            cache.put(token, failure, System.nanoTime() + negativeTtlNanos);
+        }
+    }
+
+    private long expiresAtNanos(AuthorizedUser user) {
+        long now = System.nanoTime();
+        Date expires = user.getExpires();
+        if (expires == null) {
+            return now + ttlNanos;
+        }
+        long sessionLeft = TimeUnit.MILLISECONDS.toNanos(expires.getTime() - System.currentTimeMillis());
+        return now + Math.min(ttlNanos, sessionLeft);
+    }
+
+    private static boolean isExpired(AuthorizedUser user) {
+        // a user without an expiry is kept for the cache TTL
+        return user.getExpires() != null && user.isExpired();
+    }
+
+    private static final class Holder {
+
+        private static final TokenCache INSTANCE = create();
+
+        private static TokenCache create() {
+            SystemEnvironment env = new SystemEnvironment();
+            int size = env.getenvInt(SIZE_ENV_VAR, DEFAULT_SIZE);
+            int ttlMillis = env.getenvInt(TTL_ENV_VAR, (int) DEFAULT_TTL_MILLIS);
+            return new TokenCache(size > 0 ? size : DEFAULT_SIZE, ttlMillis > 0 ? ttlMillis : DEFAULT_TTL_MILLIS,
+                    env.getenvInt(NEGATIVE_TTL_ENV_VAR, (int) DEFAULT_NEGATIVE_TTL_MILLIS));
+        }
+    }
+
+    /**
+     * What a token resolved to, a user, nobody, or the Gateway turning the lookup down. Rejections keep the
+     * message and call info rather than the exception, every caller is thrown an exception of its own.
+     */
+    private static final class Resolution {
+
+        private static final Resolution UNKNOWN = new Resolution(null, null, null);
+
+        private final AuthorizedUser user;
+        private final String rejectionMessage;
+        private final SDKCallInfo rejectionCallInfo;
+
+        private Resolution(AuthorizedUser user, String rejectionMessage, SDKCallInfo rejectionCallInfo) {
+            this.user = user;
+            this.rejectionMessage = rejectionMessage;
+            this.rejectionCallInfo = rejectionCallInfo;
+        }
+
+        private static Resolution resolved(AuthorizedUser user) {
+            return new Resolution(user, null, null);
+        }
+
+        private static Resolution rejected(APIException e) {
+            return new Resolution(null, e.getMessage(), e.getCallInfo());
+        }
+
+        private AuthorizedUser resolve() {
+            if (rejectionCallInfo != null) {
+                throw new APIException(rejectionMessage, rejectionCallInfo);
+            }
+            return user;
+        }
+    }
+
+}
@@ -0,0 +1,105 @@
+package com.opentext.otag.sdk.bus;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AdaptiveCapacityBlockingQueueTest {
+
+    @Test
+    public void itShouldGrowUnderSustainedLoadUpToItsCeiling() {
+        AdaptiveCapacityBlockingQueue<Integer> queue = new AdaptiveCapacityBlockingQueue<>(4, 16);
+
+        // producers keep trying whilst the queue is full
+        int accepted = 0;
+        for (int i = 0; i < 500; i++) {
+            if (queue.offer(i)) {
+                accepted++;
+            }
+        }
+
+        assertThat(queue.capacity()).isEqualTo(16);
+        assertThat(accepted).isEqualTo(16);
+        assertThat(queue.remainingCapacity()).isEqualTo(0);
+    }
+
+    @Test
+    public void itShouldNotGrowOnABriefSpike() {
+        AdaptiveCapacityBlockingQueue<Integer> queue = new AdaptiveCapacityBlockingQueue<>(4, 16);
+
+        // a lightly used queue fills once, the average has not caught up so it behaves like a normal bounded queue
+        for (int i = 0; i < 50; i++) {
+            queue.offer(i);
+            queue.poll();
+        }
+        for (int i = 0; i < 4; i++) {
+            assertThat(queue.offer(i)).isTrue();
+        }
+
+        assertThat(queue.offer(5)).isFalse();
+        assertThat(queue.capacity()).isEqualTo(4);
+    }
+
+    @Test
+    public void itShouldShrinkBackOnceIdle() {
+        AdaptiveCapacityBlockingQueue<Integer> queue = new AdaptiveCapacityBlockingQueue<>(4, 16);
+        int i = 0;
+        for (int attempt = 0; attempt < 500; attempt++) {
+            if (queue.offer(attempt)) {
+                i++;
+            }
+        }
+        assertThat(queue.capacity()).isEqualTo(16);
+
+        // drain, then trickle events through
+        while (queue.poll() != null) {
+            i--;
+        }
+        for (int j = 0; j < 100; j++) {
+            queue.offer(j);
+            assertThat(queue.poll()).isEqualTo(j);
+        }
+
+        assertThat(i).isEqualTo(0);
+        assertThat(queue.capacity()).isEqualTo(4);
+    }
+
+    @Test
+    public void itShouldShrinkBackWhenConsumersFindItIdleAfterABurst() throws Exception {
+        AdaptiveCapacityBlockingQueue<Integer> queue = new AdaptiveCapacityBlockingQueue<>(4, 64);
+        for (int attempt = 0; attempt < 1000; attempt++) {
+            queue.offer(attempt);
+        }
+        assertThat(queue.capacity()).isEqualTo(64);
+
+        // drained in one go, then nothing more arrives and consumers keep polling with a timeout
+        assertThat(queue.drainTo(new ArrayList<>())).isEqualTo(64);
+        for (int i = 0; i < 20 && queue.capacity() > 4; i++) {
+            assertThat(queue.poll(1, TimeUnit.MILLISECONDS)).isNull();
+        }
+
+        assertThat(queue.capacity()).isEqualTo(4);
+    }
+
+    @Test
+    public void itShouldPreserveOrderAcrossResizes() {
+        AdaptiveCapacityBlockingQueue<Integer> queue = new AdaptiveCapacityBlockingQueue<>(2, 8);
+        queue.offer(0);
+        queue.poll();
+
+        int i = 0;
+        for (int attempt = 0; attempt < 500; attempt++) {
+            if (queue.offer(i)) {
+                i++;
+            }
+        }
+        assertThat(i).isEqualTo(8);
+        for (int j = 0; j < i; j++) {
+            assertThat(queue.poll()).isEqualTo(j);
+        }
+    }
+
+}
@@ -0,0 +1,165 @@
+package com.opentext.otag.sdk.bus;
+
+import com.opentext.otag.sdk.types.v3.OtagServiceEvent;
+import com.opentext.otag.sdk.types.v3.auth.OtdsUserProfile;
+import com.opentext.otag.sdk.types.v3.auth.UserGroupIdList;
+import com.opentext.otag.sdk.types.v3.auth.UserProfile;
+import com.opentext.otag.sdk.types.v3.message.AccessChangeMessage;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Queue;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AuthCacheTest {
+
+    // background refreshes are queued here and run by the test
+    private final Queue<Runnable> refreshes = new ArrayDeque<>();
+
+    private final AuthCache cache = new AuthCache(100, 60_000, 60_000, refreshes::add);
+
+    private final LoadCounter loads = new LoadCounter();
+
+    @Test
+    public void repeatReadsAreServedFromMemory() {
+        UserProfile profile = cache.getUserProfile("service", "ctx", "bob", () -> profile("bob"));
+        UserGroupIdList groups = cache.getGroupIds("service", "ctx", "bob", () -> groups("admins"));
+
+        assertThat(cache.getUserProfile("service", "ctx", "bob", () -> profile("other"))).isSameAs(profile);
+        assertThat(cache.getGroupIds("service", "ctx", "bob", () -> groups("other"))).isSameAs(groups);
+        assertThat(loads.get()).isEqualTo(2);
+        assertThat(cache.getHits()).isEqualTo(2);
+        assertThat(cache.getMisses()).isEqualTo(2);
+        assertThat(refreshes).isEmpty();
+    }
+
+    @Test
+    public void agingEntriesAreRefreshedInTheBackground() throws Exception {
+        AuthCache refreshing = new AuthCache(100, 60_000, 1, refreshes::add);
+        refreshing.getGroupIds("service", "ctx", "bob", () -> groups("first"));
+        Thread.sleep(5);
+
+        // readers are handed the current entry whilst a single refresh is queued
+        for (int i = 0; i < 3; i++) {
+            assertThat(refreshing.getGroupIds("service", "ctx", "bob", () -> groups("second")).getGroupIds())
+                    .containsExactly("first");
+        }
+        assertThat(refreshes).hasSize(1);
+        assertThat(refreshing.getRefreshes()).isEqualTo(1);
+
+        refreshes.poll().run();
+        assertThat(refreshing.getGroupIds("service", "ctx", "bob", () -> groups("third")).getGroupIds())
+                .containsExactly("second");
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void failedRefreshesKeepTheEntryAndAreRetried() throws Exception {
+        AuthCache refreshing = new AuthCache(100, 60_000, 1, refreshes::add);
+        refreshing.getUserProfile("service", "ctx", "bob", () -> profile("bob"));
+        Thread.sleep(5);
+
+        refreshing.getUserProfile("service", "ctx", "bob", () -> {
+            throw new IllegalStateException("Gateway unavailable");
+        });
+        refreshes.poll().run();
+
+        assertThat(refreshing.getUserProfile("service", "ctx", "bob", () -> profile("bob")).getUserName())
+                .isEqualTo("bob");
+        assertThat(refreshes).hasSize(1);
+    }
+
+    @Test
+    public void expiredEntriesAreLoadedAgain() throws Exception {
+        AuthCache shortLived = new AuthCache(100, 1, 1, refreshes::add);
+        shortLived.getUserProfile("service", "ctx", "bob", () -> profile("first"));
+        Thread.sleep(5);
+
+        assertThat(shortLived.getUserProfile("service", "ctx", "bob", () -> profile("second")).getUserName())
+                .isEqualTo("second");
+        assertThat(loads.get()).isEqualTo(2);
+        assertThat(refreshes).isEmpty();
+    }
+
+    @Test
+    public void accessChangeCommandsDropTheServicesEntries() {
+        cache.getUserProfile("service", "ctx", "bob", () -> profile("bob"));
+        cache.getGroupIds("service", "ctx", "bob", () -> groups("admins"));
+        cache.getGroupIds("service", "other", "bob", () -> groups("admins"));
+
+        SdkQueueEvent command = new SdkQueueEvent("service", "ctx");
+        command.setAccessChangeMessage(new AccessChangeMessage(OtagServiceEvent.SERVICE_DISABLED));
+        cache.onCommand("service", "ctx", command);
+        // other commands are ignored
+        cache.onCommand("service", "other", new SdkQueueEvent("service", "other"));
+
+        assertThat(cache.size()).isEqualTo(1);
+        assertThat(cache.getGroupIds("service", "other", "bob", () -> groups("users")).getGroupIds())
+                .containsExactly("admins");
+    }
+
+    @Test
+    public void loadsInFlightWhenAccessChangesAreNotCached() {
+        UserProfile loaded = cache.getUserProfile("service", "ctx", "bob", () -> {
+            UserProfile profile = profile("old");
+            cache.invalidate("service", "ctx");
+            return profile;
+        });
+
+        assertThat(loaded.getUserName()).isEqualTo("old");
+        assertThat(cache.getUserProfile("service", "ctx", "bob", () -> profile("new")).getUserName())
+                .isEqualTo("new");
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void accessChangesForOneTenantDoNotStopAnothersLoadsBeingCached() {
+        cache.getUserProfile("service", "ctx", "bob", () -> {
+            UserProfile profile = profile("bob");
+            cache.invalidate("service", "other");
+            cache.invalidate("otherService", "ctx");
+            return profile;
+        });
+
+        assertThat(cache.getUserProfile("service", "ctx", "bob", () -> profile("other")).getUserName())
+                .isEqualTo("bob");
+        assertThat(loads.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void invalidatingEverythingStopsLoadsInFlightBeingCached() {
+        cache.getUserProfile("service", "ctx", "bob", () -> {
+            UserProfile profile = profile("old");
+            cache.invalidateAll();
+            return profile;
+        });
+
+        assertThat(cache.getUserProfile("service", "ctx", "bob", () -> profile("new")).getUserName())
+                .isEqualTo("new");
+    }
+
+    @Test
+    public void theSharedCacheFollowsCommandsSentToServices() {
+        AuthCache shared = AuthCache.instance();
+        shared.getGroupIds("authService", "ctx", "bob", () -> groups("admins"));
+
+        SdkQueueEvent command = new SdkQueueEvent("authService", "ctx");
+        command.setAccessChangeMessage(new AccessChangeMessage(OtagServiceEvent.SERVICE_ENABLED));
+        SdkQueueManager.sendCommandToService("authService", "ctx", command);
+
+        assertThat(shared.getGroupIds("authService", "ctx", "bob", () -> groups("users")).getGroupIds())
+                .containsExactly("users");
+        shared.invalidateAll();
+    }
+
+    private UserProfile profile(String userName) {
+        return loads.load(new OtdsUserProfile(userName, false));
+    }
+
+    private UserGroupIdList groups(String groupId) {
+        return loads.load(new UserGroupIdList(Collections.singletonList(groupId)));
+    }
+
+}
@@ -0,0 +1,94 @@
+package com.opentext.otag.sdk.bus;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BoundedCacheTest {
+
+    @Test
+    public void itNeverHoldsMoreThanItsMaximumSize() {
+        BoundedCache<Integer, String> cache = new BoundedCache<>(100);
+        for (int i = 0; i < 1000; i++) {
+            cache.get(i);
+            cache.put(i, "value" + i, 0);
+        }
+
+        assertThat(cache.size()).isEqualTo(100);
+        assertThat(cache.evictions()).isEqualTo(900);
+    }
+
+    @Test
+    public void popularKeysSurviveAScanOfOneOffKeys() {
+        BoundedCache<String, String> cache = new BoundedCache<>(100);
+        for (int i = 0; i < 50; i++) {
+            String key = "hot" + i;
+            for (int reads = 0; reads < 5; reads++) {
+                cache.get(key);
+            }
+            cache.put(key, key, 0);
+        }
+
+        // the hot keys keep being read whilst a stream of keys that are only read once goes past
+        for (int i = 0; i < 10_000; i++) {
+            String key = "cold" + i;
+            if (cache.get(key) == null) {
+                cache.put(key, key, 0);
+            }
+            assertThat(cache.get("hot" + i % 50)).isNotNull();
+        }
+
+        int hot = 0;
+        for (int i = 0; i < 50; i++) {
+            if (cache.get("hot" + i) != null) {
+                hot++;
+            }
+        }
+        assertThat(hot).isEqualTo(50);
+        assertThat(cache.rejections()).isGreaterThan(0);
+    }
+
+    @Test
+    public void expiredEntriesAreNotReturned() {
+        BoundedCache<String, String> cache = new BoundedCache<>(10);
+        cache.put("expired", "value", System.nanoTime() - 1);
+        cache.put("live", "value", System.nanoTime() + 60_000_000_000L);
+
+        assertThat(cache.get("expired")).isNull();
+        assertThat(cache.get("live")).isEqualTo("value");
+    }
+
+    @Test
+    public void olderValuesDoNotReplaceNewerOnes() {
+        BoundedCache<String, Integer> cache = new BoundedCache<>(10);
+        cache.put("key", 2, 0);
+
+        cache.put("key", 1, 0, (value, current) -> value < current);
+        assertThat(cache.get("key")).isEqualTo(2);
+
+        cache.put("key", 3, 0, (value, current) -> value < current);
+        assertThat(cache.get("key")).isEqualTo(3);
+    }
+
+    @Test
+    public void entriesCanBeInvalidated() {
+        BoundedCache<Integer, String> cache = new BoundedCache<>(10);
+        for (int i = 0; i < 10; i++) {
+            cache.put(i, i % 2 == 0 ? "even" : "odd", 0);
+        }
+
+        cache.invalidate(1);
+        cache.invalidateIf((key, value) -> "even".equals(value));
+
+        assertThat(cache.size()).isEqualTo(4);
+        assertThat(cache.get(1)).isNull();
+        assertThat(cache.get(3)).isEqualTo("odd");
+
+        // the space freed up is reused
+        for (int i = 10; i < 16; i++) {
+            cache.put(i, "new", 0);
+        }
+        assertThat(cache.size()).isEqualTo(10);
+    }
+
+}
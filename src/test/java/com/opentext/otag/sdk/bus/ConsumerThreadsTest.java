@@ -0,0 +1,67 @@
+package com.opentext.otag.sdk.bus;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ConsumerThreadsTest {
+
+    private final String originalMode = ConsumerThreads.mode();
+
+    @After
+    public void tearDown() {
+        ConsumerThreads.setMode(originalMode);
+    }
+
+    @Test
+    public void platformThreadsAreTheDefault() {
+        SystemEnvironment envMock = mock(SystemEnvironment.class);
+        assertThat(ConsumerThreads.fromEnv(envMock)).isEqualTo(ConsumerThreads.PLATFORM);
+
+        when(envMock.getenv(ConsumerThreads.CONSUMER_MODE_ENV_VAR)).thenReturn("nonsense");
+        assertThat(ConsumerThreads.fromEnv(envMock)).isEqualTo(ConsumerThreads.PLATFORM);
+    }
+
+    @Test
+    public void sharedDispatchCanBeSelected() {
+        SystemEnvironment envMock = mock(SystemEnvironment.class);
+        when(envMock.getenv(ConsumerThreads.CONSUMER_MODE_ENV_VAR)).thenReturn("shared");
+
+        assertThat(ConsumerThreads.fromEnv(envMock)).isEqualTo(ConsumerThreads.SHARED);
+    }
+
+    @Test
+    public void virtualThreadsAreOnlySelectedWhenTheJvmSupportsThem() {
+        SystemEnvironment envMock = mock(SystemEnvironment.class);
+        when(envMock.getenv(ConsumerThreads.CONSUMER_MODE_ENV_VAR)).thenReturn(" Virtual ");
+
+        assertThat(ConsumerThreads.fromEnv(envMock)).isEqualTo(ConsumerThreads.virtualThreadsAvailable() ?
+                ConsumerThreads.VIRTUAL : ConsumerThreads.PLATFORM);
+    }
+
+    @Test
+    public void consumerThreadsAreNamed() throws InterruptedException {
+        for (String mode : new String[]{ConsumerThreads.PLATFORM, ConsumerThreads.VIRTUAL}) {
+            ConsumerThreads.setMode(mode);
+            AtomicReference<String> name = new AtomicReference<>();
+            CountDownLatch ran = new CountDownLatch(1);
+
+            Thread thread = ConsumerThreads.factory("TestConsumer").newThread(() -> {
+                name.set(Thread.currentThread().getName());
+                ran.countDown();
+            });
+            thread.start();
+
+            assertThat(ran.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(name.get()).isEqualTo("TestConsumer");
+        }
+    }
+
+}
@@ -0,0 +1,50 @@
+package com.opentext.otag.sdk.bus;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.opentext.otag.sdk.bus.SdkEventKeys.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class EndpointTimeoutsTest {
+
+    @Test
+    public void quickLookupsTimeOutBeforeSlowCalls() {
+        EndpointTimeouts timeouts = new EndpointTimeouts(realIntParsing(mock(SystemEnvironment.class)), 30_000);
+
+        assertThat(timeouts.timeoutMillis(SETTINGS_GET_SETTING)).isLessThan(30_000);
+        assertThat(timeouts.timeoutMillis(SEND_MAIL)).isGreaterThan(30_000);
+        assertThat(timeouts.timeoutMillis(PROVIDER_LIST_PROVIDERS)).isEqualTo(30_000);
+        assertThat(timeouts.timeoutMillis(null)).isEqualTo(30_000);
+        assertThat(timeouts.timeoutMillis("")).isEqualTo(30_000);
+    }
+
+    @Test
+    public void timeoutsCanBeOverriddenByTheEnvironment() {
+        SystemEnvironment envMock = realIntParsing(mock(SystemEnvironment.class));
+        when(envMock.getenv(EndpointTimeouts.DEFAULT_TIMEOUT_ENV_VAR)).thenReturn("20000");
+        when(envMock.getenv("AWG_SDK_EVENT_BUS_RESPONSE_TIMEOUT_SETTINGS_GETSETTING_MS_ENV")).thenReturn("500");
+        when(envMock.getenv(EndpointTimeouts.timeoutEnvVar(SEND_MAIL))).thenReturn("-1");
+
+        EndpointTimeouts timeouts = new EndpointTimeouts(envMock, 30_000);
+
+        assertThat(timeouts.timeoutMillis(SETTINGS_GET_SETTING)).isEqualTo(500);
+        assertThat(timeouts.timeoutMillis(PROVIDER_LIST_PROVIDERS)).isEqualTo(20_000);
+        // nonsense values are ignored
+        assertThat(timeouts.timeoutMillis(SEND_MAIL)).isGreaterThan(30_000);
+
+        timeouts.setTimeout(SEND_MAIL, 3, TimeUnit.SECONDS);
+        assertThat(timeouts.timeoutMillis(SEND_MAIL)).isEqualTo(3000);
+    }
+
+    private static SystemEnvironment realIntParsing(SystemEnvironment envMock) {
+        when(envMock.getenvInt(anyString(), anyInt())).thenCallRealMethod();
+        return envMock;
+    }
+
+}
@@ -0,0 +1,101 @@
+package com.opentext.otag.sdk.bus;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class EventIdGeneratorsTest {
+
+    @Test
+    public void monotonicIdsIncreaseOnEachThread() {
+        MonotonicEventIdGenerator generator = new MonotonicEventIdGenerator("node");
+
+        long previous = -1;
+        // cross a few block boundaries
+        for (int i = 0; i < MonotonicEventIdGenerator.BLOCK_SIZE * 3; i++) {
+            String id = generator.nextId();
+            assertThat(id).startsWith("node-");
+
+            long sequence = generator.sequenceOf(id);
+            assertThat(sequence).isGreaterThan(previous);
+            previous = sequence;
+        }
+    }
+
+    @Test
+    public void monotonicIdsAreUniqueAcrossThreads() throws InterruptedException {
+        MonotonicEventIdGenerator generator = new MonotonicEventIdGenerator();
+        Set<String> ids = ConcurrentHashMap.newKeySet();
+        int perThread = MonotonicEventIdGenerator.BLOCK_SIZE * 2 + 7;
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    ids.add(generator.nextId());
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat(ids).hasSize(perThread * 4);
+    }
+
+    @Test
+    public void monotonicIdsStartFromTheCurrentTime() {
+        long before = System.currentTimeMillis() << MonotonicEventIdGenerator.TIME_SHIFT;
+        MonotonicEventIdGenerator generator = new MonotonicEventIdGenerator("node");
+
+        assertThat(generator.sequenceOf(generator.nextId())).isGreaterThanOrEqualTo(before);
+    }
+
+    @Test
+    public void sequenceOfRejectsForeignIds() {
+        MonotonicEventIdGenerator generator = new MonotonicEventIdGenerator("node");
+
+        assertThat(generator.sequenceOf(UUID.randomUUID().toString())).isEqualTo(-1);
+        assertThat(generator.sequenceOf(new MonotonicEventIdGenerator("other").nextId())).isEqualTo(-1);
+        assertThat(generator.sequenceOf("node-not!base36")).isEqualTo(-1);
+        assertThat(generator.sequenceOf(null)).isEqualTo(-1);
+    }
+
+    @Test
+    public void generatorIsResolvedFromTheEnvironment() {
+        SystemEnvironment envMock = mock(SystemEnvironment.class);
+        assertThat(EventIdGenerators.fromEnv(envMock)).isInstanceOf(MonotonicEventIdGenerator.class);
+
+        when(envMock.getenv(MonotonicEventIdGenerator.NODE_ID_ENV_VAR)).thenReturn("gw1");
+        assertThat(EventIdGenerators.fromEnv(envMock).nextId()).startsWith("gw1-");
+
+        when(envMock.getenv(EventIdGenerators.EVENT_ID_TYPE_ENV_VAR)).thenReturn("UUID");
+        String uuid = EventIdGenerators.fromEnv(envMock).nextId();
+        assertThat(UUID.fromString(uuid).toString()).isEqualTo(uuid);
+
+        when(envMock.getenv(EventIdGenerators.EVENT_ID_TYPE_ENV_VAR)).thenReturn("no.such.Generator");
+        assertThat(EventIdGenerators.fromEnv(envMock)).isInstanceOf(MonotonicEventIdGenerator.class);
+    }
+
+    @Test
+    public void eventsTakeTheirIdFromTheConfiguredGenerator() {
+        EventIdGenerator original = EventIdGenerators.generator();
+        try {
+            EventIdGenerators.setGenerator(() -> "fixed");
+            assertThat(new SdkQueueEvent("service", "ctx").getSdkEventIdentifier()).isEqualTo("fixed");
+        } finally {
+            EventIdGenerators.setGenerator(original);
+        }
+    }
+
+}
@@ -0,0 +1,139 @@
+package com.opentext.otag.sdk.bus;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class FairShareBlockingQueueTest {
+
+    @Test
+    public void aNoisyTenantCannotHoldUpTheOthers() {
+        FairShareBlockingQueue queue = new FairShareBlockingQueue(100, 50, 1);
+        for (int i = 0; i < 50; i++) {
+            assertThat(queue.offer(new SdkQueueEvent("noisy", "ctx"))).isTrue();
+        }
+        SdkQueueEvent quiet = new SdkQueueEvent("quiet", "ctx");
+        queue.offer(quiet);
+
+        assertThat(queue.poll().getServiceName()).isEqualTo("noisy");
+        assertThat(queue.peek()).isSameAs(quiet);
+        assertThat(queue.poll()).isSameAs(quiet);
+        assertThat(queue.size("noisy", "ctx")).isEqualTo(49);
+    }
+
+    @Test
+    public void tenantsAreServedInProportionToTheirWeight() {
+        FairShareBlockingQueue queue = new FairShareBlockingQueue(100);
+        queue.setShare("heavy", "ctx", 25, 3);
+        for (int i = 0; i < 20; i++) {
+            queue.offer(new SdkQueueEvent("heavy", "ctx"));
+            queue.offer(new SdkQueueEvent("light", "ctx"));
+        }
+
+        List<SdkQueueEvent> served = new ArrayList<>();
+        queue.drainTo(served, 8);
+
+        assertThat(served.stream().filter(e -> "heavy".equals(e.getServiceName())).count()).isEqualTo(6);
+        assertThat(served.get(3).getServiceName()).isEqualTo("light");
+    }
+
+    @Test
+    public void aNewShareAppliesToATenantWithEventsWaiting() {
+        FairShareBlockingQueue queue = new FairShareBlockingQueue(100, 2, 1);
+        assertThat(queue.offer(new SdkQueueEvent("tenant", "ctx"))).isTrue();
+        assertThat(queue.offer(new SdkQueueEvent("tenant", "ctx"))).isTrue();
+        assertThat(queue.offer(new SdkQueueEvent("tenant", "ctx"))).isFalse();
+
+        queue.setShare("tenant", "ctx", 3, 1);
+
+        assertThat(queue.offer(new SdkQueueEvent("tenant", "ctx"))).isTrue();
+        assertThat(queue.offer(new SdkQueueEvent("tenant", "ctx"))).isFalse();
+    }
+
+    @Test
+    public void eachPersistenceContextIsItsOwnTenant() {
+        FairShareBlockingQueue queue = new FairShareBlockingQueue(100, 2, 1);
+
+        assertThat(queue.offer(new SdkQueueEvent("service", "a"))).isTrue();
+        assertThat(queue.offer(new SdkQueueEvent("service", "a"))).isTrue();
+        assertThat(queue.offer(new SdkQueueEvent("service", "a"))).isFalse();
+        assertThat(queue.offer(new SdkQueueEvent("service", "b"))).isTrue();
+        assertThat(queue.remainingCapacity()).isEqualTo(97);
+    }
+
+    @Test
+    public void blockedSendersResumeWhenTheirTenantHasRoom() throws Exception {
+        FairShareBlockingQueue queue = new FairShareBlockingQueue(10, 1, 1);
+        queue.offer(new SdkQueueEvent("service", "ctx"));
+
+        assertThat(queue.offer(new SdkQueueEvent("service", "ctx"), 10, TimeUnit.MILLISECONDS)).isFalse();
+
+        Thread consumer = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+                queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        consumer.start();
+        assertThat(queue.offer(new SdkQueueEvent("service", "ctx"), 5, TimeUnit.SECONDS)).isTrue();
+        consumer.join();
+    }
+
+    @Test
+    public void dropOldestEvictsFromTheSendersOwnShare() throws Exception {
+        FairShareBlockingQueue queue = new FairShareBlockingQueue(10, 1, 1);
+        SdkQueueEvent other = new SdkQueueEvent("other", "ctx");
+        queue.offer(other);
+        queue.offer(new SdkQueueEvent("service", "ctx"));
+        SdkQueueEvent newest = new SdkQueueEvent("service", "ctx");
+
+        assertThat(OverflowPolicies.dropOldest().onFull(queue, newest, 0)).isEqualTo(SendResult.ENQUEUED);
+        assertThat(queue).containsExactly(other, newest);
+    }
+
+    @Test
+    public void itCanBeSelectedForTheGatewayQueueWithTenantShares() {
+        SystemEnvironment envMock = mock(SystemEnvironment.class);
+        when(envMock.getenv(SdkQueueFamily.GATEWAY.queueTypeEnvVar())).thenReturn("fair");
+        when(envMock.getenv(QueueFactories.FAIR_SHARES_ENV_VAR)).thenReturn("big/ctx=8:2, broken");
+
+        FairShareBlockingQueue queue =
+                (FairShareBlockingQueue) QueueFactories.forFamily(SdkQueueFamily.GATEWAY, envMock).newQueue(12);
+        for (int i = 0; i < 10; i++) {
+            queue.offer(new SdkQueueEvent("big", "ctx"));
+            queue.offer(new SdkQueueEvent("small", "ctx"));
+        }
+
+        assertThat(queue.size("big", "ctx")).isEqualTo(8);
+        assertThat(queue.size("small", "ctx")).isEqualTo(3);
+    }
+
+    @Test
+    public void sharesWithoutAWeightGetTheDefaultTenantWeight() {
+        SystemEnvironment envMock = mock(SystemEnvironment.class);
+        when(envMock.getenv(SdkQueueFamily.GATEWAY.queueTypeEnvVar())).thenReturn("fair");
+        when(envMock.getenvInt(QueueFactories.FAIR_TENANT_WEIGHT_ENV_VAR, 1)).thenReturn(3);
+        when(envMock.getenv(QueueFactories.FAIR_SHARES_ENV_VAR)).thenReturn("big/ctx=8");
+
+        FairShareBlockingQueue queue =
+                (FairShareBlockingQueue) QueueFactories.forFamily(SdkQueueFamily.GATEWAY, envMock).newQueue(40);
+        for (int i = 0; i < 6; i++) {
+            queue.offer(new SdkQueueEvent("big", "ctx"));
+            queue.offer(new SdkQueueEvent("small", "ctx"));
+        }
+
+        List<SdkQueueEvent> served = new ArrayList<>();
+        queue.drainTo(served, 4);
+        assertThat(queue.size("big", "ctx")).isEqualTo(3);
+        assertThat(served.get(3).getServiceName()).isEqualTo("small");
+    }
+
+}
@@ -0,0 +1,82 @@
+package com.opentext.otag.sdk.bus;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class HashedTimerWheelTest {
+
+    // a small, fast wheel so that timeouts have to go round it more than once
+    private final HashedTimerWheel wheel = new HashedTimerWheel("TestWheel", 10, TimeUnit.MILLISECONDS, 8);
+
+    @After
+    public void tearDown() {
+        wheel.stop();
+    }
+
+    @Test
+    public void timeoutsFireAfterTheirDelay() throws InterruptedException {
+        CountDownLatch fired = new CountDownLatch(1);
+        AtomicLong firedAt = new AtomicLong();
+        long start = System.nanoTime();
+
+        HashedTimerWheel.Timeout timeout = wheel.schedule(() -> {
+            firedAt.set(System.nanoTime());
+            fired.countDown();
+        }, 200, TimeUnit.MILLISECONDS);
+
+        assertThat(fired.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(firedAt.get() - start).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(200));
+        assertThat(timeout.isExpired()).isTrue();
+        assertThat(wheel.pending()).isEqualTo(0);
+    }
+
+    @Test
+    public void cancelledTimeoutsNeverFire() throws InterruptedException {
+        AtomicInteger fired = new AtomicInteger();
+        HashedTimerWheel.Timeout timeout = wheel.schedule(fired::incrementAndGet, 30, TimeUnit.MILLISECONDS);
+
+        assertThat(timeout.cancel()).isTrue();
+        assertThat(timeout.cancel()).isFalse();
+        assertThat(wheel.pending()).isEqualTo(0);
+
+        Thread.sleep(100);
+        assertThat(fired.get()).isEqualTo(0);
+        assertThat(timeout.isCancelled()).isTrue();
+    }
+
+    @Test
+    public void manyTimeoutsAllFireOnce() throws InterruptedException {
+        int count = 1000;
+        CountDownLatch fired = new CountDownLatch(count);
+        AtomicInteger firings = new AtomicInteger();
+        for (int i = 0; i < count; i++) {
+            wheel.schedule(() -> {
+                firings.incrementAndGet();
+                fired.countDown();
+            }, i % 150, TimeUnit.MILLISECONDS);
+        }
+
+        assertThat(fired.await(5, TimeUnit.SECONDS)).isTrue();
+        Thread.sleep(50);
+        assertThat(firings.get()).isEqualTo(count);
+    }
+
+    @Test
+    public void aFailingTaskDoesNotStopTheWheel() throws InterruptedException {
+        CountDownLatch fired = new CountDownLatch(1);
+        wheel.schedule(() -> {
+            throw new IllegalStateException("boom");
+        }, 0, TimeUnit.MILLISECONDS);
+        wheel.schedule(fired::countDown, 20, TimeUnit.MILLISECONDS);
+
+        assertThat(fired.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+}
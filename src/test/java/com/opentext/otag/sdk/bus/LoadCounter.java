@@ -0,0 +1,26 @@
+package com.opentext.otag.sdk.bus;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stands in for the Gateway lookups behind the caches under test, counting them so a test can tell a
+ * cache hit from a load.
+ */
+class LoadCounter {
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    /**
+     * @param value what the lookup returns, or throws
+     * @return the value
+     */
+    <T> T load(T value) {
+        loads.incrementAndGet();
+        return value;
+    }
+
+    int get() {
+        return loads.get();
+    }
+
+}
@@ -0,0 +1,126 @@
+package com.opentext.otag.sdk.bus;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class MpscArrayBlockingQueueTest {
+
+    @Test
+    public void itShouldRespectItsCapacity() {
+        MpscArrayBlockingQueue<Integer> queue = new MpscArrayBlockingQueue<>(3);
+
+        assertThat(queue.offer(1)).isTrue();
+        assertThat(queue.offer(2)).isTrue();
+        assertThat(queue.offer(3)).isTrue();
+        assertThat(queue.offer(4)).isFalse();
+        assertThat(queue.size()).isEqualTo(3);
+        assertThat(queue.remainingCapacity()).isEqualTo(0);
+    }
+
+    @Test
+    public void itShouldBeFifoAcrossLapsOfTheRing() {
+        MpscArrayBlockingQueue<Integer> queue = new MpscArrayBlockingQueue<>(3);
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(queue.offer(i)).isTrue();
+            assertThat(queue.offer(i + 100)).isTrue();
+            assertThat(queue.peek()).isEqualTo(i);
+            assertThat(queue.poll()).isEqualTo(i);
+            assertThat(queue.poll()).isEqualTo(i + 100);
+        }
+        assertThat(queue.isEmpty()).isTrue();
+        assertThat(queue.poll()).isNull();
+    }
+
+    @Test
+    public void itShouldTimeOutOfferAndPollWhenFullOrEmpty() throws InterruptedException {
+        MpscArrayBlockingQueue<Integer> queue = new MpscArrayBlockingQueue<>(1);
+
+        assertThat(queue.poll(10, TimeUnit.MILLISECONDS)).isNull();
+        assertThat(queue.offer(1, 10, TimeUnit.MILLISECONDS)).isTrue();
+        assertThat(queue.offer(2, 10, TimeUnit.MILLISECONDS)).isFalse();
+    }
+
+    @Test
+    public void itShouldRefuseRemovalFromTheMiddleClearly() {
+        MpscArrayBlockingQueue<Integer> queue = new MpscArrayBlockingQueue<>(4);
+        queue.offer(1);
+        queue.offer(2);
+
+        for (Runnable removal : Arrays.<Runnable>asList(() -> queue.remove(2),
+                () -> queue.removeAll(Collections.singleton(2)), () -> queue.removeIf(e -> e == 2))) {
+            try {
+                removal.run();
+                fail("Expected removal to be refused");
+            } catch (UnsupportedOperationException e) {
+                assertThat(e).hasMessageContaining("only removes elements from its head");
+            }
+        }
+        assertThat(queue.poll()).isEqualTo(1);
+        assertThat(queue.poll()).isEqualTo(2);
+    }
+
+    @Test
+    public void takeShouldBeWokenByAProducer() throws InterruptedException {
+        MpscArrayBlockingQueue<Integer> queue = new MpscArrayBlockingQueue<>(2);
+
+        Thread producer = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+                queue.put(42);
+            } catch (InterruptedException ignore) {
+            }
+        });
+        producer.start();
+
+        assertThat(queue.take()).isEqualTo(42);
+        producer.join();
+    }
+
+    @Test
+    public void itShouldNotLoseEventsWithManyProducers() throws InterruptedException {
+        int producers = 4;
+        int perProducer = 10_000;
+        MpscArrayBlockingQueue<Integer> queue = new MpscArrayBlockingQueue<>(16);
+        CountDownLatch start = new CountDownLatch(1);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < perProducer; i++) {
+                        queue.put(1);
+                    }
+                } catch (InterruptedException ignore) {
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+
+        long total = 0;
+        for (int i = 0; i < producers * perProducer; i++) {
+            Integer value = queue.poll(5, TimeUnit.SECONDS);
+            assertThat(value).isNotNull();
+            total += value;
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat(total).isEqualTo(producers * perProducer);
+        assertThat(queue.isEmpty()).isTrue();
+    }
+
+}
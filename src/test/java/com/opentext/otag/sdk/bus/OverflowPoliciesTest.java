@@ -0,0 +1,104 @@
+package com.opentext.otag.sdk.bus;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class OverflowPoliciesTest {
+
+    private final SdkQueueEvent queued = new SdkQueueEvent("service", "ctx");
+    private final SdkQueueEvent incoming = new SdkQueueEvent("service", "ctx");
+
+    @Test
+    public void blockTimesOutOnAFullQueue() throws InterruptedException {
+        BlockingQueue<SdkQueueEvent> queue = fullQueue();
+
+        long start = System.nanoTime();
+        SendResult result = OverflowPolicies.block().onFull(queue, incoming, TimeUnit.MILLISECONDS.toNanos(50));
+
+        assertThat(result).isEqualTo(SendResult.REJECTED_FULL);
+        assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(40));
+        assertThat(queue).containsExactly(queued);
+    }
+
+    @Test
+    public void dropNewestRejectsTheIncomingEvent() throws InterruptedException {
+        BlockingQueue<SdkQueueEvent> queue = fullQueue();
+
+        assertThat(OverflowPolicies.dropNewest().onFull(queue, incoming, Long.MAX_VALUE))
+                .isEqualTo(SendResult.REJECTED_FULL);
+        assertThat(queue).containsExactly(queued);
+    }
+
+    @Test
+    public void dropOldestMakesSpaceForTheIncomingEvent() throws InterruptedException {
+        BlockingQueue<SdkQueueEvent> queue = fullQueue();
+
+        assertThat(OverflowPolicies.dropOldest().onFull(queue, incoming, 0)).isEqualTo(SendResult.ENQUEUED);
+        assertThat(queue).containsExactly(incoming);
+    }
+
+    @Test
+    public void dropOldestReportsTheEventsItEvicts() throws InterruptedException {
+        BlockingQueue<SdkQueueEvent> queue = fullQueue();
+        List<SdkQueueEvent> evicted = new ArrayList<>();
+
+        assertThat(OverflowPolicies.dropOldest().onFull(queue, incoming, 0, evicted::add))
+                .isEqualTo(SendResult.ENQUEUED);
+        assertThat(evicted).containsExactly(queued);
+    }
+
+    @Test
+    public void dropOldestNeverConsumesFromMpscQueues() throws InterruptedException {
+        BlockingQueue<SdkQueueEvent> queue = new MpscArrayBlockingQueue<>(1);
+        queue.add(queued);
+
+        assertThat(OverflowPolicies.dropOldest().onFull(queue, incoming, 0)).isEqualTo(SendResult.REJECTED_FULL);
+        assertThat(queue).containsExactly(queued);
+    }
+
+    @Test
+    public void callerRunsHandsTheEventToTheHandler() throws InterruptedException {
+        BlockingQueue<SdkQueueEvent> queue = fullQueue();
+        List<SdkQueueEvent> handled = new ArrayList<>();
+
+        assertThat(OverflowPolicies.callerRuns(handled::add).onFull(queue, incoming, 0))
+                .isEqualTo(SendResult.HANDLED_BY_CALLER);
+        assertThat(handled).containsExactly(incoming);
+        assertThat(queue).containsExactly(queued);
+    }
+
+    @Test
+    public void policiesAreResolvedFromTheEnvironment() throws InterruptedException {
+        SystemEnvironment envMock = mock(SystemEnvironment.class);
+        when(envMock.getenv(SdkQueueFamily.GATEWAY.overflowPolicyEnvVar())).thenReturn(" DROP-OLDEST ");
+        when(envMock.getenv(SdkQueueFamily.SERVICE.overflowPolicyEnvVar())).thenReturn("nonsense");
+
+        BlockingQueue<SdkQueueEvent> queue = fullQueue();
+        assertThat(OverflowPolicies.forFamily(SdkQueueFamily.GATEWAY, envMock).onFull(queue, incoming, 0))
+                .isEqualTo(SendResult.ENQUEUED);
+
+        // unknown and missing policies block
+        queue = fullQueue();
+        assertThat(OverflowPolicies.forFamily(SdkQueueFamily.SERVICE, envMock).onFull(queue, incoming, 0))
+                .isEqualTo(SendResult.REJECTED_FULL);
+        assertThat(OverflowPolicies.forFamily(SdkQueueFamily.AGENT, envMock).onFull(queue, incoming, 0))
+                .isEqualTo(SendResult.REJECTED_FULL);
+        assertThat(queue).containsExactly(queued);
+    }
+
+    private BlockingQueue<SdkQueueEvent> fullQueue() {
+        BlockingQueue<SdkQueueEvent> queue = new LinkedBlockingQueue<>(1);
+        queue.add(queued);
+        return queue;
+    }
+
+}
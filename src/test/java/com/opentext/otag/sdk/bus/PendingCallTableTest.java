@@ -0,0 +1,125 @@
+package com.opentext.otag.sdk.bus;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PendingCallTableTest {
+
+    private EventIdGenerator originalGenerator;
+    private PendingCallTable table;
+
+    @Before
+    public void setUp() {
+        originalGenerator = EventIdGenerators.generator();
+        EventIdGenerators.setGenerator(new MonotonicEventIdGenerator("test"));
+        table = new PendingCallTable();
+    }
+
+    @After
+    public void tearDown() {
+        EventIdGenerators.setGenerator(originalGenerator);
+    }
+
+    @Test
+    public void callsAreFoundByTheirEventId() {
+        List<PendingCall> calls = new ArrayList<>();
+        // enough to make every stripe grow
+        for (int i = 0; i < 5000; i++) {
+            calls.add(table.register(EventIdGenerators.nextId()));
+        }
+
+        assertThat(table.size()).isEqualTo(calls.size());
+        for (PendingCall call : calls) {
+            assertThat(table.get(call.eventId)).isSameAs(call);
+        }
+        assertThat(table.eventIds()).hasSize(calls.size());
+        assertThat(table.get(EventIdGenerators.nextId())).isNull();
+    }
+
+    @Test
+    public void completingACallRemovesIt() {
+        PendingCall answered = table.register(EventIdGenerators.nextId());
+        PendingCall failed = table.register(EventIdGenerators.nextId());
+        PendingCall cancelled = table.register(EventIdGenerators.nextId());
+        PendingCall waiting = table.register(EventIdGenerators.nextId());
+
+        assertThat(answered.complete(new SdkQueueEvent())).isTrue();
+        assertThat(failed.completeExceptionally(new RuntimeException())).isTrue();
+        assertThat(cancelled.cancel(false)).isTrue();
+
+        assertThat(table.get(answered.eventId)).isNull();
+        assertThat(table.get(failed.eventId)).isNull();
+        assertThat(table.get(cancelled.eventId)).isNull();
+        assertThat(table.get(waiting.eventId)).isSameAs(waiting);
+        assertThat(table.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void heldCallsStayUntilTheyAreReleased() throws Exception {
+        PendingCall held = table.register(EventIdGenerators.nextId(), true);
+        SdkQueueEvent response = new SdkQueueEvent();
+
+        assertThat(held.complete(response)).isTrue();
+        assertThat(table.get(held.eventId)).isSameAs(held);
+        assertThat(table.get(held.eventId).get(1, TimeUnit.SECONDS)).isSameAs(response);
+
+        held.release();
+        assertThat(table.get(held.eventId)).isNull();
+    }
+
+    @Test
+    public void completingACallCancelsItsTimeout() {
+        HashedTimerWheel wheel = new HashedTimerWheel("TestWheel", 10, TimeUnit.MILLISECONDS, 8);
+        try {
+            PendingCall call = table.register(EventIdGenerators.nextId());
+            HashedTimerWheel.Timeout timeout = wheel.schedule(() -> {
+            }, 1, TimeUnit.MINUTES);
+            call.setTimeout(timeout, TimeUnit.MINUTES.toMillis(1));
+
+            call.complete(new SdkQueueEvent());
+
+            assertThat(timeout.isCancelled()).isTrue();
+            assertThat(wheel.pending()).isEqualTo(0);
+        } finally {
+            wheel.stop();
+        }
+    }
+
+    @Test
+    public void reRegisteringAnIdReplacesTheOldCall() {
+        String eventId = EventIdGenerators.nextId();
+        PendingCall first = table.register(eventId);
+        PendingCall second = table.register(eventId);
+
+        assertThat(table.get(eventId)).isSameAs(second);
+        assertThat(table.size()).isEqualTo(1);
+
+        // the replaced call must not remove its successor
+        first.complete(new SdkQueueEvent());
+        assertThat(table.get(eventId)).isSameAs(second);
+    }
+
+    @Test
+    public void foreignIdsAreHeldById() throws Exception {
+        String uuid = UUID.randomUUID().toString();
+        PendingCall call = table.register(uuid);
+
+        assertThat(call.key).isEqualTo(-1);
+        assertThat(table.get(uuid)).isSameAs(call);
+        assertThat(table.eventIds()).containsExactly(uuid);
+
+        SdkQueueEvent response = new SdkQueueEvent();
+        call.complete(response);
+        assertThat(call.get(1, TimeUnit.SECONDS)).isSameAs(response);
+        assertThat(table.get(uuid)).isNull();
+    }
+
+}
@@ -0,0 +1,142 @@
+package com.opentext.otag.sdk.bus;
+
+import com.opentext.otag.sdk.types.v4.SdkRequest;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.opentext.otag.sdk.bus.SdkEventKeys.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class PriorityLaneBlockingQueueTest {
+
+    private final SystemEnvironment envMock = mock(SystemEnvironment.class);
+
+    @Test
+    public void eventsAreAssignedToLanesByTypeAndEndpoint() {
+        when(envMock.getenv(PriorityLanes.laneEnvVar(PROVIDER_LIST_PROVIDERS))).thenReturn("bulk");
+        when(envMock.getenv(PriorityLanes.laneEnvVar(SETTINGS_GET_SETTING))).thenReturn("nonsense");
+        PriorityLanes lanes = new PriorityLanes(envMock);
+
+        assertThat(lanes.laneOf(SdkQueueEvent.okResponse(request(SEND_MAIL)))).isEqualTo(PriorityLane.CONTROL);
+        assertThat(lanes.laneOf(request(NOTIFICATIONS_PUSH))).isEqualTo(PriorityLane.BULK);
+        assertThat(lanes.laneOf(request(SETTINGS_GET_SETTING))).isEqualTo(PriorityLane.INTERACTIVE);
+        assertThat(lanes.laneOf(request(PROVIDER_LIST_PROVIDERS))).isEqualTo(PriorityLane.BULK);
+
+        lanes.setLane(SEND_MAIL, PriorityLane.INTERACTIVE);
+        assertThat(lanes.laneOf(request(SEND_MAIL))).isEqualTo(PriorityLane.INTERACTIVE);
+    }
+
+    @Test
+    public void interactiveRequestsAreNotHeldUpByABulkBurst() {
+        PriorityLaneBlockingQueue queue = newQueue(100, 0);
+        for (int i = 0; i < 50; i++) {
+            assertThat(queue.offer(request(NOTIFICATIONS_PUSH))).isTrue();
+        }
+        SdkQueueEvent login = request(SETTINGS_GET_SETTING);
+        queue.offer(login);
+
+        assertThat(queue.peek()).isSameAs(login);
+        assertThat(queue.poll()).isSameAs(login);
+        assertThat(queue.size(PriorityLane.BULK)).isEqualTo(50);
+    }
+
+    @Test
+    public void busyLanesShareTheConsumerByWeight() {
+        PriorityLaneBlockingQueue queue = newQueue(100, 0);
+        for (int i = 0; i < 26; i++) {
+            queue.offer(SdkQueueEvent.okResponse(request(SEND_MAIL)));
+            queue.offer(request(SETTINGS_GET_SETTING));
+            queue.offer(request(NOTIFICATIONS_PUSH));
+        }
+
+        int[] served = new int[PriorityLane.values().length];
+        for (int i = 0; i < 26; i++) {
+            served[queue.getClassifier().laneOf(queue.poll()).ordinal()]++;
+        }
+
+        assertThat(served[PriorityLane.CONTROL.ordinal()]).isEqualTo(16);
+        assertThat(served[PriorityLane.INTERACTIVE.ordinal()]).isEqualTo(8);
+        assertThat(served[PriorityLane.BULK.ordinal()]).isEqualTo(2);
+    }
+
+    @Test
+    public void eventsThatWaitTooLongJumpTheLanes() {
+        PriorityLaneBlockingQueue queue = newQueue(100, TimeUnit.MILLISECONDS.toNanos(100));
+        SdkQueueEvent stale = request(NOTIFICATIONS_PUSH);
+        stale.stampEnqueued(System.nanoTime() - TimeUnit.SECONDS.toNanos(1));
+        queue.offer(stale);
+        for (int i = 0; i < 10; i++) {
+            SdkQueueEvent fresh = request(SETTINGS_GET_SETTING);
+            fresh.stampEnqueued(System.nanoTime());
+            queue.offer(fresh);
+        }
+
+        assertThat(queue.poll()).isSameAs(stale);
+    }
+
+    @Test
+    public void overdueEventsOnlyTakeEveryOtherTurn() {
+        PriorityLaneBlockingQueue queue = newQueue(100, TimeUnit.MILLISECONDS.toNanos(100));
+        long longAgo = System.nanoTime() - TimeUnit.SECONDS.toNanos(1);
+        for (int i = 0; i < 10; i++) {
+            SdkQueueEvent stale = request(NOTIFICATIONS_PUSH);
+            stale.stampEnqueued(longAgo);
+            queue.offer(stale);
+        }
+        SdkQueueEvent login = request(SETTINGS_GET_SETTING);
+        login.stampEnqueued(System.nanoTime());
+        queue.offer(login);
+
+        List<SdkQueueEvent> served = new ArrayList<>();
+        queue.drainTo(served, 2);
+
+        assertThat(served.get(1)).isSameAs(login);
+    }
+
+    @Test
+    public void aFullLaneDoesNotBlockTheOthers() {
+        PriorityLaneBlockingQueue queue = newQueue(2, 0);
+        assertThat(queue.offer(request(NOTIFICATIONS_PUSH))).isTrue();
+        assertThat(queue.offer(request(NOTIFICATIONS_PUSH))).isTrue();
+        assertThat(queue.offer(request(NOTIFICATIONS_PUSH))).isFalse();
+
+        assertThat(queue.offer(request(SETTINGS_GET_SETTING))).isTrue();
+        assertThat(queue.size()).isEqualTo(3);
+        assertThat(queue.remainingCapacity()).isEqualTo(3);
+    }
+
+    @Test
+    public void dropOldestMakesRoomInTheEventsOwnLane() throws Exception {
+        PriorityLaneBlockingQueue queue = newQueue(1, 0);
+        SdkQueueEvent login = request(SETTINGS_GET_SETTING);
+        queue.offer(login);
+        queue.offer(request(NOTIFICATIONS_PUSH));
+        SdkQueueEvent newest = request(NOTIFICATIONS_PUSH);
+
+        assertThat(OverflowPolicies.dropOldest().onFull(queue, newest, 0)).isEqualTo(SendResult.ENQUEUED);
+        assertThat(queue).containsExactly(login, newest);
+    }
+
+    @Test
+    public void itCanBeSelectedForTheGatewayQueue() {
+        when(envMock.getenv(SdkQueueFamily.GATEWAY.queueTypeEnvVar())).thenReturn("priority");
+
+        assertThat(QueueFactories.forFamily(SdkQueueFamily.GATEWAY, envMock).newQueue(10))
+                .isInstanceOf(PriorityLaneBlockingQueue.class);
+    }
+
+    private PriorityLaneBlockingQueue newQueue(int capacity, long maxWaitNanos) {
+        return new PriorityLaneBlockingQueue(capacity, PriorityLaneBlockingQueue.defaultWeights(), maxWaitNanos,
+                new PriorityLanes(envMock));
+    }
+
+    private static SdkQueueEvent request(String endpointId) {
+        return SdkQueueEvent.request(new SdkRequest<>(endpointId), "service", "ctx");
+    }
+
+}
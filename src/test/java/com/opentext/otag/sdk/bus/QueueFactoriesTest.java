@@ -0,0 +1,43 @@
+package com.opentext.otag.sdk.bus;
+
+import org.junit.Test;
+
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class QueueFactoriesTest {
+
+    private final SystemEnvironment envMock = mock(SystemEnvironment.class);
+
+    @Test
+    public void itShouldUseTheFamilyDefaultWhenNothingIsConfigured() {
+        when(envMock.getenv(SdkQueueFamily.GATEWAY.queueTypeEnvVar())).thenReturn("");
+
+        assertThat(QueueFactories.forFamily(SdkQueueFamily.GATEWAY, envMock).newQueue(10))
+                .isInstanceOf(LinkedBlockingDeque.class);
+    }
+
+    @Test
+    public void itShouldResolveTheBuiltInTypesByName() {
+        when(envMock.getenv(SdkQueueFamily.GATEWAY.queueTypeEnvVar())).thenReturn("MPSC");
+        when(envMock.getenv(SdkQueueFamily.SERVICE.queueTypeEnvVar())).thenReturn("linked");
+
+        assertThat(QueueFactories.forFamily(SdkQueueFamily.GATEWAY, envMock).newQueue(10))
+                .isInstanceOf(MpscArrayBlockingQueue.class);
+        assertThat(QueueFactories.forFamily(SdkQueueFamily.SERVICE, envMock).newQueue(10))
+                .isInstanceOf(LinkedBlockingQueue.class);
+    }
+
+    @Test
+    public void itShouldFallBackToTheDefaultForUnknownFactories() {
+        when(envMock.getenv(SdkQueueFamily.COMMAND.queueTypeEnvVar())).thenReturn("com.example.Missing");
+
+        assertThat(QueueFactories.forFamily(SdkQueueFamily.COMMAND, envMock))
+                .isSameAs(SdkQueueFamily.COMMAND.getDefaultFactory());
+    }
+
+}
@@ -0,0 +1,62 @@
+package com.opentext.otag.sdk.bus;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class QueueHandleTest {
+
+    private static final SdkQueueManager REAL_INSTANCE = SdkQueueManager.instance;
+
+    private static final String SERVICE = "handleService";
+    private static final String PERS_CTX = "handleCtx";
+
+    @Before
+    public void setUp() {
+        SdkQueueManager.instance = new SdkQueueManager(mock(SystemEnvironment.class));
+    }
+
+    @After
+    public void tearDown() {
+        SdkQueueManager.instance = REAL_INSTANCE;
+    }
+
+    @Test
+    public void handlesAreSharedPerService() {
+        QueueHandle handle = SdkQueueManager.queueHandle(SERVICE, PERS_CTX);
+
+        assertThat(SdkQueueManager.queueHandle(SERVICE, PERS_CTX)).isSameAs(handle);
+        assertThat(SdkQueueManager.queueHandle(SERVICE, "otherCtx")).isNotSameAs(handle);
+    }
+
+    @Test
+    public void handlesSendToTheSameQueuesAsTheManager() {
+        QueueHandle handle = SdkQueueManager.queueHandle(SERVICE, PERS_CTX);
+        SdkQueueEvent response = new SdkQueueEvent(SERVICE, PERS_CTX);
+        SdkQueueEvent agentResponse = new SdkQueueEvent(SERVICE, PERS_CTX);
+        SdkQueueEvent command = new SdkQueueEvent(SERVICE, PERS_CTX);
+
+        handle.sendEventToService(response);
+        handle.sendEventToAgent(agentResponse);
+        handle.sendCommandToService(command);
+
+        assertThat(SdkQueueManager.getServiceQueue(SERVICE, PERS_CTX).poll()).isSameAs(response);
+        assertThat(SdkQueueManager.getServiceAgentQueue(SERVICE, PERS_CTX).poll()).isSameAs(agentResponse);
+        assertThat(SdkQueueManager.getServiceCommandQueue(SERVICE, PERS_CTX).poll()).isSameAs(command);
+    }
+
+    @Test
+    public void handlesSurviveTheirServiceBeingRetired() {
+        QueueHandle handle = SdkQueueManager.queueHandle(SERVICE, PERS_CTX);
+        SdkQueueManager.retireService(SERVICE, PERS_CTX);
+
+        SdkQueueEvent response = new SdkQueueEvent(SERVICE, PERS_CTX);
+        handle.sendEventToService(response);
+
+        assertThat(SdkQueueManager.getServiceQueue(SERVICE, PERS_CTX).poll()).isSameAs(response);
+    }
+
+}
@@ -52,13 +52,19 @@ public class SdkCallResponseTest extends SdkBusTester {
         GATEWAY_QUEUE.add(deploymentCompleteEvt);
 
         countDownLatch.await(5, TimeUnit.SECONDS);
+
+        // don't leave our consumers competing for the shared queues with other tests
+        gatewayThread.interrupt();
+        serviceThread.interrupt();
+        gatewayThread.join(1000);
+        serviceThread.join(1000);
     }
 
     private Runnable getServiceRunnable(final SdkQueueEvent deploymentCompleteEvt) {
         return () -> {
             LOG.log(Level.INFO, "SERVICE thread");
 
-            while (!SdkQueueManager.isShutdown()) {
+            while (!SdkQueueManager.isShutdown() && !Thread.currentThread().isInterrupted()) {
                 try {
                     SdkQueueEvent fromOtag = SERVICE_QUEUE.take();
                     LOG.log(Level.INFO, "Take off SERVICE_QUEUE, got - " + fromOtag);
@@ -80,6 +86,8 @@ public class SdkCallResponseTest extends SdkBusTester {
                         countDownLatch.countDown();
                     }
 
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
                 } catch (Throwable t) {
                     // log and ignore
                     SdkEventBusLog.error("Ignoring error", t);
@@ -101,7 +109,7 @@ public class SdkCallResponseTest extends SdkBusTester {
     private Runnable getGatewayRunnable() {
         return () -> {
             LOG.log(Level.INFO, "GATEWAY thread");
-            while (!SdkQueueManager.isShutdown()) {
+            while (!SdkQueueManager.isShutdown() && !Thread.currentThread().isInterrupted()) {
                 try {
                     SdkQueueEvent toOtag = GATEWAY_QUEUE.take();
                     LOG.log(Level.INFO, "Take off GATEWAY_QUEUE, got - " + toOtag);
@@ -131,6 +139,8 @@ public class SdkCallResponseTest extends SdkBusTester {
                         SdkQueueEvent settingsResponse = SdkQueueEvent.response(new SDKResponse(true, settings), toOtag);
                         SERVICE_QUEUE.put(settingsResponse);
                     }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
                 } catch (Throwable t) {
                     // log and ignore
                     SdkEventBusLog.error("Ignoring error", t);
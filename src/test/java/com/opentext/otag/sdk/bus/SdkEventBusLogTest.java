@@ -8,8 +8,14 @@ import org.mockito.runners.MockitoJUnitRunner;
 
 import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static com.opentext.otag.sdk.bus.SdkEventBusLog.SDK_EVENT_LOGGING_ENV_VAR;
+import static com.opentext.otag.sdk.bus.SdkEventBusLog.SDK_EVENT_LOGGING_SINK_ENV_VAR;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.when;
@@ -98,9 +104,109 @@ public class SdkEventBusLogTest {
         assertThat(outS.toString()).contains(an_error);
     }
 
+    @Test
+    public void itShouldNotBuildMessagesWhenLoggingIsDisabled() {
+        underTest.setWriteToLog(false);
+        SdkEventBusLog.setInstance(underTest);
+
+        Object expensiveArg = new Object() {
+            @Override
+            public String toString() {
+                throw new AssertionError("argument should not be formatted");
+            }
+        };
+
+        assertThat(SdkEventBusLog.isInfoEnabled()).isFalse();
+        SdkEventBusLog.info("not logged {}", expensiveArg);
+        SdkEventBusLog.info("not logged {} {}", expensiveArg, expensiveArg);
+        SdkEventBusLog.info(() -> {
+            throw new AssertionError("supplier should not be called");
+        });
+    }
+
+    @Test
+    public void itShouldSubstitutePlaceholdersInOrder() {
+        assertThat(SdkEventBusLog.substitute("a {} b {} c", 1, "two")).isEqualTo("a 1 b two c");
+        assertThat(SdkEventBusLog.substitute("too few {}", 1, 2)).isEqualTo("too few 1");
+        assertThat(SdkEventBusLog.substitute("too many {} {}", 1)).isEqualTo("too many 1 {}");
+    }
+
+    @Test
+    public void itShouldLogParameterisedMessages() {
+        initStaticInstance();
+
+        ByteArrayOutputStream outS = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(outS));
+
+        SdkEventBusLog.info("event {} on {}", "abc", "OTAG Q");
+        assertThat(outS.toString()).contains("event abc on OTAG Q");
+    }
+
+    @Test
+    public void itShouldPreferSlf4jWhenItIsBound() {
+        when(envMock.getenvBool(anyString())).thenCallRealMethod();
+        when(envMock.getenv(SDK_EVENT_LOGGING_ENV_VAR)).thenReturn("true");
+        underTest.initializeUsingEnv();
+
+        // the tests have the log4j binding on the classpath
+        assertThat(underTest.getSink()).isInstanceOf(Slf4jLogSink.class);
+    }
+
+    @Test
+    public void itShouldUseTheConfiguredSink() {
+        when(envMock.getenvBool(anyString())).thenCallRealMethod();
+        when(envMock.getenv(SDK_EVENT_LOGGING_ENV_VAR)).thenReturn("true");
+        when(envMock.getenv(SDK_EVENT_LOGGING_SINK_ENV_VAR)).thenReturn("async");
+        underTest.initializeUsingEnv();
+
+        assertThat(underTest.getSink()).isInstanceOf(AsyncLogSink.class);
+    }
+
+    @Test
+    public void itShouldNotResolveASinkWhenLoggingIsDisabled() {
+        when(envMock.getenvBool(anyString())).thenCallRealMethod();
+        when(envMock.getenv(SDK_EVENT_LOGGING_ENV_VAR)).thenReturn("false");
+        when(envMock.getenv(SDK_EVENT_LOGGING_SINK_ENV_VAR)).thenReturn("async");
+        underTest.initializeUsingEnv();
+
+        assertThat(underTest.getSink()).isInstanceOf(ConsoleLogSink.class);
+    }
+
+    @Test
+    public void itShouldWriteAsyncLogLinesOnTheWriterThread() throws Exception {
+        List<String> written = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch writes = new CountDownLatch(2);
+        ConsoleLogSink writer = new ConsoleLogSink() {
+            @Override
+            void writeInfo(long timestamp, String threadName, String threadState, String message) {
+                written.add(threadName + ":" + message);
+                writes.countDown();
+            }
+
+            @Override
+            void writeError(long timestamp, String threadName, String threadState, String message, Throwable error) {
+                written.add(threadName + ":" + message + ":" + error);
+                writes.countDown();
+            }
+        };
+
+        underTest.setWriteToLog(true);
+        underTest.setSink(new AsyncLogSink(16, writer));
+        SdkEventBusLog.setInstance(underTest);
+
+        String caller = Thread.currentThread().getName();
+        SdkEventBusLog.info("async {}", 1);
+        SdkEventBusLog.error("async error");
+
+        assertThat(writes.await(5, TimeUnit.SECONDS)).isTrue();
+        // lines carry the thread that logged them, not the writer thread
+        assertThat(written).containsExactly(caller + ":async 1", caller + ":async error:null");
+    }
+
     private void initStaticInstance() {
         when(envMock.getenvBool(anyString())).thenCallRealMethod();
         when(envMock.getenv(SDK_EVENT_LOGGING_ENV_VAR)).thenReturn("true");
+        when(envMock.getenv(SDK_EVENT_LOGGING_SINK_ENV_VAR)).thenReturn("console");
         underTest.initializeUsingEnv();
 
         // we set the instance to ensure it is not auto-resolved when one of the static
@@ -0,0 +1,249 @@
+package com.opentext.otag.sdk.bus;
+
+import com.opentext.otag.sdk.types.v3.OtagServiceEvent;
+import com.opentext.otag.sdk.types.v3.api.SDKCallInfo;
+import com.opentext.otag.sdk.types.v3.api.SDKResponse;
+import com.opentext.otag.sdk.types.v3.auth.AuthorizedUser;
+import com.opentext.otag.sdk.types.v3.auth.OtdsUserProfile;
+import com.opentext.otag.sdk.types.v3.auth.UserGroupIdList;
+import com.opentext.otag.sdk.types.v3.client.ClientInfo;
+import com.opentext.otag.sdk.types.v3.client.ClientRepresentation;
+import com.opentext.otag.sdk.types.v3.client.DeviceInfo;
+import com.opentext.otag.sdk.types.v3.client.UserInfo;
+import com.opentext.otag.sdk.types.v3.message.AccessChangeMessage;
+import com.opentext.otag.sdk.types.v3.message.AuthRequestMessage;
+import com.opentext.otag.sdk.types.v3.message.EimConnectorUpdateMessage;
+import com.opentext.otag.sdk.types.v3.message.SettingsChangeMessage;
+import com.opentext.otag.sdk.types.v3.notification.NotificationRequest;
+import com.opentext.otag.sdk.types.v3.sdk.EIMConnector;
+import com.opentext.otag.sdk.types.v3.settings.Setting;
+import com.opentext.otag.sdk.types.v3.settings.SettingType;
+import com.opentext.otag.sdk.types.v3.settings.Settings;
+import com.opentext.otag.sdk.types.v4.SdkRequest;
+import com.opentext.otag.sdk.util.ForwardHeaders;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Function;
+
+import static com.opentext.otag.sdk.bus.SdkEventKeys.NOTIFICATIONS_PUSH;
+import static com.opentext.otag.sdk.bus.SdkEventKeys.SETTINGS_GET_SETTINGS;
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class SdkEventCodecTest {
+
+    @Test
+    public void requestEventsRoundTrip() {
+        NotificationRequest notification = new NotificationRequest("provider", "{\"message\":\"héllo €\"}",
+                new HashSet<>(asList("client1", "client2")), new HashSet<>(asList("user1", "user2")));
+        SdkQueueEvent request = SdkQueueEvent.request(new SdkRequest<>(NOTIFICATIONS_PUSH, notification),
+                "service", "ctx");
+
+        SdkQueueEvent decoded = SdkEventCodec.decode(SdkEventCodec.encode(request), SdkQueueEvent.class);
+
+        assertThat(decoded).isEqualTo(request);
+        assertThat(decoded.getClientType()).isEqualTo(SdkQueueEvent.ClientType.service);
+        assertThat(decoded.getTimestampMillis()).isEqualTo(request.getTimestampMillis());
+        assertThat(decoded.getDestination()).isEqualTo(NOTIFICATIONS_PUSH);
+        assertThat(decoded.getSdkRequest().getRequestBody()).isEqualTo(notification);
+    }
+
+    @Test
+    public void responseEventsRoundTrip() {
+        SdkQueueEvent request = SdkQueueEvent.request(new SdkRequest<>(SETTINGS_GET_SETTINGS), "service", "ctx");
+        Map<String, Object> headers = new HashMap<>();
+        headers.put("Content-Type", "application/json");
+        headers.put("Content-Length", 42);
+        SDKCallInfo callInfo = new SDKCallInfo("http://gateway/settings", headers, 200, headers, "body");
+        Settings settings = new Settings(asList(
+                new Setting("first", "service", SettingType.string, "First", "a", "b", "first setting", false,
+                        true, "1"),
+                new Setting("second", SettingType.bool, "true")), callInfo);
+        SdkQueueEvent response = SdkQueueEvent.response(new SDKResponse<>(true, settings), request);
+
+        SdkQueueEvent decoded = SdkEventCodec.copy(response);
+
+        assertThat(decoded).isEqualTo(response);
+        SDKResponse<?> decodedResponse = decoded.getSdkResponse();
+        assertThat(decodedResponse.isSuccess()).isTrue();
+        assertThat(decodedResponse.getResponseBody()).isEqualToComparingFieldByFieldRecursively(settings);
+    }
+
+    @Test
+    public void exceptionsAreCarriedAsTheirTypeAndMessage() {
+        SDKCallInfo callInfo = new SDKCallInfo();
+        callInfo.setResponseStatus(500);
+        callInfo.setErrorCode("FAILED");
+        callInfo.setException(new IllegalStateException("the call failed"));
+        SDKResponse<String> response = new SDKResponse<>(false, callInfo);
+
+        SDKResponse<?> decoded = SdkEventCodec.copy(response);
+
+        assertThat(decoded.isSuccess()).isFalse();
+        assertThat(decoded.getSdkCallInfo().getResponseStatus()).isEqualTo(500);
+        assertThat(decoded.getSdkCallInfo().getErrorCode()).isEqualTo("FAILED");
+        assertThat(decoded.getSdkCallInfo().getException()).isInstanceOf(IllegalStateException.class)
+                .hasMessage("the call failed");
+    }
+
+    @Test
+    public void exceptionsOfOtherTypesAreNotRecreated() {
+        SDKCallInfo callInfo = new SDKCallInfo();
+        callInfo.setException(new NotAnSdkException("the call failed"));
+
+        SDKCallInfo decoded = SdkEventCodec.copy(callInfo);
+
+        assertThat(decoded.getException()).isExactlyInstanceOf(RuntimeException.class)
+                .hasMessage(NotAnSdkException.class.getName() + ": the call failed");
+    }
+
+    @Test
+    public void javaSerializedValuesAreRefused() throws Exception {
+        ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(serialized)) {
+            out.writeObject(new NotAnSdkException("not to be deserialized"));
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write(SdkEventCodec.FORMAT_VERSION);
+        bytes.write(18); // the tag Java serialized values were once embedded under
+        bytes.write(serialized.size() & 0x7f | 0x80);
+        bytes.write(serialized.size() >>> 7);
+        serialized.writeTo(bytes);
+
+        try {
+            SdkEventCodec.decode(bytes.toByteArray());
+            fail("Expected the value to be refused");
+        } catch (IllegalArgumentException e) {
+            assertThat(e).hasMessageContaining("Unknown value tag 18");
+        }
+    }
+
+    @Test
+    public void commandMessagesRoundTrip() {
+        ForwardHeaders headers = new ForwardHeaders("10.0.0.1", "10.0.0.2", "agent", "en", null, "/auth",
+                Collections.singletonMap("x-custom", "value"));
+        ClientRepresentation client = new ClientRepresentation("client", new ClientInfo(), new UserInfo("bob", "en"),
+                new DeviceInfo());
+
+        List<SdkQueueEvent> commands = new ArrayList<>();
+        commands.add(SdkQueueEvent.command(null, "service", "ctx"));
+        commands.get(0).setAuthRequestMessage(AuthRequestMessage.authByCredsMsg("handler", "bob", "secret",
+                headers, client));
+        commands.add(new SdkQueueEvent("service", "ctx"));
+        commands.get(1).setAccessChangeMessage(new AccessChangeMessage(OtagServiceEvent.SERVICE_DISABLED));
+        commands.add(new SdkQueueEvent("service", "ctx"));
+        commands.get(2).setSettingsChangeMessage(
+                new SettingsChangeMessage(OtagServiceEvent.SETTING_UPDATED, "key", "value"));
+        commands.add(new SdkQueueEvent("service", "ctx"));
+        commands.get(3).setEimConnectorUpdateMessage(new EimConnectorUpdateMessage(
+                new EIMConnector("connector", "1.0", "http://eim", "eim.url", "provider", "key")));
+
+        for (SdkQueueEvent command : commands) {
+            SdkQueueEvent decoded = SdkEventCodec.copy(command);
+            assertThat(decoded).isEqualTo(command);
+            assertThat(decoded.getOtagServiceEvent()).isEqualTo(command.getOtagServiceEvent());
+            for (Function<SdkQueueEvent, Object> message : Arrays.<Function<SdkQueueEvent, Object>>asList(
+                    SdkQueueEvent::getAuthRequestMessage, SdkQueueEvent::getAccessChangeMessage,
+                    SdkQueueEvent::getSettingsChangeMessage, SdkQueueEvent::getEimConnectorUpdateMessage)) {
+                if (message.apply(command) == null) {
+                    assertThat(message.apply(decoded)).isNull();
+                } else {
+                    assertThat(message.apply(decoded))
+                            .isEqualToComparingFieldByFieldRecursively(message.apply(command));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void authModelsRoundTrip() {
+        AuthorizedUser user = new AuthorizedUser("Bob", "Smith", "bob", "client", "bob", true, false,
+                "bob@example.com", 3, 60_000);
+        OtdsUserProfile profile = new OtdsUserProfile("bob", true);
+        profile.addProfileProperty("department", "engineering");
+        UserGroupIdList groups = new UserGroupIdList(asList("admins", "users"));
+
+        assertThat(SdkEventCodec.copy(user)).isEqualToComparingFieldByFieldRecursively(user);
+        assertThat(SdkEventCodec.copy(profile)).isEqualTo(profile).isInstanceOf(OtdsUserProfile.class);
+        assertThat(SdkEventCodec.copy(groups).getGroupIds()).containsExactly("admins", "users");
+    }
+
+    @Test
+    public void eventsAreMuchSmallerThanInJavaSerializedForm() throws Exception {
+        SdkQueueEvent command = SdkQueueEvent.command(null, "service", "ctx");
+        command.setSettingsChangeMessage(
+                new SettingsChangeMessage(OtagServiceEvent.SETTING_UPDATED, "setting.key", "new value"));
+
+        ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(serialized)) {
+            out.writeObject(command);
+        }
+
+        assertThat(SdkEventCodec.encode(command).length).isLessThan(serialized.size() / 5);
+    }
+
+    @Test
+    public void repeatedStringsAreWrittenOnce() {
+        String value = String.join("", Collections.nCopies(100, "x"));
+
+        byte[] once = SdkEventCodec.encode(Collections.singletonList(value));
+        byte[] tenTimes = SdkEventCodec.encode(Collections.nCopies(10, value));
+
+        // a tag and a one byte reference for each repeat
+        assertThat(tenTimes.length - once.length).isEqualTo(9 * 2);
+        assertThat(SdkEventCodec.decode(tenTimes, List.class)).containsOnly(value).hasSize(10);
+    }
+
+    @Test
+    public void valuesThatAreNeitherSdkTypesNorExceptionsAreRejected() {
+        try {
+            SdkEventCodec.encode(new SdkRequest<>(SETTINGS_GET_SETTINGS, new Object()));
+            fail("Expected the body to be rejected");
+        } catch (IllegalArgumentException expected) {
+            // neither an SDK type nor an exception
+        }
+    }
+
+    @Test
+    public void onlySdkTypesAreDecodedFieldByField() {
+        byte[] name = ArrayList.class.getName().getBytes(StandardCharsets.UTF_8);
+        byte[] bytes = new byte[3 + name.length];
+        bytes[0] = SdkEventCodec.FORMAT_VERSION;
+        bytes[1] = 16; // an object
+        bytes[2] = (byte) (name.length << 1); // a string written out
+        System.arraycopy(name, 0, bytes, 3, name.length);
+
+        try {
+            SdkEventCodec.decode(bytes);
+            fail("Expected the type to be refused");
+        } catch (IllegalArgumentException e) {
+            assertThat(e).hasMessageContaining("not an SDK type");
+        }
+    }
+
+    @Test
+    public void truncatedInputIsRejected() {
+        byte[] encoded = SdkEventCodec.encode(new SdkQueueEvent("service", "ctx"));
+
+        try {
+            SdkEventCodec.decode(Arrays.copyOf(encoded, encoded.length - 1));
+            fail("Expected the input to be rejected");
+        } catch (IllegalArgumentException expected) {
+            // truncated
+        }
+    }
+
+    // an exception only the sending side knows about
+    static class NotAnSdkException extends RuntimeException {
+
+        NotAnSdkException(String message) {
+            super(message);
+        }
+    }
+
+}
@@ -0,0 +1,281 @@
+package com.opentext.otag.sdk.bus;
+
+import com.opentext.otag.sdk.types.v3.api.error.APIException;
+import com.opentext.otag.sdk.types.v4.SdkRequest;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Predicate;
+
+import static com.opentext.otag.sdk.bus.SdkEventKeys.GET_RUNTIMES;
+import static com.opentext.otag.sdk.bus.SdkEventKeys.SEND_MAIL;
+import static com.opentext.otag.sdk.bus.SdkEventKeys.SETTINGS_GET_SETTING;
+import static com.opentext.otag.sdk.bus.SdkEventKeys.SETTINGS_GET_SETTINGS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class SdkQueueCallbackManagerTest extends SdkBusTester {
+
+    private static final String TEST_SERVICE = "testService";
+    private static final String PERS_CTX = "persCtx";
+
+    @Test
+    public void sendAsyncIsCompletedByTheResponseConsumer() throws Exception {
+        SdkQueueEvent request = settingsRequest();
+
+        CompletableFuture<SdkQueueEvent> response = callbackManager.sendAsync(request);
+
+        // act as the Gateway
+        SdkQueueEvent received = GATEWAY_QUEUE.poll(5, SECONDS);
+        assertThat(received).isSameAs(request);
+        SERVICE_QUEUE.put(SdkQueueEvent.okResponse(received));
+
+        assertThat(response.get(5, SECONDS).getSdkEventIdentifier()).isEqualTo(request.getSdkEventIdentifier());
+    }
+
+    @Test
+    public void sendAsyncIsCompletedWithAnApiExceptionIfTheGatewayNeverResponds() throws Exception {
+        SdkQueueEvent request = settingsRequest();
+
+        CompletableFuture<SdkQueueEvent> response = callbackManager.sendAsync(request, 50, MILLISECONDS);
+        assertThat(GATEWAY_QUEUE.poll(5, SECONDS)).isSameAs(request);
+
+        try {
+            response.get(5, SECONDS);
+            fail("Expected the request to time out");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause()).isInstanceOf(APIException.class);
+            assertThat(((APIException) e.getCause()).getCallInfo().getErrorCode())
+                    .isEqualTo(SdkQueueCallbackManager.TIMEOUT_ERROR_CODE);
+        }
+        // the expired call gave up its slot
+        assertThat(SdkQueueCallbackManager.CALLBACKS.get(request.getSdkEventIdentifier())).isNull();
+    }
+
+    @Test
+    public void preparedCallsUseTheirEndpointTimeout() throws Exception {
+        SdkQueueEvent request = SdkQueueEvent.request(new SdkRequest<>(SETTINGS_GET_SETTING), TEST_SERVICE, PERS_CTX);
+        SdkQueueCallbackManager.setEndpointTimeout(SETTINGS_GET_SETTING, 50, MILLISECONDS);
+        try {
+            callbackManager.prepareForResponse(request);
+            SdkQueueManager.sendEventToGateway(request);
+            assertThat(GATEWAY_QUEUE.poll(5, SECONDS)).isSameAs(request);
+
+            long start = System.nanoTime();
+            try {
+                callbackManager.getResponseForEvent(request.getSdkEventIdentifier());
+                fail("Expected the request to time out");
+            } catch (APIException e) {
+                assertThat(e.getCallInfo().getErrorCode()).isEqualTo(SdkQueueCallbackManager.TIMEOUT_ERROR_CODE);
+            }
+            // well before the default timeout
+            assertThat(System.nanoTime() - start).isLessThan(SECONDS.toNanos(5));
+        } finally {
+            SdkQueueCallbackManager.setEndpointTimeout(SETTINGS_GET_SETTING, 10, SECONDS);
+        }
+    }
+
+    @Test
+    public void responsesArrivingBeforeTheCallerWaitsAreReturned() throws Exception {
+        SdkQueueEvent request = settingsRequest();
+        callbackManager.prepareForResponse(request);
+        SdkQueueManager.sendEventToGateway(request);
+        assertThat(GATEWAY_QUEUE.poll(5, SECONDS)).isSameAs(request);
+
+        SERVICE_QUEUE.put(SdkQueueEvent.okResponse(request));
+        PendingCall call = SdkQueueCallbackManager.CALLBACKS.get(request.getSdkEventIdentifier());
+        call.get(5, SECONDS);
+
+        // answered before we asked for it
+        assertThat(callbackManager.getResponseForEvent(request.getSdkEventIdentifier()).getSdkEventIdentifier())
+                .isEqualTo(request.getSdkEventIdentifier());
+        assertThat(SdkQueueCallbackManager.CALLBACKS.get(request.getSdkEventIdentifier())).isNull();
+    }
+
+    @Test
+    public void orphanedCallsAreExpiredEvenIfNobodyWaitsForThem() throws Exception {
+        SdkQueueEvent request = SdkQueueEvent.request(new SdkRequest<>(SETTINGS_GET_SETTING), TEST_SERVICE, PERS_CTX);
+        SdkQueueCallbackManager.setEndpointTimeout(SETTINGS_GET_SETTING, 50, MILLISECONDS);
+        try {
+            callbackManager.prepareForResponse(request);
+            assertThat(SdkQueueCallbackManager.CALLBACKS.get(request.getSdkEventIdentifier())).isNotNull();
+
+            long deadline = System.nanoTime() + SECONDS.toNanos(5);
+            while (SdkQueueCallbackManager.CALLBACKS.get(request.getSdkEventIdentifier()) != null &&
+                    System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertThat(SdkQueueCallbackManager.CALLBACKS.get(request.getSdkEventIdentifier())).isNull();
+        } finally {
+            SdkQueueCallbackManager.setEndpointTimeout(SETTINGS_GET_SETTING, 10, SECONDS);
+        }
+    }
+
+    @Test
+    public void callLatenciesAreBrokenDownPerEndpoint() throws Exception {
+        SdkQueueCallbackManager.endpointLatencies().reset();
+        SdkQueueEvent request = settingsRequest();
+
+        CompletableFuture<SdkQueueEvent> response = callbackManager.sendAsync(request);
+
+        // act as a slow Gateway
+        SdkQueueEvent received = GATEWAY_QUEUE.poll(5, SECONDS);
+        assertThat(received).isSameAs(request);
+        Thread.sleep(20);
+        SdkQueueManager.sendEventToService(TEST_SERVICE, PERS_CTX, SdkQueueEvent.okResponse(received));
+        response.get(5, SECONDS);
+
+        // the consumer records the call once it has completed it
+        EndpointLatencySnapshot latencies = awaitLatencies(snapshot -> snapshot.getTotal().getCount() > 0);
+        assertThat(latencies.getTotal().getCount()).isEqualTo(1);
+        assertThat(latencies.getQueueWait().getCount()).isEqualTo(1);
+        assertThat(latencies.getGatewayProcessing().getCount()).isEqualTo(1);
+        assertThat(latencies.getReturnQueueWait().getCount()).isEqualTo(1);
+        assertThat(latencies.getGatewayProcessing().getP50Nanos()).isGreaterThanOrEqualTo(MILLISECONDS.toNanos(18));
+        assertThat(latencies.getTotal().getMaxNanos())
+                .isGreaterThanOrEqualTo(latencies.getGatewayProcessing().getMaxNanos());
+        assertThat(latencies.getTimeouts()).isZero();
+        assertThat(SdkQueueCallbackManager.endpointLatencies().snapshot()).containsKey(SETTINGS_GET_SETTINGS);
+    }
+
+    @Test
+    public void timeoutsAreCountedPerEndpoint() throws Exception {
+        SdkQueueCallbackManager.endpointLatencies().reset();
+        SdkQueueEvent request = settingsRequest();
+
+        CompletableFuture<SdkQueueEvent> response = callbackManager.sendAsync(request, 20, MILLISECONDS);
+        assertThat(GATEWAY_QUEUE.poll(5, SECONDS)).isSameAs(request);
+        try {
+            response.get(5, SECONDS);
+            fail("Expected the request to time out");
+        } catch (ExecutionException expected) {
+            // the timer counts the timeout once it has failed the call
+        }
+
+        EndpointLatencySnapshot latencies = awaitLatencies(snapshot -> snapshot.getTimeouts() > 0);
+        assertThat(latencies.getTimeouts()).isEqualTo(1);
+        assertThat(latencies.getTotal().getCount()).isZero();
+    }
+
+    @Test
+    public void identicalReadsInFlightShareOneCall() throws Exception {
+        long coalescedBefore = SdkQueueCallbackManager.getCoalescedCallCount();
+        SdkQueueEvent first = runtimesRequest("coalesced");
+        SdkQueueEvent second = runtimesRequest("coalesced");
+        SdkQueueEvent third = runtimesRequest("coalesced");
+        SdkQueueEvent other = runtimesRequest("other");
+
+        CompletableFuture<SdkQueueEvent> firstResponse = callbackManager.sendAsync(first);
+        CompletableFuture<SdkQueueEvent> secondResponse = callbackManager.sendAsync(second);
+        CompletableFuture<SdkQueueEvent> thirdResponse = callbackManager.sendAsync(third);
+        CompletableFuture<SdkQueueEvent> otherResponse = callbackManager.sendAsync(other);
+
+        // only the first of the identical requests and the one with a different body reach the Gateway
+        assertThat(GATEWAY_QUEUE.poll(5, SECONDS)).isSameAs(first);
+        assertThat(GATEWAY_QUEUE.poll(5, SECONDS)).isSameAs(other);
+        assertThat(GATEWAY_QUEUE.poll(100, MILLISECONDS)).isNull();
+        assertThat(SdkQueueCallbackManager.getCoalescedCallCount() - coalescedBefore).isEqualTo(2);
+
+        // one caller giving up does not affect the others
+        secondResponse.cancel(false);
+        SERVICE_QUEUE.put(SdkQueueEvent.okResponse(first));
+        SERVICE_QUEUE.put(SdkQueueEvent.okResponse(other));
+
+        SdkQueueEvent response = firstResponse.get(5, SECONDS);
+        assertThat(response.getSdkEventIdentifier()).isEqualTo(first.getSdkEventIdentifier());
+        // attached callers get their own copy, answering their own request
+        SdkQueueEvent copy = thirdResponse.get(5, SECONDS);
+        assertThat(copy).isNotSameAs(response);
+        assertThat(copy.getSdkEventIdentifier()).isEqualTo(third.getSdkEventIdentifier());
+        assertThat(copy.getSdkEventType()).isEqualTo(SdkQueueEvent.Type.response);
+        assertThat(copy.getSdkResponse()).isNotSameAs(response.getSdkResponse());
+        assertThat(copy.getSdkResponse().isSuccess()).isTrue();
+        assertThat(otherResponse.get(5, SECONDS).getSdkEventIdentifier()).isEqualTo(other.getSdkEventIdentifier());
+
+        // once answered the next request is sent again
+        SdkQueueEvent later = runtimesRequest("coalesced");
+        callbackManager.sendAsync(later, 20, MILLISECONDS);
+        assertThat(GATEWAY_QUEUE.poll(5, SECONDS)).isSameAs(later);
+    }
+
+    @Test
+    public void theFirstCallersTimeoutOnlyFailsTheFirstCaller() throws Exception {
+        SdkQueueEvent first = runtimesRequest("failing");
+        SdkQueueEvent second = runtimesRequest("failing");
+        CompletableFuture<SdkQueueEvent> firstResponse = callbackManager.sendAsync(first, 20, MILLISECONDS);
+        CompletableFuture<SdkQueueEvent> secondResponse = callbackManager.sendAsync(second, 5, SECONDS);
+        assertThat(GATEWAY_QUEUE.poll(5, SECONDS)).isSameAs(first);
+
+        try {
+            firstResponse.get(5, SECONDS);
+            fail("Expected the request to time out");
+        } catch (ExecutionException e) {
+            assertThat(((APIException) e.getCause()).getCallInfo().getErrorCode())
+                    .isEqualTo(SdkQueueCallbackManager.TIMEOUT_ERROR_CODE);
+        }
+
+        // the attached caller still has time left, so sends its own request
+        assertThat(GATEWAY_QUEUE.poll(5, SECONDS)).isSameAs(second);
+        assertThat(secondResponse.isDone()).isFalse();
+        SERVICE_QUEUE.put(SdkQueueEvent.okResponse(second));
+        assertThat(secondResponse.get(5, SECONDS).getSdkEventIdentifier()).isEqualTo(second.getSdkEventIdentifier());
+    }
+
+    @Test
+    public void callersAttachedToACallKeepTheirOwnTimeout() throws Exception {
+        SdkQueueEvent first = runtimesRequest("slow");
+        CompletableFuture<SdkQueueEvent> firstResponse = callbackManager.sendAsync(first, 5, SECONDS);
+        CompletableFuture<SdkQueueEvent> impatient = callbackManager.sendAsync(runtimesRequest("slow"),
+                20, MILLISECONDS);
+        assertThat(GATEWAY_QUEUE.poll(5, SECONDS)).isSameAs(first);
+
+        try {
+            impatient.get(5, SECONDS);
+            fail("Expected the attached request to time out");
+        } catch (ExecutionException e) {
+            assertThat(((APIException) e.getCause()).getCallInfo().getErrorCode())
+                    .isEqualTo(SdkQueueCallbackManager.TIMEOUT_ERROR_CODE);
+        }
+        assertThat(firstResponse.isDone()).isFalse();
+
+        SERVICE_QUEUE.put(SdkQueueEvent.okResponse(first));
+        assertThat(firstResponse.get(5, SECONDS).getSdkResponse().isSuccess()).isTrue();
+    }
+
+    @Test
+    public void requestsThatChangeThingsAreAlwaysSent() throws Exception {
+        SdkQueueEvent first = SdkQueueEvent.request(new SdkRequest<>(SEND_MAIL, "mail"), TEST_SERVICE, PERS_CTX);
+        SdkQueueEvent second = SdkQueueEvent.request(new SdkRequest<>(SEND_MAIL, "mail"), TEST_SERVICE, PERS_CTX);
+
+        callbackManager.sendAsync(first, 20, MILLISECONDS);
+        callbackManager.sendAsync(second, 20, MILLISECONDS);
+
+        assertThat(GATEWAY_QUEUE.poll(5, SECONDS)).isSameAs(first);
+        assertThat(GATEWAY_QUEUE.poll(5, SECONDS)).isSameAs(second);
+    }
+
+    private static EndpointLatencySnapshot awaitLatencies(Predicate<EndpointLatencySnapshot> recorded)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + SECONDS.toNanos(5);
+        EndpointLatencySnapshot latencies = SdkQueueCallbackManager.endpointLatencies()
+                .snapshot(SETTINGS_GET_SETTINGS);
+        while ((latencies == null || !recorded.test(latencies)) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            latencies = SdkQueueCallbackManager.endpointLatencies().snapshot(SETTINGS_GET_SETTINGS);
+        }
+        assertThat(latencies).isNotNull();
+        return latencies;
+    }
+
+    private SdkQueueEvent runtimesRequest(String body) {
+        return SdkQueueEvent.request(new SdkRequest<>(GET_RUNTIMES, body), TEST_SERVICE, PERS_CTX);
+    }
+
+    private SdkQueueEvent settingsRequest() {
+        return SdkQueueEvent.request(new SdkRequest<>(SETTINGS_GET_SETTINGS), TEST_SERVICE, PERS_CTX);
+    }
+
+}
@@ -0,0 +1,83 @@
+package com.opentext.otag.sdk.bus;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class SdkQueueEventTest {
+
+    private static final SdkQueueManager REAL_INSTANCE = SdkQueueManager.instance;
+
+    @Before
+    public void setUp() {
+        SdkQueueManager.instance = new SdkQueueManager(mock(SystemEnvironment.class));
+    }
+
+    @After
+    public void tearDown() {
+        SdkQueueManager.instance = REAL_INSTANCE;
+    }
+
+    @Test
+    public void theWallClockTimestampIsCreatedOnDemand() {
+        long before = System.currentTimeMillis();
+        SdkQueueEvent event = new SdkQueueEvent("service", "ctx");
+
+        assertThat(event.getTimestampMillis()).isBetween(before, System.currentTimeMillis());
+        assertThat(event.getTimestamp().getTime()).isEqualTo(event.getTimestampMillis());
+        assertThat(event.getTimestamp()).isSameAs(event.getTimestamp());
+        assertThat(event.getCreatedNanos()).isNotZero();
+    }
+
+    @Test
+    public void queueResidencyIsMeasuredAcrossTheGatewayQueue() throws Exception {
+        SdkQueueEvent event = new SdkQueueEvent("service", "ctx");
+        assertThat(event.getQueueResidencyNanos()).isEqualTo(-1);
+
+        SdkQueueManager.sendEventToGateway(event);
+        Thread.sleep(5);
+        SdkQueueEvent taken = SdkQueueManager.gatewayQueue().take();
+
+        assertThat(taken).isSameAs(event);
+        assertThat(event.getEnqueuedNanos()).isGreaterThanOrEqualTo(event.getCreatedNanos());
+        assertThat(event.getQueueResidencyNanos()).isGreaterThanOrEqualTo(4_000_000L);
+    }
+
+    @Test
+    public void serializationKeepsTheTimestampButNotTheMonotonicStamps() throws Exception {
+        SdkQueueEvent event = new SdkQueueEvent("service", "ctx");
+        SdkQueueManager.sendEventToGateway(event);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(event);
+        }
+        SdkQueueEvent copy;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            copy = (SdkQueueEvent) in.readObject();
+        }
+
+        assertThat(copy).isEqualTo(event);
+        assertThat(copy.getTimestampMillis()).isEqualTo(event.getTimestampMillis());
+        assertThat(copy.getTimestamp()).isEqualTo(event.getTimestamp());
+        assertThat(copy.getEnqueuedNanos()).isZero();
+        assertThat(copy.getCreatedNanos()).isZero();
+    }
+
+    @Test
+    public void theSerialFormIsCompatibleWithEarlierReleases() {
+        // the value computed for the class as released before the timestamp changes
+        assertThat(ObjectStreamClass.lookup(SdkQueueEvent.class).getSerialVersionUID())
+                .isEqualTo(-5218414906838343559L);
+    }
+
+}
@@ -1,11 +1,16 @@
 package com.opentext.otag.sdk.bus;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import static org.fest.assertions.api.Assertions.assertThat;
 import static org.mockito.Mockito.*;
@@ -13,6 +18,9 @@ import static org.mockito.Mockito.*;
 
 public class SdkQueueManagerTest {
 
+    // restored after each test so the mocked singleton does not leak into other test classes
+    private static final SdkQueueManager REAL_INSTANCE = SdkQueueManager.instance;
+
     private SdkQueueManager instanceMock;
     private String serviceName;
     private String persistenceContext;
@@ -39,9 +47,18 @@ public class SdkQueueManagerTest {
         instanceMock.SERVICE_COMMAND_QUEUES = mock(Map.class);
         when(instanceMock.SERVICE_COMMAND_QUEUES.get(sdkQueueEventId)).thenReturn(queueMock);
 
+        instanceMock.QUEUE_HANDLES = mock(Map.class);
+
         sdkQueueEventMock = mock(SdkQueueEvent.class);
     }
 
+    @After
+    public void tearDown() {
+        SdkQueueManager.instance = REAL_INSTANCE;
+        // some tests interrupt the test thread on purpose, clear it for whoever runs next
+        Thread.interrupted();
+    }
+
     @Test
     public void registerService() {
         SdkQueueManager.registerService(serviceName, persistenceContext);
@@ -58,6 +75,7 @@ public class SdkQueueManagerTest {
         verify(instanceMock.SERVICES_QUEUES).remove(sdkQueueEventId);
         verify(instanceMock.SERVICES_AGENT_QUEUES).remove(sdkQueueEventId);
         verify(instanceMock.SERVICE_COMMAND_QUEUES).remove(sdkQueueEventId);
+        verify(instanceMock.QUEUE_HANDLES).remove(sdkQueueEventId);
     }
 
     @Test
@@ -73,34 +91,94 @@ public class SdkQueueManagerTest {
     public void sendEventToGateway() {
         SdkQueueManager.sendEventToGateway(sdkQueueEventMock);
 
-        verify(instanceMock).put(instanceMock.GATEWAY_QUEUE, "OTAG Q", sdkQueueEventMock);
+        verify(instanceMock).offer(SdkQueueFamily.GATEWAY, instanceMock.GATEWAY_QUEUE, sdkQueueEventMock);
+    }
+
+    @Test
+    public void sendEventsToGateway() {
+        List<SdkQueueEvent> events = Arrays.asList(sdkQueueEventMock, sdkQueueEventMock);
+        SdkQueueManager.sendEventsToGateway(events);
+
+        verify(instanceMock).offerAll(SdkQueueFamily.GATEWAY, instanceMock.GATEWAY_QUEUE, events);
+    }
+
+    @Test
+    public void sendEventsToGatewayEnqueuesEveryEventInOrder() {
+        SdkQueueManager.instance = new SdkQueueManager(mock(SystemEnvironment.class));
+        SdkQueueEvent first = mock(SdkQueueEvent.class);
+        SdkQueueEvent second = mock(SdkQueueEvent.class);
+
+        assertThat(SdkQueueManager.sendEventsToGateway(Arrays.asList(first, second))).isEqualTo(2);
+
+        assertThat(SdkQueueManager.gatewayQueue()).containsExactly(first, second);
+    }
+
+    @Test
+    public void sendEventsToGatewayStopsEnqueuingOnShutdown() {
+        SdkQueueManager.instance = new SdkQueueManager(mock(SystemEnvironment.class));
+        SdkQueueManager.shutdown();
+
+        assertThat(SdkQueueManager.sendEventsToGateway(Arrays.asList(sdkQueueEventMock))).isEqualTo(0);
+        assertThat(SdkQueueManager.gatewayQueue()).isEmpty();
+    }
+
+    @Test
+    public void drainGatewayQueueReturnsUpToMaxEvents() throws InterruptedException {
+        SdkQueueManager.instance = new SdkQueueManager(mock(SystemEnvironment.class));
+        List<SdkQueueEvent> events = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            events.add(mock(SdkQueueEvent.class));
+        }
+        SdkQueueManager.sendEventsToGateway(events);
+
+        assertThat(SdkQueueManager.drainGatewayQueue(3, 0, TimeUnit.MILLISECONDS))
+                .containsExactly(events.get(0), events.get(1), events.get(2));
+        assertThat(SdkQueueManager.drainGatewayQueue(3, 0, TimeUnit.MILLISECONDS))
+                .containsExactly(events.get(3), events.get(4));
+    }
+
+    @Test
+    public void drainGatewayQueueWaitsForTheFirstEvent() throws InterruptedException {
+        SdkQueueManager.instance = new SdkQueueManager(mock(SystemEnvironment.class));
+        Thread sender = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException ignore) {
+            }
+            SdkQueueManager.sendEventToGateway(sdkQueueEventMock);
+        });
+        sender.start();
+
+        assertThat(SdkQueueManager.drainGatewayQueue(10, 5, TimeUnit.SECONDS)).containsExactly(sdkQueueEventMock);
+        sender.join();
+        assertThat(SdkQueueManager.drainGatewayQueue(10, 10, TimeUnit.MILLISECONDS)).isEmpty();
     }
 
     @Test
     public void sendCommandToService() {
+        when(instanceMock.ensureServiceCommandQueue(serviceName, persistenceContext, true)).thenReturn(queueMock);
         SdkQueueManager.sendCommandToService(serviceName, persistenceContext, sdkQueueEventMock);
 
         verify(instanceMock).ensureServiceCommandQueue(serviceName, persistenceContext, true);
-        verify(instanceMock.SERVICE_COMMAND_QUEUES).get(sdkQueueEventId);
-        verify(instanceMock).put(queueMock, "COMMAND Q", sdkQueueEventMock);
+        verify(instanceMock).offer(SdkQueueFamily.COMMAND, queueMock, sdkQueueEventMock);
     }
 
     @Test
     public void sendEventToService() {
+        when(instanceMock.ensureServiceQueue(serviceName, persistenceContext, true)).thenReturn(queueMock);
         SdkQueueManager.sendEventToService(serviceName, persistenceContext, sdkQueueEventMock);
 
         verify(instanceMock).ensureServiceQueue(serviceName, persistenceContext, true);
-        verify(instanceMock.SERVICES_QUEUES).get(sdkQueueEventId);
-        verify(instanceMock).put(queueMock, "SERVICE RESPONSE Q", sdkQueueEventMock);
+        verify(instanceMock).offer(SdkQueueFamily.SERVICE, queueMock, sdkQueueEventMock);
     }
 
     @Test
     public void sendEventToAgent() {
+        when(instanceMock.ensureServiceAgentQueue(serviceName, persistenceContext, true)).thenReturn(queueMock);
         SdkQueueManager.sendEventToAgent(serviceName, persistenceContext, sdkQueueEventMock);
 
         verify(instanceMock).ensureServiceAgentQueue(serviceName, persistenceContext, true);
-        verify(instanceMock.SERVICES_AGENT_QUEUES).get(sdkQueueEventId);
-        verify(instanceMock).put(queueMock, "SERVICE AGENT Q", sdkQueueEventMock);
+        verify(instanceMock).offer(SdkQueueFamily.AGENT, queueMock, sdkQueueEventMock);
     }
 
     @Test
@@ -136,72 +214,117 @@ public class SdkQueueManagerTest {
     }
 
     @Test
-    public void putProperlyEnqueuesEvent_happy_path() throws InterruptedException {
-        doCallRealMethod().when(instanceMock).put(any(), any(), any());
+    public void offerEnqueuesWithoutWaitingWhenThereIsSpace() throws InterruptedException {
+        SdkQueueManager manager = new SdkQueueManager(mock(SystemEnvironment.class));
+        when(queueMock.offer(sdkQueueEventMock)).thenReturn(true);
 
-        instanceMock.put(queueMock, "for logging purposes", sdkQueueEventMock);
+        assertThat(manager.offer(SdkQueueFamily.SERVICE, queueMock, sdkQueueEventMock)).isEqualTo(SendResult.ENQUEUED);
 
-        verify(queueMock).put(sdkQueueEventMock);
+        verify(queueMock, never()).offer(any(), anyLong(), any());
+        verify(queueMock, never()).put(any());
     }
 
     @Test
-    public void putRetriesTheEnqueueWhenASmallNumberOfInterruptedExceptionsOccur() throws InterruptedException {
-        doCallRealMethod().when(instanceMock).put(any(), any(), any());
-        doThrow(new InterruptedException()).doThrow(new InterruptedException()).doNothing().when(queueMock).put(any());
-
-        instanceMock.put(queueMock, "for logging purposes", sdkQueueEventMock);
-
-        verify(queueMock, times(3)).put(sdkQueueEventMock);
+    public void offerWaitsForSpaceUpToTheConfiguredTimeout() throws InterruptedException {
+        SystemEnvironment envMock = mock(SystemEnvironment.class);
+        when(envMock.getenvInt(anyString(), anyInt())).thenCallRealMethod();
+        when(envMock.getenv(SdkQueueFamily.SERVICE.enqueueTimeoutEnvVar())).thenReturn("250");
+        SdkQueueManager manager = new SdkQueueManager(envMock);
+        when(queueMock.offer(sdkQueueEventMock)).thenReturn(false);
+        when(queueMock.offer(sdkQueueEventMock, TimeUnit.MILLISECONDS.toNanos(250), TimeUnit.NANOSECONDS))
+                .thenReturn(true);
+
+        assertThat(manager.offer(SdkQueueFamily.SERVICE, queueMock, sdkQueueEventMock)).isEqualTo(SendResult.ENQUEUED);
     }
 
     @Test
-    public void putIsNeverCalledIfServiceShuttingDown() throws InterruptedException {
-        doCallRealMethod().when(instanceMock).put(any(), any(), any());
-
-        instanceMock.put(queueMock, "", sdkQueueEventMock);
-        instanceMock.put(queueMock, "", sdkQueueEventMock);
-        SdkQueueManager.shutdown();
-        instanceMock.put(queueMock, "", sdkQueueEventMock);
+    public void offerIsRejectedWhenTheQueueStaysFull() throws InterruptedException {
+        SdkQueueManager manager = new SdkQueueManager(mock(SystemEnvironment.class));
+        when(queueMock.offer(sdkQueueEventMock)).thenReturn(false);
+        when(queueMock.offer(eq(sdkQueueEventMock), anyLong(), any())).thenReturn(false);
 
-        verify(queueMock, times(2)).put(any());
+        assertThat(manager.offer(SdkQueueFamily.SERVICE, queueMock, sdkQueueEventMock))
+                .isEqualTo(SendResult.REJECTED_FULL);
     }
 
     @Test
-    public void numberOfRetriesIsASensibleNumber() {
-        assertThat(SdkQueueManager.MAX_ENQUEUE_ATTEMPTS).isGreaterThanOrEqualTo(10).isLessThanOrEqualTo(500);
+    public void offerIsNeverCalledIfServiceShuttingDown() throws InterruptedException {
+        SdkQueueManager manager = new SdkQueueManager(mock(SystemEnvironment.class));
+        when(queueMock.offer(any())).thenReturn(true);
+
+        manager.offer(SdkQueueFamily.SERVICE, queueMock, sdkQueueEventMock);
+        manager.offer(SdkQueueFamily.SERVICE, queueMock, sdkQueueEventMock);
+        manager.stop = true;
+
+        assertThat(manager.offer(SdkQueueFamily.SERVICE, queueMock, sdkQueueEventMock)).isEqualTo(SendResult.SHUTDOWN);
+        verify(queueMock, times(2)).offer(any());
     }
 
     @Test
-    public void putWillRetryAFiniteNumberOfTimesUnderInterruptedExceptions() throws InterruptedException {
-        doCallRealMethod().when(instanceMock).put(any(), any(), any());
-        doThrow(new InterruptedException()).when(queueMock).put(any());
+    public void offerUsesTheFamilyOverflowPolicy() {
+        SdkQueueManager.instance = new SdkQueueManager(mock(SystemEnvironment.class));
+        SdkQueueManager.setOverflowPolicy(SdkQueueFamily.AGENT, OverflowPolicies.dropNewest());
+        when(queueMock.offer(sdkQueueEventMock)).thenReturn(false);
 
-        instanceMock.put(queueMock, "for logging purposes", sdkQueueEventMock);
-
-        verify(queueMock, times(SdkQueueManager.MAX_ENQUEUE_ATTEMPTS)).put(sdkQueueEventMock);
+        assertThat(SdkQueueManager.instance.offer(SdkQueueFamily.AGENT, queueMock, sdkQueueEventMock))
+                .isEqualTo(SendResult.REJECTED_FULL);
     }
 
     @Test
     public void interruptionStatusOfAThreadIsPreserved() throws InterruptedException {
-        doCallRealMethod().when(instanceMock).put(any(), any(), any());
-        doThrow(new InterruptedException()).doNothing().when(queueMock).put(any());
+        SdkQueueManager manager = new SdkQueueManager(mock(SystemEnvironment.class));
+        when(queueMock.offer(sdkQueueEventMock)).thenReturn(false);
+        when(queueMock.offer(eq(sdkQueueEventMock), anyLong(), any())).thenThrow(new InterruptedException());
 
-        instanceMock.put(queueMock, "for logging purposes", sdkQueueEventMock);
+        assertThat(manager.offer(SdkQueueFamily.SERVICE, queueMock, sdkQueueEventMock))
+                .isEqualTo(SendResult.INTERRUPTED);
 
         // interrupted() also clears interrupt flag - here this means we don't 'pollute' other tests on this thread.
         assertThat(Thread.interrupted()).isTrue();
     }
 
     @Test
-    public void interruptionStatusOfAThreadIsNotSetWhenNotInterrupted() throws InterruptedException {
-        doCallRealMethod().when(instanceMock).put(any(), any(), any());
-        doNothing().when(queueMock).put(any());
+    public void interruptionStatusOfAThreadIsNotSetWhenNotInterrupted() {
+        SdkQueueManager manager = new SdkQueueManager(mock(SystemEnvironment.class));
+        when(queueMock.offer(sdkQueueEventMock)).thenReturn(true);
 
-        instanceMock.put(queueMock, "for logging purposes", sdkQueueEventMock);
+        manager.offer(SdkQueueFamily.SERVICE, queueMock, sdkQueueEventMock);
 
         assertThat(Thread.currentThread().isInterrupted()).isFalse();
     }
 
+    @Test
+    public void ensureServiceQueueCreatesTheQueueOnceAndThenReusesIt() {
+        SystemEnvironment envMock = mock(SystemEnvironment.class);
+        SdkQueueManager.instance = new SdkQueueManager(envMock);
+
+        BlockingQueue<SdkQueueEvent> created = SdkQueueManager.instance.ensureServiceQueue(serviceName, persistenceContext, false);
+
+        assertThat(created).isNotNull();
+        assertThat(SdkQueueManager.getServiceQueue(serviceName, persistenceContext)).isSameAs(created);
+        assertThat(SdkQueueManager.registerService(serviceName, persistenceContext)).isSameAs(created);
+        assertThat(SdkQueueManager.getServicesQueues()).hasSize(1);
+    }
+
+    @Test
+    public void queueCapacitiesAreReadFromTheEnvironment() {
+        SystemEnvironment envMock = mock(SystemEnvironment.class);
+        when(envMock.getenvInt(anyString(), anyInt())).thenCallRealMethod();
+        when(envMock.getenv(SdkQueueFamily.GATEWAY.capacityEnvVar())).thenReturn("5");
+        when(envMock.getenv(SdkQueueFamily.SERVICE.capacityEnvVar())).thenReturn("7");
+        when(envMock.getenv(SdkQueueFamily.SERVICE.capacityEnvVar(sdkQueueEventId))).thenReturn("3");
+        when(envMock.getenv(SdkQueueFamily.COMMAND.capacityEnvVar())).thenReturn("not a number");
+
+        SdkQueueManager manager = new SdkQueueManager(envMock);
+
+        assertThat(manager.GATEWAY_QUEUE.remainingCapacity()).isEqualTo(5);
+        assertThat(manager.newQueue(SdkQueueFamily.SERVICE, sdkQueueEventId).remainingCapacity()).isEqualTo(3);
+        assertThat(manager.newQueue(SdkQueueFamily.SERVICE, new SdkQueueEventId("other", persistenceContext))
+                .remainingCapacity()).isEqualTo(7);
+        assertThat(manager.newQueue(SdkQueueFamily.COMMAND, sdkQueueEventId).remainingCapacity())
+                .isEqualTo(SdkQueueFamily.COMMAND.getDefaultCapacity());
+    }
+
     @Test
     public void getGatewayQueue() {
         BlockingQueue blockingQueueMock = mock(BlockingQueue.class);
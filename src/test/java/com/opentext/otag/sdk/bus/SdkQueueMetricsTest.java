@@ -0,0 +1,160 @@
+package com.opentext.otag.sdk.bus;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class SdkQueueMetricsTest {
+
+    private static final SdkQueueManager REAL_INSTANCE = SdkQueueManager.instance;
+
+    private static final String SERVICE = "metricsService";
+    private static final String PERS_CTX = "metricsCtx";
+
+    private SdkQueueManager manager;
+
+    @Before
+    public void setUp() {
+        manager = new SdkQueueManager(mock(SystemEnvironment.class));
+        SdkQueueManager.instance = manager;
+    }
+
+    @After
+    public void tearDown() {
+        manager.metrics.unregisterMBeans();
+        SdkQueueManager.instance = REAL_INSTANCE;
+    }
+
+    @Test
+    public void histogramPercentilesAreWithinTheBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long i = 1; i <= 10_000; i++) {
+            histogram.record(i * 1000);
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertThat(snapshot.count()).isEqualTo(10_000);
+        assertThat(snapshot.max()).isEqualTo(10_000_000);
+        assertThat(snapshot.percentile(50)).isBetween(5_000_000L, (long) (5_000_000 * 1.0625));
+        assertThat(snapshot.percentile(99)).isBetween(9_900_000L, (long) (9_900_000 * 1.0625));
+        assertThat(snapshot.percentile(100)).isEqualTo(10_000_000);
+        assertThat(new LatencyHistogram().snapshot().percentile(99)).isZero();
+    }
+
+    @Test
+    public void everyValueFallsInABucketThatHoldsIt() {
+        for (long value : new long[]{0, 1, 15, 16, 17, 31, 32, 1000, 123_456_789L, 1L << 35}) {
+            int bucket = LatencyHistogram.bucketOf(value);
+            assertThat(LatencyHistogram.highestValueIn(bucket)).isGreaterThanOrEqualTo(value);
+            if (bucket > 0) {
+                assertThat(LatencyHistogram.highestValueIn(bucket - 1)).isLessThan(value);
+            }
+        }
+        assertThat(LatencyHistogram.bucketOf(Long.MAX_VALUE)).isEqualTo(LatencyHistogram.BUCKETS - 1);
+    }
+
+    @Test
+    public void sendsAreCountedPerFamilyAndPerQueue() {
+        SdkQueueManager.sendEventToService(SERVICE, PERS_CTX, new SdkQueueEvent(SERVICE, PERS_CTX));
+        SdkQueueManager.sendEventToService(SERVICE, PERS_CTX, new SdkQueueEvent(SERVICE, PERS_CTX));
+        SdkQueueManager.sendEventToService("otherService", PERS_CTX, new SdkQueueEvent("otherService", PERS_CTX));
+
+        QueueMetricsSnapshot family = SdkQueueManager.metrics().family(SdkQueueFamily.SERVICE).getSnapshot();
+        assertThat(family.getEnqueued()).isEqualTo(3);
+        assertThat(family.getDepth()).isEqualTo(3);
+        assertThat(family.getServiceName()).isNull();
+
+        QueueMetricsSnapshot queue = SdkQueueManager.metrics()
+                .queue(SdkQueueFamily.SERVICE, SERVICE, PERS_CTX).getSnapshot();
+        assertThat(queue.getEnqueued()).isEqualTo(2);
+        assertThat(queue.getDepth()).isEqualTo(2);
+        assertThat(queue.getEnqueueLatencyMaxNanos()).isGreaterThan(0);
+
+        assertThat(SdkQueueManager.metrics().snapshot())
+                .extracting(QueueMetricsSnapshot::getServiceName)
+                .contains(SERVICE, "otherService", null);
+    }
+
+    @Test
+    public void overflowsAndRejectionsAreCounted() {
+        BlockingQueue<SdkQueueEvent> queue = new ArrayBlockingQueue<>(1);
+        SdkQueueEventId queueId = new SdkQueueEventId(SERVICE, PERS_CTX);
+        manager.metrics.register(SdkQueueFamily.COMMAND, queueId, queue);
+        SdkQueueManager.setOverflowPolicy(SdkQueueFamily.COMMAND, OverflowPolicies.dropNewest());
+
+        manager.offer(SdkQueueFamily.COMMAND, queue, new SdkQueueEvent(SERVICE, PERS_CTX));
+        manager.offer(SdkQueueFamily.COMMAND, queue, new SdkQueueEvent(SERVICE, PERS_CTX));
+
+        QueueMetricsSnapshot snapshot = manager.metrics.queue(SdkQueueFamily.COMMAND, SERVICE, PERS_CTX).getSnapshot();
+        assertThat(snapshot.getEnqueued()).isEqualTo(1);
+        assertThat(snapshot.getRejectedFull()).isEqualTo(1);
+        assertThat(snapshot.getOverflowed()).isEqualTo(1);
+        assertThat(snapshot.getRemainingCapacity()).isZero();
+        assertThat(manager.metrics.family(SdkQueueFamily.COMMAND).getRejected()).isEqualTo(1);
+    }
+
+    @Test
+    public void eventsEvictedByDropOldestAreCountedAsDropped() {
+        BlockingQueue<SdkQueueEvent> queue = new ArrayBlockingQueue<>(1);
+        SdkQueueEventId queueId = new SdkQueueEventId(SERVICE, PERS_CTX);
+        manager.metrics.register(SdkQueueFamily.COMMAND, queueId, queue);
+        SdkQueueManager.setOverflowPolicy(SdkQueueFamily.COMMAND, OverflowPolicies.dropOldest());
+
+        for (int i = 0; i < 3; i++) {
+            manager.offer(SdkQueueFamily.COMMAND, queue, new SdkQueueEvent(SERVICE, PERS_CTX));
+        }
+
+        QueueMetricsSnapshot snapshot = manager.metrics.queue(SdkQueueFamily.COMMAND, SERVICE, PERS_CTX).getSnapshot();
+        assertThat(snapshot.getEnqueued()).isEqualTo(3);
+        assertThat(snapshot.getOverflowed()).isEqualTo(2);
+        assertThat(snapshot.getDropped()).isEqualTo(2);
+        assertThat(manager.metrics.family(SdkQueueFamily.COMMAND).getDropped()).isEqualTo(2);
+    }
+
+    @Test
+    public void retiredQueuesAreForgotten() {
+        SdkQueueManager.registerService(SERVICE, PERS_CTX);
+        assertThat(manager.metrics.queue(SdkQueueFamily.SERVICE, SERVICE, PERS_CTX)).isNotNull();
+
+        SdkQueueManager.retireService(SERVICE, PERS_CTX);
+
+        assertThat(manager.metrics.queue(SdkQueueFamily.SERVICE, SERVICE, PERS_CTX)).isNull();
+        assertThat(manager.metrics.queue(SdkQueueFamily.COMMAND, SERVICE, PERS_CTX)).isNull();
+    }
+
+    @Test
+    public void metricsArePublishedOverJmx() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        SdkQueueManager.registerService(SERVICE, PERS_CTX);
+        manager.metrics.registerMBeans();
+        SdkQueueManager.sendEventToGateway(new SdkQueueEvent(SERVICE, PERS_CTX));
+
+        ObjectName gateway = new ObjectName(SdkQueueMetrics.JMX_DOMAIN + ":type=SdkQueue,family=GATEWAY");
+        assertThat(server.getAttribute(gateway, "Enqueued")).isEqualTo(1L);
+        assertThat(server.getAttribute(gateway, "Depth")).isEqualTo(1L);
+
+        ObjectName service = SdkQueueMetrics.objectName(
+                manager.metrics.queue(SdkQueueFamily.SERVICE, SERVICE, PERS_CTX));
+        assertThat(server.isRegistered(service)).isTrue();
+        assertThat(server.getAttribute(service, "Snapshot")).isNotNull();
+
+        // queues registered afterwards are published too
+        SdkQueueManager.getServiceAgentQueue(SERVICE, PERS_CTX);
+        assertThat(server.isRegistered(SdkQueueMetrics.objectName(
+                manager.metrics.queue(SdkQueueFamily.AGENT, SERVICE, PERS_CTX)))).isTrue();
+
+        manager.metrics.unregisterMBeans();
+        assertThat(server.isRegistered(gateway)).isFalse();
+        assertThat(server.isRegistered(service)).isFalse();
+    }
+
+}
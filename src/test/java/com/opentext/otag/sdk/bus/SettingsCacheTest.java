@@ -0,0 +1,139 @@
+package com.opentext.otag.sdk.bus;
+
+import com.opentext.otag.sdk.types.v3.OtagServiceEvent;
+import com.opentext.otag.sdk.types.v3.message.SettingsChangeMessage;
+import com.opentext.otag.sdk.types.v3.settings.Setting;
+import com.opentext.otag.sdk.types.v3.settings.SettingType;
+import com.opentext.otag.sdk.types.v3.settings.Settings;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SettingsCacheTest {
+
+    private final SettingsCache cache = new SettingsCache(0);
+
+    private final LoadCounter loads = new LoadCounter();
+
+    @Test
+    public void repeatReadsAreServedFromMemory() {
+        Setting first = cache.getSetting("service", "ctx", "key", () -> loads.load(setting("a", "1")));
+        Setting second = cache.getSetting("service", "ctx", "key", () -> loads.load(setting("b", "2")));
+
+        assertThat(second).isSameAs(first);
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(cache.getHits()).isEqualTo(1);
+        assertThat(cache.getMisses()).isEqualTo(1);
+
+        // other tenants have their own entries
+        assertThat(cache.getSetting("service", "other", "key", () -> loads.load(setting("b", "2"))).getValue())
+                .isEqualTo("b");
+    }
+
+    @Test
+    public void settingUpdatedCommandsUpdateTheCachedSettingInPlace() {
+        cache.getSetting("service", "ctx", "key", () -> loads.load(setting("old", "1")));
+        cache.getSettings("service", "ctx", () -> new Settings(Collections.singletonList(setting("old", "1"))));
+
+        cache.onCommand("service", "ctx", settingUpdated("key", "new"));
+
+        Setting updated = cache.getSetting("service", "ctx", "key", () -> loads.load(setting("stale", "1")));
+        assertThat(updated.getValue()).isEqualTo("new");
+        assertThat(updated.getKey()).isEqualTo("key");
+        assertThat(loads.get()).isEqualTo(1);
+        // the list is reloaded rather than patched
+        assertThat(cache.getSettings("service", "ctx", () -> null)).isNull();
+    }
+
+    @Test
+    public void loadsInFlightWhenAChangeArrivesAreNotCached() {
+        Setting loaded = cache.getSetting("service", "ctx", "key", () -> {
+            Setting setting = loads.load(setting("old", "1"));
+            cache.onCommand("service", "ctx", settingUpdated("key", "new"));
+            return setting;
+        });
+
+        assertThat(loaded.getValue()).isEqualTo("old");
+        assertThat(cache.getSetting("service", "ctx", "key", () -> loads.load(setting("new", "2"))).getValue())
+                .isEqualTo("new");
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void settingsWithALowerSeqNoDoNotReplaceNewerOnes() {
+        Setting loaded = cache.getSetting("service", "ctx", "key", () -> {
+            Setting older = loads.load(setting("older", "4"));
+            // a second reader misses at the same time and gets a newer answer back first
+            cache.getSetting("service", "ctx", "key", () -> loads.load(setting("newer", "5")));
+            return older;
+        });
+
+        assertThat(loaded.getValue()).isEqualTo("older");
+        assertThat(cache.getSetting("service", "ctx", "key", () -> loads.load(setting("other", "6"))).getValue())
+                .isEqualTo("newer");
+    }
+
+    @Test
+    public void entriesExpireAfterTheirTtl() throws Exception {
+        SettingsCache shortLived = new SettingsCache(1);
+        shortLived.getSetting("service", "ctx", "key", () -> loads.load(setting("first", "5")));
+        Thread.sleep(5);
+
+        assertThat(shortLived.getSetting("service", "ctx", "key", () -> loads.load(setting("second", "4"))).getValue())
+                .isEqualTo("second");
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void otherCommandsAreIgnored() {
+        cache.getSetting("service", "ctx", "key", () -> loads.load(setting("value", "1")));
+        SdkQueueEvent command = new SdkQueueEvent("service", "ctx");
+        // no event type
+        command.setSettingsChangeMessage(new SettingsChangeMessage("key", "x"));
+
+        cache.onCommand("service", "ctx", command);
+        cache.onCommand("service", "ctx", new SdkQueueEvent("service", "ctx"));
+
+        assertThat(cache.getSetting("service", "ctx", "key", () -> loads.load(setting("other", "2"))).getValue())
+                .isEqualTo("value");
+    }
+
+    @Test
+    public void theSharedCacheFollowsCommandsSentToServices() {
+        SettingsCache shared = SettingsCache.instance();
+        shared.getSetting("cachedService", "ctx", "key", () -> loads.load(setting("old", "1")));
+
+        SdkQueueManager.sendCommandToService("cachedService", "ctx", settingUpdated("key", "new"));
+
+        assertThat(shared.getSetting("cachedService", "ctx", "key", () -> loads.load(setting("stale", "1"))).getValue())
+                .isEqualTo("new");
+        shared.invalidateAll();
+    }
+
+    @Test
+    public void theSharedCacheFollowsCommandsSentThroughQueueHandles() {
+        SettingsCache shared = SettingsCache.instance();
+        shared.getSetting("handleService", "ctx", "key", () -> loads.load(setting("old", "1")));
+
+        SdkQueueManager.queueHandle("handleService", "ctx").sendCommandToService(settingUpdated("key", "new"));
+
+        assertThat(shared.getSetting("handleService", "ctx", "key", () -> loads.load(setting("stale", "1"))).getValue())
+                .isEqualTo("new");
+        shared.invalidateAll();
+    }
+
+    private static Setting setting(String value, String seqNo) {
+        return new Setting("key", "service", SettingType.string, "Key", value, "default", "a setting", false,
+                false, seqNo);
+    }
+
+    private static SdkQueueEvent settingUpdated(String key, String newValue) {
+        SdkQueueEvent command = new SdkQueueEvent("service", "ctx");
+        command.setSettingsChangeMessage(
+                new SettingsChangeMessage(OtagServiceEvent.SETTING_UPDATED, key, newValue));
+        return command;
+    }
+
+}
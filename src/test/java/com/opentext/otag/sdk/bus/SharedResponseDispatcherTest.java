@@ -0,0 +1,125 @@
+package com.opentext.otag.sdk.bus;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SharedResponseDispatcherTest {
+
+    private static final String PERS_CTX = "persCtx";
+    private static final int SERVICES = 10;
+
+    private final String originalMode = ConsumerThreads.mode();
+    private final List<SdkQueueCallbackManager> managers = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        ConsumerThreads.setMode(ConsumerThreads.SHARED);
+    }
+
+    @After
+    public void tearDown() {
+        managers.forEach(SdkQueueCallbackManager::stop);
+        for (int i = 0; i < SERVICES; i++) {
+            SdkQueueManager.retireService(serviceName(i), PERS_CTX);
+        }
+        ConsumerThreads.setMode(originalMode);
+    }
+
+    @Test
+    public void responsesForEveryServiceAreRoutedWithoutAThreadPerService() throws Exception {
+        List<CompletableFuture<SdkQueueEvent>> responses = new ArrayList<>();
+        for (int i = 0; i < SERVICES; i++) {
+            SdkQueueCallbackManager manager = SdkQueueCallbackManager.serviceCbackManager(serviceName(i), PERS_CTX);
+            managers.add(manager);
+
+            SdkQueueEvent request = SdkQueueEvent.request(null, serviceName(i), PERS_CTX);
+            responses.add(manager.sendAsync(request, 5, SECONDS));
+        }
+
+        // act as the Gateway
+        for (int answered = 0; answered < SERVICES; ) {
+            SdkQueueEvent request = SdkQueueManager.gatewayQueue().poll(5, SECONDS);
+            assertThat(request).isNotNull();
+            if (request.getServiceName().startsWith("sharedService")) {
+                SdkQueueManager.sendEventToService(request.getServiceName(), PERS_CTX,
+                        SdkQueueEvent.okResponse(request));
+                answered++;
+            }
+        }
+
+        for (CompletableFuture<SdkQueueEvent> response : responses) {
+            assertThat(response.get(5, SECONDS)).isNotNull();
+        }
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            assertThat(thread.getName()).doesNotContain("SdkResponseConsumer-SERVICE-sharedService");
+        }
+        assertThat(SharedResponseDispatcher.instance().threadCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void responsesQueuedBeforeTheManagerStartsAreDispatched() throws Exception {
+        SdkQueueEvent request = SdkQueueEvent.request(null, serviceName(0), PERS_CTX);
+        SdkQueueCallbackManager.CALLBACKS.register(request.getSdkEventIdentifier());
+        CompletableFuture<SdkQueueEvent> response = SdkQueueCallbackManager.CALLBACKS.get(
+                request.getSdkEventIdentifier());
+
+        assertThat(SdkQueueManager.registerService(serviceName(0), PERS_CTX))
+                .isInstanceOf(SignallingBlockingQueue.class);
+        SdkQueueManager.sendEventToService(serviceName(0), PERS_CTX, SdkQueueEvent.okResponse(request));
+        managers.add(SdkQueueCallbackManager.serviceCbackManager(serviceName(0), PERS_CTX));
+
+        assertThat(response.get(5, SECONDS).getSdkEventIdentifier()).isEqualTo(request.getSdkEventIdentifier());
+    }
+
+    @Test
+    public void detachingAnOldRouteKeepsANewerRouteOnTheSameQueue() throws Exception {
+        SharedResponseDispatcher dispatcher = new SharedResponseDispatcher(1);
+        SignallingBlockingQueue<SdkQueueEvent> queue = new SignallingBlockingQueue<>(new LinkedBlockingQueue<>());
+
+        SharedResponseDispatcher.Route oldRoute = dispatcher.attach(queue, "old");
+        dispatcher.attach(queue, "new");
+        dispatcher.detach(oldRoute);
+
+        SdkQueueEvent request = SdkQueueEvent.request(null, serviceName(0), PERS_CTX);
+        CompletableFuture<SdkQueueEvent> response = SdkQueueCallbackManager.CALLBACKS.register(
+                request.getSdkEventIdentifier());
+        queue.offer(SdkQueueEvent.okResponse(request));
+
+        assertThat(response.get(5, SECONDS).getSdkEventIdentifier()).isEqualTo(request.getSdkEventIdentifier());
+    }
+
+    @Test
+    public void aResponseThatFailsToDeliverDoesNotLoseTheRestOfItsBatch() throws Exception {
+        SharedResponseDispatcher dispatcher = new SharedResponseDispatcher(1);
+        SignallingBlockingQueue<SdkQueueEvent> queue = new SignallingBlockingQueue<>(new LinkedBlockingQueue<>());
+
+        SdkQueueEvent broken = mock(SdkQueueEvent.class);
+        when(broken.getSdkEventIdentifier()).thenThrow(new IllegalStateException("broken response"));
+        SdkQueueEvent request = SdkQueueEvent.request(null, serviceName(0), PERS_CTX);
+        CompletableFuture<SdkQueueEvent> response = SdkQueueCallbackManager.CALLBACKS.register(
+                request.getSdkEventIdentifier());
+
+        // queued before we attach, so both are drained in the same batch
+        queue.offer(broken);
+        queue.offer(SdkQueueEvent.okResponse(request));
+        dispatcher.attach(queue, "consumer");
+
+        assertThat(response.get(5, SECONDS).getSdkEventIdentifier()).isEqualTo(request.getSdkEventIdentifier());
+    }
+
+    private static String serviceName(int i) {
+        return "sharedService" + i;
+    }
+
+}
@@ -38,4 +38,48 @@ public class SystemEnvironmentTest {
 
     }
 
-}
\ No newline at end of file
+    @Test
+    public void itShouldBeAbleToRemoveQuotesFromValues() {
+        assertThat(SystemEnvironment.removeQuotes("\"500\"")).isEqualTo("500");
+        assertThat(SystemEnvironment.removeQuotes("'true'")).isEqualTo("true");
+        assertThat(SystemEnvironment.removeQuotes(" 500 ")).isEqualTo("500");
+        assertThat(SystemEnvironment.removeQuotes("\"500'")).isEqualTo("\"500'");
+    }
+
+    @Test
+    public void itShouldReadQuotedBooleans() {
+        assertThat(withValue("\"true\"").getenvBool("name")).isTrue();
+        assertThat(withValue("'TRUE'").getenvBool("name")).isTrue();
+        assertThat(withValue("false").getenvBool("name")).isFalse();
+    }
+
+    @Test
+    public void itShouldReadIntegers() {
+        assertThat(withValue("500").getenvInt("name", 1)).isEqualTo(500);
+        assertThat(withValue(" -3 ").getenvInt("name", 1)).isEqualTo(-3);
+    }
+
+    @Test
+    public void itShouldReadQuotedIntegers() {
+        assertThat(withValue("\"500\"").getenvInt("name", 1)).isEqualTo(500);
+        assertThat(withValue("'500'").getenvInt("name", 1)).isEqualTo(500);
+    }
+
+    @Test
+    public void itShouldFallBackToTheDefaultForMissingOrInvalidIntegers() {
+        assertThat(withValue("").getenvInt("name", 7)).isEqualTo(7);
+        assertThat(withValue("\"\"").getenvInt("name", 7)).isEqualTo(7);
+        assertThat(withValue("lots").getenvInt("name", 7)).isEqualTo(7);
+        assertThat(new SystemEnvironment().getenvInt("doesNotExist", 7)).isEqualTo(7);
+    }
+
+    private static SystemEnvironment withValue(String value) {
+        return new SystemEnvironment() {
+            @Override
+            public String getenv(String name) {
+                return value;
+            }
+        };
+    }
+
+}
@@ -0,0 +1,108 @@
+package com.opentext.otag.sdk.bus;
+
+import com.opentext.otag.sdk.types.v3.api.SDKCallInfo;
+import com.opentext.otag.sdk.types.v3.api.error.APIException;
+import com.opentext.otag.sdk.types.v3.auth.AuthorizedUser;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class TokenCacheTest {
+
+    private final TokenCache cache = new TokenCache(100, 60_000, 60_000);
+
+    private final LoadCounter loads = new LoadCounter();
+
+    @Test
+    public void tokensAreResolvedOnce() {
+        AuthorizedUser user = cache.getUserForToken("token", token -> loads.load(user("bob", 60_000, 1)));
+
+        assertThat(cache.getUserForToken("token", token -> loads.load(user("other", 60_000, 1)))).isSameAs(user);
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(cache.getHits()).isEqualTo(1);
+        assertThat(cache.getMisses()).isEqualTo(1);
+    }
+
+    @Test
+    public void expiredSessionsAreResolvedAgain() throws Exception {
+        cache.getUserForToken("token", token -> loads.load(user("bob", 20, 1)));
+        Thread.sleep(40);
+
+        assertThat(cache.getUserForToken("token", token -> loads.load(user("bob", 60_000, 2))).getVersion())
+                .isEqualTo(2);
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void olderVersionsDoNotReplaceNewerOnes() {
+        AuthorizedUser loaded = cache.getUserForToken("token", token -> {
+            // another caller resolves the token to a newer version whilst we are waiting
+            cache.getUserForToken("token", t -> loads.load(user("bob", 60_000, 3)));
+            return loads.load(user("bob", 60_000, 2));
+        });
+
+        assertThat(loaded.getVersion()).isEqualTo(2);
+        assertThat(cache.getUserForToken("token", token -> loads.load(user("bob", 60_000, 1))).getVersion())
+                .isEqualTo(3);
+    }
+
+    @Test
+    public void unknownTokensAndRejectedLookupsAreRemembered() {
+        assertThat(cache.getUserForToken("unknown", token -> loads.load(null))).isNull();
+        assertThat(cache.getUserForToken("unknown", token -> loads.load(user("bob", 60_000, 1)))).isNull();
+
+        SDKCallInfo callInfo = new SDKCallInfo();
+        callInfo.setResponseStatus(401);
+        APIException unauthorized = new APIException("bad token", callInfo);
+        for (int i = 0; i < 2; i++) {
+            try {
+                cache.getUserForToken("bad", token -> {
+                    throw loads.load(unauthorized);
+                });
+                fail("Expected the lookup to fail");
+            } catch (APIException e) {
+                // each caller gets its own exception rather than one instance thrown on every thread
+                assertThat(e.getStatus()).isEqualTo(401);
+                assertThat(e).hasMessage("bad token");
+                assertThat(e.getCallInfo()).isSameAs(callInfo);
+                if (i > 0) {
+                    assertThat(e).isNotSameAs(unauthorized);
+                }
+            }
+        }
+
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void transientFailuresAreNotRemembered() {
+        try {
+            cache.getUserForToken("token", token -> {
+                throw new APIException("timed out", new SDKCallInfo());
+            });
+            fail("Expected the lookup to fail");
+        } catch (APIException expected) {
+            // not a 4xx
+        }
+
+        assertThat(cache.getUserForToken("token", token -> loads.load(user("bob", 60_000, 1)))).isNotNull();
+    }
+
+    @Test
+    public void usersCanBeInvalidated() {
+        cache.getUserForToken("first", token -> loads.load(user("bob", 60_000, 1)));
+        cache.getUserForToken("second", token -> loads.load(user("bob", 60_000, 1)));
+        cache.getUserForToken("third", token -> loads.load(user("alice", 60_000, 1)));
+
+        cache.invalidateUser("bob");
+
+        assertThat(cache.size()).isEqualTo(1);
+    }
+
+    private static AuthorizedUser user(String userId, long maxAge, int version) {
+        return new AuthorizedUser(userId, "Last", userId, "client", userId, false, false, userId + "@example.com",
+                version, maxAge);
+    }
+
+}